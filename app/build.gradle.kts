@@ -8,6 +8,8 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+    // JMH benchmarks in src/jmh, run with `./gradlew jmh`.
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -22,8 +24,8 @@ dependencies {
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     // This dependency is used by the application.
     implementation(libs.guava)
-    // Add Gson for JSON pretty-printing.
-    implementation("com.google.code.gson:gson:2.8.7")
+    // Writes the class files of the JVM backend.
+    implementation(libs.asm)
 }
 
 // Apply a specific Java toolchain to ease working on different environments.
@@ -33,6 +35,15 @@ java {
     }
 }
 
+version = "0.1.0"
+
+tasks.jar {
+    manifest {
+        // Diagnostics report this version
+        attributes("Implementation-Version" to project.version)
+    }
+}
+
 application {
     // Define the main class for the application.
     mainClass = "compiler.main.App"
@@ -42,3 +53,10 @@ tasks.named<Test>("test") {
     // Use JUnit Platform for unit tests.
     useJUnitPlatform()
 }
+
+jmh {
+    jmhVersion = libs.versions.jmh
+    warmupIterations = 3
+    iterations = 5
+    fork = 1
+}
@@ -0,0 +1,53 @@
+package compiler.parser;
+
+import compiler.lexer.Lexer;
+import compiler.lexer.TokenStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parses generated math kernels, where nearly every token belongs to an
+ * expression. Run with {@code ./gradlew jmh}. To compare with the chain of
+ * one method per precedence level that precedence climbing replaced, copy
+ * this class onto the commit before climbing and run it there too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExpressionBenchmark {
+    @Param({"200"})
+    public int functions;
+
+    private TokenStream tokens;
+
+    @Setup
+    public void lex() {
+        tokens = Lexer.tokenizeStream(kernels(functions));
+    }
+
+    @Benchmark
+    public ProgramNode parse() {
+        return Parser.parse(tokens);
+    }
+
+    /**
+     * Source with {@code count} functions of arithmetic, comparisons and
+     * boolean logic over a handful of variables.
+     */
+    public static String kernels(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int f = 0; f < count; f++) {
+            sb.append("func kernel").append(f).append("(a: float, b: float, c: float, d: float): float {\n");
+            sb.append("    var x: float = 0.;\n");
+            for (int i = 0; i < 20; i++) {
+                sb.append("    x = (a * b + c * d - x / ").append(i + 1).append(".) * (a - b) - -c + d * d;\n");
+                sb.append("    if (x > a && b <= c || !(d == x) && a + b * c < d - 1.) {\n");
+                sb.append("        x -= a * (b + c * (d - a * (b - c))) / ").append(i + 2).append(".;\n");
+                sb.append("    }\n");
+            }
+            sb.append("    return x * x + a * b - c / d;\n");
+            sb.append("}\n\n");
+        }
+        return sb.toString();
+    }
+}
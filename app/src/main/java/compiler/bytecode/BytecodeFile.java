@@ -0,0 +1,446 @@
+package compiler.bytecode;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import compiler.parser.TypeNode;
+
+/**
+ * The {@code .macsc} encoding of a {@link CompiledProgram}, so a program
+ * can be run without being parsed and checked again.
+ *
+ * <pre>
+ * file      = "MACS" version:varint constants globals functions init:varint main:zigzag
+ * constants = count:varint (kind:byte value)*
+ * globals   = ints:varint floats:varint strings:varint
+ * functions = count:varint function*
+ * function  = name pos:zigzag return:byte params:varint param:byte* registers:varint{3}
+ *             code-length:varint instruction* faults
+ * faults    = count:varint (pc-delta:varint pos-delta:zigzag)*
+ * </pre>
+ *
+ * An int constant is a zigzag varint, a char a varint, a float the eight
+ * little-endian bytes of its raw bits and a string, as names are, its
+ * UTF-8 length as a varint and the bytes. Types are written as their
+ * ordinals. An instruction is its opcode as a byte and its operands as
+ * zigzag varints, so registers and most immediates take a byte each.
+ */
+public final class BytecodeFile {
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = { 'M', 'A', 'C', 'S' };
+    private static final ConstantPool.Kind[] KINDS = ConstantPool.Kind.values();
+    private static final TypeNode[] TYPES = TypeNode.values();
+
+    private BytecodeFile() {
+    }
+
+    public static byte[] encode(CompiledProgram program) {
+        ByteSink out = new ByteSink(1024);
+        out.write(MAGIC);
+        out.writeVarint(VERSION);
+        ConstantPool constants = program.constants;
+        out.writeVarint(constants.size());
+        for (int i = 0; i < constants.size(); i++) {
+            ConstantPool.Kind kind = constants.kind(i);
+            out.writeByte(kind.ordinal());
+            switch (kind) {
+                case INT -> out.writeVarint(zigzag(constants.intValue(i)));
+                case CHAR -> out.writeVarint(constants.intValue(i));
+                case FLOAT -> out.writeLong(Double.doubleToRawLongBits(constants.floatValue(i)));
+                case STRING -> out.writeString(constants.stringValue(i));
+            }
+        }
+        out.writeVarint(program.intGlobals);
+        out.writeVarint(program.floatGlobals);
+        out.writeVarint(program.stringGlobals);
+        out.writeVarint(program.functions.size());
+        for (FunctionCode function : program.functions) {
+            writeFunction(out, function);
+        }
+        out.writeVarint(program.init);
+        out.writeVarint(zigzag(program.main));
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    private static void writeFunction(ByteSink out, FunctionCode function) {
+        out.writeString(function.name);
+        out.writeVarint(zigzag(function.pos));
+        out.writeByte(function.returnType.ordinal());
+        out.writeVarint(function.paramTypes.size());
+        for (TypeNode type : function.paramTypes) {
+            out.writeByte(type.ordinal());
+        }
+        out.writeVarint(function.intRegisters);
+        out.writeVarint(function.floatRegisters);
+        out.writeVarint(function.stringRegisters);
+        int[] code = function.code;
+        out.writeVarint(code.length);
+        for (int pc = 0; pc < code.length; ) {
+            int length = Opcode.length(code, pc);
+            out.writeByte(code[pc]);
+            for (int i = 1; i < length; i++) {
+                out.writeVarint(zigzag(code[pc + i]));
+            }
+            pc += length;
+        }
+        out.writeVarint(function.faultCount());
+        int lastPc = 0;
+        int lastPos = 0;
+        for (int i = 0; i < function.faultCount(); i++) {
+            out.writeVarint(function.faultPc(i) - lastPc);
+            out.writeVarint(zigzag(function.faultPosition(i) - lastPos));
+            lastPc = function.faultPc(i);
+            lastPos = function.faultPosition(i);
+        }
+    }
+
+    public static void write(CompiledProgram program, OutputStream out) throws IOException {
+        out.write(encode(program));
+    }
+
+    /**
+     * Reads a program from the buffer's position, leaving the position after
+     * it. The program is verified, so the {@code VirtualMachine} only fails
+     * running it as the program itself does.
+     *
+     * @throws IllegalArgumentException if the buffer doesn't start with a
+     *         valid program of this version
+     */
+    public static CompiledProgram read(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        CompiledProgram program;
+        try {
+            program = new Decoder(in).decode();
+            verify(program);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated bytecode", e);
+        }
+        buffer.position(in.position());
+        return program;
+    }
+
+//// ENCODING //////////////////////////////////////////////////////////////////
+
+    private static final class ByteSink {
+        byte[] bytes;
+        int size;
+
+        ByteSink(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            write(utf8);
+        }
+
+        void write(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+//// DECODING //////////////////////////////////////////////////////////////////
+
+    private static final class Decoder {
+        private final ByteBuffer in;
+
+        Decoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        CompiledProgram decode() {
+            for (byte b : MAGIC) {
+                if (!in.hasRemaining() || in.get() != b) {
+                    throw new IllegalArgumentException("Not a bytecode file");
+                }
+            }
+            int version = readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported bytecode version " + version);
+            }
+            ConstantPool.Builder constants = new ConstantPool.Builder();
+            int count = readInt();
+            for (int i = 0; i < count; i++) {
+                ConstantPool.Kind kind = KINDS[ordinal(KINDS.length, "constant kind")];
+                int index = switch (kind) {
+                    case INT -> constants.addInt(unzigzag(readVarint()));
+                    case CHAR -> constants.addChar((char) readVarint());
+                    case FLOAT -> constants.addFloat(Double.longBitsToDouble(in.getLong()));
+                    case STRING -> constants.addString(readString());
+                };
+                if (index != i) {
+                    throw new IllegalArgumentException("Constant " + i + " is a duplicate");
+                }
+            }
+            int intGlobals = readInt();
+            int floatGlobals = readInt();
+            int stringGlobals = readInt();
+            FunctionCode[] functions = new FunctionCode[readCount()];
+            for (int i = 0; i < functions.length; i++) {
+                functions[i] = readFunction();
+            }
+            int init = readInt();
+            int main = (int) unzigzag(readVarint());
+            if (init >= functions.length || main >= functions.length || main < -1) {
+                throw new IllegalArgumentException("No function " + (init >= functions.length ? init : main));
+            }
+            return new CompiledProgram(constants.build(), Arrays.asList(functions),
+                intGlobals, floatGlobals, stringGlobals, init, main);
+        }
+
+        private FunctionCode readFunction() {
+            String name = readString();
+            int pos = (int) unzigzag(readVarint());
+            TypeNode returnType = TYPES[ordinal(TYPES.length, "type")];
+            List<TypeNode> paramTypes = new ArrayList<>();
+            for (int i = readCount(); i > 0; i--) {
+                paramTypes.add(TYPES[ordinal(TYPES.length, "type")]);
+            }
+            int intRegisters = readInt();
+            int floatRegisters = readInt();
+            int stringRegisters = readInt();
+            int[] code = new int[readCount()];
+            for (int pc = 0; pc < code.length; ) {
+                int opcode = ordinal(Opcode.COUNT, "opcode");
+                code[pc] = opcode;
+                int operands = opcode == Opcode.CALL ? 3 : Opcode.signature(opcode).length();
+                if (operands >= code.length - pc) {
+                    throw new IllegalArgumentException("Instruction at " + pc + " runs past the code");
+                }
+                for (int i = 1; i <= operands; i++) {
+                    code[pc + i] = (int) unzigzag(readVarint());
+                }
+                if (opcode == Opcode.CALL) {
+                    int argc = code[pc + 3];
+                    if (argc < 0 || argc >= code.length - pc - 3) {
+                        throw new IllegalArgumentException("Instruction at " + pc + " runs past the code");
+                    }
+                    for (int i = 0; i < argc; i++) {
+                        code[pc + 4 + i] = (int) unzigzag(readVarint());
+                    }
+                }
+                pc += Opcode.length(code, pc);
+            }
+            int[] faultPcs = new int[readCount()];
+            int[] faultPositions = new int[faultPcs.length];
+            int lastPc = 0;
+            int lastPos = 0;
+            for (int i = 0; i < faultPcs.length; i++) {
+                lastPc += readInt();
+                lastPos += (int) unzigzag(readVarint());
+                faultPcs[i] = lastPc;
+                faultPositions[i] = lastPos;
+            }
+            return new FunctionCode(name, pos, paramTypes, returnType, intRegisters, floatRegisters, stringRegisters,
+                code, faultPcs, faultPositions);
+        }
+
+        private String readString() {
+            int length = readCount();
+            byte[] utf8 = new byte[length];
+            in.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        // Of something taking at least a byte each, so a corrupt count fails
+        // before anything that large is allocated
+        private int readCount() {
+            int count = readInt();
+            if (count > in.remaining()) {
+                throw new IllegalArgumentException("Count past the end of the bytecode: " + count);
+            }
+            return count;
+        }
+
+        // A byte naming one of `count` things
+        private int ordinal(int count, String what) {
+            int ordinal = in.get();
+            if (ordinal < 0 || ordinal >= count) {
+                throw new IllegalArgumentException("Unknown " + what + " " + ordinal);
+            }
+            return ordinal;
+        }
+
+        private int readInt() {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Count out of range: " + value);
+            }
+            return (int) value;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+//// VERIFYING /////////////////////////////////////////////////////////////////
+
+    // Checks what the machine takes for granted: registers, globals and
+    // constants exist and constants are of the kind loaded, jumps land on
+    // instructions, calls pass what the function called takes, returns
+    // return what the function does and no code runs past its end
+    private static void verify(CompiledProgram program) {
+        for (FunctionCode function : program.functions) {
+            verify(function, program);
+        }
+    }
+
+    private static void verify(FunctionCode function, CompiledProgram program) {
+        int[] code = function.code;
+        int[] registers = { function.intRegisters, function.floatRegisters, function.stringRegisters };
+        int[] globals = { program.intGlobals, program.floatGlobals, program.stringGlobals };
+        // Arguments are passed in the first registers of their banks
+        int[] params = new int[3];
+        for (TypeNode type : function.paramTypes) {
+            params["ifs".indexOf(FunctionCode.bank(type))]++;
+        }
+        for (int bank = 0; bank < 3; bank++) {
+            if (params[bank] > registers[bank]) {
+                throw invalid(function, 0, "More parameters than registers");
+            }
+        }
+        boolean[] starts = new boolean[code.length];
+        int last = -1;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code, pc)) {
+            starts[pc] = true;
+            last = pc;
+        }
+        if (last < 0 || !ends(code[last])) {
+            throw invalid(function, Math.max(last, 0), "Code runs past its end");
+        }
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code, pc)) {
+            int opcode = code[pc];
+            if (opcode == Opcode.CALL) {
+                verifyCall(function, pc, program, registers);
+                continue;
+            }
+            if (ends(opcode) && opcode != Opcode.JMP && opcode != returnOpcode(function.returnType)) {
+                throw invalid(function, pc, Opcode.name(opcode) + " from a function returning "
+                    + function.returnType.name().toLowerCase());
+            }
+            String signature = Opcode.signature(opcode);
+            for (int i = 0; i < signature.length(); i++) {
+                int operand = code[pc + 1 + i];
+                char kind = signature.charAt(i);
+                boolean valid = switch (kind) {
+                    case 'i', 'f', 's' -> operand >= 0 && operand < registers["ifs".indexOf(kind)];
+                    case 'I', 'F', 'S' -> operand >= 0 && operand < globals["IFS".indexOf(kind)];
+                    case 'k' -> operand >= 0 && operand < program.constants.size()
+                        && loads(opcode, program.constants.kind(operand));
+                    case 'j' -> operand >= 0 && operand < code.length && starts[operand];
+                    default -> true;
+                };
+                if (!valid) {
+                    throw invalid(function, pc, "Operand " + (i + 1) + " of " + Opcode.name(opcode) + " out of range");
+                }
+            }
+        }
+    }
+
+    private static void verifyCall(FunctionCode function, int pc, CompiledProgram program, int[] registers) {
+        int[] code = function.code;
+        int index = code[pc + 1];
+        if (index < 0 || index >= program.functions.size()) {
+            throw invalid(function, pc, "No function " + index);
+        }
+        FunctionCode callee = program.functions.get(index);
+        if (code[pc + 3] != callee.paramTypes.size()) {
+            throw invalid(function, pc, "Wrong number of arguments to " + callee.name);
+        }
+        if (callee.returnType != TypeNode.VOID && !fits(code[pc + 2], callee.returnType, registers)) {
+            throw invalid(function, pc, "Result register out of range");
+        }
+        for (int i = 0; i < callee.paramTypes.size(); i++) {
+            if (!fits(code[pc + 4 + i], callee.paramTypes.get(i), registers)) {
+                throw invalid(function, pc, "Argument " + (i + 1) + " out of range");
+            }
+        }
+    }
+
+    // Whether the register exists in the bank of the type
+    private static boolean fits(int register, TypeNode type, int[] registers) {
+        return register >= 0 && register < registers["ifs".indexOf(FunctionCode.bank(type))];
+    }
+
+    // Whether the machine never runs the instruction after
+    private static boolean ends(int opcode) {
+        return switch (opcode) {
+            case Opcode.JMP, Opcode.RET_I, Opcode.RET_F, Opcode.RET_S, Opcode.RET -> true;
+            default -> false;
+        };
+    }
+
+    private static int returnOpcode(TypeNode type) {
+        return switch (type) {
+            case VOID -> Opcode.RET;
+            case FLOAT -> Opcode.RET_F;
+            case STRING -> Opcode.RET_S;
+            default -> Opcode.RET_I;
+        };
+    }
+
+    // Whether the opcode loads a constant of the kind, input reads into the
+    // variable named by a string
+    private static boolean loads(int opcode, ConstantPool.Kind kind) {
+        return switch (opcode) {
+            case Opcode.CONST_I -> kind == ConstantPool.Kind.INT || kind == ConstantPool.Kind.CHAR;
+            case Opcode.CONST_F -> kind == ConstantPool.Kind.FLOAT;
+            default -> kind == ConstantPool.Kind.STRING;
+        };
+    }
+
+    private static IllegalArgumentException invalid(FunctionCode function, int pc, String message) {
+        return new IllegalArgumentException(message + " at " + pc + " in " + function.name);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,37 @@
+package compiler.bytecode;
+
+import java.util.List;
+
+/**
+ * A whole program as bytecode, what {@link Lowering} makes of a checked
+ * {@link compiler.parser.ProgramNode} and what a {@code .macsc} file holds.
+ *
+ * Running it runs {@link #init}, which initializes the globals in order,
+ * then {@link #main} if there is one. Functions are numbered as their
+ * symbols' slots, the {@link Opcode#CALL} operand, and the initializer
+ * comes after them.
+ */
+public final class CompiledProgram {
+    public final ConstantPool constants;
+    public final List<FunctionCode> functions;
+    public final int intGlobals;
+    public final int floatGlobals;
+    public final int stringGlobals;
+    public final int init;
+    public final int main; // -1 if the program has no main()
+
+    public CompiledProgram(ConstantPool constants, List<FunctionCode> functions,
+                           int intGlobals, int floatGlobals, int stringGlobals, int init, int main) {
+        this.constants = constants;
+        this.functions = List.copyOf(functions);
+        this.intGlobals = intGlobals;
+        this.floatGlobals = floatGlobals;
+        this.stringGlobals = stringGlobals;
+        this.init = init;
+        this.main = main;
+    }
+
+    public FunctionCode function(int index) {
+        return functions.get(index);
+    }
+}
@@ -0,0 +1,93 @@
+package compiler.bytecode;
+
+import java.util.*;
+
+/**
+ * Literals of a program, each stored once, and the names {@code input}
+ * reports errors about. Ints and chars are loaded into int registers,
+ * floats into float registers, strings into string registers.
+ */
+public final class ConstantPool {
+    public enum Kind {
+        INT, FLOAT, CHAR, STRING
+    }
+
+    private final Kind[] kinds;
+    private final long[] bits;      // Of ints, chars and floats
+    private final String[] strings;
+
+    private ConstantPool(Kind[] kinds, long[] bits, String[] strings) {
+        this.kinds = kinds;
+        this.bits = bits;
+        this.strings = strings;
+    }
+
+    public int size() {
+        return kinds.length;
+    }
+
+    public Kind kind(int index) {
+        return kinds[index];
+    }
+
+    // Of an int or a char
+    public long intValue(int index) {
+        return bits[index];
+    }
+
+    public double floatValue(int index) {
+        return Double.longBitsToDouble(bits[index]);
+    }
+
+    public String stringValue(int index) {
+        return strings[index];
+    }
+
+    /**
+     * Adds constants that aren't in the pool yet.
+     */
+    public static final class Builder {
+        private final List<Kind> kinds = new ArrayList<>();
+        private final List<Long> bits = new ArrayList<>();
+        private final List<String> strings = new ArrayList<>();
+        private final Map<Object, Integer> indexes = new HashMap<>();
+
+        public int addInt(long value) {
+            return add(Kind.INT, value, null);
+        }
+
+        public int addChar(char value) {
+            return add(Kind.CHAR, value, null);
+        }
+
+        // Floats are told apart by their bits, so 0.0 and -0.0 are two
+        public int addFloat(double value) {
+            return add(Kind.FLOAT, Double.doubleToRawLongBits(value), null);
+        }
+
+        public int addString(String value) {
+            return add(Kind.STRING, 0, value);
+        }
+
+        private int add(Kind kind, long value, String string) {
+            Object key = kind == Kind.STRING ? string : List.of(kind, value);
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = kinds.size();
+                kinds.add(kind);
+                bits.add(value);
+                strings.add(string);
+                indexes.put(key, index);
+            }
+            return index;
+        }
+
+        public ConstantPool build() {
+            long[] values = new long[bits.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = bits.get(i);
+            }
+            return new ConstantPool(kinds.toArray(new Kind[0]), values, strings.toArray(new String[0]));
+        }
+    }
+}
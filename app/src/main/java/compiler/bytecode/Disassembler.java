@@ -0,0 +1,137 @@
+package compiler.bytecode;
+
+import java.util.stream.Collectors;
+
+import compiler.parser.TypeNode;
+
+/**
+ * Readable listing of a {@link CompiledProgram}: the constants, then each
+ * function with its registers and one instruction per line.
+ *
+ * <pre>
+ * fn 0 fib(i0: int) -> int   ; registers i8 f0 s0
+ *     0  imm.i      i1, 2
+ *     3  lt.i       i2, i0, i1
+ *     7  jmp.ifnot  i2, @12
+ * </pre>
+ *
+ * Registers are named by their bank, globals by their bank in capitals,
+ * constants as {@code #index} followed by their value.
+ */
+public final class Disassembler {
+    private Disassembler() {
+    }
+
+    public static String disassemble(CompiledProgram program) {
+        StringBuilder out = new StringBuilder();
+        ConstantPool constants = program.constants;
+        out.append("globals I").append(program.intGlobals)
+            .append(" F").append(program.floatGlobals)
+            .append(" S").append(program.stringGlobals).append('\n');
+        for (int i = 0; i < constants.size(); i++) {
+            out.append(String.format("#%-4d %-6s %s%n", i, constants.kind(i).name().toLowerCase(), constant(constants, i)));
+        }
+        for (int i = 0; i < program.functions.size(); i++) {
+            out.append('\n');
+            function(out, program, i);
+        }
+        return out.toString();
+    }
+
+    private static void function(StringBuilder out, CompiledProgram program, int index) {
+        FunctionCode function = program.function(index);
+        int[] next = new int[3]; // Parameter registers taken, by bank
+        String params = function.paramTypes.stream()
+            .map(type -> {
+                char bank = FunctionCode.bank(type);
+                return bank + Integer.toString(next["ifs".indexOf(bank)]++) + ": " + type.name().toLowerCase();
+            })
+            .collect(Collectors.joining(", "));
+        out.append("fn ").append(index).append(' ').append(function.name).append('(').append(params).append(')');
+        if (function.returnType != TypeNode.VOID) {
+            out.append(" -> ").append(function.returnType.name().toLowerCase());
+        }
+        out.append("   ; registers i").append(function.intRegisters)
+            .append(" f").append(function.floatRegisters)
+            .append(" s").append(function.stringRegisters);
+        if (index == program.init) {
+            out.append(", init");
+        } else if (index == program.main) {
+            out.append(", main");
+        }
+        out.append('\n');
+        int[] code = function.code;
+        for (int pc = 0; pc < code.length; pc += Opcode.length(code, pc)) {
+            String operands = operands(program, code, pc);
+            out.append(String.format("%6d  %-10s %s", pc, Opcode.name(code[pc]), operands).stripTrailing());
+            int pos = function.position(pc);
+            if (pos >= 0) {
+                out.append("   ; at ").append(pos);
+            }
+            out.append('\n');
+        }
+    }
+
+    private static String operands(CompiledProgram program, int[] code, int pc) {
+        int opcode = code[pc];
+        StringBuilder out = new StringBuilder();
+        if (opcode == Opcode.CALL) {
+            FunctionCode callee = program.function(code[pc + 1]);
+            out.append(callee.name);
+            if (callee.returnType != TypeNode.VOID) {
+                out.append(" -> ").append(FunctionCode.bank(callee.returnType)).append(code[pc + 2]);
+            }
+            out.append(" (");
+            for (int i = 0; i < code[pc + 3]; i++) {
+                out.append(i > 0 ? ", " : "")
+                    .append(FunctionCode.bank(callee.paramTypes.get(i))).append(code[pc + 4 + i]);
+            }
+            return out.append(')').toString();
+        }
+        String signature = Opcode.signature(opcode);
+        for (int i = 0; i < signature.length(); i++) {
+            int operand = code[pc + 1 + i];
+            out.append(i > 0 ? ", " : "");
+            char kind = signature.charAt(i);
+            switch (kind) {
+                case 'k' -> out.append('#').append(operand).append(' ').append(constant(program.constants, operand));
+                case 'n' -> out.append(operand);
+                case 'j' -> out.append('@').append(operand);
+                default -> out.append(kind).append(operand);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String constant(ConstantPool constants, int index) {
+        return switch (constants.kind(index)) {
+            case INT -> Long.toString(constants.intValue(index));
+            case FLOAT -> Double.toString(constants.floatValue(index));
+            case CHAR -> quote((char) constants.intValue(index), '\'');
+            case STRING -> quote(constants.stringValue(index), '"');
+        };
+    }
+
+    private static String quote(CharSequence text, char quote) {
+        StringBuilder out = new StringBuilder().append(quote);
+        text.chars().forEach(c -> {
+            switch (c) {
+                case '\n' -> out.append("\\n");
+                case '\t' -> out.append("\\t");
+                case '\r' -> out.append("\\r");
+                case '\\' -> out.append("\\\\");
+                default -> {
+                    if (c == quote) {
+                        out.append('\\');
+                    }
+                    out.append((char) c);
+                }
+            }
+        });
+        return out.append(quote).toString();
+    }
+
+    private static String quote(char c, char quote) {
+        return quote(String.valueOf(c), quote);
+    }
+}
@@ -0,0 +1,72 @@
+package compiler.bytecode;
+
+import java.util.*;
+
+import compiler.parser.TypeNode;
+
+/**
+ * Code of one function: its instructions, see {@link Opcode}, and how many
+ * registers of each bank they use.
+ *
+ * Instructions that can fail while running, integer divisions and inputs,
+ * have the source position to report the failure at.
+ */
+public final class FunctionCode {
+    public final String name;
+    public final int pos; // Of the declaration, -1 for the initializer
+    public final List<TypeNode> paramTypes;
+    public final TypeNode returnType; // VOID if it returns nothing
+    public final int intRegisters;
+    public final int floatRegisters;
+    public final int stringRegisters;
+    public final int[] code;
+    private final int[] faultPcs;       // Ascending
+    private final int[] faultPositions; // Of the instruction at the same index of faultPcs
+
+    public FunctionCode(String name, int pos, List<TypeNode> paramTypes, TypeNode returnType,
+                        int intRegisters, int floatRegisters, int stringRegisters,
+                        int[] code, int[] faultPcs, int[] faultPositions) {
+        this.name = name;
+        this.pos = pos;
+        this.paramTypes = List.copyOf(paramTypes);
+        this.returnType = returnType;
+        this.intRegisters = intRegisters;
+        this.floatRegisters = floatRegisters;
+        this.stringRegisters = stringRegisters;
+        this.code = code;
+        this.faultPcs = faultPcs;
+        this.faultPositions = faultPositions;
+    }
+
+    /**
+     * Source position of the instruction at {@code pc}, or -1 if it can't
+     * fail.
+     */
+    public int position(int pc) {
+        int i = Arrays.binarySearch(faultPcs, pc);
+        return i >= 0 ? faultPositions[i] : -1;
+    }
+
+    int faultCount() {
+        return faultPcs.length;
+    }
+
+    int faultPc(int i) {
+        return faultPcs[i];
+    }
+
+    int faultPosition(int i) {
+        return faultPositions[i];
+    }
+
+    /**
+     * The register bank a value of the type lives in: 'i', 'f' or 's'.
+     */
+    public static char bank(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> 'f';
+            case STRING -> 's';
+            default -> 'i';
+        };
+    }
+}
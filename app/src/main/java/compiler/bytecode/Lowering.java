@@ -0,0 +1,783 @@
+package compiler.bytecode;
+
+import java.util.*;
+
+import compiler.parser.*;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+import compiler.semantic.Symbol;
+
+/**
+ * Lowers a checked program to a {@link CompiledProgram}, one function at a
+ * time.
+ *
+ * Every local and parameter gets a register of its own for the whole
+ * function, in the bank of its type. An expression is computed into
+ * temporary registers above the locals declared so far, which are free
+ * again once its statement is done, and a name of a local is just its
+ * register, nothing is moved. The last instruction of an expression writes
+ * straight into the variable it's assigned to when there is one.
+ *
+ * Loops test their condition at the bottom, so an iteration takes a single
+ * branch, and {@code &&}, {@code ||} and {@code !} in conditions become
+ * branches rather than values, as do comparisons of ints. Ints that fit in
+ * 32 bits are immediates, other literals are constants. A literal that is
+ * an operand is loaded once, when the function is entered, into a
+ * register of its own, so loops don't load them again. Functions that end
+ * without returning return 0, 0.0, '\0', false or "", as in the
+ * interpreters.
+ */
+public final class Lowering implements AstVisitor<Integer> {
+    private static final int PRINT = SemanticAnalyzer.BUILTINS.indexOf("print");
+    private static final int INT = 0;
+    private static final int FLOAT = 1;
+    private static final int STRING = 2;
+    private static final int LITERAL = 1 << 20; // Registers from here on stand for those of literals
+
+    private final Symbol[] symbols;   // By id
+    private final Symbol[] functions; // By slot
+    private final int[] globalIndex;  // In its bank, by global slot
+    private final ConstantPool.Builder constants = new ConstantPool.Builder();
+
+    // Of the function being lowered
+    private int[] code = new int[256];
+    private int size;
+    private int[] faultPcs = new int[16];
+    private int[] faultPositions = new int[16];
+    private int faults;
+    private int[] localRegisters; // By frame slot
+    private final int[] locals = new int[3];       // Registers taken by locals, by bank
+    private final int[] temps = new int[3];        // Next free temporary, by bank
+    private final int[] registers = new int[3];    // Used at all, by bank
+    private TypeNode returnType;
+    private int hint = -1; // Register the expression being lowered should end up in, if any
+    private final Map<List<Integer>, Integer> literals = new LinkedHashMap<>(); // Load to its index in the bank
+    private final int[] literalCounts = new int[3];
+
+    private Lowering(Bindings bindings) {
+        this.symbols = bindings.symbols().toArray(new Symbol[0]);
+        this.globalIndex = new int[bindings.globalCount()];
+        this.functions = new Symbol[bindings.functions().size()];
+        for (Symbol symbol : symbols) {
+            if (symbol.kind == Symbol.Kind.FUNCTION) {
+                functions[symbol.slot] = symbol;
+            }
+        }
+    }
+
+    /**
+     * Lowers a program the {@link SemanticAnalyzer} found no errors in.
+     */
+    public static CompiledProgram lower(ProgramNode program, Bindings bindings) {
+        return new Lowering(bindings).compile(program, bindings);
+    }
+
+    private CompiledProgram compile(ProgramNode program, Bindings bindings) {
+        int[] globals = new int[3];
+        for (Symbol symbol : symbols) {
+            if (symbol.kind == Symbol.Kind.GLOBAL) {
+                globalIndex[symbol.slot] = globals[bank(symbol.type)]++;
+            }
+        }
+        FunctionCode[] functions = new FunctionCode[bindings.functions().size() + 1];
+        int main = -1;
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof FuncDeclNode func) {
+                Symbol symbol = bindings.of(func);
+                functions[symbol.slot] = function(func, symbol);
+                if (main < 0 && func.name.getLexeme().equals("main") && func.params.isEmpty()) {
+                    main = symbol.slot;
+                }
+            }
+        }
+        int init = functions.length - 1;
+        functions[init] = initializer(program);
+        return new CompiledProgram(constants.build(), Arrays.asList(functions),
+            globals[INT], globals[FLOAT], globals[STRING], init, main);
+    }
+
+    private FunctionCode function(FuncDeclNode node, Symbol symbol) {
+        begin(symbol.frameSize(), symbol.type);
+        for (ParamNode param : node.params) {
+            param.accept(this);
+        }
+        node.body.accept(this);
+        if (symbol.type == TypeNode.VOID) {
+            emit(Opcode.RET);
+        } else {
+            statement();
+            int zero = zero(symbol.type);
+            emit(returnOpcode(symbol.type), zero);
+        }
+        return end(node.name.getLexeme(), node.getPos(), symbol.paramTypes, symbol.type);
+    }
+
+    // Initializes the globals in order
+    private FunctionCode initializer(ProgramNode program) {
+        begin(0, TypeNode.VOID);
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof VarDeclNode global) {
+                statement();
+                global.accept(this);
+            }
+        }
+        emit(Opcode.RET);
+        return end("<init>", -1, List.of(), TypeNode.VOID);
+    }
+
+    private void begin(int frameSize, TypeNode returnType) {
+        this.returnType = returnType;
+        localRegisters = new int[frameSize];
+        size = 0;
+        faults = 0;
+        Arrays.fill(locals, 0);
+        Arrays.fill(temps, 0);
+        Arrays.fill(registers, 0);
+        literals.clear();
+        Arrays.fill(literalCounts, 0);
+    }
+
+    private FunctionCode end(String name, int pos, List<TypeNode> paramTypes, TypeNode returnType) {
+        hoistLiterals();
+        return new FunctionCode(name, pos, paramTypes, returnType,
+            registers[INT], registers[FLOAT], registers[STRING],
+            Arrays.copyOf(code, size), Arrays.copyOf(faultPcs, faults), Arrays.copyOf(faultPositions, faults));
+    }
+
+    // Puts the loads of the literals first, into registers after all the
+    // others, and gives their uses those registers
+    private void hoistLiterals() {
+        int shift = 3 * literals.size();
+        int[] hoisted = new int[shift + size];
+        int at = 0;
+        for (Map.Entry<List<Integer>, Integer> literal : literals.entrySet()) {
+            int opcode = literal.getKey().get(0);
+            int bank = opcode == Opcode.CONST_F ? FLOAT : opcode == Opcode.CONST_S ? STRING : INT;
+            hoisted[at++] = opcode;
+            hoisted[at++] = registers[bank] + literal.getValue();
+            hoisted[at++] = literal.getKey().get(1);
+        }
+        for (int pc = 0; pc < size; pc += Opcode.length(code, pc)) {
+            int opcode = code[pc];
+            hoisted[shift + pc] = opcode;
+            if (opcode == Opcode.CALL) {
+                List<TypeNode> params = functions[code[pc + 1]].paramTypes;
+                hoisted[shift + pc + 1] = code[pc + 1];
+                hoisted[shift + pc + 2] = code[pc + 2];
+                hoisted[shift + pc + 3] = code[pc + 3];
+                for (int i = 0; i < params.size(); i++) {
+                    hoisted[shift + pc + 4 + i] = register(code[pc + 4 + i], bank(params.get(i)));
+                }
+                continue;
+            }
+            String signature = Opcode.signature(opcode);
+            for (int i = 0; i < signature.length(); i++) {
+                int operand = code[pc + 1 + i];
+                hoisted[shift + pc + 1 + i] = switch (signature.charAt(i)) {
+                    case 'i' -> register(operand, INT);
+                    case 'f' -> register(operand, FLOAT);
+                    case 's' -> register(operand, STRING);
+                    case 'j' -> operand + shift;
+                    default -> operand;
+                };
+            }
+        }
+        code = hoisted;
+        size = hoisted.length;
+        for (int i = 0; i < faults; i++) {
+            faultPcs[i] += shift;
+        }
+        for (int bank = 0; bank < 3; bank++) {
+            registers[bank] += literalCounts[bank];
+        }
+    }
+
+    private int register(int operand, int bank) {
+        return operand >= LITERAL ? registers[bank] + operand - LITERAL : operand;
+    }
+
+//// REGISTERS /////////////////////////////////////////////////////////////////
+
+    private static int bank(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> FLOAT;
+            case STRING -> STRING;
+            default -> INT;
+        };
+    }
+
+    private int local(TypeNode type) {
+        int bank = bank(type);
+        int register = locals[bank]++;
+        temps[bank] = Math.max(temps[bank], locals[bank]);
+        registers[bank] = Math.max(registers[bank], locals[bank]);
+        return register;
+    }
+
+    private int temp(int bank) {
+        int register = temps[bank]++;
+        registers[bank] = Math.max(registers[bank], temps[bank]);
+        return register;
+    }
+
+    // Frees the temporaries, before each statement
+    private void statement() {
+        System.arraycopy(locals, 0, temps, 0, 3);
+    }
+
+    // The hint for the expression being visited, or a new temporary. Taken
+    // before visiting the operands, which have hints of their own
+    private int target(int bank) {
+        int register = hint;
+        hint = -1;
+        return register >= 0 ? register : temp(bank);
+    }
+
+    // The register of a literal, which the instruction loads. A literal
+    // assigned is loaded where it is, that's as often as it would be anyway
+    private int literal(int bank, int opcode, int operand) {
+        if (hint >= 0) {
+            int register = target(bank);
+            emit(opcode, register, operand);
+            return register;
+        }
+        List<Integer> load = List.of(opcode, operand);
+        Integer index = literals.get(load);
+        if (index == null) {
+            index = literalCounts[bank]++;
+            literals.put(load, index);
+        }
+        return LITERAL + index;
+    }
+
+//// CODE //////////////////////////////////////////////////////////////////////
+
+    private void emit(int... instruction) {
+        if (size + instruction.length > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, size + instruction.length));
+        }
+        System.arraycopy(instruction, 0, code, size, instruction.length);
+        size += instruction.length;
+    }
+
+    // Records where the instruction about to be emitted fails
+    private void fault(int pos) {
+        if (faults == faultPcs.length) {
+            faultPcs = Arrays.copyOf(faultPcs, faults * 2);
+            faultPositions = Arrays.copyOf(faultPositions, faults * 2);
+        }
+        faultPcs[faults] = size;
+        faultPositions[faults] = pos;
+        faults++;
+    }
+
+    // A place in the code jumps are emitted to before it's known
+    private static final class Label {
+        int pc = -1;
+        int[] uses = new int[2]; // Of the operands to patch
+        int useCount;
+    }
+
+    // Emits the instruction, with the label's pc as its last operand
+    private void jump(Label label, int... instruction) {
+        emit(instruction);
+        emit(label.pc);
+        if (label.pc < 0) {
+            if (label.useCount == label.uses.length) {
+                label.uses = Arrays.copyOf(label.uses, label.useCount * 2);
+            }
+            label.uses[label.useCount++] = size - 1;
+        }
+    }
+
+    private void bind(Label label) {
+        label.pc = size;
+        for (int i = 0; i < label.useCount; i++) {
+            code[label.uses[i]] = size;
+        }
+    }
+
+//// VALUES ////////////////////////////////////////////////////////////////////
+
+    // The register holding the value of the expression, preferably `into`
+    // (-1 for any)
+    private int lower(ExprNode node, int into) {
+        hint = into;
+        int register = node.accept(this);
+        hint = -1;
+        return register;
+    }
+
+    // As a value of the given type, widening ints to floats
+    private int lower(ExprNode node, TypeNode type, int into) {
+        if (type == TypeNode.FLOAT && node instanceof IntLiteralNode literal) {
+            hint = into;
+            return literal(FLOAT, Opcode.CONST_F, constants.addFloat(literal.value));
+        }
+        if (type == TypeNode.FLOAT && node.type == TypeNode.INT) {
+            int value = lower(node, -1);
+            int register = into >= 0 ? into : temp(FLOAT);
+            emit(Opcode.I2F, register, value);
+            return register;
+        }
+        return lower(node, into);
+    }
+
+    private void lowerInto(ExprNode node, TypeNode type, int register) {
+        int value = lower(node, type, register);
+        if (value != register) {
+            emit(moveOpcode(type), register, value);
+        }
+    }
+
+    private int zero(TypeNode type) {
+        int register = temp(bank(type));
+        switch (type) {
+            case FLOAT -> emit(Opcode.CONST_F, register, constants.addFloat(0));
+            case STRING -> emit(Opcode.CONST_S, register, constants.addString(""));
+            default -> emit(Opcode.IMM_I, register, 0);
+        }
+        return register;
+    }
+
+    private static int moveOpcode(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> Opcode.MOV_F;
+            case STRING -> Opcode.MOV_S;
+            default -> Opcode.MOV_I;
+        };
+    }
+
+    private static int returnOpcode(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> Opcode.RET_F;
+            case STRING -> Opcode.RET_S;
+            default -> Opcode.RET_I;
+        };
+    }
+
+    private static int getGlobalOpcode(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> Opcode.GET_GF;
+            case STRING -> Opcode.GET_GS;
+            default -> Opcode.GET_GI;
+        };
+    }
+
+    private static int setGlobalOpcode(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> Opcode.SET_GF;
+            case STRING -> Opcode.SET_GS;
+            default -> Opcode.SET_GI;
+        };
+    }
+
+    private static int arithmeticOpcode(BinaryOpNode.OpType op, TypeNode type) {
+        if (type == TypeNode.STRING) {
+            return Opcode.CONCAT;
+        }
+        boolean floats = type == TypeNode.FLOAT;
+        return switch (op) {
+            case ADD -> floats ? Opcode.ADD_F : Opcode.ADD_I;
+            case SUB -> floats ? Opcode.SUB_F : Opcode.SUB_I;
+            case MUL -> floats ? Opcode.MUL_F : Opcode.MUL_I;
+            default -> floats ? Opcode.DIV_F : Opcode.DIV_I;
+        };
+    }
+
+//// DECLARATIONS //////////////////////////////////////////////////////////////
+
+    @Override
+    public Integer visit(ProgramNode node) {
+        throw new UnsupportedOperationException("Programs are lowered with Lowering.lower");
+    }
+
+    @Override
+    public Integer visit(VarDeclNode node) {
+        Symbol symbol = symbols[node.binding];
+        if (symbol.kind == Symbol.Kind.GLOBAL) {
+            int value = node.expr != null ? lower(node.expr, node.type, -1) : zero(node.type);
+            emit(setGlobalOpcode(node.type), globalIndex[symbol.slot], value);
+            return null;
+        }
+        // The initializer can't refer to the variable, so it may be
+        // computed straight into its register
+        int register = local(node.type);
+        localRegisters[symbol.slot] = register;
+        if (node.expr != null) {
+            lowerInto(node.expr, node.type, register);
+        } else {
+            emit(moveOpcode(node.type), register, zero(node.type));
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(FuncDeclNode node) {
+        throw new UnsupportedOperationException("Functions are lowered with Lowering.lower");
+    }
+
+    @Override
+    public Integer visit(TypeNode node) {
+        return null;
+    }
+
+    // Parameters take the first registers of their banks, in order
+    @Override
+    public Integer visit(ParamNode node) {
+        localRegisters[symbols[node.binding].slot] = local(node.type);
+        return null;
+    }
+
+//// STATEMENTS ////////////////////////////////////////////////////////////////
+
+    @Override
+    public Integer visit(CompoundStmtNode node) {
+        for (AstNode statement : node.statements) {
+            statement();
+            if (statement instanceof ExprNode expr) {
+                lower(expr, -1);
+            } else {
+                statement.accept(this);
+            }
+        }
+        return null;
+    }
+
+    // Lowers a statement that may be a lone expression
+    private void lowerStatement(AstNode node) {
+        statement();
+        if (node instanceof ExprNode expr) {
+            lower(expr, -1);
+        } else {
+            node.accept(this);
+        }
+    }
+
+    @Override
+    public Integer visit(AssignmentNode node) {
+        Symbol target = symbols[node.binding];
+        boolean global = target.kind == Symbol.Kind.GLOBAL;
+        int register = global ? temp(bank(target.type)) : localRegisters[target.slot];
+        if (node.op == AssignmentNode.OpType.ASSIGN) {
+            lowerInto(node.expr, target.type, register);
+        } else {
+            // The variable is read before the value is computed, a call in
+            // the value may change a global
+            if (global) {
+                emit(getGlobalOpcode(target.type), register, globalIndex[target.slot]);
+            }
+            BinaryOpNode.OpType op = switch (node.op) {
+                case ADD_ASSIGN -> BinaryOpNode.OpType.ADD;
+                case SUB_ASSIGN -> BinaryOpNode.OpType.SUB;
+                case MUL_ASSIGN -> BinaryOpNode.OpType.MUL;
+                default -> BinaryOpNode.OpType.DIV;
+            };
+            int value = lower(node.expr, target.type, -1);
+            int opcode = arithmeticOpcode(op, target.type);
+            if (opcode == Opcode.DIV_I) {
+                fault(node.expr.getPos());
+            }
+            emit(opcode, register, register, value);
+        }
+        if (global) {
+            emit(setGlobalOpcode(target.type), globalIndex[target.slot], register);
+        }
+        return null;
+    }
+
+    @Override
+    public Integer visit(ReturnNode node) {
+        emit(returnOpcode(returnType), lower(node.expr, returnType, -1));
+        return null;
+    }
+
+    @Override
+    public Integer visit(ConditionalNode node) {
+        Label otherwise = new Label();
+        branch(node.condition, false, otherwise);
+        lowerStatement(node.thenBranch);
+        if (node.elseBranch == null) {
+            bind(otherwise);
+            return null;
+        }
+        Label end = new Label();
+        jump(end, Opcode.JMP);
+        bind(otherwise);
+        lowerStatement(node.elseBranch);
+        bind(end);
+        return null;
+    }
+
+    @Override
+    public Integer visit(WhileNode node) {
+        Label body = new Label();
+        Label condition = new Label();
+        jump(condition, Opcode.JMP);
+        bind(body);
+        lowerStatement(node.body);
+        bind(condition);
+        statement();
+        branch(node.condition, true, body);
+        return null;
+    }
+
+    @Override
+    public Integer visit(ForNode node) {
+        if (node.init != null) {
+            lowerStatement(node.init);
+        }
+        Label body = new Label();
+        Label condition = new Label();
+        jump(condition, Opcode.JMP);
+        bind(body);
+        lowerStatement(node.body);
+        if (node.step != null) {
+            lowerStatement(node.step);
+        }
+        bind(condition);
+        statement();
+        if (node.cond != null) {
+            branch((ExprNode) node.cond, true, body);
+        } else {
+            jump(body, Opcode.JMP);
+        }
+        return null;
+    }
+
+    // Jumps to `label` if the condition is `when`, falls through otherwise
+    private void branch(ExprNode condition, boolean when, Label label) {
+        if (condition instanceof BoolLiteralNode literal) {
+            if (literal.value == when) {
+                jump(label, Opcode.JMP);
+            }
+        } else if (condition instanceof UnaryOpNode unary && unary.op == UnaryOpNode.OpType.NOT) {
+            branch(unary.operand, !when, label);
+        } else if (condition instanceof BinaryOpNode binary
+                && (binary.op == BinaryOpNode.OpType.AND || binary.op == BinaryOpNode.OpType.OR)) {
+            // Whether the left operand alone decides, and which way
+            boolean decisive = binary.op == BinaryOpNode.OpType.OR;
+            if (decisive == when) {
+                branch(binary.lhs, when, label);
+            } else {
+                Label skip = new Label();
+                branch(binary.lhs, decisive, skip);
+                branch(binary.rhs, when, label);
+                bind(skip);
+                return;
+            }
+            branch(binary.rhs, when, label);
+        } else if (condition instanceof BinaryOpNode binary && comparesInts(binary)) {
+            int lhs = lower(binary.lhs, -1);
+            int rhs = lower(binary.rhs, -1);
+            jump(label, jumpOpcode(when ? binary.op : negation(binary.op)), lhs, rhs);
+        } else {
+            jump(label, when ? Opcode.JMP_IF : Opcode.JMP_IFNOT, lower(condition, -1));
+        }
+    }
+
+    private static boolean comparesInts(BinaryOpNode node) {
+        return switch (node.op) {
+            case EQ, NEQ, LT, LTE, GT, GTE -> bank(node.lhs.type) == INT && bank(node.rhs.type) == INT;
+            default -> false;
+        };
+    }
+
+    // Of a comparison of ints, floats compare false to NaN both ways
+    private static BinaryOpNode.OpType negation(BinaryOpNode.OpType op) {
+        return switch (op) {
+            case EQ -> BinaryOpNode.OpType.NEQ;
+            case NEQ -> BinaryOpNode.OpType.EQ;
+            case LT -> BinaryOpNode.OpType.GTE;
+            case LTE -> BinaryOpNode.OpType.GT;
+            case GT -> BinaryOpNode.OpType.LTE;
+            default -> BinaryOpNode.OpType.LT;
+        };
+    }
+
+    private static int jumpOpcode(BinaryOpNode.OpType op) {
+        return switch (op) {
+            case EQ -> Opcode.JEQ_I;
+            case NEQ -> Opcode.JNE_I;
+            case LT -> Opcode.JLT_I;
+            case LTE -> Opcode.JLE_I;
+            case GT -> Opcode.JGT_I;
+            default -> Opcode.JGE_I;
+        };
+    }
+
+//// EXPRESSIONS ///////////////////////////////////////////////////////////////
+
+    @Override
+    public Integer visit(IdentExprNode node) {
+        Symbol symbol = symbols[node.binding];
+        if (symbol.kind != Symbol.Kind.GLOBAL) {
+            hint = -1;
+            return localRegisters[symbol.slot];
+        }
+        int register = target(bank(symbol.type));
+        emit(getGlobalOpcode(symbol.type), register, globalIndex[symbol.slot]);
+        return register;
+    }
+
+    @Override
+    public Integer visit(IntLiteralNode node) {
+        if (node.value == (int) node.value) {
+            return literal(INT, Opcode.IMM_I, (int) node.value);
+        }
+        return literal(INT, Opcode.CONST_I, constants.addInt(node.value));
+    }
+
+    @Override
+    public Integer visit(FloatLiteralNode node) {
+        return literal(FLOAT, Opcode.CONST_F, constants.addFloat(node.value));
+    }
+
+    @Override
+    public Integer visit(StringLiteralNode node) {
+        return literal(STRING, Opcode.CONST_S, constants.addString(node.value));
+    }
+
+    @Override
+    public Integer visit(CharLiteralNode node) {
+        return literal(INT, Opcode.CONST_I, constants.addChar(node.value));
+    }
+
+    @Override
+    public Integer visit(BoolLiteralNode node) {
+        return literal(INT, Opcode.IMM_I, node.value ? 1 : 0);
+    }
+
+    @Override
+    public Integer visit(BinaryOpNode node) {
+        int into = hint;
+        hint = -1;
+        switch (node.op) {
+            case AND, OR -> {
+                // Computed into a temporary, the variable assigned may be
+                // one of the operands
+                int register = temp(INT);
+                Label end = new Label();
+                lowerInto(node.lhs, TypeNode.BOOL, register);
+                jump(end, node.op == BinaryOpNode.OpType.AND ? Opcode.JMP_IFNOT : Opcode.JMP_IF, register);
+                lowerInto(node.rhs, TypeNode.BOOL, register);
+                bind(end);
+                return register;
+            }
+            case ADD, SUB, MUL, DIV -> {
+                int lhs = lower(node.lhs, node.type, -1);
+                int rhs = lower(node.rhs, node.type, -1);
+                int opcode = arithmeticOpcode(node.op, node.type);
+                int register = into >= 0 ? into : temp(bank(node.type));
+                if (opcode == Opcode.DIV_I) {
+                    fault(node.rhs.getPos());
+                }
+                emit(opcode, register, lhs, rhs);
+                return register;
+            }
+            default -> {
+                TypeNode operands = node.lhs.type == TypeNode.STRING ? TypeNode.STRING
+                    : node.lhs.type == TypeNode.FLOAT || node.rhs.type == TypeNode.FLOAT ? TypeNode.FLOAT
+                    : TypeNode.INT;
+                int lhs = lower(node.lhs, operands, -1);
+                int rhs = lower(node.rhs, operands, -1);
+                int register = into >= 0 ? into : temp(INT);
+                emit(comparisonOpcode(node.op, operands), register, lhs, rhs);
+                return register;
+            }
+        }
+    }
+
+    private static int comparisonOpcode(BinaryOpNode.OpType op, TypeNode operands) {
+        if (operands == TypeNode.STRING) {
+            return op == BinaryOpNode.OpType.EQ ? Opcode.EQ_S : Opcode.NE_S;
+        }
+        int ints = switch (op) {
+            case EQ -> Opcode.EQ_I;
+            case NEQ -> Opcode.NE_I;
+            case LT -> Opcode.LT_I;
+            case LTE -> Opcode.LE_I;
+            case GT -> Opcode.GT_I;
+            default -> Opcode.GE_I;
+        };
+        return operands == TypeNode.FLOAT ? ints - Opcode.EQ_I + Opcode.EQ_F : ints;
+    }
+
+    @Override
+    public Integer visit(UnaryOpNode node) {
+        int into = hint;
+        hint = -1;
+        int operand = lower(node.operand, -1);
+        int opcode = node.op == UnaryOpNode.OpType.NOT ? Opcode.NOT
+            : node.type == TypeNode.FLOAT ? Opcode.NEG_F : Opcode.NEG_I;
+        int register = into >= 0 ? into : temp(bank(node.type));
+        emit(opcode, register, operand);
+        return register;
+    }
+
+    @Override
+    public Integer visit(FnCallNode node) {
+        int into = hint;
+        hint = -1;
+        Symbol callee = symbols[node.binding];
+        if (callee.kind == Symbol.Kind.BUILTIN) {
+            if (callee.slot == PRINT) {
+                print(node.args);
+            } else {
+                input(node.args);
+            }
+            return -1;
+        }
+        int[] instruction = new int[4 + node.args.size()];
+        instruction[0] = Opcode.CALL;
+        instruction[1] = callee.slot;
+        instruction[3] = node.args.size();
+        for (int i = 0; i < node.args.size(); i++) {
+            instruction[4 + i] = lower(node.args.get(i), callee.paramTypes.get(i), -1);
+        }
+        int register = callee.type == TypeNode.VOID ? 0 : into >= 0 ? into : temp(bank(callee.type));
+        instruction[2] = register;
+        emit(instruction);
+        return register;
+    }
+
+    private void print(List<ExprNode> args) {
+        for (ExprNode arg : args) {
+            int value = lower(arg, -1);
+            int opcode = switch (arg.type) {
+                case FLOAT -> Opcode.PRINT_F;
+                case STRING -> Opcode.PRINT_S;
+                case CHAR -> Opcode.PRINT_C;
+                case BOOL -> Opcode.PRINT_B;
+                default -> Opcode.PRINT_I;
+            };
+            emit(opcode, value);
+        }
+        emit(Opcode.PRINT_LN);
+    }
+
+    private void input(List<ExprNode> args) {
+        for (ExprNode arg : args) {
+            Symbol variable = symbols[((IdentExprNode) arg).binding];
+            boolean global = variable.kind == Symbol.Kind.GLOBAL;
+            int register = global ? temp(bank(variable.type)) : localRegisters[variable.slot];
+            int opcode = switch (variable.type) {
+                case FLOAT -> Opcode.INPUT_F;
+                case STRING -> Opcode.INPUT_S;
+                case CHAR -> Opcode.INPUT_C;
+                case BOOL -> Opcode.INPUT_B;
+                default -> Opcode.INPUT_I;
+            };
+            fault(arg.getPos());
+            emit(opcode, register, constants.addString(variable.name));
+            if (global) {
+                emit(setGlobalOpcode(variable.type), globalIndex[variable.slot], register);
+            }
+        }
+    }
+
+    @Override
+    public Integer visit(ErrorNode node) {
+        throw new IllegalStateException("Program has errors: " + node.message);
+    }
+}
@@ -0,0 +1,207 @@
+package compiler.bytecode;
+
+/**
+ * The instruction set. An instruction is its opcode followed by its
+ * operands, all ints in {@link FunctionCode#code}.
+ *
+ * Registers come in three banks, each numbered from 0: ints (which also
+ * hold chars, as their code, and bools, as 0 or 1), floats and strings.
+ * Globals are numbered the same way, per bank. An operation names the bank
+ * of every register it uses, so there are no conversions but
+ * {@link #I2F}, and no type tests when it runs.
+ *
+ * The operands of each opcode are given by its signature, one letter each:
+ * <ul>
+ * <li>{@code i}, {@code f}, {@code s}: an int, float or string register
+ * <li>{@code I}, {@code F}, {@code S}: an int, float or string global
+ * <li>{@code k}: an index in the {@link ConstantPool}
+ * <li>{@code n}: an int immediate
+ * <li>{@code j}: the index in the code an instruction starts at
+ * <li>{@code c}: a function, followed by the register the result goes to,
+ *     in the bank of what it returns (ignored if it returns nothing), the
+ *     number of arguments and their registers, in the banks of the
+ *     parameters
+ * </ul>
+ * A called function finds its arguments in its first registers: the int
+ * parameters in the first int registers, in order, and so on.
+ */
+public final class Opcode {
+    private Opcode() {
+    }
+
+    // Moves and constants
+    public static final int MOV_I = 0;
+    public static final int MOV_F = 1;
+    public static final int MOV_S = 2;
+    public static final int I2F = 3;
+    public static final int CONST_I = 4;
+    public static final int CONST_F = 5;
+    public static final int CONST_S = 6;
+    public static final int IMM_I = 7;
+
+    // Globals
+    public static final int GET_GI = 8;
+    public static final int SET_GI = 9;
+    public static final int GET_GF = 10;
+    public static final int SET_GF = 11;
+    public static final int GET_GS = 12;
+    public static final int SET_GS = 13;
+
+    // Arithmetic, DIV_I fails on a zero divisor
+    public static final int ADD_I = 14;
+    public static final int SUB_I = 15;
+    public static final int MUL_I = 16;
+    public static final int DIV_I = 17;
+    public static final int NEG_I = 18;
+    public static final int ADD_F = 19;
+    public static final int SUB_F = 20;
+    public static final int MUL_F = 21;
+    public static final int DIV_F = 22;
+    public static final int NEG_F = 23;
+    public static final int CONCAT = 24;
+    public static final int NOT = 25;
+
+    // Comparisons, into an int register
+    public static final int EQ_I = 26;
+    public static final int NE_I = 27;
+    public static final int LT_I = 28;
+    public static final int LE_I = 29;
+    public static final int GT_I = 30;
+    public static final int GE_I = 31;
+    public static final int EQ_F = 32;
+    public static final int NE_F = 33;
+    public static final int LT_F = 34;
+    public static final int LE_F = 35;
+    public static final int GT_F = 36;
+    public static final int GE_F = 37;
+    public static final int EQ_S = 38;
+    public static final int NE_S = 39;
+
+    // Control flow. && and || are branches too
+    public static final int JMP = 40;
+    public static final int JMP_IF = 41;
+    public static final int JMP_IFNOT = 42;
+    public static final int CALL = 43;
+    public static final int RET_I = 44;
+    public static final int RET_F = 45;
+    public static final int RET_S = 46;
+    public static final int RET = 47;
+
+    // Built-ins. An input names the variable it reads, by a string constant
+    public static final int PRINT_I = 48;
+    public static final int PRINT_F = 49;
+    public static final int PRINT_C = 50;
+    public static final int PRINT_B = 51;
+    public static final int PRINT_S = 52;
+    public static final int PRINT_LN = 53;
+    public static final int INPUT_I = 54;
+    public static final int INPUT_F = 55;
+    public static final int INPUT_C = 56;
+    public static final int INPUT_B = 57;
+    public static final int INPUT_S = 58;
+
+    // Compares ints and jumps if the comparison holds
+    public static final int JEQ_I = 59;
+    public static final int JNE_I = 60;
+    public static final int JLT_I = 61;
+    public static final int JLE_I = 62;
+    public static final int JGT_I = 63;
+    public static final int JGE_I = 64;
+
+    public static final int COUNT = 65;
+
+    private static final String[] NAMES = new String[COUNT];
+    private static final String[] SIGNATURES = new String[COUNT];
+
+    static {
+        define(MOV_I, "mov.i", "ii");
+        define(MOV_F, "mov.f", "ff");
+        define(MOV_S, "mov.s", "ss");
+        define(I2F, "i2f", "fi");
+        define(CONST_I, "const.i", "ik");
+        define(CONST_F, "const.f", "fk");
+        define(CONST_S, "const.s", "sk");
+        define(IMM_I, "imm.i", "in");
+        define(GET_GI, "get.gi", "iI");
+        define(SET_GI, "set.gi", "Ii");
+        define(GET_GF, "get.gf", "fF");
+        define(SET_GF, "set.gf", "Ff");
+        define(GET_GS, "get.gs", "sS");
+        define(SET_GS, "set.gs", "Ss");
+        define(ADD_I, "add.i", "iii");
+        define(SUB_I, "sub.i", "iii");
+        define(MUL_I, "mul.i", "iii");
+        define(DIV_I, "div.i", "iii");
+        define(NEG_I, "neg.i", "ii");
+        define(ADD_F, "add.f", "fff");
+        define(SUB_F, "sub.f", "fff");
+        define(MUL_F, "mul.f", "fff");
+        define(DIV_F, "div.f", "fff");
+        define(NEG_F, "neg.f", "ff");
+        define(CONCAT, "concat", "sss");
+        define(NOT, "not", "ii");
+        define(EQ_I, "eq.i", "iii");
+        define(NE_I, "ne.i", "iii");
+        define(LT_I, "lt.i", "iii");
+        define(LE_I, "le.i", "iii");
+        define(GT_I, "gt.i", "iii");
+        define(GE_I, "ge.i", "iii");
+        define(EQ_F, "eq.f", "iff");
+        define(NE_F, "ne.f", "iff");
+        define(LT_F, "lt.f", "iff");
+        define(LE_F, "le.f", "iff");
+        define(GT_F, "gt.f", "iff");
+        define(GE_F, "ge.f", "iff");
+        define(EQ_S, "eq.s", "iss");
+        define(NE_S, "ne.s", "iss");
+        define(JMP, "jmp", "j");
+        define(JMP_IF, "jmp.if", "ij");
+        define(JMP_IFNOT, "jmp.ifnot", "ij");
+        define(CALL, "call", "c");
+        define(RET_I, "ret.i", "i");
+        define(RET_F, "ret.f", "f");
+        define(RET_S, "ret.s", "s");
+        define(RET, "ret", "");
+        define(PRINT_I, "print.i", "i");
+        define(PRINT_F, "print.f", "f");
+        define(PRINT_C, "print.c", "i");
+        define(PRINT_B, "print.b", "i");
+        define(PRINT_S, "print.s", "s");
+        define(PRINT_LN, "print.ln", "");
+        define(INPUT_I, "input.i", "ik");
+        define(INPUT_F, "input.f", "fk");
+        define(INPUT_C, "input.c", "ik");
+        define(INPUT_B, "input.b", "ik");
+        define(INPUT_S, "input.s", "sk");
+        define(JEQ_I, "jeq.i", "iij");
+        define(JNE_I, "jne.i", "iij");
+        define(JLT_I, "jlt.i", "iij");
+        define(JLE_I, "jle.i", "iij");
+        define(JGT_I, "jgt.i", "iij");
+        define(JGE_I, "jge.i", "iij");
+    }
+
+    private static void define(int opcode, String name, String signature) {
+        NAMES[opcode] = name;
+        SIGNATURES[opcode] = signature;
+    }
+
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    public static String signature(int opcode) {
+        return SIGNATURES[opcode];
+    }
+
+    /**
+     * Number of ints the instruction at {@code pc} takes up.
+     */
+    public static int length(int[] code, int pc) {
+        int opcode = code[pc];
+        if (opcode == CALL) {
+            return 4 + code[pc + 3];
+        }
+        return 1 + SIGNATURES[opcode].length();
+    }
+}
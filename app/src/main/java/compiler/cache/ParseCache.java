@@ -0,0 +1,202 @@
+package compiler.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.CodeSource;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+import compiler.parser.BinaryAst;
+import compiler.parser.ProgramNode;
+
+/**
+ * Content-addressed cache of parsed ASTs in a directory.
+ *
+ * An entry's key is the SHA-256 of the compiler version, the AST encoding
+ * version and the source bytes, so changing any of them is a miss and stale
+ * entries are simply never read again. {@link #codeVersion} gives a compiler
+ * version that changes whenever the compiler's code does. Entries hold the tree in the
+ * {@link BinaryAst} encoding and are written to a temporary file first, then
+ * moved into place, so readers never see a partial entry. A file's
+ * modification time records its last use. When a store takes the directory
+ * over its size limit, the least recently used entries are deleted.
+ *
+ * Only trees that parsed without errors should be stored: the cache keeps
+ * no diagnostics.
+ */
+public final class ParseCache {
+    private static final String SUFFIX = ".ast";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final String compilerVersion;
+    private long lastStamp; // Keeps use times strictly increasing within a run
+
+    public ParseCache(Path dir, long maxBytes, String compilerVersion) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.compilerVersion = compilerVersion;
+    }
+
+    /**
+     * Key of the given source bytes, read from the buffer's position to its
+     * limit without moving it.
+     */
+    public String key(ByteBuffer source) {
+        MessageDigest digest = sha256();
+        digest.update((compilerVersion + '\0' + BinaryAst.VERSION + '\0').getBytes(StandardCharsets.UTF_8));
+        digest.update(source.duplicate());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash of the jar or class directory {@code type} was loaded from, to
+     * use as the compiler version: rebuilding the compiler with any change
+     * changes it. Null when that location can't be read, and then nothing
+     * should be cached, as a fixed version would serve trees an older
+     * parser built.
+     */
+    public static String codeVersion(Class<?> type) {
+        MessageDigest digest = sha256();
+        try {
+            CodeSource code = type.getProtectionDomain().getCodeSource();
+            if (code == null) {
+                return null;
+            }
+            Path location = Path.of(code.getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                List<Path> classes;
+                try (Stream<Path> files = Files.walk(location)) {
+                    classes = files.filter(file -> file.toString().endsWith(".class")).sorted().toList();
+                }
+                for (Path file : classes) {
+                    digest.update((location.relativize(file) + "\0").getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+        } catch (IOException | UncheckedIOException | URISyntaxException | IllegalArgumentException
+                 | FileSystemNotFoundException | SecurityException e) {
+            return null;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the cached tree, or null on a miss. An unreadable entry is
+     * deleted and counts as a miss.
+     */
+    public ProgramNode load(String key) {
+        Path entry = entry(key);
+        ProgramNode program;
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            program = BinaryAst.decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException | StackOverflowError e) {
+            // Building the nodes recurses, a tree too deep for the stack is
+            // no more usable than a corrupt one
+            deleteQuietly(entry);
+            return null;
+        }
+        try {
+            touch(entry);
+        } catch (IOException e) {
+            // A read-only cache still serves hits, only its LRU order goes stale
+        }
+        return program;
+    }
+
+    /**
+     * Stores a tree under the given key, then evicts least recently used
+     * entries while the cache is over its size limit.
+     */
+    public void store(String key, ProgramNode program) {
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, key, ".tmp");
+            try {
+                Files.write(temp, BinaryAst.encode(program));
+                Path entry = entry(key);
+                try {
+                    Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+                }
+                touch(entry);
+            } finally {
+                deleteQuietly(temp);
+            }
+            evict();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path entry(String key) {
+        return dir.resolve(key + SUFFIX);
+    }
+
+    private void touch(Path entry) throws IOException {
+        lastStamp = Math.max(System.currentTimeMillis(), lastStamp + 1);
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(lastStamp));
+    }
+
+    private record Entry(Path path, long size, FileTime used) {
+    }
+
+    private void evict() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (!path.getFileName().toString().endsWith(SUFFIX)) {
+                    continue;
+                }
+                try {
+                    long size = Files.size(path);
+                    entries.add(new Entry(path, size, Files.getLastModifiedTime(path)));
+                    total += size;
+                } catch (NoSuchFileException e) {
+                    // Evicted concurrently
+                }
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparing(Entry::used));
+        for (Entry entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            deleteQuietly(entry.path());
+            total -= entry.size();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Another process may hold it; it'll be retried on the next eviction
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256
+        }
+    }
+}
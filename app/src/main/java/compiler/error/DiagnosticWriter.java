@@ -0,0 +1,199 @@
+package compiler.error;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes a batch of errors for tools rather than people, in one pass through
+ * a buffered writer.
+ *
+ * {@link Format#JSON_LINES} writes one object per error:
+ * <pre>
+ * {"severity":"error","code":"E0002","message":"...","file":"...",
+ *  "line":2,"column":14,"endLine":2,"endColumn":15,"related":[...]}
+ * </pre>
+ * where related locations have the same members but no code, severity or
+ * related of their own, and {@link Format#SARIF} writes a SARIF 2.1.0 log
+ * with a single run. Lines and columns are counted from 1 in both, and
+ * {@code endColumn} is one past the last character, as SARIF has it.
+ * An error without a code has a null code and no SARIF rule.
+ */
+public final class DiagnosticWriter {
+    public enum Format {
+        TEXT, JSON_LINES, SARIF
+    }
+
+    private static final String SARIF_SCHEMA = "https://json.schemastore.org/sarif-2.1.0.json";
+
+    private final Writer out;
+    private final String file;
+
+    private DiagnosticWriter(Writer out, String file) {
+        this.out = out;
+        this.file = file;
+    }
+
+    /**
+     * Writes the errors, located in {@code source}, which was read from
+     * {@code file}. Flushes {@code out} but doesn't close it.
+     *
+     * @param tool    name of the compiler, for SARIF
+     * @param version its version, for SARIF
+     */
+    public static void write(Format format, ErrorList errors, SourceFile source, String file,
+                             String tool, String version, Writer out) {
+        errors.locate(source);
+        try {
+            switch (format) {
+                case TEXT -> {
+                    PrintWriter writer = new PrintWriter(out);
+                    for (Error error : errors.getAll()) {
+                        error.printWithSource(source, writer);
+                    }
+                }
+                case JSON_LINES -> new DiagnosticWriter(out, file).jsonLines(errors);
+                case SARIF -> new DiagnosticWriter(out, file).sarif(errors, tool, version);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+//// JSON LINES ////////////////////////////////////////////////////////////////
+
+    private void jsonLines(ErrorList errors) throws IOException {
+        for (Error error : errors.getAll()) {
+            out.write("{\"severity\":");
+            string(error.getSeverity().name().toLowerCase());
+            out.write(",\"code\":");
+            if (error.getCode() == null) {
+                out.write("null");
+            } else {
+                string(error.getCode().id);
+            }
+            out.write(',');
+            location(error);
+            out.write(",\"related\":[");
+            String separator = "";
+            for (Error note : error.getRelated()) {
+                out.write(separator);
+                out.write('{');
+                location(note);
+                out.write('}');
+                separator = ",";
+            }
+            out.write("]}\n");
+        }
+    }
+
+    private void location(Error error) throws IOException {
+        out.write("\"message\":");
+        string(error.getMessage());
+        out.write(",\"file\":");
+        string(file);
+        out.write(",\"line\":" + error.getLine());
+        out.write(",\"column\":" + (error.getColumn() + 1));
+        out.write(",\"endLine\":" + error.getLine());
+        out.write(",\"endColumn\":" + (error.getColumn() + 1 + error.getLength()));
+    }
+
+//// SARIF /////////////////////////////////////////////////////////////////////
+
+    private void sarif(ErrorList errors, String tool, String version) throws IOException {
+        EnumSet<ErrorCode> codes = EnumSet.noneOf(ErrorCode.class);
+        for (Error error : errors.getAll()) {
+            if (error.getCode() != null) {
+                codes.add(error.getCode());
+            }
+        }
+        out.write("{\"version\":\"2.1.0\",\"$schema\":");
+        string(SARIF_SCHEMA);
+        out.write(",\"runs\":[{\"tool\":{\"driver\":{\"name\":");
+        string(tool);
+        out.write(",\"version\":");
+        string(version);
+        out.write(",\"rules\":[");
+        String separator = "";
+        for (ErrorCode code : codes) {
+            out.write(separator);
+            out.write("{\"id\":");
+            string(code.id);
+            out.write(",\"name\":");
+            string(code.name());
+            out.write(",\"shortDescription\":{\"text\":");
+            string(code.description);
+            out.write("}}");
+            separator = ",";
+        }
+        out.write("]}},\"results\":[");
+        separator = "";
+        for (Error error : errors.getAll()) {
+            out.write(separator);
+            out.write('{');
+            if (error.getCode() != null) {
+                out.write("\"ruleId\":");
+                string(error.getCode().id);
+                out.write(',');
+            }
+            out.write("\"level\":");
+            string(error.getSeverity().name().toLowerCase());
+            out.write(",\"message\":{\"text\":");
+            string(error.getMessage());
+            out.write("},\"locations\":[{");
+            physicalLocation(error);
+            out.write("}]");
+            if (!error.getRelated().isEmpty()) {
+                out.write(",\"relatedLocations\":[");
+                for (int i = 0; i < error.getRelated().size(); i++) {
+                    Error note = error.getRelated().get(i);
+                    out.write(i == 0 ? "{\"id\":" : ",{\"id\":");
+                    out.write(Integer.toString(i));
+                    out.write(',');
+                    physicalLocation(note);
+                    out.write(",\"message\":{\"text\":");
+                    string(note.getMessage());
+                    out.write("}}");
+                }
+                out.write(']');
+            }
+            out.write('}');
+            separator = ",";
+        }
+        out.write("]}]}\n");
+    }
+
+    private void physicalLocation(Error error) throws IOException {
+        out.write("\"physicalLocation\":{\"artifactLocation\":{\"uri\":");
+        string(file);
+        out.write("},\"region\":{\"startLine\":" + error.getLine());
+        out.write(",\"startColumn\":" + (error.getColumn() + 1));
+        out.write(",\"endLine\":" + error.getLine());
+        out.write(",\"endColumn\":" + (error.getColumn() + 1 + error.getLength()));
+        out.write("}}");
+    }
+
+//// OUTPUT ////////////////////////////////////////////////////////////////////
+
+    private void string(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.write("\\\\");
+                case '"'  -> out.write("\\\"");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -1,12 +1,57 @@
 package compiler.error;
 
+import java.io.PrintWriter;
+import java.util.*;
+
 public class Error {
+    public enum Severity {
+        ERROR("Error"), WARNING("Warning"), NOTE("Note");
+
+        private final String label;
+
+        Severity(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Severity severity;
+    private final ErrorCode code;
     private final String message;
     private final int position;
+    private final int length;
+    private final List<Error> related = new ArrayList<>();
+    private int line = -1;
+    private int column = -1;
 
     public Error(String message, int position) {
+        this(Severity.ERROR, null, message, position, 0);
+    }
+
+    public Error(ErrorCode code, String message, int position, int length) {
+        this(Severity.ERROR, code, message, position, length);
+    }
+
+    /**
+     * @param length characters the error spans from its position, on the
+     *        same line, or 0 for a point
+     */
+    public Error(Severity severity, ErrorCode code, String message, int position, int length) {
+        this.severity = severity;
+        this.code = code;
         this.message = message;
         this.position = position;
+        this.length = length;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * Code of the error, or null if it has none.
+     */
+    public ErrorCode getCode() {
+        return code;
     }
 
     public String getMessage() {
@@ -17,37 +62,76 @@ public class Error {
         return position;
     }
 
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Notes pointing at other places the error involves, such as an earlier
+     * declaration.
+     */
+    public List<Error> getRelated() {
+        return Collections.unmodifiableList(related);
+    }
+
+    public void addRelated(String message, int position, int length) {
+        related.add(new Error(Severity.NOTE, null, message, position, length));
+    }
+
     @Override
     public String toString() {
-        return String.format("Error at position %d: %s", position, message);
+        return String.format("%s at position %d: %s", severity.label, position, message);
+    }
+
+    /**
+     * Line of the error, starting at 1, or -1 until it's located.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Column of the error in characters, starting at 0, or -1 until it's
+     * located.
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Sets the line and column from the source the position refers to.
+     */
+    public void locate(SourceFile source) {
+        line = source.line(position);
+        column = source.column(position);
+        for (Error note : related) {
+            note.locate(source);
+        }
     }
 
     /**
      * Prints the error message, line number, and the line from the source code where the error occurred.
      */
     public void printWithSource(String source) {
-        String[] lines = source.split("\n");
-        int linePos = 0;
-        int columnPos = 0;
-        int lineNumber = 1;
-        String errorLine = "";
-
-        for (String line : lines) {
-            linePos += line.length() + 1; // +1 for the newline character
-            if (linePos >= position) {
-                errorLine = line;
-                columnPos = position - (linePos - line.length() - 1);
-                break;
-            }
-            lineNumber++;
-        }
+        PrintWriter out = new PrintWriter(System.out);
+        printWithSource(new SourceFile(source), out);
+        out.flush();
+    }
 
-        System.out.println(this);
-        System.out.printf(" %3d | %s\n", lineNumber, errorLine);
-        System.out.print("     | ");
-        for (int i = 0; i < columnPos; i++) {
-            System.out.print(" ");
+    /**
+     * Same, to the given writer, locating the error first if it isn't yet.
+     */
+    public void printWithSource(SourceFile source, PrintWriter out) {
+        if (line < 0) {
+            locate(source);
+        }
+        out.println(this);
+        out.printf(" %3d | %s\n", line, source.lineText(line));
+        out.print("     | ");
+        out.print(" ".repeat(column));
+        out.println("^");
+        for (Error note : related) {
+            note.printWithSource(source, out);
         }
-        System.out.println("^");
     }
 }
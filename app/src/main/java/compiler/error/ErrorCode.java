@@ -0,0 +1,27 @@
+package compiler.error;
+
+/**
+ * Stable identifier of a kind of diagnostic, for tools that filter or count
+ * them. Messages may change wording, codes don't.
+ */
+public enum ErrorCode {
+    UNRECOGNIZED_TOKEN("E0001", "Unrecognized token"),
+    SYNTAX("E0002", "Syntax error"),
+    UNDECLARED_NAME("E0003", "Undeclared name"),
+    DUPLICATE_DECLARATION("E0004", "Name already declared in this scope"),
+    WRONG_KIND_OF_NAME("E0005", "Variable used as a function or function as a variable"),
+    TYPE_MISMATCH("E0006", "Type mismatch"),
+    ARGUMENT_COUNT("E0007", "Wrong number of arguments"),
+    DIVISION_BY_ZERO("E0008", "Integer division by zero"),
+    INVALID_INPUT("E0009", "Input doesn't fit the variable read into"),
+    STACK_OVERFLOW("E0010", "Calls nested too deeply"),
+    PROGRAM_TOO_LARGE("E0011", "Program too large to compile to a class");
+
+    public final String id;
+    public final String description;
+
+    ErrorCode(String id, String description) {
+        this.id = id;
+        this.description = description;
+    }
+}
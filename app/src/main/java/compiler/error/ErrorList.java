@@ -1,5 +1,6 @@
 package compiler.error;
 
+import java.io.PrintWriter;
 import java.util.*;
 
 public class ErrorList extends RuntimeException {
@@ -12,6 +13,14 @@ public class ErrorList extends RuntimeException {
         errors.add(new Error(message, position));
     }
 
+    public ErrorList(ErrorCode code, String message, int position, int length) {
+        errors.add(new Error(code, message, position, length));
+    }
+
+    public ErrorList(Error error) {
+        errors.add(error);
+    }
+
     public void add(Error error) {
         errors.add(error);
     }
@@ -20,6 +29,10 @@ public class ErrorList extends RuntimeException {
         errors.add(new Error(message, position));
     }
 
+    public void add(ErrorCode code, String message, int position, int length) {
+        errors.add(new Error(code, message, position, length));
+    }
+
     public List<Error> getAll() {
         return Collections.unmodifiableList(errors);
     }
@@ -37,8 +50,27 @@ public class ErrorList extends RuntimeException {
     }
 
     public void printWithSource(String source) {
+        printWithSource(new SourceFile(source));
+    }
+
+    /**
+     * Prints every error with its source line, indexing the source only once
+     * and buffering the output.
+     */
+    public void printWithSource(SourceFile source) {
+        PrintWriter out = new PrintWriter(System.out);
+        for (Error error : errors) {
+            error.printWithSource(source, out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Sets the line and column of every error.
+     */
+    public void locate(SourceFile source) {
         for (Error error : errors) {
-            error.printWithSource(source);
+            error.locate(source);
         }
     }
 
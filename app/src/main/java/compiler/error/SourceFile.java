@@ -0,0 +1,86 @@
+package compiler.error;
+
+import java.util.Arrays;
+
+/**
+ * Source text with the offsets its lines start at, indexed once so every
+ * diagnostic about it finds its line by binary search instead of scanning
+ * the text.
+ *
+ * Offsets are whatever the text's {@code charAt} indices are: chars of a
+ * {@link String}, bytes of a {@code Utf8Source}. Columns are counted in
+ * characters either way.
+ */
+public final class SourceFile {
+    private final CharSequence text;
+    private final int[] lineStarts;
+
+    public SourceFile(CharSequence text) {
+        this(text, scanLineStarts(text));
+    }
+
+    /**
+     * For texts that index their own lines faster than by {@code charAt}.
+     * {@code lineStarts} must start with 0 and hold the offset after every
+     * '\n', in order.
+     */
+    public SourceFile(CharSequence text, int[] lineStarts) {
+        this.text = text;
+        this.lineStarts = lineStarts;
+    }
+
+    private static int[] scanLineStarts(CharSequence text) {
+        int[] starts = new int[64];
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    public int lineCount() {
+        return lineStarts.length;
+    }
+
+    /**
+     * Line of the given offset, starting at 1. An offset at a '\n' belongs to
+     * the line it ends, one past the end of the text to the last line.
+     */
+    public int line(int offset) {
+        int index = Arrays.binarySearch(lineStarts, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Column of the given offset in characters, starting at 0.
+     */
+    public int column(int offset) {
+        int start = lineStarts[line(offset) - 1];
+        int end = Math.min(offset, text.length());
+        if (text instanceof String) {
+            return end - start;
+        }
+        return text.subSequence(start, end).length();
+    }
+
+    /**
+     * Text of the given line, without its line terminator.
+     */
+    public String lineText(int line) {
+        int start = lineStarts[line - 1];
+        int end = line < lineStarts.length ? lineStarts[line] - 1 : text.length();
+        if (end > start && text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return text.subSequence(start, end).toString();
+    }
+}
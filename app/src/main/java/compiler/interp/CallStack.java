@@ -0,0 +1,56 @@
+package compiler.interp;
+
+import compiler.parser.DeclNode;
+import compiler.parser.FuncDeclNode;
+import compiler.parser.ProgramNode;
+import compiler.runtime.MacsRuntime;
+
+/**
+ * Limits how deep calls nest in the engines that recurse on the Java stack
+ * for every call, the {@link Interpreter} and the
+ * {@link SpecializingInterpreter}.
+ *
+ * They count the calls running and fail past
+ * {@link MacsRuntime#MAX_DEPTH}, as the machine does, and {@link #run}
+ * on a thread whose stack holds that many calls, so where a program fails
+ * doesn't depend on the stack of the thread that runs it.
+ */
+final class CallStack {
+    private final int mainPos; // Where running out of depth is reported
+    private int depth;         // Calls running
+
+    CallStack(ProgramNode program) {
+        this.mainPos = mainPos(program);
+    }
+
+    // Before the body of a function runs
+    void enter() {
+        if (depth == MacsRuntime.MAX_DEPTH) {
+            throw Interpreter.stackOverflow(mainPos);
+        }
+        depth++;
+    }
+
+    // After it returned. A failing call never returns, the run is over
+    void exit() {
+        depth--;
+    }
+
+    // Of the main() the program runs, 0 if none
+    private static int mainPos(ProgramNode program) {
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof FuncDeclNode func && func.name.getLexeme().equals("main") && func.params.isEmpty()) {
+                return func.getPos();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Runs the engine on a thread whose stack holds {@link MacsRuntime#MAX_DEPTH}
+     * calls, and waits for it. What it throws is thrown here.
+     */
+    static void run(Runnable engine) {
+        MacsRuntime.onDeepStack(engine);
+    }
+}
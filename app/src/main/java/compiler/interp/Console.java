@@ -0,0 +1,107 @@
+package compiler.interp;
+
+import java.io.*;
+
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.runtime.MacsRuntime;
+
+/**
+ * What {@code print} writes to and {@code input} reads from, shared by the
+ * ways of running a program so they format and parse values alike.
+ *
+ * Values are written as Java writes them. Reading a variable takes one
+ * line; numbers, chars and bools may have spaces around them, strings are
+ * the line as it is. {@code pos} is where a value that can't be read is
+ * reported: the variable read into, named by {@code variable}.
+ *
+ * Compiled programs call the {@link MacsRuntime} for all of it, so this
+ * does too, failing with an {@link ErrorList} where the runtime fails with
+ * a {@link MacsRuntime.Failure}.
+ */
+final class Console {
+    private final MacsRuntime runtime;
+
+    Console(Reader in, Writer out) {
+        this.runtime = new MacsRuntime(in, out);
+    }
+
+//// OUTPUT ////////////////////////////////////////////////////////////////////
+
+    void print(String value) {
+        runtime.print(value);
+    }
+
+    void print(char value) {
+        runtime.print(value);
+    }
+
+    void print(long value) {
+        runtime.print(value);
+    }
+
+    void print(double value) {
+        runtime.print(value);
+    }
+
+    void print(boolean value) {
+        runtime.print(value);
+    }
+
+    void println() {
+        runtime.println();
+    }
+
+    void flush() {
+        runtime.flush();
+    }
+
+//// INPUT /////////////////////////////////////////////////////////////////////
+
+    long readInt(String variable, int pos) {
+        try {
+            return runtime.readInt(variable, pos);
+        } catch (MacsRuntime.Failure failure) {
+            throw error(failure);
+        }
+    }
+
+    double readFloat(String variable, int pos) {
+        try {
+            return runtime.readFloat(variable, pos);
+        } catch (MacsRuntime.Failure failure) {
+            throw error(failure);
+        }
+    }
+
+    char readChar(String variable, int pos) {
+        try {
+            return runtime.readChar(variable, pos);
+        } catch (MacsRuntime.Failure failure) {
+            throw error(failure);
+        }
+    }
+
+    boolean readBool(String variable, int pos) {
+        try {
+            return runtime.readBool(variable, pos);
+        } catch (MacsRuntime.Failure failure) {
+            throw error(failure);
+        }
+    }
+
+    String readString(String variable, int pos) {
+        try {
+            return runtime.readString(variable, pos);
+        } catch (MacsRuntime.Failure failure) {
+            throw error(failure);
+        }
+    }
+
+    /**
+     * The error of a failure of the runtime, at the same place.
+     */
+    static ErrorList error(MacsRuntime.Failure failure) {
+        return new ErrorList(ErrorCode.valueOf(failure.code), failure.getMessage(), failure.pos, failure.length);
+    }
+}
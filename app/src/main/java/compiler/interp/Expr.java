@@ -0,0 +1,97 @@
+package compiler.interp;
+
+/**
+ * Executable form of an expression, specialized to the types of its
+ * operands. Each execute method gives the value as one type: a node
+ * implements the one of its own type, and ints also convert to floats
+ * where a float is expected. Bools are also ints, 0 or 1, for the
+ * variables holding them.
+ */
+abstract class Expr {
+    long executeInt(Frame frame) {
+        throw unsupported("int");
+    }
+
+    double executeFloat(Frame frame) {
+        throw unsupported("float");
+    }
+
+    String executeString(Frame frame) {
+        throw unsupported("string");
+    }
+
+    boolean executeBool(Frame frame) {
+        throw unsupported("bool");
+    }
+
+    // For the side effects, the value isn't needed
+    abstract void executeVoid(Frame frame);
+
+    /**
+     * Whether it always has the same value and no side effects, so an
+     * operation on it can be done once when it's compiled.
+     */
+    boolean isConstant() {
+        return false;
+    }
+
+    private IllegalStateException unsupported(String type) {
+        return new IllegalStateException(getClass().getSimpleName() + " has no " + type + " value");
+    }
+
+    // Ints and chars (their code)
+    abstract static class Int extends Expr {
+        @Override
+        abstract long executeInt(Frame frame);
+
+        @Override
+        double executeFloat(Frame frame) {
+            return executeInt(frame);
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return executeInt(frame) != 0;
+        }
+
+        @Override
+        void executeVoid(Frame frame) {
+            executeInt(frame);
+        }
+    }
+
+    abstract static class Float extends Expr {
+        @Override
+        abstract double executeFloat(Frame frame);
+
+        @Override
+        void executeVoid(Frame frame) {
+            executeFloat(frame);
+        }
+    }
+
+    abstract static class Str extends Expr {
+        @Override
+        abstract String executeString(Frame frame);
+
+        @Override
+        void executeVoid(Frame frame) {
+            executeString(frame);
+        }
+    }
+
+    abstract static class Bool extends Expr {
+        @Override
+        abstract boolean executeBool(Frame frame);
+
+        @Override
+        long executeInt(Frame frame) {
+            return executeBool(frame) ? 1 : 0;
+        }
+
+        @Override
+        void executeVoid(Frame frame) {
+            executeBool(frame);
+        }
+    }
+}
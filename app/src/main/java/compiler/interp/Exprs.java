@@ -0,0 +1,723 @@
+package compiler.interp;
+
+/**
+ * The specialized expression nodes. Each does one thing to operands of
+ * known types, so running it takes no tests of what the operation or the
+ * types are: an int addition is {@link AddInt}, whatever its operands.
+ */
+final class Exprs {
+    private Exprs() {
+    }
+
+//// CONSTANTS /////////////////////////////////////////////////////////////////
+
+    static final class IntConst extends Expr.Int {
+        final long value;
+
+        IntConst(long value) {
+            this.value = value;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    static final class FloatConst extends Expr.Float {
+        final double value;
+
+        FloatConst(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    static final class StringConst extends Expr.Str {
+        final String value;
+
+        StringConst(String value) {
+            this.value = value;
+        }
+
+        @Override
+        String executeString(Frame frame) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    static final class BoolConst extends Expr.Bool {
+        final boolean value;
+
+        BoolConst(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+//// VARIABLES /////////////////////////////////////////////////////////////////
+
+    // Locals and parameters read from the frame of the call, globals from
+    // the frame of the globals
+
+    static final class ReadLocalInt extends Expr.Int {
+        final int slot;
+
+        ReadLocalInt(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return frame.values[slot];
+        }
+    }
+
+    static final class ReadLocalFloat extends Expr.Float {
+        final int slot;
+
+        ReadLocalFloat(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return Double.longBitsToDouble(frame.values[slot]);
+        }
+    }
+
+    static final class ReadLocalString extends Expr.Str {
+        final int slot;
+
+        ReadLocalString(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        String executeString(Frame frame) {
+            return frame.strings[slot];
+        }
+    }
+
+    static final class ReadGlobalInt extends Expr.Int {
+        final Frame globals;
+        final int slot;
+
+        ReadGlobalInt(Frame globals, int slot) {
+            this.globals = globals;
+            this.slot = slot;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return globals.values[slot];
+        }
+    }
+
+    static final class ReadGlobalFloat extends Expr.Float {
+        final Frame globals;
+        final int slot;
+
+        ReadGlobalFloat(Frame globals, int slot) {
+            this.globals = globals;
+            this.slot = slot;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return Double.longBitsToDouble(globals.values[slot]);
+        }
+    }
+
+    static final class ReadGlobalString extends Expr.Str {
+        final Frame globals;
+        final int slot;
+
+        ReadGlobalString(Frame globals, int slot) {
+            this.globals = globals;
+            this.slot = slot;
+        }
+
+        @Override
+        String executeString(Frame frame) {
+            return globals.strings[slot];
+        }
+    }
+
+//// ARITHMETIC ////////////////////////////////////////////////////////////////
+
+    static final class AddInt extends Expr.Int {
+        final Expr lhs;
+        final Expr rhs;
+
+        AddInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return lhs.executeInt(frame) + rhs.executeInt(frame);
+        }
+    }
+
+    static final class SubInt extends Expr.Int {
+        final Expr lhs;
+        final Expr rhs;
+
+        SubInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return lhs.executeInt(frame) - rhs.executeInt(frame);
+        }
+    }
+
+    static final class MulInt extends Expr.Int {
+        final Expr lhs;
+        final Expr rhs;
+
+        MulInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return lhs.executeInt(frame) * rhs.executeInt(frame);
+        }
+    }
+
+    static final class DivInt extends Expr.Int {
+        final Expr lhs;
+        final Expr rhs;
+        final int pos; // Of the divisor
+
+        DivInt(Expr lhs, Expr rhs, int pos) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.pos = pos;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            long dividend = lhs.executeInt(frame);
+            long divisor = rhs.executeInt(frame);
+            if (divisor == 0) {
+                throw Interpreter.divisionByZero(pos);
+            }
+            return dividend / divisor;
+        }
+    }
+
+    static final class NegInt extends Expr.Int {
+        final Expr operand;
+
+        NegInt(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return -operand.executeInt(frame);
+        }
+    }
+
+    static final class AddFloat extends Expr.Float {
+        final Expr lhs;
+        final Expr rhs;
+
+        AddFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return lhs.executeFloat(frame) + rhs.executeFloat(frame);
+        }
+    }
+
+    static final class SubFloat extends Expr.Float {
+        final Expr lhs;
+        final Expr rhs;
+
+        SubFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return lhs.executeFloat(frame) - rhs.executeFloat(frame);
+        }
+    }
+
+    static final class MulFloat extends Expr.Float {
+        final Expr lhs;
+        final Expr rhs;
+
+        MulFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return lhs.executeFloat(frame) * rhs.executeFloat(frame);
+        }
+    }
+
+    static final class DivFloat extends Expr.Float {
+        final Expr lhs;
+        final Expr rhs;
+
+        DivFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return lhs.executeFloat(frame) / rhs.executeFloat(frame);
+        }
+    }
+
+    static final class NegFloat extends Expr.Float {
+        final Expr operand;
+
+        NegFloat(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return -operand.executeFloat(frame);
+        }
+    }
+
+    static final class Concat extends Expr.Str {
+        final Expr lhs;
+        final Expr rhs;
+
+        Concat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        String executeString(Frame frame) {
+            return lhs.executeString(frame).concat(rhs.executeString(frame));
+        }
+    }
+
+//// LOGIC /////////////////////////////////////////////////////////////////////
+
+    static final class And extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        And(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeBool(frame) && rhs.executeBool(frame);
+        }
+    }
+
+    static final class Or extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        Or(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeBool(frame) || rhs.executeBool(frame);
+        }
+    }
+
+    static final class Not extends Expr.Bool {
+        final Expr operand;
+
+        Not(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return !operand.executeBool(frame);
+        }
+    }
+
+//// COMPARISONS ///////////////////////////////////////////////////////////////
+
+    // Of ints, chars or bools
+
+    static final class EqInt extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        EqInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeInt(frame) == rhs.executeInt(frame);
+        }
+    }
+
+    static final class NeqInt extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        NeqInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeInt(frame) != rhs.executeInt(frame);
+        }
+    }
+
+    static final class LtInt extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        LtInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeInt(frame) < rhs.executeInt(frame);
+        }
+    }
+
+    static final class LteInt extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        LteInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeInt(frame) <= rhs.executeInt(frame);
+        }
+    }
+
+    static final class GtInt extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        GtInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeInt(frame) > rhs.executeInt(frame);
+        }
+    }
+
+    static final class GteInt extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        GteInt(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeInt(frame) >= rhs.executeInt(frame);
+        }
+    }
+
+    static final class EqFloat extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        EqFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeFloat(frame) == rhs.executeFloat(frame);
+        }
+    }
+
+    static final class NeqFloat extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        NeqFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeFloat(frame) != rhs.executeFloat(frame);
+        }
+    }
+
+    static final class LtFloat extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        LtFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeFloat(frame) < rhs.executeFloat(frame);
+        }
+    }
+
+    static final class LteFloat extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        LteFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeFloat(frame) <= rhs.executeFloat(frame);
+        }
+    }
+
+    static final class GtFloat extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        GtFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeFloat(frame) > rhs.executeFloat(frame);
+        }
+    }
+
+    static final class GteFloat extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        GteFloat(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeFloat(frame) >= rhs.executeFloat(frame);
+        }
+    }
+
+    static final class EqString extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        EqString(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return lhs.executeString(frame).equals(rhs.executeString(frame));
+        }
+    }
+
+    static final class NeqString extends Expr.Bool {
+        final Expr lhs;
+        final Expr rhs;
+
+        NeqString(Expr lhs, Expr rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return !lhs.executeString(frame).equals(rhs.executeString(frame));
+        }
+    }
+
+//// CALLS /////////////////////////////////////////////////////////////////////
+
+    // Computes an argument in the caller's frame into the callee's
+    abstract static class Arg {
+        final int slot;
+        final Expr value;
+
+        Arg(int slot, Expr value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        abstract void pass(Frame caller, Frame callee);
+    }
+
+    static final class IntArg extends Arg {
+        IntArg(int slot, Expr value) {
+            super(slot, value);
+        }
+
+        @Override
+        void pass(Frame caller, Frame callee) {
+            callee.values[slot] = value.executeInt(caller);
+        }
+    }
+
+    static final class FloatArg extends Arg {
+        FloatArg(int slot, Expr value) {
+            super(slot, value);
+        }
+
+        @Override
+        void pass(Frame caller, Frame callee) {
+            callee.values[slot] = Double.doubleToRawLongBits(value.executeFloat(caller));
+        }
+    }
+
+    static final class StringArg extends Arg {
+        StringArg(int slot, Expr value) {
+            super(slot, value);
+        }
+
+        @Override
+        void pass(Frame caller, Frame callee) {
+            callee.strings[slot] = value.executeString(caller);
+        }
+    }
+
+    // Runs the function with the arguments and gives the frame holding its
+    // result
+    private static Frame call(Function target, Arg[] args, Frame caller) {
+        Frame callee = target.newFrame();
+        for (Arg arg : args) {
+            arg.pass(caller, callee);
+        }
+        target.call(callee);
+        return callee;
+    }
+
+    // Of a function returning an int or a char, or nothing
+    static final class CallInt extends Expr.Int {
+        final Function target;
+        final Arg[] args;
+
+        CallInt(Function target, Arg[] args) {
+            this.target = target;
+            this.args = args;
+        }
+
+        @Override
+        long executeInt(Frame frame) {
+            return call(target, args, frame).result;
+        }
+    }
+
+    static final class CallFloat extends Expr.Float {
+        final Function target;
+        final Arg[] args;
+
+        CallFloat(Function target, Arg[] args) {
+            this.target = target;
+            this.args = args;
+        }
+
+        @Override
+        double executeFloat(Frame frame) {
+            return call(target, args, frame).floatResult;
+        }
+    }
+
+    static final class CallString extends Expr.Str {
+        final Function target;
+        final Arg[] args;
+
+        CallString(Function target, Arg[] args) {
+            this.target = target;
+            this.args = args;
+        }
+
+        @Override
+        String executeString(Frame frame) {
+            return call(target, args, frame).stringResult;
+        }
+    }
+
+    static final class CallBool extends Expr.Bool {
+        final Function target;
+        final Arg[] args;
+
+        CallBool(Function target, Arg[] args) {
+            this.target = target;
+            this.args = args;
+        }
+
+        @Override
+        boolean executeBool(Frame frame) {
+            return call(target, args, frame).result != 0;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package compiler.interp;
+
+/**
+ * Variables of one call of a function, or the globals, by slot, for the
+ * nodes {@link NodeCompiler} builds. Ints, chars, bools and floats (as
+ * their bits) share {@link #values}.
+ */
+final class Frame {
+    final long[] values;
+    final String[] strings; // Null if there are no string variables
+
+    // What the call returned, in the field of its type
+    long result;
+    double floatResult;
+    String stringResult;
+
+    Frame(int size, boolean hasStrings) {
+        this.values = new long[size];
+        this.strings = hasStrings ? new String[size] : null;
+    }
+}
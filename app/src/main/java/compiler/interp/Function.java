@@ -0,0 +1,41 @@
+package compiler.interp;
+
+import compiler.parser.FuncDeclNode;
+import compiler.semantic.Symbol;
+
+/**
+ * A declared function, as the calls to it see it. Its body is compiled
+ * into nodes the first time it's called, so functions a run never calls
+ * cost nothing, and then shared by every call.
+ */
+final class Function {
+    final FuncDeclNode decl;
+    final Symbol symbol;
+    private final NodeCompiler compiler;
+    private final CallStack calls;
+    private Stmt body;  // Null until the first call
+    boolean hasStrings; // Whether its frame needs strings, set as the body is compiled
+
+    Function(FuncDeclNode decl, Symbol symbol, NodeCompiler compiler, CallStack calls) {
+        this.decl = decl;
+        this.symbol = symbol;
+        this.compiler = compiler;
+        this.calls = calls;
+    }
+
+    Frame newFrame() {
+        if (body == null) {
+            body = compiler.compile(this);
+        }
+        return new Frame(symbol.frameSize(), hasStrings);
+    }
+
+    // Runs the body in a frame from newFrame() holding the arguments
+    void call(Frame frame) {
+        calls.enter();
+        if (!body.execute(frame)) {
+            frame.stringResult = ""; // The other results are already 0
+        }
+        calls.exit();
+    }
+}
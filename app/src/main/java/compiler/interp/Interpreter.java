@@ -0,0 +1,531 @@
+package compiler.interp;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.parser.*;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+import compiler.semantic.Symbol;
+
+/**
+ * Runs a checked program by walking its tree. It's the reference the faster
+ * ways of running programs are tested against, so it favors being obviously
+ * right over being fast, but it doesn't box.
+ *
+ * Running a program initializes its globals in order, then calls
+ * {@code main} if the program declares one without parameters. A variable
+ * without an initializer starts as 0, 0.0, '\0', false or "", and so does
+ * the result of a function that ends without returning.
+ *
+ * Visiting an expression leaves its value in one of three registers:
+ * {@link #value} for ints, chars (their code) and bools (0 or 1),
+ * {@link #floatValue} for floats and {@link #stringValue} for strings. Which
+ * one is given by the type the {@link SemanticAnalyzer} left in the node.
+ * Variables live in the same way in arrays indexed by their symbol's slot:
+ * globals in their own, locals in frames on one stack that grows as calls
+ * nest, floats as their bits.
+ *
+ * Ints are 64 bits and wrap around. Dividing an int by zero is an error,
+ * dividing a float by zero isn't. Nesting calls deeper than
+ * {@link compiler.runtime.MacsRuntime#MAX_DEPTH} is an error too, see
+ * {@link CallStack}. {@code print} writes its arguments one after another
+ * and ends the line, {@code input} reads one line into each of its
+ * variables.
+ */
+public final class Interpreter implements AstVisitor<Void> {
+    private static final int PRINT = SemanticAnalyzer.BUILTINS.indexOf("print");
+    private static final int INITIAL_STACK = 1024;
+
+    private final Symbol[] symbols;            // By id
+    private final FuncDeclNode[] functions;    // By slot
+    private final Console console;
+    private final CallStack calls;
+
+    private final long[] globals;
+    private final String[] globalStrings;
+    private long[] stack = new long[INITIAL_STACK];
+    private String[] stackStrings = new String[INITIAL_STACK];
+    private int fp; // Frame of the function running
+    private int sp; // Past its last slot
+
+    // Value of the last expression visited
+    private long value;
+    private double floatValue;
+    private String stringValue;
+
+    private TypeNode returnType; // Of the function running
+    private boolean returning;   // Set by a return until its function is left
+
+    private Interpreter(ProgramNode program, Bindings bindings, Reader in, Writer out) {
+        this.symbols = bindings.symbols().toArray(new Symbol[0]);
+        this.functions = new FuncDeclNode[bindings.functions().size()];
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof FuncDeclNode func) {
+                functions[bindings.of(func).slot] = func;
+            }
+        }
+        this.console = new Console(in, out);
+        this.calls = new CallStack(program);
+        this.globals = new long[bindings.globalCount()];
+        this.globalStrings = new String[bindings.globalCount()];
+        // A function an initializer calls may read globals not initialized yet
+        Arrays.fill(globalStrings, "");
+    }
+
+    /**
+     * Runs a program the {@link SemanticAnalyzer} found no errors in.
+     * Flushes {@code out} but doesn't close it.
+     *
+     * @throws ErrorList if the program fails while running, with the
+     *         output it wrote until then already written
+     */
+    public static void run(ProgramNode program, Bindings bindings, Reader in, Writer out) throws ErrorList {
+        CallStack.run(() -> new Interpreter(program, bindings, in, out).run(program));
+    }
+
+    private void run(ProgramNode program) {
+        FuncDeclNode main = null;
+        try {
+            for (DeclNode decl : program.decls) {
+                if (decl instanceof VarDeclNode global) {
+                    global.accept(this);
+                } else if (main == null && decl instanceof FuncDeclNode func
+                        && func.name.getLexeme().equals("main") && func.params.isEmpty()) {
+                    main = func;
+                }
+            }
+            if (main != null) {
+                reserve(symbols[main.binding].frameSize());
+                call(main, 0);
+            }
+        } finally {
+            console.flush();
+        }
+    }
+
+//// VARIABLES /////////////////////////////////////////////////////////////////
+
+    // Loads a variable into the register of its type
+    private void load(Symbol variable) {
+        boolean global = variable.kind == Symbol.Kind.GLOBAL;
+        int index = global ? variable.slot : fp + variable.slot;
+        if (variable.type == TypeNode.STRING) {
+            stringValue = global ? globalStrings[index] : stackStrings[index];
+        } else if (variable.type == TypeNode.FLOAT) {
+            floatValue = Double.longBitsToDouble(global ? globals[index] : stack[index]);
+        } else {
+            value = global ? globals[index] : stack[index];
+        }
+    }
+
+    // Stores the register holding a value of type `from` into a variable,
+    // widening ints stored into floats
+    private void store(Symbol variable, TypeNode from) {
+        if (variable.kind == Symbol.Kind.GLOBAL) {
+            store(globals, globalStrings, variable.slot, variable.type, from);
+        } else {
+            store(stack, stackStrings, fp + variable.slot, variable.type, from);
+        }
+    }
+
+    private void store(long[] values, String[] strings, int index, TypeNode to, TypeNode from) {
+        if (to == TypeNode.STRING) {
+            strings[index] = stringValue;
+        } else if (to == TypeNode.FLOAT) {
+            values[index] = Double.doubleToRawLongBits(from == TypeNode.INT ? value : floatValue);
+        } else {
+            values[index] = value;
+        }
+    }
+
+    private void loadZero() {
+        value = 0;
+        floatValue = 0;
+        stringValue = "";
+    }
+
+//// DECLARATIONS //////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(ProgramNode node) {
+        throw new UnsupportedOperationException("Programs are run with Interpreter.run");
+    }
+
+    @Override
+    public Void visit(VarDeclNode node) {
+        if (node.expr != null) {
+            node.expr.accept(this);
+            store(symbols[node.binding], node.expr.type);
+        } else {
+            loadZero();
+            store(symbols[node.binding], node.type);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(FuncDeclNode node) {
+        return null; // Run when called
+    }
+
+    @Override
+    public Void visit(TypeNode node) {
+        return null;
+    }
+
+    @Override
+    public Void visit(ParamNode node) {
+        return null; // Stored by the call
+    }
+
+//// STATEMENTS ////////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(CompoundStmtNode node) {
+        for (AstNode statement : node.statements) {
+            statement.accept(this);
+            if (returning) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(AssignmentNode node) {
+        Symbol target = symbols[node.binding];
+        if (node.op == AssignmentNode.OpType.ASSIGN) {
+            node.expr.accept(this);
+            store(target, node.expr.type);
+            return null;
+        }
+        // The target is read before the value is computed
+        BinaryOpNode.OpType op = arithmetic(node.op);
+        load(target);
+        if (target.type == TypeNode.STRING) {
+            String lhs = stringValue;
+            stringValue = lhs.concat(evalString(node.expr));
+        } else if (target.type == TypeNode.FLOAT) {
+            double lhs = floatValue;
+            floatValue = arithmetic(op, lhs, evalFloat(node.expr));
+        } else {
+            long lhs = value;
+            value = arithmetic(op, lhs, evalInt(node.expr), node.expr);
+        }
+        store(target, target.type);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnNode node) {
+        node.expr.accept(this);
+        if (returnType == TypeNode.FLOAT && node.expr.type == TypeNode.INT) {
+            floatValue = value;
+        }
+        returning = true;
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalNode node) {
+        if (evalBool(node.condition)) {
+            node.thenBranch.accept(this);
+        } else if (node.elseBranch != null) {
+            node.elseBranch.accept(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(WhileNode node) {
+        while (evalBool(node.condition)) {
+            node.body.accept(this);
+            if (returning) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ForNode node) {
+        if (node.init != null) {
+            node.init.accept(this);
+        }
+        while (node.cond == null || evalBool((ExprNode) node.cond)) {
+            node.body.accept(this);
+            if (returning) {
+                break;
+            }
+            if (node.step != null) {
+                node.step.accept(this);
+            }
+        }
+        return null;
+    }
+
+//// EXPRESSIONS ///////////////////////////////////////////////////////////////
+
+    private long evalInt(ExprNode node) {
+        node.accept(this);
+        return value;
+    }
+
+    private double evalFloat(ExprNode node) {
+        node.accept(this);
+        return node.type == TypeNode.INT ? value : floatValue;
+    }
+
+    private boolean evalBool(ExprNode node) {
+        node.accept(this);
+        return value != 0;
+    }
+
+    private String evalString(ExprNode node) {
+        node.accept(this);
+        return stringValue;
+    }
+
+    @Override
+    public Void visit(IdentExprNode node) {
+        load(symbols[node.binding]);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntLiteralNode node) {
+        value = node.value;
+        return null;
+    }
+
+    @Override
+    public Void visit(FloatLiteralNode node) {
+        floatValue = node.value;
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteralNode node) {
+        stringValue = node.value;
+        return null;
+    }
+
+    @Override
+    public Void visit(CharLiteralNode node) {
+        value = node.value;
+        return null;
+    }
+
+    @Override
+    public Void visit(BoolLiteralNode node) {
+        value = node.value ? 1 : 0;
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryOpNode node) {
+        switch (node.op) {
+            case AND -> value = evalBool(node.lhs) && evalBool(node.rhs) ? 1 : 0;
+            case OR -> value = evalBool(node.lhs) || evalBool(node.rhs) ? 1 : 0;
+            case ADD, SUB, MUL, DIV -> {
+                if (node.type == TypeNode.STRING) {
+                    String lhs = evalString(node.lhs);
+                    stringValue = lhs.concat(evalString(node.rhs));
+                } else if (node.type == TypeNode.FLOAT) {
+                    double lhs = evalFloat(node.lhs);
+                    floatValue = arithmetic(node.op, lhs, evalFloat(node.rhs));
+                } else {
+                    long lhs = evalInt(node.lhs);
+                    value = arithmetic(node.op, lhs, evalInt(node.rhs), node.rhs);
+                }
+            }
+            default -> value = compare(node) ? 1 : 0;
+        }
+        return null;
+    }
+
+    private boolean compare(BinaryOpNode node) {
+        TypeNode lhsType = node.lhs.type;
+        TypeNode rhsType = node.rhs.type;
+        if (lhsType == TypeNode.STRING) {
+            String lhs = evalString(node.lhs);
+            boolean equal = lhs.equals(evalString(node.rhs));
+            return node.op == BinaryOpNode.OpType.EQ == equal;
+        }
+        if (lhsType == TypeNode.FLOAT || rhsType == TypeNode.FLOAT) {
+            double lhs = evalFloat(node.lhs);
+            double rhs = evalFloat(node.rhs);
+            return switch (node.op) {
+                case EQ -> lhs == rhs;
+                case NEQ -> lhs != rhs;
+                case GT -> lhs > rhs;
+                case LT -> lhs < rhs;
+                case GTE -> lhs >= rhs;
+                default -> lhs <= rhs;
+            };
+        }
+        long lhs = evalInt(node.lhs);
+        long rhs = evalInt(node.rhs);
+        return switch (node.op) {
+            case EQ -> lhs == rhs;
+            case NEQ -> lhs != rhs;
+            case GT -> lhs > rhs;
+            case LT -> lhs < rhs;
+            case GTE -> lhs >= rhs;
+            default -> lhs <= rhs;
+        };
+    }
+
+    // `divisor` is where a zero divisor is reported
+    private static long arithmetic(BinaryOpNode.OpType op, long lhs, long rhs, ExprNode divisor) {
+        return switch (op) {
+            case ADD -> lhs + rhs;
+            case SUB -> lhs - rhs;
+            case MUL -> lhs * rhs;
+            default -> {
+                if (rhs == 0) {
+                    throw divisionByZero(divisor.getPos());
+                }
+                yield lhs / rhs;
+            }
+        };
+    }
+
+    private static double arithmetic(BinaryOpNode.OpType op, double lhs, double rhs) {
+        return switch (op) {
+            case ADD -> lhs + rhs;
+            case SUB -> lhs - rhs;
+            case MUL -> lhs * rhs;
+            default -> lhs / rhs;
+        };
+    }
+
+    private static BinaryOpNode.OpType arithmetic(AssignmentNode.OpType op) {
+        return switch (op) {
+            case ASSIGN -> null;
+            case ADD_ASSIGN -> BinaryOpNode.OpType.ADD;
+            case SUB_ASSIGN -> BinaryOpNode.OpType.SUB;
+            case MUL_ASSIGN -> BinaryOpNode.OpType.MUL;
+            case DIV_ASSIGN -> BinaryOpNode.OpType.DIV;
+        };
+    }
+
+    @Override
+    public Void visit(UnaryOpNode node) {
+        node.operand.accept(this);
+        if (node.op == UnaryOpNode.OpType.NOT) {
+            value ^= 1;
+        } else if (node.type == TypeNode.FLOAT) {
+            floatValue = -floatValue;
+        } else {
+            value = -value;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(ErrorNode node) {
+        throw new IllegalStateException("Program has errors: " + node.message);
+    }
+
+//// CALLS /////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(FnCallNode node) {
+        Symbol callee = symbols[node.binding];
+        if (callee.kind == Symbol.Kind.BUILTIN) {
+            if (callee.slot == PRINT) {
+                print(node);
+            } else {
+                input(node);
+            }
+            return null;
+        }
+        // The new frame is reserved before the arguments are computed, so
+        // calls among them go above it
+        FuncDeclNode function = functions[callee.slot];
+        int base = sp;
+        reserve(base + callee.frameSize());
+        for (int i = 0; i < node.args.size(); i++) {
+            ExprNode arg = node.args.get(i);
+            arg.accept(this);
+            store(stack, stackStrings, base + i, function.params.get(i).type, arg.type);
+        }
+        call(function, base);
+        return null;
+    }
+
+    // Runs a function whose arguments are in the frame reserved at `base`,
+    // leaving what it returns in the registers and the frame released
+    private void call(FuncDeclNode function, int base) {
+        calls.enter();
+        int callerFp = fp;
+        TypeNode callerReturnType = returnType;
+        fp = base;
+        returnType = function.returnType;
+        function.body.accept(this);
+        if (!returning) {
+            loadZero();
+        }
+        returning = false;
+        fp = callerFp;
+        sp = base;
+        returnType = callerReturnType;
+        calls.exit();
+    }
+
+    // Makes the stack reach `top` and moves sp there
+    private void reserve(int top) {
+        if (top > stack.length) {
+            int length = Math.max(top, stack.length * 2);
+            stack = Arrays.copyOf(stack, length);
+            stackStrings = Arrays.copyOf(stackStrings, length);
+        }
+        sp = top;
+    }
+
+    private void print(FnCallNode node) {
+        for (ExprNode arg : node.args) {
+            arg.accept(this);
+            switch (arg.type) {
+                case INT -> console.print(value);
+                case FLOAT -> console.print(floatValue);
+                case CHAR -> console.print((char) value);
+                case BOOL -> console.print(value != 0);
+                default -> console.print(stringValue);
+            }
+        }
+        console.println();
+    }
+
+    private void input(FnCallNode node) {
+        for (ExprNode arg : node.args) {
+            Symbol variable = symbols[((IdentExprNode) arg).binding];
+            int pos = arg.getPos();
+            switch (variable.type) {
+                case INT -> value = console.readInt(variable.name, pos);
+                case FLOAT -> floatValue = console.readFloat(variable.name, pos);
+                case CHAR -> value = console.readChar(variable.name, pos);
+                case BOOL -> value = console.readBool(variable.name, pos) ? 1 : 0;
+                default -> stringValue = console.readString(variable.name, pos);
+            }
+            store(variable, variable.type);
+        }
+    }
+
+//// ERRORS ////////////////////////////////////////////////////////////////////
+
+    static ErrorList divisionByZero(int pos) {
+        return new ErrorList(ErrorCode.DIVISION_BY_ZERO, "Division by zero", pos, 1);
+    }
+
+    // Reported at the entry point, the call that overflowed is too deep to
+    // say much about
+    static ErrorList stackOverflow(int pos) {
+        return new ErrorList(ErrorCode.STACK_OVERFLOW, "Calls nested too deeply", pos, "main".length());
+    }
+}
@@ -0,0 +1,319 @@
+package compiler.interp;
+
+import java.util.List;
+
+import compiler.parser.*;
+import compiler.semantic.SemanticAnalyzer;
+import compiler.semantic.Symbol;
+
+/**
+ * Turns a function body into nodes specialized to the types the
+ * {@link SemanticAnalyzer} gave every expression, and the declarations the
+ * names resolved to: {@code a + b} becomes an {@link Exprs.AddInt} or an
+ * {@link Exprs.AddFloat} or a {@link Exprs.Concat}, a name a read of a frame
+ * slot, and an operation on constants the constant it gives.
+ */
+final class NodeCompiler implements AstVisitor<Object> {
+    private static final int PRINT = SemanticAnalyzer.BUILTINS.indexOf("print");
+
+    private final Symbol[] symbols;     // By id
+    private final Function[] functions; // By slot
+    private final Frame globals;
+    private final Console console;
+    private Function function; // Being compiled, null for the globals
+
+    NodeCompiler(Symbol[] symbols, Function[] functions, Frame globals, Console console) {
+        this.symbols = symbols;
+        this.functions = functions;
+        this.globals = globals;
+        this.console = console;
+    }
+
+    Stmt compile(Function function) {
+        this.function = function;
+        for (ParamNode param : function.decl.params) {
+            param.accept(this);
+        }
+        Stmt body = stmt(function.decl.body);
+        this.function = null;
+        return body;
+    }
+
+    // The declaration of a global, which runs in the globals' frame
+    Stmt compileGlobal(VarDeclNode node) {
+        return stmt(node);
+    }
+
+    private Expr expr(ExprNode node) {
+        return (Expr) node.accept(this);
+    }
+
+    private Stmt stmt(AstNode node) {
+        Object compiled = node.accept(this);
+        return compiled instanceof Expr expr ? new Stmts.Eval(expr) : (Stmt) compiled;
+    }
+
+//// VARIABLES /////////////////////////////////////////////////////////////////
+
+    private Expr read(Symbol variable) {
+        boolean global = variable.kind == Symbol.Kind.GLOBAL;
+        return switch (variable.type) {
+            case FLOAT -> global ? new Exprs.ReadGlobalFloat(globals, variable.slot)
+                : new Exprs.ReadLocalFloat(variable.slot);
+            case STRING -> global ? new Exprs.ReadGlobalString(globals, variable.slot)
+                : new Exprs.ReadLocalString(variable.slot);
+            default -> global ? new Exprs.ReadGlobalInt(globals, variable.slot)
+                : new Exprs.ReadLocalInt(variable.slot);
+        };
+    }
+
+    private Stmt write(Symbol variable, Expr value) {
+        boolean global = variable.kind == Symbol.Kind.GLOBAL;
+        return switch (variable.type) {
+            case FLOAT -> global ? new Stmts.WriteGlobalFloat(globals, variable.slot, value)
+                : new Stmts.WriteLocalFloat(variable.slot, value);
+            case STRING -> global ? new Stmts.WriteGlobalString(globals, variable.slot, value)
+                : new Stmts.WriteLocalString(variable.slot, value);
+            default -> global ? new Stmts.WriteGlobalInt(globals, variable.slot, value)
+                : new Stmts.WriteLocalInt(variable.slot, value);
+        };
+    }
+
+    private static Expr zero(TypeNode type) {
+        return switch (type) {
+            case FLOAT -> new Exprs.FloatConst(0);
+            case STRING -> new Exprs.StringConst("");
+            case BOOL -> new Exprs.BoolConst(false);
+            default -> new Exprs.IntConst(0);
+        };
+    }
+
+//// DECLARATIONS //////////////////////////////////////////////////////////////
+
+    @Override
+    public Object visit(ProgramNode node) {
+        throw new UnsupportedOperationException("Programs are run with SpecializingInterpreter.run");
+    }
+
+    @Override
+    public Object visit(VarDeclNode node) {
+        if (node.type == TypeNode.STRING && function != null) {
+            function.hasStrings = true;
+        }
+        Expr value = node.expr != null ? expr(node.expr) : zero(node.type);
+        return write(symbols[node.binding], value);
+    }
+
+    @Override
+    public Object visit(FuncDeclNode node) {
+        throw new UnsupportedOperationException("Functions are compiled when first called");
+    }
+
+    @Override
+    public Object visit(TypeNode node) {
+        return null;
+    }
+
+    @Override
+    public Object visit(ParamNode node) {
+        if (node.type == TypeNode.STRING) {
+            function.hasStrings = true;
+        }
+        return null;
+    }
+
+//// STATEMENTS ////////////////////////////////////////////////////////////////
+
+    @Override
+    public Object visit(CompoundStmtNode node) {
+        Stmt[] statements = new Stmt[node.statements.size()];
+        for (int i = 0; i < statements.length; i++) {
+            statements[i] = stmt(node.statements.get(i));
+        }
+        return new Stmts.Block(statements);
+    }
+
+    @Override
+    public Object visit(AssignmentNode node) {
+        Symbol target = symbols[node.binding];
+        Expr value = expr(node.expr);
+        BinaryOpNode.OpType op = switch (node.op) {
+            case ASSIGN -> null;
+            case ADD_ASSIGN -> BinaryOpNode.OpType.ADD;
+            case SUB_ASSIGN -> BinaryOpNode.OpType.SUB;
+            case MUL_ASSIGN -> BinaryOpNode.OpType.MUL;
+            case DIV_ASSIGN -> BinaryOpNode.OpType.DIV;
+        };
+        if (op != null) {
+            value = binary(op, target.type, read(target), target.type, value, node.expr.type, node.expr.getPos());
+        }
+        return write(target, value);
+    }
+
+    @Override
+    public Object visit(ReturnNode node) {
+        Expr value = expr(node.expr);
+        return switch (function.decl.returnType) {
+            case FLOAT -> new Stmts.ReturnFloat(value);
+            case STRING -> new Stmts.ReturnString(value);
+            default -> new Stmts.ReturnInt(value);
+        };
+    }
+
+    @Override
+    public Object visit(ConditionalNode node) {
+        return new Stmts.If(expr(node.condition), stmt(node.thenBranch),
+            node.elseBranch != null ? stmt(node.elseBranch) : null);
+    }
+
+    @Override
+    public Object visit(WhileNode node) {
+        return new Stmts.While(expr(node.condition), stmt(node.body));
+    }
+
+    @Override
+    public Object visit(ForNode node) {
+        return new Stmts.For(
+            node.init != null ? stmt(node.init) : null,
+            node.cond != null ? expr((ExprNode) node.cond) : new Exprs.BoolConst(true),
+            node.step != null ? stmt(node.step) : null,
+            stmt(node.body));
+    }
+
+//// EXPRESSIONS ///////////////////////////////////////////////////////////////
+
+    @Override
+    public Object visit(IdentExprNode node) {
+        return read(symbols[node.binding]);
+    }
+
+    @Override
+    public Object visit(IntLiteralNode node) {
+        return new Exprs.IntConst(node.value);
+    }
+
+    @Override
+    public Object visit(FloatLiteralNode node) {
+        return new Exprs.FloatConst(node.value);
+    }
+
+    @Override
+    public Object visit(StringLiteralNode node) {
+        return new Exprs.StringConst(node.value);
+    }
+
+    @Override
+    public Object visit(CharLiteralNode node) {
+        return new Exprs.IntConst(node.value);
+    }
+
+    @Override
+    public Object visit(BoolLiteralNode node) {
+        return new Exprs.BoolConst(node.value);
+    }
+
+    @Override
+    public Object visit(BinaryOpNode node) {
+        return binary(node.op, node.type, expr(node.lhs), node.lhs.type, expr(node.rhs), node.rhs.type,
+            node.rhs.getPos());
+    }
+
+    // The node for an operation giving `type` on operands of the given
+    // types. `divisorPos` is where dividing by zero is reported
+    private static Expr binary(BinaryOpNode.OpType op, TypeNode type,
+                               Expr lhs, TypeNode lhsType, Expr rhs, TypeNode rhsType, int divisorPos) {
+        boolean floats = lhsType == TypeNode.FLOAT || rhsType == TypeNode.FLOAT;
+        boolean strings = lhsType == TypeNode.STRING;
+        Expr node = switch (op) {
+            case ADD -> type == TypeNode.STRING ? new Exprs.Concat(lhs, rhs)
+                : type == TypeNode.FLOAT ? new Exprs.AddFloat(lhs, rhs) : new Exprs.AddInt(lhs, rhs);
+            case SUB -> type == TypeNode.FLOAT ? new Exprs.SubFloat(lhs, rhs) : new Exprs.SubInt(lhs, rhs);
+            case MUL -> type == TypeNode.FLOAT ? new Exprs.MulFloat(lhs, rhs) : new Exprs.MulInt(lhs, rhs);
+            case DIV -> type == TypeNode.FLOAT ? new Exprs.DivFloat(lhs, rhs)
+                : new Exprs.DivInt(lhs, rhs, divisorPos);
+            case AND -> new Exprs.And(lhs, rhs);
+            case OR -> new Exprs.Or(lhs, rhs);
+            case EQ -> strings ? new Exprs.EqString(lhs, rhs)
+                : floats ? new Exprs.EqFloat(lhs, rhs) : new Exprs.EqInt(lhs, rhs);
+            case NEQ -> strings ? new Exprs.NeqString(lhs, rhs)
+                : floats ? new Exprs.NeqFloat(lhs, rhs) : new Exprs.NeqInt(lhs, rhs);
+            case LT -> floats ? new Exprs.LtFloat(lhs, rhs) : new Exprs.LtInt(lhs, rhs);
+            case LTE -> floats ? new Exprs.LteFloat(lhs, rhs) : new Exprs.LteInt(lhs, rhs);
+            case GT -> floats ? new Exprs.GtFloat(lhs, rhs) : new Exprs.GtInt(lhs, rhs);
+            case GTE -> floats ? new Exprs.GteFloat(lhs, rhs) : new Exprs.GteInt(lhs, rhs);
+        };
+        // A division by a constant zero is left to fail when it runs
+        boolean zeroDivisor = node instanceof Exprs.DivInt && rhs.isConstant() && rhs.executeInt(null) == 0;
+        return lhs.isConstant() && rhs.isConstant() && !zeroDivisor ? fold(node, type) : node;
+    }
+
+    @Override
+    public Object visit(UnaryOpNode node) {
+        Expr operand = expr(node.operand);
+        Expr result = switch (node.op) {
+            case NOT -> new Exprs.Not(operand);
+            case NEGATE -> node.type == TypeNode.FLOAT ? new Exprs.NegFloat(operand) : new Exprs.NegInt(operand);
+        };
+        return operand.isConstant() ? fold(result, node.type) : result;
+    }
+
+    // The constant an operation on constants gives, which needs no frame
+    private static Expr fold(Expr node, TypeNode type) {
+        return switch (type) {
+            case FLOAT -> new Exprs.FloatConst(node.executeFloat(null));
+            case STRING -> new Exprs.StringConst(node.executeString(null));
+            case BOOL -> new Exprs.BoolConst(node.executeBool(null));
+            default -> new Exprs.IntConst(node.executeInt(null));
+        };
+    }
+
+    @Override
+    public Object visit(FnCallNode node) {
+        Symbol callee = symbols[node.binding];
+        List<ExprNode> args = node.args;
+        if (callee.kind == Symbol.Kind.BUILTIN) {
+            return callee.slot == PRINT ? print(args) : input(args);
+        }
+        Function target = functions[callee.slot];
+        Exprs.Arg[] compiled = new Exprs.Arg[args.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            Expr value = expr(args.get(i));
+            compiled[i] = switch (target.decl.params.get(i).type) {
+                case FLOAT -> new Exprs.FloatArg(i, value);
+                case STRING -> new Exprs.StringArg(i, value);
+                default -> new Exprs.IntArg(i, value);
+            };
+        }
+        return switch (callee.type) {
+            case FLOAT -> new Exprs.CallFloat(target, compiled);
+            case STRING -> new Exprs.CallString(target, compiled);
+            case BOOL -> new Exprs.CallBool(target, compiled);
+            default -> new Exprs.CallInt(target, compiled);
+        };
+    }
+
+    private Stmt print(List<ExprNode> args) {
+        Expr[] values = new Expr[args.size()];
+        TypeNode[] types = new TypeNode[args.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = expr(args.get(i));
+            types[i] = args.get(i).type;
+        }
+        return new Stmts.Print(console, values, types);
+    }
+
+    private Stmt input(List<ExprNode> args) {
+        Symbol[] variables = new Symbol[args.size()];
+        int[] positions = new int[args.size()];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = symbols[((IdentExprNode) args.get(i)).binding];
+            positions[i] = args.get(i).getPos();
+        }
+        return new Stmts.Input(console, globals, variables, positions);
+    }
+
+    @Override
+    public Object visit(ErrorNode node) {
+        throw new IllegalStateException("Program has errors: " + node.message);
+    }
+}
@@ -0,0 +1,106 @@
+package compiler.interp;
+
+import java.util.*;
+
+import compiler.bytecode.CompiledProgram;
+import compiler.bytecode.Opcode;
+
+/**
+ * Counts what a {@link VirtualMachine} runs: instructions by opcode, and
+ * for each function its calls, the instructions it ran and the time spent
+ * in it, not counting the functions it called.
+ *
+ * Profiling slows the machine down, the times are only worth comparing to
+ * each other.
+ */
+public final class Profile implements VirtualMachine.Profiler {
+    private final long[] opcodes = new long[Opcode.COUNT];
+    private final long[] calls;
+    private final long[] instructions;
+    private final long[] nanos;
+    private int[] running = new int[64]; // Functions called and not returned, innermost last
+    private int depth;
+    private long since = System.nanoTime(); // When the innermost function was last entered or resumed
+
+    public Profile(CompiledProgram program) {
+        int count = program.functions.size();
+        this.calls = new long[count];
+        this.instructions = new long[count];
+        this.nanos = new long[count];
+    }
+
+    @Override
+    public void instruction(int function, int opcode) {
+        opcodes[opcode]++;
+        instructions[function]++;
+    }
+
+    @Override
+    public void enter(int function) {
+        charge();
+        if (depth == running.length) {
+            running = Arrays.copyOf(running, depth * 2);
+        }
+        running[depth++] = function;
+        calls[function]++;
+    }
+
+    @Override
+    public void exit(int function) {
+        charge();
+        depth--;
+    }
+
+    // Charges the time since the last call or return to the function running
+    private void charge() {
+        long now = System.nanoTime();
+        if (depth > 0) {
+            nanos[running[depth - 1]] += now - since;
+        }
+        since = now;
+    }
+
+    public long opcodeCount(int opcode) {
+        return opcodes[opcode];
+    }
+
+    public long calls(int function) {
+        return calls[function];
+    }
+
+    public long instructions(int function) {
+        return instructions[function];
+    }
+
+    public long nanos(int function) {
+        return nanos[function];
+    }
+
+    /**
+     * The functions that ran, the longest first, then the opcodes, the most
+     * run first.
+     */
+    public String report(CompiledProgram program) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-20s %12s %15s %10s%n", "function", "calls", "instructions", "self ms"));
+        Integer[] functions = new Integer[calls.length];
+        Arrays.setAll(functions, i -> i);
+        Arrays.sort(functions, Comparator.comparingLong((Integer i) -> nanos[i]).reversed());
+        for (int function : functions) {
+            if (calls[function] > 0) {
+                out.append(String.format("%-20s %12d %15d %10.1f%n", program.function(function).name,
+                    calls[function], instructions[function], nanos[function] / 1e6));
+            }
+        }
+        out.append(String.format("%n%-20s %15s%n", "opcode", "count"));
+        Integer[] order = new Integer[Opcode.COUNT];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> opcodes[i]).reversed());
+        for (int opcode : order) {
+            if (opcodes[opcode] > 0) {
+                out.append(String.format("%-20s %15d%n", Opcode.name(opcode), opcodes[opcode]));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,72 @@
+package compiler.interp;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+import compiler.error.ErrorList;
+import compiler.parser.*;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+import compiler.semantic.Symbol;
+
+/**
+ * Runs a checked program as a tree of executable nodes, each specialized to
+ * its operation and operand types, instead of visiting the AST. The
+ * {@link Interpreter} decides again on every visit whether {@code a + b}
+ * adds ints, floats or strings; here that's decided once, when the
+ * function holding it is first called, and running the node only adds.
+ * Values pass between nodes as Java primitives, frames are arrays of slots.
+ *
+ * Programs behave exactly as they do in the {@link Interpreter}, calls
+ * nest as deep, see {@link CallStack}.
+ */
+public final class SpecializingInterpreter {
+    private SpecializingInterpreter() {
+    }
+
+    /**
+     * Runs a program the {@link SemanticAnalyzer} found no errors in.
+     * Flushes {@code out} but doesn't close it.
+     *
+     * @throws ErrorList if the program fails while running, with the
+     *         output it wrote until then already written
+     */
+    public static void run(ProgramNode program, Bindings bindings, Reader in, Writer out) throws ErrorList {
+        CallStack.run(() -> execute(program, bindings, in, out));
+    }
+
+    private static void execute(ProgramNode program, Bindings bindings, Reader in, Writer out) {
+        Symbol[] symbols = bindings.symbols().toArray(new Symbol[0]);
+        Console console = new Console(in, out);
+        Frame globals = new Frame(bindings.globalCount(), true);
+        // A function an initializer calls may read globals not initialized yet
+        Arrays.fill(globals.strings, "");
+        Function[] functions = new Function[bindings.functions().size()];
+        NodeCompiler compiler = new NodeCompiler(symbols, functions, globals, console);
+        CallStack calls = new CallStack(program);
+        FuncDeclNode main = null;
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof FuncDeclNode func) {
+                Symbol symbol = bindings.of(func);
+                functions[symbol.slot] = new Function(func, symbol, compiler, calls);
+                if (main == null && func.name.getLexeme().equals("main") && func.params.isEmpty()) {
+                    main = func;
+                }
+            }
+        }
+        try {
+            for (DeclNode decl : program.decls) {
+                if (decl instanceof VarDeclNode global) {
+                    compiler.compileGlobal(global).execute(globals);
+                }
+            }
+            if (main != null) {
+                Function function = functions[bindings.of(main).slot];
+                function.call(function.newFrame());
+            }
+        } finally {
+            console.flush();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package compiler.interp;
+
+/**
+ * Executable form of a statement. Executing it says whether it returned
+ * from the function, which every statement around it then passes on.
+ */
+abstract class Stmt {
+    abstract boolean execute(Frame frame);
+}
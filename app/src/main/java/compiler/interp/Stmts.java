@@ -0,0 +1,325 @@
+package compiler.interp;
+
+import compiler.parser.TypeNode;
+import compiler.semantic.Symbol;
+
+/**
+ * The statement nodes.
+ */
+final class Stmts {
+    private Stmts() {
+    }
+
+    static final class Block extends Stmt {
+        final Stmt[] statements;
+
+        Block(Stmt[] statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            for (Stmt statement : statements) {
+                if (statement.execute(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class Eval extends Stmt {
+        final Expr expr;
+
+        Eval(Expr expr) {
+            this.expr = expr;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            expr.executeVoid(frame);
+            return false;
+        }
+    }
+
+//// WRITES ////////////////////////////////////////////////////////////////////
+
+    // Of declarations and assignments, compound ones read the variable in
+    // their value
+
+    static final class WriteLocalInt extends Stmt {
+        final int slot;
+        final Expr value;
+
+        WriteLocalInt(int slot, Expr value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.values[slot] = value.executeInt(frame);
+            return false;
+        }
+    }
+
+    static final class WriteLocalFloat extends Stmt {
+        final int slot;
+        final Expr value;
+
+        WriteLocalFloat(int slot, Expr value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.values[slot] = Double.doubleToRawLongBits(value.executeFloat(frame));
+            return false;
+        }
+    }
+
+    static final class WriteLocalString extends Stmt {
+        final int slot;
+        final Expr value;
+
+        WriteLocalString(int slot, Expr value) {
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.strings[slot] = value.executeString(frame);
+            return false;
+        }
+    }
+
+    static final class WriteGlobalInt extends Stmt {
+        final Frame globals;
+        final int slot;
+        final Expr value;
+
+        WriteGlobalInt(Frame globals, int slot, Expr value) {
+            this.globals = globals;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            globals.values[slot] = value.executeInt(frame);
+            return false;
+        }
+    }
+
+    static final class WriteGlobalFloat extends Stmt {
+        final Frame globals;
+        final int slot;
+        final Expr value;
+
+        WriteGlobalFloat(Frame globals, int slot, Expr value) {
+            this.globals = globals;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            globals.values[slot] = Double.doubleToRawLongBits(value.executeFloat(frame));
+            return false;
+        }
+    }
+
+    static final class WriteGlobalString extends Stmt {
+        final Frame globals;
+        final int slot;
+        final Expr value;
+
+        WriteGlobalString(Frame globals, int slot, Expr value) {
+            this.globals = globals;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            globals.strings[slot] = value.executeString(frame);
+            return false;
+        }
+    }
+
+//// CONTROL FLOW //////////////////////////////////////////////////////////////
+
+    static final class If extends Stmt {
+        final Expr condition;
+        final Stmt thenBranch;
+        final Stmt elseBranch; // Null if there's none
+
+        If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
+            this.condition = condition;
+            this.thenBranch = thenBranch;
+            this.elseBranch = elseBranch;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            if (condition.executeBool(frame)) {
+                return thenBranch.execute(frame);
+            }
+            return elseBranch != null && elseBranch.execute(frame);
+        }
+    }
+
+    static final class While extends Stmt {
+        final Expr condition;
+        final Stmt body;
+
+        While(Expr condition, Stmt body) {
+            this.condition = condition;
+            this.body = body;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            while (condition.executeBool(frame)) {
+                if (body.execute(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class For extends Stmt {
+        final Stmt init;      // Null if there's none
+        final Expr condition; // True if there's none
+        final Stmt step;      // Null if there's none
+        final Stmt body;
+
+        For(Stmt init, Expr condition, Stmt step, Stmt body) {
+            this.init = init;
+            this.condition = condition;
+            this.step = step;
+            this.body = body;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            if (init != null) {
+                init.execute(frame);
+            }
+            while (condition.executeBool(frame)) {
+                if (body.execute(frame)) {
+                    return true;
+                }
+                if (step != null) {
+                    step.execute(frame);
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class ReturnInt extends Stmt {
+        final Expr value;
+
+        ReturnInt(Expr value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.result = value.executeInt(frame);
+            return true;
+        }
+    }
+
+    static final class ReturnFloat extends Stmt {
+        final Expr value;
+
+        ReturnFloat(Expr value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.floatResult = value.executeFloat(frame);
+            return true;
+        }
+    }
+
+    static final class ReturnString extends Stmt {
+        final Expr value;
+
+        ReturnString(Expr value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            frame.stringResult = value.executeString(frame);
+            return true;
+        }
+    }
+
+//// BUILT-INS /////////////////////////////////////////////////////////////////
+
+    static final class Print extends Stmt {
+        final Console console;
+        final Expr[] args;
+        final TypeNode[] types;
+
+        Print(Console console, Expr[] args, TypeNode[] types) {
+            this.console = console;
+            this.args = args;
+            this.types = types;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            for (int i = 0; i < args.length; i++) {
+                switch (types[i]) {
+                    case INT -> console.print(args[i].executeInt(frame));
+                    case FLOAT -> console.print(args[i].executeFloat(frame));
+                    case CHAR -> console.print((char) args[i].executeInt(frame));
+                    case BOOL -> console.print(args[i].executeBool(frame));
+                    default -> console.print(args[i].executeString(frame));
+                }
+            }
+            console.println();
+            return false;
+        }
+    }
+
+    static final class Input extends Stmt {
+        final Console console;
+        final Frame globals;
+        final Symbol[] variables;
+        final int[] positions; // Of the arguments naming them
+
+        Input(Console console, Frame globals, Symbol[] variables, int[] positions) {
+            this.console = console;
+            this.globals = globals;
+            this.variables = variables;
+            this.positions = positions;
+        }
+
+        @Override
+        boolean execute(Frame frame) {
+            for (int i = 0; i < variables.length; i++) {
+                Symbol variable = variables[i];
+                Frame target = variable.kind == Symbol.Kind.GLOBAL ? globals : frame;
+                switch (variable.type) {
+                    case INT -> target.values[variable.slot] = console.readInt(variable.name, positions[i]);
+                    case FLOAT -> target.values[variable.slot] =
+                        Double.doubleToRawLongBits(console.readFloat(variable.name, positions[i]));
+                    case CHAR -> target.values[variable.slot] = console.readChar(variable.name, positions[i]);
+                    case BOOL -> target.values[variable.slot] = console.readBool(variable.name, positions[i]) ? 1 : 0;
+                    default -> target.strings[variable.slot] = console.readString(variable.name, positions[i]);
+                }
+            }
+            return false;
+        }
+    }
+}
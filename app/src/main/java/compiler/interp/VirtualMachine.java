@@ -0,0 +1,321 @@
+package compiler.interp;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import compiler.bytecode.CompiledProgram;
+import compiler.bytecode.ConstantPool;
+import compiler.bytecode.FunctionCode;
+import compiler.bytecode.Opcode;
+import compiler.error.ErrorList;
+import compiler.parser.TypeNode;
+import compiler.runtime.MacsRuntime;
+
+/**
+ * Runs a {@link CompiledProgram}, lowered from a checked program or read
+ * from a {@code .macsc} file.
+ *
+ * Each call gets register banks of primitives, {@code long[]} for ints,
+ * chars and bools and {@code double[]} for floats, and a {@code String[]}.
+ * They're kept for the depth they were first used at, so calls in a loop
+ * allocate nothing. All functions run in one loop of a switch on the
+ * opcode, which keeps the registers of the running call in locals, and
+ * calls and returns only swap them.
+ *
+ * Programs behave exactly as they do in the {@link Interpreter}, calls
+ * nesting up to {@link MacsRuntime#MAX_DEPTH} deep.
+ */
+public final class VirtualMachine {
+
+    /**
+     * Told of every instruction run and every call, see {@link Profile}.
+     */
+    public interface Profiler {
+        void instruction(int function, int opcode);
+
+        void enter(int function);
+
+        void exit(int function);
+    }
+
+    private final FunctionCode[] functions;
+    private final int[][] paramRegisters; // Of each function, in the bank of its type
+    private final int[][] paramBanks;     // 0 for ints, 1 for floats, 2 for strings
+    private final long[] intConstants;    // Of ints and chars, by pool index
+    private final double[] floatConstants;
+    private final String[] stringConstants;
+    private final long[] intGlobals;
+    private final double[] floatGlobals;
+    private final String[] stringGlobals;
+    private final Console console;
+    private final Profiler profiler; // Null if not profiling
+    private final int mainPos;       // Where running out of depth is reported
+
+    private Registers[] stack = new Registers[64];
+    private int depth; // Calls running
+
+    // Registers of one call, and where its caller resumes
+    private static final class Registers {
+        long[] ints = new long[0];
+        double[] floats = new double[0];
+        String[] strings = new String[0];
+        int function;
+        int[] code; // Of the function
+        int pc;     // Of the instruction after the call it's waiting on
+        int result; // Register the callee returns to
+    }
+
+    private VirtualMachine(CompiledProgram program, Reader in, Writer out, Profiler profiler) {
+        this.functions = program.functions.toArray(new FunctionCode[0]);
+        this.paramRegisters = new int[functions.length][];
+        this.paramBanks = new int[functions.length][];
+        for (int i = 0; i < functions.length; i++) {
+            List<TypeNode> types = functions[i].paramTypes;
+            int[] next = new int[3];
+            paramRegisters[i] = new int[types.size()];
+            paramBanks[i] = new int[types.size()];
+            for (int p = 0; p < types.size(); p++) {
+                int bank = "ifs".indexOf(FunctionCode.bank(types.get(p)));
+                paramBanks[i][p] = bank;
+                paramRegisters[i][p] = next[bank]++;
+            }
+        }
+        ConstantPool constants = program.constants;
+        this.intConstants = new long[constants.size()];
+        this.floatConstants = new double[constants.size()];
+        this.stringConstants = new String[constants.size()];
+        for (int i = 0; i < constants.size(); i++) {
+            switch (constants.kind(i)) {
+                case INT, CHAR -> intConstants[i] = constants.intValue(i);
+                case FLOAT -> floatConstants[i] = constants.floatValue(i);
+                case STRING -> stringConstants[i] = constants.stringValue(i);
+            }
+        }
+        this.intGlobals = new long[program.intGlobals];
+        this.floatGlobals = new double[program.floatGlobals];
+        this.stringGlobals = new String[program.stringGlobals];
+        Arrays.fill(stringGlobals, "");
+        this.mainPos = program.main >= 0 ? functions[program.main].pos : 0;
+        this.console = new Console(in, out);
+        this.profiler = profiler;
+    }
+
+    /**
+     * Runs the program: initializes its globals, then calls its main().
+     * Flushes {@code out} but doesn't close it.
+     *
+     * @throws ErrorList if the program fails while running, with the
+     *         output it wrote until then already written
+     */
+    public static void run(CompiledProgram program, Reader in, Writer out) throws ErrorList {
+        run(program, in, out, null);
+    }
+
+    public static void run(CompiledProgram program, Reader in, Writer out, Profiler profiler) throws ErrorList {
+        VirtualMachine vm = new VirtualMachine(program, in, out, profiler);
+        try {
+            vm.execute(program.init);
+            if (program.main >= 0) {
+                vm.execute(program.main);
+            }
+        } finally {
+            vm.console.flush();
+        }
+    }
+
+    // Pushes registers for a call of the function
+    private Registers enter(int function) {
+        if (depth == MacsRuntime.MAX_DEPTH) {
+            throw Interpreter.stackOverflow(mainPos);
+        }
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        Registers registers = stack[depth];
+        if (registers == null) {
+            registers = stack[depth] = new Registers();
+        }
+        FunctionCode code = functions[function];
+        if (registers.ints.length < code.intRegisters) {
+            registers.ints = new long[code.intRegisters];
+        }
+        if (registers.floats.length < code.floatRegisters) {
+            registers.floats = new double[code.floatRegisters];
+        }
+        if (registers.strings.length < code.stringRegisters) {
+            // Empty rather than null where verified bytecode reads a register
+            // before writing it, registers reused hold what calls wrote
+            registers.strings = new String[code.stringRegisters];
+            Arrays.fill(registers.strings, "");
+        }
+        registers.function = function;
+        registers.code = code.code;
+        depth++;
+        if (profiler != null) {
+            profiler.enter(function);
+        }
+        return registers;
+    }
+
+    // Runs a function without parameters until it returns
+    private void execute(int entry) {
+        int bottom = depth;
+        Profiler profiler = this.profiler; // A local, so checking it is cheap
+        Registers frame = enter(entry);
+        int function = entry;
+        int[] code = frame.code;
+        long[] i = frame.ints;
+        double[] f = frame.floats;
+        String[] s = frame.strings;
+        int pc = 0;
+        while (true) {
+            int opcode = code[pc];
+            if (profiler != null) {
+                profiler.instruction(function, opcode);
+            }
+            switch (opcode) {
+                case Opcode.MOV_I -> { i[code[pc + 1]] = i[code[pc + 2]]; pc += 3; }
+                case Opcode.MOV_F -> { f[code[pc + 1]] = f[code[pc + 2]]; pc += 3; }
+                case Opcode.MOV_S -> { s[code[pc + 1]] = s[code[pc + 2]]; pc += 3; }
+                case Opcode.I2F -> { f[code[pc + 1]] = i[code[pc + 2]]; pc += 3; }
+                case Opcode.CONST_I -> { i[code[pc + 1]] = intConstants[code[pc + 2]]; pc += 3; }
+                case Opcode.CONST_F -> { f[code[pc + 1]] = floatConstants[code[pc + 2]]; pc += 3; }
+                case Opcode.CONST_S -> { s[code[pc + 1]] = stringConstants[code[pc + 2]]; pc += 3; }
+                case Opcode.IMM_I -> { i[code[pc + 1]] = code[pc + 2]; pc += 3; }
+
+                case Opcode.GET_GI -> { i[code[pc + 1]] = intGlobals[code[pc + 2]]; pc += 3; }
+                case Opcode.SET_GI -> { intGlobals[code[pc + 1]] = i[code[pc + 2]]; pc += 3; }
+                case Opcode.GET_GF -> { f[code[pc + 1]] = floatGlobals[code[pc + 2]]; pc += 3; }
+                case Opcode.SET_GF -> { floatGlobals[code[pc + 1]] = f[code[pc + 2]]; pc += 3; }
+                case Opcode.GET_GS -> { s[code[pc + 1]] = stringGlobals[code[pc + 2]]; pc += 3; }
+                case Opcode.SET_GS -> { stringGlobals[code[pc + 1]] = s[code[pc + 2]]; pc += 3; }
+
+                case Opcode.ADD_I -> { i[code[pc + 1]] = i[code[pc + 2]] + i[code[pc + 3]]; pc += 4; }
+                case Opcode.SUB_I -> { i[code[pc + 1]] = i[code[pc + 2]] - i[code[pc + 3]]; pc += 4; }
+                case Opcode.MUL_I -> { i[code[pc + 1]] = i[code[pc + 2]] * i[code[pc + 3]]; pc += 4; }
+                case Opcode.DIV_I -> {
+                    long divisor = i[code[pc + 3]];
+                    if (divisor == 0) {
+                        throw Interpreter.divisionByZero(functions[function].position(pc));
+                    }
+                    i[code[pc + 1]] = i[code[pc + 2]] / divisor;
+                    pc += 4;
+                }
+                case Opcode.NEG_I -> { i[code[pc + 1]] = -i[code[pc + 2]]; pc += 3; }
+                case Opcode.ADD_F -> { f[code[pc + 1]] = f[code[pc + 2]] + f[code[pc + 3]]; pc += 4; }
+                case Opcode.SUB_F -> { f[code[pc + 1]] = f[code[pc + 2]] - f[code[pc + 3]]; pc += 4; }
+                case Opcode.MUL_F -> { f[code[pc + 1]] = f[code[pc + 2]] * f[code[pc + 3]]; pc += 4; }
+                case Opcode.DIV_F -> { f[code[pc + 1]] = f[code[pc + 2]] / f[code[pc + 3]]; pc += 4; }
+                case Opcode.NEG_F -> { f[code[pc + 1]] = -f[code[pc + 2]]; pc += 3; }
+                case Opcode.CONCAT -> { s[code[pc + 1]] = concat(s[code[pc + 2]], s[code[pc + 3]]); pc += 4; }
+                case Opcode.NOT -> { i[code[pc + 1]] = i[code[pc + 2]] ^ 1; pc += 3; }
+
+                case Opcode.EQ_I -> { i[code[pc + 1]] = i[code[pc + 2]] == i[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.NE_I -> { i[code[pc + 1]] = i[code[pc + 2]] != i[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.LT_I -> { i[code[pc + 1]] = i[code[pc + 2]] < i[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.LE_I -> { i[code[pc + 1]] = i[code[pc + 2]] <= i[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.GT_I -> { i[code[pc + 1]] = i[code[pc + 2]] > i[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.GE_I -> { i[code[pc + 1]] = i[code[pc + 2]] >= i[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.EQ_F -> { i[code[pc + 1]] = f[code[pc + 2]] == f[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.NE_F -> { i[code[pc + 1]] = f[code[pc + 2]] != f[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.LT_F -> { i[code[pc + 1]] = f[code[pc + 2]] < f[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.LE_F -> { i[code[pc + 1]] = f[code[pc + 2]] <= f[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.GT_F -> { i[code[pc + 1]] = f[code[pc + 2]] > f[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.GE_F -> { i[code[pc + 1]] = f[code[pc + 2]] >= f[code[pc + 3]] ? 1 : 0; pc += 4; }
+                case Opcode.EQ_S -> { i[code[pc + 1]] = s[code[pc + 2]].equals(s[code[pc + 3]]) ? 1 : 0; pc += 4; }
+                case Opcode.NE_S -> { i[code[pc + 1]] = s[code[pc + 2]].equals(s[code[pc + 3]]) ? 0 : 1; pc += 4; }
+
+                case Opcode.JMP -> pc = code[pc + 1];
+                case Opcode.JMP_IF -> pc = i[code[pc + 1]] != 0 ? code[pc + 2] : pc + 3;
+                case Opcode.JMP_IFNOT -> pc = i[code[pc + 1]] == 0 ? code[pc + 2] : pc + 3;
+                case Opcode.JEQ_I -> pc = i[code[pc + 1]] == i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case Opcode.JNE_I -> pc = i[code[pc + 1]] != i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case Opcode.JLT_I -> pc = i[code[pc + 1]] < i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case Opcode.JLE_I -> pc = i[code[pc + 1]] <= i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case Opcode.JGT_I -> pc = i[code[pc + 1]] > i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case Opcode.JGE_I -> pc = i[code[pc + 1]] >= i[code[pc + 2]] ? code[pc + 3] : pc + 4;
+                case Opcode.CALL -> {
+                    int callee = code[pc + 1];
+                    int argc = code[pc + 3];
+                    frame.pc = pc + 4 + argc;
+                    frame.result = code[pc + 2];
+                    Registers next = enter(callee);
+                    int[] params = paramRegisters[callee];
+                    int[] banks = paramBanks[callee];
+                    for (int a = 0; a < argc; a++) {
+                        int arg = code[pc + 4 + a];
+                        switch (banks[a]) {
+                            case 0 -> next.ints[params[a]] = i[arg];
+                            case 1 -> next.floats[params[a]] = f[arg];
+                            default -> next.strings[params[a]] = s[arg];
+                        }
+                    }
+                    frame = next;
+                    function = callee;
+                    code = next.code;
+                    i = next.ints;
+                    f = next.floats;
+                    s = next.strings;
+                    pc = 0;
+                }
+                case Opcode.RET_I, Opcode.RET_F, Opcode.RET_S, Opcode.RET -> {
+                    if (profiler != null) {
+                        profiler.exit(function);
+                    }
+                    depth--;
+                    if (depth == bottom) {
+                        return;
+                    }
+                    Registers caller = stack[depth - 1];
+                    switch (opcode) {
+                        case Opcode.RET_I -> caller.ints[caller.result] = i[code[pc + 1]];
+                        case Opcode.RET_F -> caller.floats[caller.result] = f[code[pc + 1]];
+                        case Opcode.RET_S -> caller.strings[caller.result] = s[code[pc + 1]];
+                        default -> { }
+                    }
+                    frame = caller;
+                    function = caller.function;
+                    code = caller.code;
+                    i = caller.ints;
+                    f = caller.floats;
+                    s = caller.strings;
+                    pc = caller.pc;
+                }
+
+                case Opcode.PRINT_I -> { console.print(i[code[pc + 1]]); pc += 2; }
+                case Opcode.PRINT_F -> { console.print(f[code[pc + 1]]); pc += 2; }
+                case Opcode.PRINT_C -> { console.print((char) i[code[pc + 1]]); pc += 2; }
+                case Opcode.PRINT_B -> { console.print(i[code[pc + 1]] != 0); pc += 2; }
+                case Opcode.PRINT_S -> { console.print(s[code[pc + 1]]); pc += 2; }
+                case Opcode.PRINT_LN -> { console.println(); pc += 1; }
+                case Opcode.INPUT_I, Opcode.INPUT_F, Opcode.INPUT_C, Opcode.INPUT_B, Opcode.INPUT_S -> {
+                    input(frame, pc);
+                    pc += 3;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + opcode + " at " + pc);
+            }
+        }
+    }
+
+    // Kept out of the loop, which the JIT then compiles smaller
+    private void input(Registers frame, int pc) {
+        int[] code = frame.code;
+        String variable = stringConstants[code[pc + 2]];
+        int pos = functions[frame.function].position(pc);
+        int register = code[pc + 1];
+        switch (code[pc]) {
+            case Opcode.INPUT_I -> frame.ints[register] = console.readInt(variable, pos);
+            case Opcode.INPUT_F -> frame.floats[register] = console.readFloat(variable, pos);
+            case Opcode.INPUT_C -> frame.ints[register] = console.readChar(variable, pos);
+            case Opcode.INPUT_B -> frame.ints[register] = console.readBool(variable, pos) ? 1 : 0;
+            default -> frame.strings[register] = console.readString(variable, pos);
+        }
+    }
+
+    // Either operand is returned as it is when the other is empty
+    private static String concat(String a, String b) {
+        return b.isEmpty() ? a : a.isEmpty() ? b : a.concat(b);
+    }
+}
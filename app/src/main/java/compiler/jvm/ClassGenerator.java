@@ -0,0 +1,715 @@
+package compiler.jvm;
+
+import static org.objectweb.asm.Opcodes.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import compiler.error.Error;
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.parser.*;
+import compiler.runtime.MacsRuntime;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+import compiler.semantic.Symbol;
+
+/**
+ * Generates the class file of a checked program: a static method for each
+ * function, named after it, and a static field for each global.
+ *
+ * Ints are longs, floats doubles, bools booleans, chars chars and strings
+ * Strings, so the methods take and return what the functions do and the JIT
+ * sees plain arithmetic on locals. Every local and parameter gets a local
+ * variable of its own for the whole method. Conditions become branches, as
+ * in the {@link compiler.bytecode.Lowering}, and loops test theirs at the
+ * bottom. {@code print}, {@code input} and integer division call the
+ * {@link MacsRuntime} held in a static field.
+ *
+ * The class also has {@code $init()}, initializing the globals in order
+ * through methods of {@link #INIT_CHUNK} globals each, and
+ * {@code main(String[])}, running the program on the standard streams.
+ * Calls are counted in a static field and fail past
+ * {@link MacsRuntime#MAX_DEPTH}, as in the interpreters.
+ */
+final class ClassGenerator implements AstVisitor<Void> {
+    static final String NAME = "compiler/jvm/MacsProgram";
+    private static final int VERSION = V17; // Hidden classes need 15
+    private static final String RUNTIME = Type.getInternalName(MacsRuntime.class);
+    private static final String STRING = Type.getInternalName(String.class);
+    private static final int PRINT = SemanticAnalyzer.BUILTINS.indexOf("print");
+    private static final String DEPTH = "$depth"; // Calls running
+    // Globals initialized by each method $init calls. A method's code has
+    // to fit in 64 KiB, a global usually takes a few bytes of it
+    private static final int INIT_CHUNK = 1000;
+
+    private final Symbol[] symbols; // By id
+    private final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+        // Frames only ever merge a type with itself, no need to load classes
+        @Override
+        protected String getCommonSuperClass(String type1, String type2) {
+            return "java/lang/Object";
+        }
+    };
+
+    // What a method fails with if its code is too large, by name
+    private final Map<String, Error> tooLarge = new HashMap<>();
+
+    // Of the method being generated
+    private MethodVisitor method;
+    private int[] localIndex; // Of the local variable, by frame slot
+    private int nextLocal;
+    private TypeNode returnType;
+
+    private ClassGenerator(Bindings bindings) {
+        this.symbols = bindings.symbols().toArray(new Symbol[0]);
+    }
+
+    /**
+     * The class file of a program the {@link SemanticAnalyzer} found no
+     * errors in.
+     *
+     * @throws ErrorList if a method or the class is too large for a class
+     *         file
+     */
+    static byte[] generate(ProgramNode program, Bindings bindings) {
+        return new ClassGenerator(bindings).compile(program);
+    }
+
+    private byte[] compile(ProgramNode program) {
+        writer.visit(VERSION, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, NAME, null, "java/lang/Object", null);
+        writer.visitField(ACC_PUBLIC | ACC_STATIC, MacsRuntime.FIELD, Type.getDescriptor(MacsRuntime.class), null, null)
+            .visitEnd();
+        writer.visitField(ACC_PRIVATE | ACC_STATIC, DEPTH, "I", null, null).visitEnd();
+        FuncDeclNode main = null;
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof VarDeclNode global) {
+                writer.visitField(ACC_PUBLIC | ACC_STATIC, symbols[global.binding].name,
+                    type(global.type).getDescriptor(), null, null).visitEnd();
+            } else if (decl instanceof FuncDeclNode func) {
+                function(func);
+                if (main == null && func.name.getLexeme().equals("main") && func.params.isEmpty()) {
+                    main = func;
+                }
+            }
+        }
+        writer.visitField(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, MacsRuntime.MAIN_POS, "I", null,
+            main != null ? main.getPos() : 0).visitEnd();
+        initializer(program);
+        launcher();
+        writer.visitEnd();
+        try {
+            return writer.toByteArray();
+        } catch (MethodTooLargeException e) {
+            Error error = tooLarge.get(e.getMethodName());
+            throw error != null ? new ErrorList(error) : new ErrorList(ErrorCode.PROGRAM_TOO_LARGE,
+                "Too many globals for the JVM method initializing them", 0, 0);
+        } catch (ClassTooLargeException e) {
+            throw new ErrorList(ErrorCode.PROGRAM_TOO_LARGE,
+                String.format("Program needs %d class constants, a class holds %d", e.getConstantPoolCount(), 0xFFFF),
+                0, 0);
+        }
+    }
+
+    private void function(FuncDeclNode node) {
+        Symbol symbol = symbols[node.binding];
+        tooLarge.put(symbol.name, new Error(ErrorCode.PROGRAM_TOO_LARGE,
+            String.format("Body of `%s` too large for a JVM method", symbol.name), symbol.pos, symbol.name.length()));
+        begin(symbol.name, descriptor(symbol), symbol.frameSize(), symbol.type);
+        enter();
+        for (ParamNode param : node.params) {
+            param.accept(this);
+        }
+        node.body.accept(this);
+        if (symbol.type != TypeNode.VOID) {
+            zero(symbol.type);
+        }
+        exit();
+        method.visitInsn(type(symbol.type).getOpcode(IRETURN));
+        end();
+    }
+
+    // Counts the call, failing at the entry point if too many are running
+    private void enter() {
+        Label room = new Label();
+        method.visitFieldInsn(GETSTATIC, NAME, DEPTH, "I");
+        push(MacsRuntime.MAX_DEPTH);
+        method.visitJumpInsn(IF_ICMPLT, room);
+        method.visitFieldInsn(GETSTATIC, NAME, MacsRuntime.MAIN_POS, "I");
+        method.visitMethodInsn(INVOKESTATIC, RUNTIME, "stackOverflow",
+            Type.getMethodDescriptor(Type.getType(MacsRuntime.Failure.class), Type.INT_TYPE), false);
+        method.visitInsn(ATHROW);
+        method.visitLabel(room);
+        counter(IADD);
+    }
+
+    // Before each return. A call that fails never returns, the run is over
+    private void exit() {
+        counter(ISUB);
+    }
+
+    private void counter(int opcode) {
+        method.visitFieldInsn(GETSTATIC, NAME, DEPTH, "I");
+        method.visitInsn(ICONST_1);
+        method.visitInsn(opcode);
+        method.visitFieldInsn(PUTSTATIC, NAME, DEPTH, "I");
+    }
+
+    // Strings start out empty, so a function an initializer calls never
+    // sees null. Then the globals are initialized in order
+    private void initializer(ProgramNode program) {
+        List<Symbol> blank = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            if (symbol.kind == Symbol.Kind.GLOBAL && symbol.type == TypeNode.STRING) {
+                blank.add(symbol);
+            }
+        }
+        List<VarDeclNode> globals = new ArrayList<>();
+        for (DeclNode decl : program.decls) {
+            if (decl instanceof VarDeclNode global) {
+                globals.add(global);
+            }
+        }
+        int chunks = 0;
+        for (int start = 0; start < blank.size(); start += INIT_CHUNK) {
+            begin(chunk(chunks++, blank.get(start)), "()V", 0, TypeNode.VOID);
+            for (Symbol symbol : blank.subList(start, Math.min(start + INIT_CHUNK, blank.size()))) {
+                method.visitLdcInsn("");
+                method.visitFieldInsn(PUTSTATIC, NAME, symbol.name, type(TypeNode.STRING).getDescriptor());
+            }
+            method.visitInsn(RETURN);
+            end();
+        }
+        for (int start = 0; start < globals.size(); start += INIT_CHUNK) {
+            begin(chunk(chunks++, symbols[globals.get(start).binding]), "()V", 0, TypeNode.VOID);
+            for (VarDeclNode global : globals.subList(start, Math.min(start + INIT_CHUNK, globals.size()))) {
+                global.accept(this);
+            }
+            method.visitInsn(RETURN);
+            end();
+        }
+        begin(MacsRuntime.INIT, "()V", 0, TypeNode.VOID);
+        for (int i = 0; i < chunks; i++) {
+            method.visitMethodInsn(INVOKESTATIC, NAME, MacsRuntime.INIT + i, "()V", false);
+        }
+        method.visitInsn(RETURN);
+        end();
+    }
+
+    // Name of a method initializing globals from `first` on
+    private String chunk(int index, Symbol first) {
+        String name = MacsRuntime.INIT + index;
+        tooLarge.put(name, new Error(ErrorCode.PROGRAM_TOO_LARGE,
+            String.format("Initializers of the globals from `%s` on too large for a JVM method", first.name),
+            first.pos, first.name.length()));
+        return name;
+    }
+
+    // What `java -jar` runs
+    private void launcher() {
+        begin("main", "([Ljava/lang/String;)V", 0, TypeNode.VOID);
+        method.visitLdcInsn(Type.getObjectType(NAME));
+        method.visitMethodInsn(INVOKESTATIC, RUNTIME, "launch", "(Ljava/lang/Class;)V", false);
+        method.visitInsn(RETURN);
+        end();
+    }
+
+    private void begin(String name, String descriptor, int frameSize, TypeNode returnType) {
+        method = writer.visitMethod(ACC_PUBLIC | ACC_STATIC, name, descriptor, null, null);
+        method.visitCode();
+        localIndex = new int[frameSize];
+        nextLocal = 0;
+        this.returnType = returnType;
+    }
+
+    private void end() {
+        method.visitMaxs(0, 0); // Computed by the writer
+        method.visitEnd();
+    }
+
+//// TYPES /////////////////////////////////////////////////////////////////////
+
+    private static Type type(TypeNode type) {
+        return switch (type) {
+            case INT -> Type.LONG_TYPE;
+            case FLOAT -> Type.DOUBLE_TYPE;
+            case BOOL -> Type.BOOLEAN_TYPE;
+            case CHAR -> Type.CHAR_TYPE;
+            case STRING -> Type.getObjectType(STRING);
+            default -> Type.VOID_TYPE;
+        };
+    }
+
+    private static String descriptor(Symbol function) {
+        Type[] params = function.paramTypes.stream().map(ClassGenerator::type).toArray(Type[]::new);
+        return Type.getMethodDescriptor(type(function.type), params);
+    }
+
+//// VARIABLES /////////////////////////////////////////////////////////////////
+
+    private void load(Symbol variable) {
+        if (variable.kind == Symbol.Kind.GLOBAL) {
+            method.visitFieldInsn(GETSTATIC, NAME, variable.name, type(variable.type).getDescriptor());
+        } else {
+            method.visitVarInsn(type(variable.type).getOpcode(ILOAD), localIndex[variable.slot]);
+        }
+    }
+
+    private void store(Symbol variable) {
+        if (variable.kind == Symbol.Kind.GLOBAL) {
+            method.visitFieldInsn(PUTSTATIC, NAME, variable.name, type(variable.type).getDescriptor());
+        } else {
+            method.visitVarInsn(type(variable.type).getOpcode(ISTORE), localIndex[variable.slot]);
+        }
+    }
+
+    // Longs and doubles take two local variables
+    private void declare(Symbol variable) {
+        localIndex[variable.slot] = nextLocal;
+        nextLocal += type(variable.type).getSize();
+    }
+
+//// VALUES ////////////////////////////////////////////////////////////////////
+
+    // Pushes the value of the expression as the given type, widening ints
+    // to floats
+    private void value(ExprNode node, TypeNode type) {
+        if (type == TypeNode.FLOAT && node instanceof IntLiteralNode literal) {
+            push((double) literal.value);
+            return;
+        }
+        node.accept(this);
+        if (type == TypeNode.FLOAT && node.type == TypeNode.INT) {
+            method.visitInsn(L2D);
+        }
+    }
+
+    private void zero(TypeNode type) {
+        switch (type) {
+            case INT -> method.visitInsn(LCONST_0);
+            case FLOAT -> method.visitInsn(DCONST_0);
+            case STRING -> method.visitLdcInsn("");
+            default -> method.visitInsn(ICONST_0);
+        }
+    }
+
+    private void push(long value) {
+        if (value == 0 || value == 1) {
+            method.visitInsn(LCONST_0 + (int) value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    private void push(double value) {
+        if (Double.doubleToRawLongBits(value) == 0 || value == 1) {
+            method.visitInsn(DCONST_0 + (int) value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value == (byte) value) {
+            method.visitIntInsn(BIPUSH, value);
+        } else if (value == (short) value) {
+            method.visitIntInsn(SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    // Of the two values on the stack, of the given type. Int division fails
+    // at `pos` on a zero divisor
+    private void arithmetic(BinaryOpNode.OpType op, TypeNode type, int pos) {
+        if (type == TypeNode.STRING) {
+            method.visitMethodInsn(INVOKEVIRTUAL, STRING, "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+            return;
+        }
+        if (op == BinaryOpNode.OpType.DIV && type == TypeNode.INT) {
+            push(pos);
+            method.visitMethodInsn(INVOKESTATIC, RUNTIME, "divide", "(JJI)J", false);
+            return;
+        }
+        int opcode = switch (op) {
+            case ADD -> IADD;
+            case SUB -> ISUB;
+            case MUL -> IMUL;
+            default -> IDIV;
+        };
+        method.visitInsn(type(type).getOpcode(opcode));
+    }
+
+//// DECLARATIONS //////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(ProgramNode node) {
+        throw new UnsupportedOperationException("Programs are generated with ClassGenerator.generate");
+    }
+
+    @Override
+    public Void visit(VarDeclNode node) {
+        Symbol symbol = symbols[node.binding];
+        if (node.expr != null) {
+            value(node.expr, node.type);
+        } else {
+            zero(node.type);
+        }
+        if (symbol.kind != Symbol.Kind.GLOBAL) {
+            declare(symbol);
+        }
+        store(symbol);
+        return null;
+    }
+
+    @Override
+    public Void visit(FuncDeclNode node) {
+        throw new UnsupportedOperationException("Functions are generated with ClassGenerator.generate");
+    }
+
+    @Override
+    public Void visit(TypeNode node) {
+        return null;
+    }
+
+    // Parameters take the first local variables, in order
+    @Override
+    public Void visit(ParamNode node) {
+        declare(symbols[node.binding]);
+        return null;
+    }
+
+//// STATEMENTS ////////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(CompoundStmtNode node) {
+        for (AstNode statement : node.statements) {
+            statement(statement);
+        }
+        return null;
+    }
+
+    // Generates a statement that may be a lone expression, dropping its value
+    private void statement(AstNode node) {
+        if (node instanceof ExprNode expr) {
+            expr.accept(this);
+            switch (expr.type) {
+                case INT, FLOAT -> method.visitInsn(POP2);
+                case VOID -> {
+                }
+                default -> method.visitInsn(POP);
+            }
+        } else {
+            node.accept(this);
+        }
+    }
+
+    @Override
+    public Void visit(AssignmentNode node) {
+        Symbol target = symbols[node.binding];
+        if (node.op == AssignmentNode.OpType.ASSIGN) {
+            value(node.expr, target.type);
+        } else {
+            // The variable is read before the value is computed, a call in
+            // the value may change a global
+            load(target);
+            value(node.expr, target.type);
+            BinaryOpNode.OpType op = switch (node.op) {
+                case ADD_ASSIGN -> BinaryOpNode.OpType.ADD;
+                case SUB_ASSIGN -> BinaryOpNode.OpType.SUB;
+                case MUL_ASSIGN -> BinaryOpNode.OpType.MUL;
+                default -> BinaryOpNode.OpType.DIV;
+            };
+            arithmetic(op, target.type, node.expr.getPos());
+        }
+        store(target);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnNode node) {
+        value(node.expr, returnType);
+        exit();
+        method.visitInsn(type(returnType).getOpcode(IRETURN));
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalNode node) {
+        Label otherwise = new Label();
+        branch(node.condition, false, otherwise);
+        statement(node.thenBranch);
+        if (node.elseBranch == null) {
+            method.visitLabel(otherwise);
+            return null;
+        }
+        Label end = new Label();
+        method.visitJumpInsn(GOTO, end);
+        method.visitLabel(otherwise);
+        statement(node.elseBranch);
+        method.visitLabel(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(WhileNode node) {
+        Label body = new Label();
+        Label condition = new Label();
+        method.visitJumpInsn(GOTO, condition);
+        method.visitLabel(body);
+        statement(node.body);
+        method.visitLabel(condition);
+        branch(node.condition, true, body);
+        return null;
+    }
+
+    @Override
+    public Void visit(ForNode node) {
+        if (node.init != null) {
+            statement(node.init);
+        }
+        Label body = new Label();
+        Label condition = new Label();
+        method.visitJumpInsn(GOTO, condition);
+        method.visitLabel(body);
+        statement(node.body);
+        if (node.step != null) {
+            statement(node.step);
+        }
+        method.visitLabel(condition);
+        if (node.cond != null) {
+            branch((ExprNode) node.cond, true, body);
+        } else {
+            method.visitJumpInsn(GOTO, body);
+        }
+        return null;
+    }
+
+    // Jumps to `label` if the condition is `when`, falls through otherwise
+    private void branch(ExprNode condition, boolean when, Label label) {
+        if (condition instanceof BoolLiteralNode literal) {
+            if (literal.value == when) {
+                method.visitJumpInsn(GOTO, label);
+            }
+        } else if (condition instanceof UnaryOpNode unary && unary.op == UnaryOpNode.OpType.NOT) {
+            branch(unary.operand, !when, label);
+        } else if (condition instanceof BinaryOpNode binary
+                && (binary.op == BinaryOpNode.OpType.AND || binary.op == BinaryOpNode.OpType.OR)) {
+            // Whether the left operand alone decides, and which way
+            boolean decisive = binary.op == BinaryOpNode.OpType.OR;
+            if (decisive == when) {
+                branch(binary.lhs, when, label);
+                branch(binary.rhs, when, label);
+            } else {
+                Label skip = new Label();
+                branch(binary.lhs, decisive, skip);
+                branch(binary.rhs, when, label);
+                method.visitLabel(skip);
+            }
+        } else if (condition instanceof BinaryOpNode binary && isComparison(binary.op)) {
+            compare(binary, when, label);
+        } else {
+            condition.accept(this);
+            method.visitJumpInsn(when ? IFNE : IFEQ, label);
+        }
+    }
+
+    private static boolean isComparison(BinaryOpNode.OpType op) {
+        return switch (op) {
+            case EQ, NEQ, LT, LTE, GT, GTE -> true;
+            default -> false;
+        };
+    }
+
+    private void compare(BinaryOpNode node, boolean when, Label label) {
+        BinaryOpNode.OpType jump = when ? node.op : negation(node.op);
+        if (node.lhs.type == TypeNode.STRING) {
+            node.lhs.accept(this);
+            node.rhs.accept(this);
+            method.visitMethodInsn(INVOKEVIRTUAL, STRING, "equals", "(Ljava/lang/Object;)Z", false);
+            method.visitJumpInsn(jump == BinaryOpNode.OpType.EQ ? IFNE : IFEQ, label);
+        } else if (node.lhs.type == TypeNode.FLOAT || node.rhs.type == TypeNode.FLOAT) {
+            value(node.lhs, TypeNode.FLOAT);
+            value(node.rhs, TypeNode.FLOAT);
+            // NaN compares as whatever makes the comparison itself false, so
+            // its negation is true and jumping on either stays right
+            boolean below = node.op == BinaryOpNode.OpType.LT || node.op == BinaryOpNode.OpType.LTE;
+            method.visitInsn(below ? DCMPG : DCMPL);
+            method.visitJumpInsn(jumpOpcode(jump, false), label);
+        } else if (node.lhs.type == TypeNode.INT) {
+            node.lhs.accept(this);
+            node.rhs.accept(this);
+            method.visitInsn(LCMP);
+            method.visitJumpInsn(jumpOpcode(jump, false), label);
+        } else {
+            // Chars and bools are ints on the stack
+            node.lhs.accept(this);
+            node.rhs.accept(this);
+            method.visitJumpInsn(jumpOpcode(jump, true), label);
+        }
+    }
+
+    private static BinaryOpNode.OpType negation(BinaryOpNode.OpType op) {
+        return switch (op) {
+            case EQ -> BinaryOpNode.OpType.NEQ;
+            case NEQ -> BinaryOpNode.OpType.EQ;
+            case LT -> BinaryOpNode.OpType.GTE;
+            case LTE -> BinaryOpNode.OpType.GT;
+            case GT -> BinaryOpNode.OpType.LTE;
+            default -> BinaryOpNode.OpType.LT;
+        };
+    }
+
+    // Comparing two ints, or the result of a comparison with 0
+    private static int jumpOpcode(BinaryOpNode.OpType op, boolean ints) {
+        return switch (op) {
+            case EQ -> ints ? IF_ICMPEQ : IFEQ;
+            case NEQ -> ints ? IF_ICMPNE : IFNE;
+            case LT -> ints ? IF_ICMPLT : IFLT;
+            case LTE -> ints ? IF_ICMPLE : IFLE;
+            case GT -> ints ? IF_ICMPGT : IFGT;
+            default -> ints ? IF_ICMPGE : IFGE;
+        };
+    }
+
+//// EXPRESSIONS ///////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(IdentExprNode node) {
+        load(symbols[node.binding]);
+        return null;
+    }
+
+    @Override
+    public Void visit(IntLiteralNode node) {
+        push(node.value);
+        return null;
+    }
+
+    @Override
+    public Void visit(FloatLiteralNode node) {
+        push(node.value);
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteralNode node) {
+        method.visitLdcInsn(node.value);
+        return null;
+    }
+
+    @Override
+    public Void visit(CharLiteralNode node) {
+        push((int) node.value);
+        return null;
+    }
+
+    @Override
+    public Void visit(BoolLiteralNode node) {
+        method.visitInsn(node.value ? ICONST_1 : ICONST_0);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryOpNode node) {
+        switch (node.op) {
+            case ADD, SUB, MUL, DIV -> {
+                value(node.lhs, node.type);
+                value(node.rhs, node.type);
+                arithmetic(node.op, node.type, node.rhs.getPos());
+            }
+            default -> {
+                // A condition as a value
+                Label otherwise = new Label();
+                Label end = new Label();
+                branch(node, false, otherwise);
+                method.visitInsn(ICONST_1);
+                method.visitJumpInsn(GOTO, end);
+                method.visitLabel(otherwise);
+                method.visitInsn(ICONST_0);
+                method.visitLabel(end);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryOpNode node) {
+        node.operand.accept(this);
+        if (node.op == UnaryOpNode.OpType.NOT) {
+            method.visitInsn(ICONST_1);
+            method.visitInsn(IXOR);
+        } else {
+            method.visitInsn(type(node.type).getOpcode(INEG));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(FnCallNode node) {
+        Symbol callee = symbols[node.binding];
+        if (callee.kind == Symbol.Kind.BUILTIN) {
+            if (callee.slot == PRINT) {
+                print(node);
+            } else {
+                input(node);
+            }
+            return null;
+        }
+        for (int i = 0; i < node.args.size(); i++) {
+            value(node.args.get(i), callee.paramTypes.get(i));
+        }
+        method.visitMethodInsn(INVOKESTATIC, NAME, callee.name, descriptor(callee), false);
+        return null;
+    }
+
+    private void print(FnCallNode node) {
+        for (ExprNode arg : node.args) {
+            runtime();
+            arg.accept(this);
+            method.visitMethodInsn(INVOKEVIRTUAL, RUNTIME, "print",
+                Type.getMethodDescriptor(Type.VOID_TYPE, type(arg.type)), false);
+        }
+        runtime();
+        method.visitMethodInsn(INVOKEVIRTUAL, RUNTIME, "println", "()V", false);
+    }
+
+    private void input(FnCallNode node) {
+        for (ExprNode arg : node.args) {
+            Symbol variable = symbols[((IdentExprNode) arg).binding];
+            String read = switch (variable.type) {
+                case FLOAT -> "readFloat";
+                case STRING -> "readString";
+                case CHAR -> "readChar";
+                case BOOL -> "readBool";
+                default -> "readInt";
+            };
+            runtime();
+            method.visitLdcInsn(variable.name);
+            push(arg.getPos());
+            method.visitMethodInsn(INVOKEVIRTUAL, RUNTIME, read,
+                Type.getMethodDescriptor(type(variable.type), Type.getObjectType(STRING), Type.INT_TYPE), false);
+            store(variable);
+        }
+    }
+
+    private void runtime() {
+        method.visitFieldInsn(GETSTATIC, NAME, MacsRuntime.FIELD, Type.getDescriptor(MacsRuntime.class));
+    }
+
+    @Override
+    public Void visit(ErrorNode node) {
+        throw new IllegalStateException("Program has errors: " + node.message);
+    }
+}
@@ -0,0 +1,100 @@
+package compiler.jvm;
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.parser.ProgramNode;
+import compiler.runtime.MacsRuntime;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+
+/**
+ * Compiles a checked program to JVM bytecode, so its functions run as
+ * methods the JIT compiles to machine code.
+ *
+ * The class is either defined as a hidden class of this package and run
+ * in this JVM, or written with the {@link MacsRuntime} to a {@code .jar}
+ * that {@code java -jar} runs. Either way the program prints, reads and
+ * fails as it does in the interpreters.
+ */
+public final class JvmBackend {
+    private static final String MAIN_CLASS = ClassGenerator.NAME.replace('/', '.');
+
+    private JvmBackend() {
+    }
+
+    /**
+     * The class file of a program the {@link SemanticAnalyzer} found no
+     * errors in, for a class named {@code compiler.jvm.MacsProgram}.
+     *
+     * @throws ErrorList if the program doesn't fit in a class file
+     */
+    public static byte[] generate(ProgramNode program, Bindings bindings) throws ErrorList {
+        return ClassGenerator.generate(program, bindings);
+    }
+
+    /**
+     * Runs a program the {@link SemanticAnalyzer} found no errors in as a
+     * hidden class, which is unloaded once it has run. Flushes {@code out}
+     * but doesn't close it.
+     *
+     * @throws ErrorList if the program doesn't fit in a class file, or
+     *         fails while running, with the output it wrote until then
+     *         already written
+     */
+    public static void run(ProgramNode program, Bindings bindings, Reader in, Writer out) throws ErrorList {
+        Class<?> compiled;
+        try {
+            compiled = MethodHandles.lookup().defineHiddenClass(generate(program, bindings), true).lookupClass();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot define a class in " + JvmBackend.class.getPackageName(), e);
+        }
+        try {
+            new MacsRuntime(in, out).run(compiled);
+        } catch (MacsRuntime.Failure failure) {
+            throw new ErrorList(ErrorCode.valueOf(failure.code), failure.getMessage(), failure.pos, failure.length);
+        }
+    }
+
+    /**
+     * Writes a program the {@link SemanticAnalyzer} found no errors in to a
+     * {@code .jar} running it on the standard streams. A program that fails
+     * prints the error and exits with status 1.
+     *
+     * @throws ErrorList if the program doesn't fit in a class file, with
+     *         nothing written
+     */
+    public static void writeJar(ProgramNode program, Bindings bindings, Path path) throws IOException, ErrorList {
+        byte[] compiled = generate(program, bindings);
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, MAIN_CLASS);
+        try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(path), manifest)) {
+            write(jar, ClassGenerator.NAME + ".class", compiled);
+            for (Class<?> runtime : List.of(MacsRuntime.class, MacsRuntime.Failure.class)) {
+                String name = runtime.getName().replace('.', '/') + ".class";
+                try (InputStream in = JvmBackend.class.getResourceAsStream("/" + name)) {
+                    if (in == null) {
+                        throw new FileNotFoundException("Class file of " + runtime.getName());
+                    }
+                    write(jar, name, in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    private static void write(JarOutputStream jar, String name, byte[] bytes) throws IOException {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(bytes);
+        jar.closeEntry();
+    }
+}
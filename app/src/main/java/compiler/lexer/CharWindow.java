@@ -0,0 +1,78 @@
+package compiler.lexer;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Sliding window over a character stream, addressed by absolute offsets from
+ * the start of the stream. Refills read into a fixed-size buffer, dropping
+ * the characters the lexer no longer needs; the buffer only grows when a
+ * single token doesn't fit.
+ */
+final class CharWindow implements CharSequence {
+    private final Reader reader;
+    private char[] buffer;
+    private int base;   // Offset of buffer[0] in the stream
+    private int filled; // Characters in the buffer
+    private boolean eof;
+
+    CharWindow(Reader reader, int capacity) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(capacity, 16)];
+    }
+
+    /**
+     * Reads more characters, first dropping the ones before {@code keepFrom}.
+     * Returns false at the end of the stream.
+     */
+    boolean fill(int keepFrom) {
+        if (eof) {
+            return false;
+        }
+        int drop = Math.min(keepFrom - base, filled);
+        if (drop > 0) {
+            System.arraycopy(buffer, drop, buffer, 0, filled - drop);
+            base += drop;
+            filled -= drop;
+        }
+        if (filled == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            int read = reader.read(buffer, filled, buffer.length - filled);
+            if (read < 0) {
+                eof = true;
+                return false;
+            }
+            filled += read;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return buffer[index - base];
+    }
+
+    // Offset just past the last buffered character
+    @Override
+    public int length() {
+        return base + filled;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(buffer, start - base, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, filled);
+    }
+}
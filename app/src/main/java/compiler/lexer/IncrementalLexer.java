@@ -0,0 +1,69 @@
+package compiler.lexer;
+
+import java.util.*;
+
+/**
+ * Re-lexes an edited source from the token stream of its previous version.
+ *
+ * Tokens that end before the edit can't have seen it and are kept. Lexing
+ * restarts where the last of them ended and stops as soon as it produces a
+ * token that starts where an old token after the edit started: from the same
+ * offset and the same text, the old lexer made the same tokens, so the rest
+ * of the old stream is reused with its positions moved by the change in
+ * length. The work besides copying the stream's arrays is proportional to
+ * the number of tokens the edit touches.
+ */
+final class IncrementalLexer {
+
+    static TokenStream relex(TokenStream previous, int offset, int removed, String inserted) {
+        if (!previous.isWholeSource() || !(previous.text() instanceof String oldText)) {
+            throw new IllegalArgumentException("Can only re-lex a complete stream lexed from a String");
+        }
+        Objects.checkFromIndexSize(offset, removed, oldText.length());
+        String text = oldText.substring(0, offset) + inserted + oldText.substring(offset + removed);
+        int delta = inserted.length() - removed;
+
+        int keep = firstAffected(previous, offset);
+        int restart = keep > 0 ? previous.end(keep - 1) : 0;
+
+        // Old tokens starting after the edit, in new coordinates, are where
+        // the two streams can meet again
+        int editEnd = offset + inserted.length();
+        int resume = previous.countBefore(offset + removed);
+
+        TableLexer lexer = TableLexer.at(text, restart, previous.names(), 16);
+        TokenStream middle = lexer.tokens();
+        boolean more = true;
+        while (more) {
+            more = lexer.lexNext();
+            int last = middle.size() - 1;
+            int start = middle.pos(last);
+            if (start < editEnd) {
+                continue;
+            }
+            while (resume < previous.size() && previous.pos(resume) + delta < start) {
+                resume++;
+            }
+            if (resume < previous.size() && previous.pos(resume) + delta == start) {
+                middle.truncate(last);
+                return TokenStream.splice(previous, text, keep, middle, resume, delta);
+            }
+        }
+        // Lexed to EOF without meeting the old stream again
+        return TokenStream.splice(previous, text, keep, middle, previous.size(), delta);
+    }
+
+    /**
+     * Index of the first token whose lexing read the character at
+     * {@code offset} or later. Lexing a token also reads the character just
+     * past it, and an unterminated literal's lexeme runs to the end of the
+     * input, so both count as reaching the offset. EOF is always lexed again.
+     */
+    private static int firstAffected(TokenStream tokens, int offset) {
+        int index = Math.min(tokens.countBefore(offset), tokens.size() - 1);
+        while (index > 0 && tokens.end(index - 1) >= offset) {
+            index--;
+        }
+        return tokens.firstOpenError(index);
+    }
+}
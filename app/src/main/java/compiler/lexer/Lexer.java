@@ -1,23 +1,146 @@
 package compiler.lexer;
 
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
+import compiler.error.ErrorCode;
 import compiler.error.ErrorList;
 
 public class Lexer {
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
     private final String input;
+    private final NumberScanner numbers = new NumberScanner();
     private List<Token> tokens;
     private int pos = 0;
 
+    /**
+     * Lexing engines selectable through {@link #tokenize(String, Engine)}.
+     * All produce the same token stream; {@code SCANNER} is the original
+     * hand-written scanner and is kept as the reference implementation.
+     */
+    public enum Engine {
+        SCANNER, TABLE, PARALLEL
+    }
+
     public static List<Token> tokenize(String input) throws ErrorList {
+        return tokenize(input, Engine.TABLE);
+    }
+
+    public static List<Token> tokenize(String input, Engine engine) throws ErrorList {
+        return switch (engine) {
+            case SCANNER -> scan(input);
+            case TABLE -> tokenizeStream(input).asList();
+            case PARALLEL -> tokenizeParallel(input).asList();
+        };
+    }
+
+    /**
+     * Tokenizes into a packed {@link TokenStream} rather than a list of
+     * {@link Token} objects.
+     */
+    public static TokenStream tokenizeStream(String input) throws ErrorList {
+        return tokenizeStream(input, new NameTable());
+    }
+
+    /**
+     * Tokenizes into a packed {@link TokenStream}, interning identifiers and
+     * string literals into the given table.
+     */
+    public static TokenStream tokenizeStream(String input, NameTable names) throws ErrorList {
+        return checked(TableLexer.run(input, names));
+    }
+
+    /**
+     * Tokenizes UTF-8 source straight from its bytes. Token positions are
+     * byte offsets, see {@link Utf8Source#line} and {@link Utf8Source#column}
+     * to map them back for diagnostics.
+     */
+    public static TokenStream tokenizeStream(Utf8Source source) throws ErrorList {
+        return tokenizeStream(source, new NameTable());
+    }
+
+    public static TokenStream tokenizeStream(Utf8Source source, NameTable names) throws ErrorList {
+        return checked(TableLexer.run(source, names));
+    }
+
+    /**
+     * Tokenizes on the common {@link ForkJoinPool}, see
+     * {@link #tokenizeParallel(CharSequence, NameTable, ForkJoinPool)}.
+     */
+    public static TokenStream tokenizeParallel(CharSequence input) throws ErrorList {
+        return tokenizeParallel(input, new NameTable(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Splits the input into chunks at line starts and lexes them in parallel
+     * on the given pool. Chunk seams that fall inside a string or comment are
+     * repaired while merging, so the result is the same stream
+     * {@link #tokenizeStream} produces. The input is a {@link String} or a
+     * {@link Utf8Source}. Small inputs are lexed sequentially.
+     */
+    public static TokenStream tokenizeParallel(CharSequence input, NameTable names, ForkJoinPool pool)
+            throws ErrorList {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, input.length() / (pool.getParallelism() * 4));
+        return tokenizeParallel(input, names, pool, chunkSize);
+    }
+
+    static TokenStream tokenizeParallel(CharSequence input, NameTable names, ForkJoinPool pool, int chunkSize)
+            throws ErrorList {
+        return checked(ParallelLexer.run(input, names, pool, chunkSize));
+    }
+
+    /**
+     * Re-lexes a source after an edit that replaced {@code removed}
+     * characters at {@code offset} with {@code inserted}, given the stream of
+     * the source before the edit, as returned by {@link #tokenizeStream} or
+     * an earlier call. Only the tokens around the edit are lexed again; the
+     * rest are reused with their positions moved. The previous stream is left
+     * as it was, and shares its name table with the new one.
+     *
+     * Unrecognized tokens are kept as {@link TokenType#ERROR} tokens rather
+     * than thrown, so that a source being edited can go through invalid
+     * states.
+     */
+    public static TokenStream relex(TokenStream previous, int offset, int removed, String inserted) {
+        return IncrementalLexer.relex(previous, offset, removed, inserted);
+    }
+
+    private static TokenStream checked(TokenStream tokens) throws ErrorList {
+        ErrorList errorList = new ErrorList();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == TokenType.ERROR) {
+                String lexeme = tokens.lexeme(i);
+                errorList.add(
+                    ErrorCode.UNRECOGNIZED_TOKEN,
+                    String.format("Unrecognized token `%s`", lexeme),
+                    tokens.pos(i),
+                    lexeme.length()
+                );
+            }
+        }
+        if (!errorList.isEmpty()) {
+            throw errorList;
+        }
+        return tokens;
+    }
+
+    private static List<Token> scan(String input) throws ErrorList {
         Lexer lexer = new Lexer(input);
         lexer.run();
         ErrorList errorList = new ErrorList();
         for (Token token : lexer.tokens) {
             if (token.getType() == TokenType.ERROR) {
                 errorList.add(
+                    ErrorCode.UNRECOGNIZED_TOKEN,
                     String.format("Unrecognized token `%s`", token.getLexeme()),
-                    token.getPos()
+                    token.getPos(),
+                    token.getLexeme().length()
                 );
             }
         }
@@ -27,6 +150,31 @@ public class Lexer {
         return lexer.tokens;
     }
 
+    /**
+     * Lexes a character stream on demand through a bounded buffer. Tokens are
+     * handed out as the returned stream's consumer asks for them, so the
+     * source is never held in memory as a whole. Token positions are offsets
+     * from the start of the stream, the same ones {@link #tokenize} reports
+     * for the whole text.
+     *
+     * Unlike {@link #tokenize}, an unrecognized token is reported as soon as
+     * it's reached, by {@link TokenStream#has} throwing an {@link ErrorList}.
+     */
+    public static TokenStream stream(Reader reader) {
+        return stream(reader, new NameTable(), STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Lexes a UTF-8 encoded channel on demand, see {@link #stream(Reader)}.
+     */
+    public static TokenStream stream(ReadableByteChannel channel) {
+        return stream(Channels.newReader(channel, StandardCharsets.UTF_8), new NameTable(), STREAM_BUFFER_SIZE);
+    }
+
+    public static TokenStream stream(Reader reader, NameTable names, int bufferSize) {
+        return TableLexer.stream(new CharWindow(reader, bufferSize), names);
+    }
+
     private Lexer(String input) {
         this.input = input;
     }
@@ -82,8 +230,10 @@ public class Lexer {
         while (Character.isLetterOrDigit(peek()) || peek() == '_') {
             pos++;
         }
-        String lexeme = input.substring(start, pos);
+        return wordToken(input.substring(start, pos), start);
+    }
 
+    static Token wordToken(String lexeme, int start) {
         return switch (lexeme) {
             case "var"    -> new Token(TokenType.KW_VAR,    lexeme, start);
             case "func"   -> new Token(TokenType.KW_FUNC,   lexeme, start);
@@ -119,27 +269,7 @@ public class Lexer {
             }
         }
 
-        String lexeme = input.substring(start, pos);
-
-        // Regexes for number literals
-        String floatRegex = "^(\\d+\\.\\d*([eE][+-]?\\d+)?|\\d+[eE][+-]?\\d+|\\.\\d+)$";
-        String binaryRegex = "^0[bB][01_]+$";
-        String octalRegex = "^0[oO][0-7_]+$";
-        String hexRegex = "^0[xX][0-9a-fA-F_]+$";
-        String intRegex = "^\\d+$";
-
-        if (lexeme.matches(floatRegex)) {
-            double value = Double.parseDouble(lexeme);
-            return new TokenLiteral(TokenType.LT_FLOAT, lexeme, value, start);
-        } else if (lexeme.matches(binaryRegex)
-                || lexeme.matches(octalRegex)
-                || lexeme.matches(hexRegex)
-                || lexeme.matches(intRegex)) {
-            long value = Long.parseLong(lexeme);
-            return new TokenLiteral(TokenType.LT_INT, lexeme, value, start);
-        }
-
-        return new Token(TokenType.ERROR, lexeme, start);
+        return numbers.token(input, start, pos);
     }
 
     private Token scanString() {
@@ -157,18 +287,7 @@ public class Lexer {
             } else if (c == '\\') {
                 pos++; // Skip escape character
                 c = peek();
-                c = switch (c) {
-                    case 'n'  -> '\n';
-                    case 't'  -> '\t';
-                    case 'r'  -> '\r';
-                    case 'b'  -> '\b';
-                    case 'f'  -> '\f';
-                    case '"'  -> '"';
-                    case '\'' -> '\'';
-                    case '\\' -> '\\';
-                    default -> c; // Keep the character as is
-                };
-                sb.append(c);
+                sb.append(unescape(c));
             } else {
                 sb.append(c);
             }
@@ -188,17 +307,7 @@ public class Lexer {
         } else if (c == '\\') {
             pos++; // Skip escape character
             c = peek();
-            c = switch (c) {
-                case 'n'  -> '\n';
-                case 't'  -> '\t';
-                case 'r'  -> '\r';
-                case 'b'  -> '\b';
-                case 'f'  -> '\f';
-                case '"'  -> '"';
-                case '\'' -> '\'';
-                case '\\' -> '\\';
-                default -> c; // Keep the character as is
-            };
+            c = unescape(c);
             pos++; // Skip the escaped character
         } else {
             pos++; // Skip the character
@@ -211,6 +320,20 @@ public class Lexer {
         return new TokenLiteral(TokenType.LT_CHAR, lexeme, c, start);
     }
 
+    static char unescape(char c) {
+        return switch (c) {
+            case 'n'  -> '\n';
+            case 't'  -> '\t';
+            case 'r'  -> '\r';
+            case 'b'  -> '\b';
+            case 'f'  -> '\f';
+            case '"'  -> '"';
+            case '\'' -> '\'';
+            case '\\' -> '\\';
+            default -> c; // Keep the character as is
+        };
+    }
+
     private Token scanComment() {
         int start = pos;
         pos += 2; // Skip "//"
@@ -0,0 +1,147 @@
+package compiler.lexer;
+
+import java.util.*;
+
+/**
+ * Interning table for identifiers and string literal values. Each distinct
+ * name gets a dense integer id and one canonical {@link String}, so later
+ * stages can compare names by id and every token for the same name shares a
+ * single string instance.
+ *
+ * Lookups hash directly over a range of the source and only allocate the
+ * first time a name is seen.
+ */
+public final class NameTable {
+    private String[] names = new String[64];
+    private int[] hashes = new int[64];
+    private int size;
+    private int[] slots = new int[128]; // id + 1, or 0 when empty
+    private int mask = slots.length - 1;
+
+    /**
+     * Returns the id of the name spelled by {@code chars[start, end)},
+     * adding it if it's new.
+     */
+    public int intern(CharSequence chars, int start, int end) {
+        int hash = hash(chars, start, end);
+        int slot = mix(hash) & mask;
+        while (true) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(chars.subSequence(start, end).toString(), hash, slot);
+            }
+            if (hashes[id] == hash && matches(names[id], chars, start, end)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Returns the id of the given name, or -1 if it was never interned.
+     */
+    public int lookup(String name) {
+        int hash = hash(name, 0, name.length());
+        int slot = mix(hash) & mask;
+        while (true) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * A table with the same names under the same ids, which names can be
+     * added to without changing this one.
+     */
+    public NameTable copy() {
+        NameTable copy = new NameTable();
+        copy.names = names.clone();
+        copy.hashes = hashes.clone();
+        copy.size = size;
+        copy.slots = slots.clone();
+        copy.mask = mask;
+        return copy;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+//// HELPER METHODS ////////////////////////////////////////////////////////////
+
+    // Same as String.hashCode, so canonical strings cache the value we compute
+    private static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, CharSequence chars, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    long footprintBytes() {
+        long bytes = TokenStream.arrayBytes(names.length, 4)
+            + TokenStream.arrayBytes(hashes.length, 4)
+            + TokenStream.arrayBytes(slots.length, 4);
+        for (int id = 0; id < size; id++) {
+            bytes += TokenStream.stringBytes(names[id].length());
+        }
+        return bytes;
+    }
+}
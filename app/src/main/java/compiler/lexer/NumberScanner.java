@@ -0,0 +1,228 @@
+package compiler.lexer;
+
+/**
+ * Classifies a number lexeme and computes its value in a single pass over
+ * the source, without regexes or an intermediate substring.
+ *
+ * Accepted forms (`_` is allowed only between two digits):
+ *   LT_INT   = digits | 0b digits | 0o digits | 0x digits
+ *   LT_FLOAT = digits "." [digits] [exponent] | digits exponent | "." digits
+ *
+ * Decimal integers must fit in a signed 64-bit value, prefixed ones may use
+ * all 64 bits. Floats are exact when the digits fit in a double mantissa and
+ * the power of ten is small enough (Clinger's fast path); anything else falls
+ * back to {@link Double#parseDouble}.
+ */
+final class NumberScanner {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CharSequence input;
+    private int pos;
+    private int end;
+
+    // Decimal digit run state
+    private long mantissa;
+    private int droppedDigits;
+    private int runLength;
+
+    private long intValue;
+    private double floatValue;
+
+    long intValue() {
+        return intValue;
+    }
+
+    double floatValue() {
+        return floatValue;
+    }
+
+    /**
+     * Builds the token for the number lexeme spanning [start, end).
+     */
+    Token token(String input, int start, int end) {
+        TokenType type = scan(input, start, end);
+        String lexeme = input.substring(start, end);
+        return switch (type) {
+            case LT_INT   -> new TokenLiteral(TokenType.LT_INT, lexeme, intValue, start);
+            case LT_FLOAT -> new TokenLiteral(TokenType.LT_FLOAT, lexeme, floatValue, start);
+            default       -> new Token(TokenType.ERROR, lexeme, start);
+        };
+    }
+
+    /**
+     * Scans [start, end) and returns LT_INT, LT_FLOAT or ERROR. The value is
+     * then available through {@link #intValue()} or {@link #floatValue()}.
+     */
+    TokenType scan(CharSequence input, int start, int end) {
+        this.input = input;
+        this.pos = start;
+        this.end = end;
+
+        if (end - start > 2 && input.charAt(start) == '0') {
+            switch (input.charAt(start + 1)) {
+                case 'b': case 'B': return scanPrefixed(1);
+                case 'o': case 'O': return scanPrefixed(3);
+                case 'x': case 'X': return scanPrefixed(4);
+                default: break;
+            }
+        }
+        return scanDecimal(start);
+    }
+
+//// PREFIXED INTEGERS /////////////////////////////////////////////////////////
+
+    private TokenType scanPrefixed(int bitsPerDigit) {
+        pos += 2; // Skip radix prefix
+        int radix = 1 << bitsPerDigit;
+        long value = 0;
+        int digits = 0;
+        boolean pendingUnderscore = false;
+
+        for (; pos < end; pos++) {
+            char c = input.charAt(pos);
+            if (c == '_' && digits > 0) {
+                pendingUnderscore = true;
+                continue;
+            }
+            int digit = Character.digit(c, radix);
+            if (digit < 0 || c > 'f') {
+                return TokenType.ERROR;
+            }
+            if ((value >>> (64 - bitsPerDigit)) != 0) {
+                return TokenType.ERROR; // Doesn't fit in 64 bits
+            }
+            value = (value << bitsPerDigit) | digit;
+            digits++;
+            pendingUnderscore = false;
+        }
+        if (digits == 0 || pendingUnderscore) {
+            return TokenType.ERROR;
+        }
+        intValue = value;
+        return TokenType.LT_INT;
+    }
+
+//// DECIMAL NUMBERS ///////////////////////////////////////////////////////////
+
+    private TokenType scanDecimal(int start) {
+        mantissa = 0;
+        droppedDigits = 0;
+
+        if (!scanDigits()) {
+            return TokenType.ERROR;
+        }
+        int intDigits = runLength;
+        int exponent = droppedDigits;
+
+        if (pos == end) {
+            if (intDigits == 0 || droppedDigits > 0) {
+                return TokenType.ERROR; // Empty or doesn't fit in a long
+            }
+            intValue = mantissa;
+            return TokenType.LT_INT;
+        }
+
+        boolean hasDot = false;
+        if (input.charAt(pos) == '.') {
+            hasDot = true;
+            pos++;
+            int dropped = droppedDigits;
+            if (!scanDigits()) {
+                return TokenType.ERROR;
+            }
+            if (intDigits == 0 && runLength == 0) {
+                return TokenType.ERROR; // A lone "."
+            }
+            // Fraction digits that made it into the mantissa scale it down
+            exponent -= runLength - (droppedDigits - dropped);
+        } else if (intDigits == 0) {
+            return TokenType.ERROR;
+        }
+
+        if (pos < end) {
+            char c = input.charAt(pos);
+            if ((c != 'e' && c != 'E') || intDigits == 0) {
+                return TokenType.ERROR;
+            }
+            pos++;
+            boolean negative = false;
+            if (pos < end && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                negative = input.charAt(pos) == '-';
+                pos++;
+            }
+            int value = 0;
+            int digits = 0;
+            for (; pos < end; pos++) {
+                c = input.charAt(pos);
+                if (c < '0' || c > '9') {
+                    return TokenType.ERROR;
+                }
+                value = Math.min(value * 10 + (c - '0'), 100_000);
+                digits++;
+            }
+            if (digits == 0) {
+                return TokenType.ERROR;
+            }
+            exponent += negative ? -value : value;
+        } else if (!hasDot) {
+            return TokenType.ERROR;
+        }
+
+        floatValue = toDouble(start, exponent);
+        return TokenType.LT_FLOAT;
+    }
+
+    /**
+     * Scans a run of decimal digits into the mantissa, returning false on a
+     * misplaced underscore. Digits that no longer fit are counted in
+     * {@code droppedDigits}.
+     */
+    private boolean scanDigits() {
+        runLength = 0;
+        boolean pendingUnderscore = false;
+        for (; pos < end; pos++) {
+            char c = input.charAt(pos);
+            if (c == '_' && runLength > 0) {
+                pendingUnderscore = true;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                break;
+            }
+            int digit = c - '0';
+            if (droppedDigits > 0 || mantissa > (Long.MAX_VALUE - digit) / 10) {
+                droppedDigits++;
+            } else {
+                mantissa = mantissa * 10 + digit;
+            }
+            runLength++;
+            pendingUnderscore = false;
+        }
+        return !pendingUnderscore;
+    }
+
+    private double toDouble(int start, int exponent) {
+        if (droppedDigits == 0 && mantissa <= MAX_EXACT_MANTISSA) {
+            if (mantissa == 0) {
+                return 0.0;
+            } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                return mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                return mantissa / POWERS_OF_TEN[-exponent];
+            }
+        }
+        // Slow path, rare in practice
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = input.charAt(i);
+            if (c != '_') {
+                sb.append(c);
+            }
+        }
+        return Double.parseDouble(sb.toString());
+    }
+}
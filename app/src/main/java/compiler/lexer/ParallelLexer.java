@@ -0,0 +1,159 @@
+package compiler.lexer;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Lexes a large source in chunks on a {@link ForkJoinPool}.
+ *
+ * Chunks are split at line starts, preferably ones that begin a top-level
+ * {@code func} or {@code var}, and each chunk is lexed as if a token started
+ * there. That guess is wrong when a seam falls inside a string or comment, so
+ * the chunks are merged in order: the lexer of the chunk before a seam keeps
+ * going until one of its tokens starts where a token of the next chunk
+ * starts. Lexing from the same offset always gives the same tokens, so from
+ * there on the next chunk's tokens are the ones a sequential lexer would
+ * produce, and the tokens it lexed before that point are dropped.
+ */
+final class ParallelLexer {
+
+    static TokenStream run(CharSequence input, NameTable names, ForkJoinPool pool, int chunkSize) {
+        int[] bounds = split(input, chunkSize);
+        int chunkCount = bounds.length - 1;
+        if (chunkCount == 1) {
+            return TableLexer.run(input, names);
+        }
+
+        List<ForkJoinTask<TableLexer>> tasks = new ArrayList<>(chunkCount);
+        for (int k = 0; k < chunkCount; k++) {
+            int from = bounds[k];
+            // The last chunk lexes through to EOF
+            int to = k == chunkCount - 1 ? Integer.MAX_VALUE : bounds[k + 1];
+            tasks.add(pool.submit(() -> TableLexer.chunk(input, from, to)));
+        }
+        TableLexer[] chunks = new TableLexer[chunkCount];
+        for (int k = 0; k < chunkCount; k++) {
+            chunks[k] = tasks.get(k).join();
+        }
+        return merge(input, names, chunks, bounds);
+    }
+
+//// SPLITTING /////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns chunk boundaries, starting with 0 and ending with the input
+     * length. Chunks are roughly {@code chunkSize} characters.
+     */
+    static int[] split(CharSequence input, int chunkSize) {
+        int length = input.length();
+        int[] bounds = new int[length / chunkSize + 2];
+        int count = 1;
+        int target = chunkSize;
+        while (target < length) {
+            int line = nextLineStart(input, target, length);
+            if (line < 0) {
+                break;
+            }
+            int decl = nextDeclStart(input, line, Math.min(line + chunkSize / 4, length));
+            int bound = decl >= 0 ? decl : line;
+            bounds[count++] = bound;
+            target = bound + chunkSize;
+        }
+        bounds[count++] = length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    private static int nextLineStart(CharSequence input, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (input.charAt(i) == '\n') {
+                return i + 1 < end ? i + 1 : -1;
+            }
+        }
+        return -1;
+    }
+
+    // First line in [from, end) that starts with "func " or "var ", or -1
+    private static int nextDeclStart(CharSequence input, int from, int end) {
+        for (int line = from; line >= 0 && line < end; line = nextLineStart(input, line, end)) {
+            if (startsWith(input, line, "func ") || startsWith(input, line, "var ")) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence input, int offset, String prefix) {
+        if (offset + prefix.length() > input.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (input.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+//// MERGING ///////////////////////////////////////////////////////////////////
+
+    private static TokenStream merge(CharSequence input, NameTable names, TableLexer[] chunks, int[] bounds) {
+        int capacity = 0;
+        for (TableLexer chunk : chunks) {
+            capacity += chunk.tokens().size();
+        }
+        TokenStream merged = new TokenStream(input, names, capacity);
+
+        TableLexer active = chunks[0];
+        int from = 0; // First token of the active chunk to keep
+        for (int k = 1; k < chunks.length && !active.ended(); k++) {
+            int index = resync(active, chunks[k], bounds[k], bounds[k + 1]);
+            if (index >= 0) {
+                appendFrom(merged, active, from);
+                active = chunks[k];
+                from = index;
+            }
+        }
+        appendFrom(merged, active, from);
+        merged.trimToSize();
+        return merged;
+    }
+
+    /**
+     * Continues the active lexer across the seam at {@code from}, the start
+     * of the next chunk, which ends at {@code to}. Returns the index of the
+     * first token of the next chunk that the active lexer agrees with, after
+     * which the next chunk takes over. Returns -1 if the active lexer ended
+     * or got past all of the next chunk's tokens first.
+     */
+    private static int resync(TableLexer active, TableLexer next, int from, int to) {
+        if (!active.lexUntil(from)) {
+            return -1;
+        }
+        if (active.pos() == from) {
+            return 0; // Clean seam
+        }
+        TokenStream tokens = active.tokens();
+        for (boolean more = true; more; more = active.lexNext()) {
+            int last = tokens.size() - 1;
+            int start = last >= 0 ? tokens.pos(last) : -1;
+            if (start < from) {
+                continue;
+            }
+            if (start >= to) {
+                return -1;
+            }
+            int index = next.tokens().indexOfStart(start);
+            if (index >= 0) {
+                tokens.truncate(last);
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendFrom(TokenStream merged, TableLexer chunk, int from) {
+        int[] nameMap = new int[chunk.names().size()];
+        Arrays.fill(nameMap, -1);
+        merged.append(chunk.tokens(), from, chunk.tokens().size(), nameMap);
+    }
+}
@@ -0,0 +1,577 @@
+package compiler.lexer;
+
+import java.util.*;
+
+/**
+ * Table-driven lexer. Every character is mapped to a character class (a
+ * precomputed table for ASCII, {@link Character} predicates otherwise) and
+ * the token boundaries are found by walking a state-transition table until
+ * no transition applies. The state the walk stopped in decides which token
+ * is emitted, so each character costs two array loads instead of a chain of
+ * predicate calls and {@code startsWith} checks.
+ *
+ * Tokens are written straight into a {@link TokenStream}. They are exactly
+ * the same tokens as the scanner in {@link Lexer} produces, which is kept as
+ * the reference implementation.
+ */
+final class TableLexer {
+
+//// CHARACTER CLASSES /////////////////////////////////////////////////////////
+
+    private static final int
+        C_NUL = 0,        // '\0' or end of input
+        C_WS = 1,         // whitespace
+        C_LETTER = 2,     // ASCII letters except e/E
+        C_E = 3,          // e or E (exponent marker)
+        C_UNDERSCORE = 4,
+        C_DIGIT = 5,
+        C_DOT = 6,
+        C_DQUOTE = 7,
+        C_SQUOTE = 8,
+        C_BACKSLASH = 9,
+        C_NEWLINE = 10,
+        C_SLASH = 11,
+        C_STAR = 12,
+        C_PLUS = 13,
+        C_MINUS = 14,
+        C_EQUALS = 15,
+        C_BANG = 16,
+        C_LT = 17,
+        C_GT = 18,
+        C_PIPE = 19,
+        C_AMP = 20,
+        C_COLON = 21,
+        C_SEMICOLON = 22,
+        C_COMMA = 23,
+        C_LPAREN = 24,
+        C_RPAREN = 25,
+        C_LBRACE = 26,
+        C_RBRACE = 27,
+        C_OTHER = 28,
+        // Non-ASCII fallback classes
+        C_U_LETTER = 29,  // Character.isLetter
+        C_U_DIGIT = 30,   // Character.isDigit
+        C_U_ALPHA = 31,   // Character.isAlphabetic but not a letter
+        C_U_SPACE = 32,   // Character.isWhitespace
+        C_U_OTHER = 33;
+    private static final int CLASS_COUNT = 34;
+
+    private static final byte[] ASCII_CLASS = new byte[128];
+
+//// STATES ////////////////////////////////////////////////////////////////////
+
+    private static final int
+        S_DEAD = 0,
+        S_START = 1,
+        S_SPACE = 2,
+        S_WORD = 3,
+        S_NUM = 4,
+        S_NUM_E = 5,
+        S_STR = 6,
+        S_STR_ESC = 7,
+        S_STR_END = 8,
+        S_CHR_OPEN = 9,
+        S_CHR_ESC = 10,
+        S_CHR_BODY = 11,
+        S_CHR_END = 12,
+        S_LINE_COMMENT = 13,
+        S_BLOCK = 14,
+        S_BLOCK_STAR = 15,
+        S_BLOCK_END = 16,
+        S_BAD_CHAR = 17,
+        S_PIPE = 18,
+        S_AMP = 19,
+        // Symbol states, one per token type
+        S_OR = 20, S_AND = 21, S_EQ = 22, S_NEQ = 23, S_GTE = 24, S_LTE = 25,
+        S_ADDASSIGN = 26, S_SUBASSIGN = 27, S_MULASSIGN = 28, S_DIVASSIGN = 29,
+        S_COLON = 30, S_ASSIGN = 31, S_SEMICOLON = 32, S_LPAREN = 33,
+        S_RPAREN = 34, S_COMMA = 35, S_LBRACE = 36, S_RBRACE = 37, S_GT = 38,
+        S_LT = 39, S_ADD = 40, S_SUB = 41, S_MUL = 42, S_DIV = 43, S_NOT = 44;
+    private static final int STATE_COUNT = 45;
+
+    // Action taken for the state the walk stopped in
+    private static final byte
+        A_EOF = 0,
+        A_SKIP = 1,
+        A_WORD = 2,
+        A_NUMBER = 3,
+        A_STRING = 4,
+        A_CHAR = 5,
+        A_OPEN_ERROR = 6, // unterminated string/char, lexeme runs to end of input
+        A_BAD_CHAR = 7,
+        A_SYMBOL = 8;
+
+    private static final short[] NEXT = new short[STATE_COUNT * CLASS_COUNT];
+    private static final byte[] ACTION = new byte[STATE_COUNT];
+    private static final TokenType[] SYMBOL_TYPE = new TokenType[STATE_COUNT];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_CLASS[c] = (byte) classify((char) c);
+        }
+        buildTransitions();
+    }
+
+    private static int classify(char c) {
+        switch (c) {
+            case '\0': return C_NUL;
+            case 'e': case 'E': return C_E;
+            case '_': return C_UNDERSCORE;
+            case '.': return C_DOT;
+            case '"': return C_DQUOTE;
+            case '\'': return C_SQUOTE;
+            case '\\': return C_BACKSLASH;
+            case '/': return C_SLASH;
+            case '*': return C_STAR;
+            case '+': return C_PLUS;
+            case '-': return C_MINUS;
+            case '=': return C_EQUALS;
+            case '!': return C_BANG;
+            case '<': return C_LT;
+            case '>': return C_GT;
+            case '|': return C_PIPE;
+            case '&': return C_AMP;
+            case ':': return C_COLON;
+            case ';': return C_SEMICOLON;
+            case ',': return C_COMMA;
+            case '(': return C_LPAREN;
+            case ')': return C_RPAREN;
+            case '{': return C_LBRACE;
+            case '}': return C_RBRACE;
+            default: break;
+        }
+        if (c < 128) {
+            if (c == '\n') return C_NEWLINE;
+            if (Character.isWhitespace(c)) return C_WS;
+            if (Character.isLetter(c)) return C_LETTER;
+            if (Character.isDigit(c)) return C_DIGIT;
+            return C_OTHER;
+        }
+        if (Character.isWhitespace(c)) return C_U_SPACE;
+        if (Character.isLetter(c)) return C_U_LETTER;
+        if (Character.isDigit(c)) return C_U_DIGIT;
+        if (Character.isAlphabetic(c)) return C_U_ALPHA;
+        return C_U_OTHER;
+    }
+
+    private static void on(int state, int target, int... classes) {
+        for (int cls : classes) {
+            NEXT[state * CLASS_COUNT + cls] = (short) target;
+        }
+    }
+
+    private static void onAll(int state, int target) {
+        for (int cls = 0; cls < CLASS_COUNT; cls++) {
+            NEXT[state * CLASS_COUNT + cls] = (short) target;
+        }
+    }
+
+    private static void symbol(int state, TokenType type) {
+        ACTION[state] = A_SYMBOL;
+        SYMBOL_TYPE[state] = type;
+    }
+
+    private static void buildTransitions() {
+        // Whitespace
+        on(S_START, S_SPACE, C_WS, C_NEWLINE, C_U_SPACE);
+        on(S_SPACE, S_SPACE, C_WS, C_NEWLINE, C_U_SPACE);
+        ACTION[S_SPACE] = A_SKIP;
+
+        // Identifiers and keywords
+        on(S_START, S_WORD, C_LETTER, C_E, C_UNDERSCORE, C_U_LETTER);
+        on(S_WORD, S_WORD, C_LETTER, C_E, C_UNDERSCORE, C_DIGIT, C_U_LETTER, C_U_DIGIT);
+        ACTION[S_WORD] = A_WORD;
+
+        // Numbers: a run of digits, letters, dots and underscores, where an
+        // exponent marker may also swallow a following sign
+        on(S_START, S_NUM, C_DIGIT, C_U_DIGIT, C_DOT);
+        for (int s : new int[] { S_NUM, S_NUM_E }) {
+            on(s, S_NUM, C_DIGIT, C_LETTER, C_UNDERSCORE, C_DOT, C_U_LETTER, C_U_DIGIT, C_U_ALPHA);
+            on(s, S_NUM_E, C_E);
+            ACTION[s] = A_NUMBER;
+        }
+        on(S_NUM_E, S_NUM, C_PLUS, C_MINUS);
+
+        // Strings
+        on(S_START, S_STR, C_DQUOTE);
+        onAll(S_STR, S_STR);
+        on(S_STR, S_DEAD, C_NUL);
+        on(S_STR, S_STR_ESC, C_BACKSLASH);
+        on(S_STR, S_STR_END, C_DQUOTE);
+        onAll(S_STR_ESC, S_STR);
+        ACTION[S_STR] = A_OPEN_ERROR;
+        ACTION[S_STR_ESC] = A_OPEN_ERROR;
+        ACTION[S_STR_END] = A_STRING;
+
+        // Char literals
+        on(S_START, S_CHR_OPEN, C_SQUOTE);
+        onAll(S_CHR_OPEN, S_CHR_BODY);
+        on(S_CHR_OPEN, S_DEAD, C_NUL);
+        on(S_CHR_OPEN, S_CHR_ESC, C_BACKSLASH);
+        onAll(S_CHR_ESC, S_CHR_BODY);
+        on(S_CHR_BODY, S_CHR_END, C_SQUOTE);
+        ACTION[S_CHR_OPEN] = A_OPEN_ERROR;
+        ACTION[S_CHR_ESC] = A_OPEN_ERROR;
+        ACTION[S_CHR_BODY] = A_OPEN_ERROR;
+        ACTION[S_CHR_END] = A_CHAR;
+
+        // Comments, an unterminated block comment is silently dropped
+        on(S_DIV, S_LINE_COMMENT, C_SLASH);
+        onAll(S_LINE_COMMENT, S_LINE_COMMENT);
+        on(S_LINE_COMMENT, S_DEAD, C_NUL, C_NEWLINE);
+        ACTION[S_LINE_COMMENT] = A_SKIP;
+        on(S_DIV, S_BLOCK, C_STAR);
+        onAll(S_BLOCK, S_BLOCK);
+        on(S_BLOCK, S_DEAD, C_NUL);
+        on(S_BLOCK, S_BLOCK_STAR, C_STAR);
+        onAll(S_BLOCK_STAR, S_BLOCK);
+        on(S_BLOCK_STAR, S_DEAD, C_NUL);
+        on(S_BLOCK_STAR, S_BLOCK_STAR, C_STAR);
+        on(S_BLOCK_STAR, S_BLOCK_END, C_SLASH);
+        ACTION[S_BLOCK] = A_SKIP;
+        ACTION[S_BLOCK_STAR] = A_SKIP;
+        ACTION[S_BLOCK_END] = A_SKIP;
+
+        // Symbols
+        on(S_START, S_COLON, C_COLON);
+        on(S_START, S_SEMICOLON, C_SEMICOLON);
+        on(S_START, S_COMMA, C_COMMA);
+        on(S_START, S_LPAREN, C_LPAREN);
+        on(S_START, S_RPAREN, C_RPAREN);
+        on(S_START, S_LBRACE, C_LBRACE);
+        on(S_START, S_RBRACE, C_RBRACE);
+        on(S_START, S_ASSIGN, C_EQUALS);
+        on(S_START, S_NOT, C_BANG);
+        on(S_START, S_GT, C_GT);
+        on(S_START, S_LT, C_LT);
+        on(S_START, S_ADD, C_PLUS);
+        on(S_START, S_SUB, C_MINUS);
+        on(S_START, S_MUL, C_STAR);
+        on(S_START, S_DIV, C_SLASH);
+        on(S_START, S_PIPE, C_PIPE);
+        on(S_START, S_AMP, C_AMP);
+        on(S_PIPE, S_OR, C_PIPE);
+        on(S_AMP, S_AND, C_AMP);
+        on(S_ASSIGN, S_EQ, C_EQUALS);
+        on(S_NOT, S_NEQ, C_EQUALS);
+        on(S_GT, S_GTE, C_EQUALS);
+        on(S_LT, S_LTE, C_EQUALS);
+        on(S_ADD, S_ADDASSIGN, C_EQUALS);
+        on(S_SUB, S_SUBASSIGN, C_EQUALS);
+        on(S_MUL, S_MULASSIGN, C_EQUALS);
+        on(S_DIV, S_DIVASSIGN, C_EQUALS);
+        symbol(S_OR,        TokenType.SY_OR);
+        symbol(S_AND,       TokenType.SY_AND);
+        symbol(S_EQ,        TokenType.SY_EQ);
+        symbol(S_NEQ,       TokenType.SY_NEQ);
+        symbol(S_GTE,       TokenType.SY_GTE);
+        symbol(S_LTE,       TokenType.SY_LTE);
+        symbol(S_ADDASSIGN, TokenType.SY_ADDASSIGN);
+        symbol(S_SUBASSIGN, TokenType.SY_SUBASSIGN);
+        symbol(S_MULASSIGN, TokenType.SY_MULASSIGN);
+        symbol(S_DIVASSIGN, TokenType.SY_DIVASSIGN);
+        symbol(S_COLON,     TokenType.SY_COLON);
+        symbol(S_ASSIGN,    TokenType.SY_ASSIGN);
+        symbol(S_SEMICOLON, TokenType.SY_SEMICOLON);
+        symbol(S_LPAREN,    TokenType.SY_LPAREN);
+        symbol(S_RPAREN,    TokenType.SY_RPAREN);
+        symbol(S_COMMA,     TokenType.SY_COMMA);
+        symbol(S_LBRACE,    TokenType.SY_LBRACE);
+        symbol(S_RBRACE,    TokenType.SY_RBRACE);
+        symbol(S_GT,        TokenType.SY_GT);
+        symbol(S_LT,        TokenType.SY_LT);
+        symbol(S_ADD,       TokenType.SY_ADD);
+        symbol(S_SUB,       TokenType.SY_SUB);
+        symbol(S_MUL,       TokenType.SY_MUL);
+        symbol(S_DIV,       TokenType.SY_DIV);
+        symbol(S_NOT,       TokenType.SY_NOT);
+
+        // Anything else is a single unrecognized character
+        on(S_START, S_BAD_CHAR, C_BACKSLASH, C_OTHER, C_U_OTHER, C_U_ALPHA);
+        ACTION[S_PIPE] = A_BAD_CHAR;
+        ACTION[S_AMP] = A_BAD_CHAR;
+        ACTION[S_BAD_CHAR] = A_BAD_CHAR;
+
+        ACTION[S_START] = A_EOF;
+    }
+
+//// KEYWORDS ////////////////////////////////////////////////////////////////
+
+    private static final String[] KEYWORDS = {
+        "var", "func", "if", "else", "while", "for", "return",
+        "int", "float", "char", "string", "bool", "true", "false",
+    };
+    private static final TokenType[] KEYWORD_TYPES = {
+        TokenType.KW_VAR, TokenType.KW_FUNC, TokenType.KW_IF, TokenType.KW_ELSE,
+        TokenType.KW_WHILE, TokenType.KW_FOR, TokenType.KW_RETURN,
+        TokenType.TY_INT, TokenType.TY_FLOAT, TokenType.TY_CHAR,
+        TokenType.TY_STRING, TokenType.TY_BOOL, TokenType.LT_BOOL, TokenType.LT_BOOL,
+    };
+    // Keyword indices bucketed by first letter
+    private static final int[][] KEYWORD_BUCKETS = new int[26][];
+
+    static {
+        for (int letter = 0; letter < 26; letter++) {
+            int[] bucket = new int[0];
+            for (int k = 0; k < KEYWORDS.length; k++) {
+                if (KEYWORDS[k].charAt(0) == 'a' + letter) {
+                    bucket = Arrays.copyOf(bucket, bucket.length + 1);
+                    bucket[bucket.length - 1] = k;
+                }
+            }
+            KEYWORD_BUCKETS[letter] = bucket;
+        }
+    }
+
+    private static TokenType wordType(CharSequence input, int start, int end) {
+        char first = input.charAt(start);
+        if (first >= 'a' && first <= 'z') {
+            int length = end - start;
+            for (int k : KEYWORD_BUCKETS[first - 'a']) {
+                String keyword = KEYWORDS[k];
+                if (keyword.length() == length && matches(keyword, input, start)) {
+                    return KEYWORD_TYPES[k];
+                }
+            }
+        }
+        return TokenType.IDENT;
+    }
+
+    private static boolean matches(String keyword, CharSequence input, int start) {
+        for (int i = 1; i < keyword.length(); i++) {
+            if (keyword.charAt(i) != input.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+//// MAIN LOGIC ////////////////////////////////////////////////////////////////
+
+    private final CharSequence input;
+    private final CharWindow window; // Refillable input when streaming, else null
+    private final Utf8Source utf8;   // Byte-addressed input, else null
+    private final NameTable names;
+    private final NumberScanner numbers = new NumberScanner();
+    private TokenStream tokens;
+    private int limit; // End of the input, or of the buffered part when streaming
+    private int start; // Start of the token being lexed
+    private int pos;
+    private int stop = Integer.MAX_VALUE; // No tokens are started at or after this
+    private boolean ended; // EOF was added
+
+    static TokenStream run(CharSequence input, NameTable names) {
+        TableLexer lexer = new TableLexer(input, null, names);
+        // Roughly one token per five characters of typical source
+        lexer.tokens = new TokenStream(input, names, input.length() / 5);
+        while (lexer.next()) {
+            // Lex until EOF
+        }
+        lexer.tokens.trimToSize();
+        return lexer.tokens;
+    }
+
+    /**
+     * Returns a stream that is lexed from the given window as its consumer
+     * asks for tokens.
+     */
+    static TokenStream stream(CharWindow window, NameTable names) {
+        TableLexer lexer = new TableLexer(window, window, names);
+        lexer.tokens = new TokenStream(window, names, 256);
+        lexer.tokens.setProducer(lexer);
+        return lexer.tokens;
+    }
+
+    /**
+     * Lexes the tokens that start in [from, to) into a stream of their own,
+     * as if a token started at {@code from}. The last token may run past
+     * {@code to}. The lexer is returned so the caller can continue it.
+     */
+    static TableLexer chunk(CharSequence input, int from, int to) {
+        int capacity = (Math.min(to, input.length()) - from) / 5;
+        TableLexer lexer = at(input, from, new NameTable(), capacity);
+        lexer.lexUntil(to);
+        return lexer;
+    }
+
+    /**
+     * Returns a lexer that starts at {@code from}, as if a token started
+     * there, and adds tokens to a stream of its own.
+     */
+    static TableLexer at(CharSequence input, int from, NameTable names, int capacity) {
+        TableLexer lexer = new TableLexer(input, null, names);
+        lexer.tokens = new TokenStream(input, names, capacity);
+        lexer.pos = from;
+        return lexer;
+    }
+
+    /**
+     * Lexes tokens while they start before the given offset. Returns false
+     * once EOF was added.
+     */
+    boolean lexUntil(int offset) {
+        stop = offset;
+        while (next()) {
+            // Lex until the offset or EOF
+        }
+        return !ended;
+    }
+
+    // Lexes one more token regardless of where it starts
+    boolean lexNext() {
+        stop = Integer.MAX_VALUE;
+        return next();
+    }
+
+    TokenStream tokens() {
+        return tokens;
+    }
+
+    NameTable names() {
+        return names;
+    }
+
+    // Offset where the next token will be looked for
+    int pos() {
+        return pos;
+    }
+
+    boolean ended() {
+        return ended;
+    }
+
+    private TableLexer(CharSequence input, CharWindow window, NameTable names) {
+        this.input = input;
+        this.window = window;
+        this.utf8 = input instanceof Utf8Source source ? source : null;
+        this.names = names;
+        this.limit = input.length();
+    }
+
+    private char charAt(int pos) {
+        return pos < limit ? input.charAt(pos) : refill(pos);
+    }
+
+    private char refill(int pos) {
+        while (window != null && pos >= limit) {
+            if (!window.fill(tokens.retainedStart(start))) {
+                break;
+            }
+            limit = window.length();
+        }
+        return pos < limit ? input.charAt(pos) : '\0';
+    }
+
+    private static int classOf(char c) {
+        return c < 128 ? ASCII_CLASS[c] : classify(c);
+    }
+
+    // Offsets advance by one per character, except over multi-byte UTF-8
+    private int width(char c, int pos) {
+        return c < 128 || utf8 == null ? 1 : utf8.width(pos);
+    }
+
+    /**
+     * Lexes the next token into the stream, skipping whitespace and comments.
+     * Returns false once the EOF token was added, or when the next token
+     * would start at or after {@link #stop}.
+     */
+    boolean next() {
+        while (true) {
+            start = pos;
+            if (start >= stop) {
+                return false;
+            }
+            int state = S_START;
+            while (true) {
+                char c = charAt(pos);
+                int next = NEXT[state * CLASS_COUNT + classOf(c)];
+                if (next == S_DEAD) {
+                    break;
+                }
+                state = next;
+                pos += width(c, pos);
+            }
+
+            switch (ACTION[state]) {
+                case A_EOF:
+                    tokens.add(TokenType.EOF, pos, pos);
+                    ended = true;
+                    return false;
+                case A_SKIP:
+                    continue;
+                case A_WORD:
+                    TokenType type = wordType(input, start, pos);
+                    if (type == TokenType.IDENT) {
+                        tokens.addName(type, start, pos, intern(start, pos));
+                    } else {
+                        tokens.add(type, start, pos);
+                    }
+                    break;
+                case A_NUMBER:
+                    switch (numbers.scan(input, start, pos)) {
+                        case LT_INT -> tokens.addInt(start, pos, numbers.intValue());
+                        case LT_FLOAT -> tokens.addFloat(start, pos, numbers.floatValue());
+                        default -> tokens.add(TokenType.ERROR, start, pos);
+                    }
+                    break;
+                case A_STRING:
+                    tokens.addName(TokenType.LT_STRING, start, pos, internString(start, pos));
+                    break;
+                case A_CHAR:
+                    tokens.add(TokenType.LT_CHAR, start, pos);
+                    break;
+                case A_OPEN_ERROR:
+                    // The lexeme runs to the end of the input, or as far as a
+                    // streamed input was scanned
+                    tokens.add(TokenType.ERROR, start, window == null ? limit : Math.min(pos, limit));
+                    break;
+                case A_BAD_CHAR:
+                    pos = start + width(input.charAt(start), start);
+                    tokens.add(TokenType.ERROR, start, pos);
+                    break;
+                default:
+                    tokens.add(SYMBOL_TYPE[state], start, pos);
+                    break;
+            }
+            return true;
+        }
+    }
+
+    // Interns [start, end) of the input, decoding non-ASCII UTF-8 first
+    private int intern(int start, int end) {
+        if (utf8 != null && !utf8.isAscii(start, end)) {
+            return names.intern(utf8.subSequence(start, end));
+        }
+        return names.intern(input, start, end);
+    }
+
+    // Interns the value of the string literal spanning [start, end)
+    private int internString(int start, int end) {
+        CharSequence chars = input;
+        int from = start + 1;
+        int to = end - 1;
+        if (utf8 != null && !utf8.isAscii(from, to)) {
+            chars = utf8.subSequence(from, to);
+            from = 0;
+            to = chars.length();
+        }
+        int escape = from;
+        while (escape < to && chars.charAt(escape) != '\\') {
+            escape++;
+        }
+        if (escape == to) {
+            return chars == input ? intern(from, to) : names.intern(chars.toString());
+        }
+        StringBuilder sb = new StringBuilder(to - from);
+        sb.append(chars, from, escape);
+        for (int i = escape; i < to; i++) {
+            char c = chars.charAt(i);
+            if (c == '\\') {
+                c = Lexer.unescape(chars.charAt(++i));
+            }
+            sb.append(c);
+        }
+        return names.intern(sb.toString());
+    }
+}
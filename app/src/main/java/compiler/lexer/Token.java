@@ -4,11 +4,21 @@ public class Token {
     private TokenType type;
     private String lexeme;
     private int pos;
+    private int symbol;
 
     public Token(TokenType type, String lexeme, int pos) {
+        this(type, lexeme, pos, -1);
+    }
+
+    /**
+     * Creates a token whose name (identifier or string literal value) was
+     * interned in a {@link NameTable} under the given id.
+     */
+    public Token(TokenType type, String lexeme, int pos, int symbol) {
         this.type = type;
         this.lexeme = lexeme;
         this.pos = pos;
+        this.symbol = symbol;
     }
 
     public TokenType getType() {
@@ -23,6 +33,14 @@ public class Token {
         return pos;
     }
 
+    /**
+     * Id of this token's name in the {@link NameTable} it was interned in,
+     * or -1 if it wasn't interned.
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
     public String toString() {
         return String.format("[%s '%s']", type, lexeme);
     }
@@ -8,6 +8,11 @@ public class TokenLiteral extends Token {
         this.value = value;
     }
 
+    public TokenLiteral(TokenType type, String lexeme, Object value, int pos, int symbol) {
+        super(type, lexeme, pos, symbol);
+        this.value = value;
+    }
+
     public Object getValue() {
         return value;
     }
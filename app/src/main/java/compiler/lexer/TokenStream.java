@@ -0,0 +1,556 @@
+package compiler.lexer;
+
+import java.util.*;
+
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+
+/**
+ * Packed token stream. Tokens are stored in parallel primitive arrays (type
+ * ordinal, lexeme start and length) instead of one {@link Token} object per
+ * token; lexemes are ranges of the source text and only become strings when
+ * asked for.
+ *
+ * Int and float literal values live unboxed in a literal pool. Identifiers
+ * and string literal values are interned in a {@link NameTable} shared with
+ * later stages, char and bool literal values are decoded on demand.
+ *
+ * {@link #asList()} adapts the stream to the {@code List<Token>} API used by
+ * existing callers, materializing tokens as they are read.
+ *
+ * A stream returned by {@link Lexer#stream} is lexed on demand: {@link #has}
+ * pulls more tokens from the lexer as the consumer advances, and tokens
+ * before the index passed to {@link #release} are dropped to keep the
+ * arrays bounded. Indices always count from the start of the file.
+ */
+public final class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final byte IDENT = (byte) TokenType.IDENT.ordinal();
+    private static final byte LT_STRING = (byte) TokenType.LT_STRING.ordinal();
+    private static final byte LT_INT = (byte) TokenType.LT_INT.ordinal();
+    private static final byte LT_FLOAT = (byte) TokenType.LT_FLOAT.ordinal();
+    private static final byte ERROR = (byte) TokenType.ERROR.ordinal();
+    private static final int NO_LITERAL = -1;
+
+    private final CharSequence text;
+    private final NameTable names;
+    private int size;        // Number of tokens lexed so far
+    private int first;       // Index of the token in slot 0
+    private int released;    // Tokens before this index may be dropped
+    private TableLexer producer; // Lexes more tokens on demand, null once complete
+    private byte[] types;
+    private int[] starts;    // Lexeme offset into text
+    private int[] lengths;
+    private int[] positions; // Source offset, same array as starts when text is the source
+    private int[] literals;  // Index into the literal pool, name id, or NO_LITERAL
+    private long[] pool;     // Int values, or raw bits of float values
+    private int poolSize;
+    private int[] openErrors = new int[4]; // Indices of error tokens running to the end of text, ascending
+    private int openErrorCount;
+
+    TokenStream(CharSequence source, NameTable names, int capacity) {
+        this(source, names, capacity, true);
+    }
+
+    private TokenStream(CharSequence text, NameTable names, int capacity, boolean textIsSource) {
+        this.text = text;
+        this.names = names;
+        capacity = Math.max(capacity, 16);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.positions = textIsSource ? starts : new int[capacity];
+        this.literals = new int[capacity];
+        this.pool = new long[Math.max(capacity / 8, 16)];
+    }
+
+    /**
+     * Packs a list of tokens, reusing the underlying stream when the list is
+     * an {@link #asList()} view.
+     */
+    public static TokenStream of(List<Token> tokens) {
+        if (tokens instanceof ListView view) {
+            return view.stream;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Token token : tokens) {
+            text.append(token.getLexeme());
+        }
+        TokenStream stream = new TokenStream(text.toString(), new NameTable(), tokens.size(), false);
+        int offset = 0;
+        for (Token token : tokens) {
+            int end = offset + token.getLexeme().length();
+            int slot = stream.add(token.getType(), offset, end);
+            stream.positions[slot] = token.getPos();
+            if (token.getType() == TokenType.IDENT) {
+                stream.literals[slot] = stream.names.intern(token.getLexeme());
+            } else if (token instanceof TokenLiteral literal) {
+                switch (token.getType()) {
+                    case LT_INT -> stream.addLiteral(slot, (Long) literal.getValue());
+                    case LT_FLOAT -> stream.addLiteral(slot,
+                        Double.doubleToRawLongBits((Double) literal.getValue()));
+                    case LT_STRING -> stream.literals[slot] =
+                        stream.names.intern((String) literal.getValue());
+                    default -> { }
+                }
+            }
+            offset = end;
+        }
+        return stream;
+    }
+
+//// BUILDING //////////////////////////////////////////////////////////////////
+
+    // Returns the slot of the new token
+    int add(TokenType type, int start, int end) {
+        int slot = size - first;
+        if (slot == types.length) {
+            if (released - first > types.length / 2) {
+                compact();
+            } else {
+                grow();
+            }
+            slot = size - first;
+        }
+        types[slot] = (byte) type.ordinal();
+        starts[slot] = start;
+        lengths[slot] = end - start;
+        literals[slot] = NO_LITERAL;
+        if (type == TokenType.ERROR && end == text.length()) {
+            addOpenError(size);
+        }
+        size++;
+        return slot;
+    }
+
+    void addName(TokenType type, int start, int end, int name) {
+        int slot = add(type, start, end); // May grow literals
+        literals[slot] = name;
+    }
+
+    void addInt(int start, int end, long value) {
+        addLiteral(add(TokenType.LT_INT, start, end), value);
+    }
+
+    void addFloat(int start, int end, double value) {
+        addLiteral(add(TokenType.LT_FLOAT, start, end), Double.doubleToRawLongBits(value));
+    }
+
+    private void addLiteral(int slot, long bits) {
+        if (poolSize == pool.length) {
+            pool = Arrays.copyOf(pool, poolSize * 2);
+        }
+        pool[poolSize] = bits;
+        literals[slot] = poolSize++;
+    }
+
+    /**
+     * Appends tokens [from, to) of another stream over the same source. Name
+     * ids are translated through {@code nameMap}, whose unset (-1) entries
+     * are filled in by interning the other stream's names here.
+     */
+    void append(TokenStream other, int from, int to, int[] nameMap) {
+        int count = to - from;
+        while (size - first + count > types.length) {
+            grow();
+        }
+        int slot = size - first;
+        System.arraycopy(other.types, from - other.first, types, slot, count);
+        System.arraycopy(other.starts, from - other.first, starts, slot, count);
+        System.arraycopy(other.lengths, from - other.first, lengths, slot, count);
+        for (int i = 0; i < count; i++, slot++) {
+            int literal = other.literals[from - other.first + i];
+            byte type = types[slot];
+            if (type == IDENT || type == LT_STRING) {
+                if (nameMap[literal] < 0) {
+                    nameMap[literal] = names.intern(other.names.name(literal));
+                }
+                literals[slot] = nameMap[literal];
+            } else if (type == LT_INT || type == LT_FLOAT) {
+                addLiteral(slot, other.pool[literal]);
+            } else {
+                literals[slot] = NO_LITERAL;
+                if (type == ERROR && starts[slot] + lengths[slot] == text.length()) {
+                    addOpenError(size + i);
+                }
+            }
+        }
+        size += count;
+    }
+
+    private void addOpenError(int index) {
+        if (openErrorCount == openErrors.length) {
+            openErrors = Arrays.copyOf(openErrors, openErrorCount * 2);
+        }
+        openErrors[openErrorCount++] = index;
+    }
+
+    // Drops the tokens from the given index on
+    void truncate(int index) {
+        size = index;
+        while (openErrorCount > 0 && openErrors[openErrorCount - 1] >= index) {
+            openErrorCount--;
+        }
+    }
+
+    /**
+     * Builds the stream of an edited source from the stream of the source
+     * before the edit: its tokens before {@code keep}, the re-lexed tokens of
+     * {@code middle}, and its tokens from {@code resume} on, moved by
+     * {@code delta}. Apart from moving the tail, this is only array copies.
+     */
+    static TokenStream splice(TokenStream old, CharSequence text, int keep, TokenStream middle, int resume, int delta) {
+        int mid = middle.size;
+        int tail = old.size - resume;
+        TokenStream stream = new TokenStream(text, old.names, keep + mid + tail);
+        stream.pool = new long[Math.max(old.poolSize + middle.poolSize, 16)];
+        System.arraycopy(old.pool, 0, stream.pool, 0, old.poolSize);
+        System.arraycopy(middle.pool, 0, stream.pool, old.poolSize, middle.poolSize);
+        stream.poolSize = old.poolSize + middle.poolSize;
+
+        System.arraycopy(old.types, 0, stream.types, 0, keep);
+        System.arraycopy(old.starts, 0, stream.starts, 0, keep);
+        System.arraycopy(old.lengths, 0, stream.lengths, 0, keep);
+        System.arraycopy(old.literals, 0, stream.literals, 0, keep);
+
+        System.arraycopy(middle.types, 0, stream.types, keep, mid);
+        System.arraycopy(middle.starts, 0, stream.starts, keep, mid);
+        System.arraycopy(middle.lengths, 0, stream.lengths, keep, mid);
+        for (int i = 0; i < mid; i++) {
+            int literal = middle.literals[i];
+            byte type = middle.types[i];
+            // Pool entries of the middle come after the old ones
+            stream.literals[keep + i] = type == LT_INT || type == LT_FLOAT ? literal + old.poolSize : literal;
+        }
+
+        int at = keep + mid;
+        System.arraycopy(old.types, resume, stream.types, at, tail);
+        System.arraycopy(old.lengths, resume, stream.lengths, at, tail);
+        System.arraycopy(old.literals, resume, stream.literals, at, tail);
+        int[] starts = stream.starts;
+        int[] oldStarts = old.starts;
+        for (int i = 0; i < tail; i++) {
+            starts[at + i] = oldStarts[resume + i] + delta;
+        }
+        stream.size = at + tail;
+
+        // Kept tokens don't move, the tail moves with the end of the text
+        for (int i = 0; i < old.openErrorCount; i++) {
+            int index = old.openErrors[i];
+            if (index < keep && old.end(index) == text.length()) {
+                stream.addOpenError(index);
+            }
+        }
+        for (int i = 0; i < middle.openErrorCount; i++) {
+            stream.addOpenError(keep + middle.openErrors[i]);
+        }
+        for (int i = 0; i < old.openErrorCount; i++) {
+            int index = old.openErrors[i];
+            if (index >= resume) {
+                stream.addOpenError(index - resume + at);
+            }
+        }
+        return stream;
+    }
+
+    CharSequence text() {
+        return text;
+    }
+
+    // Whether every token is in memory and indexes the source text directly,
+    // unlike a stream lexed on demand or packed from a token list
+    boolean isWholeSource() {
+        return producer == null && first == 0 && positions == starts;
+    }
+
+    // Offset just past the lexeme
+    int end(int index) {
+        int slot = index - first;
+        return starts[slot] + lengths[slot];
+    }
+
+    /**
+     * Index of the first error token before {@code limit} whose lexeme runs
+     * to the end of the text, like an unterminated literal's, or
+     * {@code limit} if there's none. Such tokens are recorded as they're
+     * added, so this doesn't scan the stream.
+     */
+    int firstOpenError(int limit) {
+        return openErrorCount > 0 && openErrors[0] < limit ? openErrors[0] : limit;
+    }
+
+    /**
+     * Number of tokens that start before the given source offset.
+     */
+    int countBefore(int offset) {
+        int slot = Arrays.binarySearch(starts, 0, size - first, offset);
+        return (slot >= 0 ? slot : -slot - 1) + first;
+    }
+
+    /**
+     * Index of the token starting at the given source offset, or -1.
+     */
+    int indexOfStart(int start) {
+        int slot = Arrays.binarySearch(starts, 0, size - first, start);
+        return slot >= 0 ? slot + first : -1;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        boolean aliased = positions == starts;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        positions = aliased ? starts : Arrays.copyOf(positions, capacity);
+        literals = Arrays.copyOf(literals, capacity);
+    }
+
+    // Drops released tokens and the pool entries only they referenced
+    private void compact() {
+        int drop = released - first;
+        int kept = size - released;
+        System.arraycopy(types, drop, types, 0, kept);
+        System.arraycopy(starts, drop, starts, 0, kept);
+        System.arraycopy(lengths, drop, lengths, 0, kept);
+        if (positions != starts) {
+            System.arraycopy(positions, drop, positions, 0, kept);
+        }
+        System.arraycopy(literals, drop, literals, 0, kept);
+        int newPoolSize = 0;
+        for (int slot = 0; slot < kept; slot++) {
+            if (types[slot] == LT_INT || types[slot] == LT_FLOAT) {
+                pool[newPoolSize] = pool[literals[slot]];
+                literals[slot] = newPoolSize++;
+            }
+        }
+        poolSize = newPoolSize;
+        first = released;
+    }
+
+//// ON-DEMAND LEXING //////////////////////////////////////////////////////////
+
+    void setProducer(TableLexer producer) {
+        this.producer = producer;
+    }
+
+    /**
+     * Returns whether the token at the given index exists, lexing more of a
+     * streamed source if needed.
+     *
+     * @throws ErrorList when a streamed source contains an unrecognized token
+     */
+    public boolean has(int index) {
+        while (index >= size && producer != null) {
+            if (!producer.next()) {
+                producer = null;
+            }
+            int last = size - 1 - first;
+            if (types[last] == ERROR) {
+                producer = null;
+                String lexeme = lexeme(size - 1);
+                throw new ErrorList(
+                    ErrorCode.UNRECOGNIZED_TOKEN,
+                    String.format("Unrecognized token `%s`", lexeme),
+                    positions[last],
+                    lexeme.length()
+                );
+            }
+        }
+        return index < size;
+    }
+
+    /**
+     * Tells the stream that tokens before the given index won't be read
+     * again, so a streamed source may drop them.
+     */
+    public void release(int index) {
+        if (producer != null && index > released) {
+            released = Math.min(index, size);
+        }
+    }
+
+    /**
+     * Source offset of the oldest token that may still be read, or
+     * {@code fallback} when there's none.
+     */
+    int retainedStart(int fallback) {
+        return released < size ? Math.min(starts[released - first], fallback) : fallback;
+    }
+
+//// ACCESS ////////////////////////////////////////////////////////////////////
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index - first]];
+    }
+
+    public int pos(int index) {
+        return positions[index - first];
+    }
+
+    public String lexeme(int index) {
+        int slot = index - first;
+        if (types[slot] == IDENT) {
+            return names.name(literals[slot]);
+        }
+        int length = lengths[slot];
+        return length == 0 ? "" : text.subSequence(starts[slot], starts[slot] + length).toString();
+    }
+
+    /**
+     * Id of the identifier or string literal value in {@link #names()}, or
+     * -1 for other tokens.
+     */
+    public int symbol(int index) {
+        int slot = index - first;
+        return types[slot] == IDENT || types[slot] == LT_STRING ? literals[slot] : -1;
+    }
+
+    public NameTable names() {
+        return names;
+    }
+
+    public long intValue(int index) {
+        return pool[literals[index - first]];
+    }
+
+    public double floatValue(int index) {
+        return Double.longBitsToDouble(pool[literals[index - first]]);
+    }
+
+    public boolean boolValue(int index) {
+        return text.charAt(starts[index - first]) == 't';
+    }
+
+    public char charValue(int index) {
+        int start = starts[index - first];
+        char c = text.charAt(start + 1);
+        return c == '\\' ? Lexer.unescape(text.charAt(start + 2)) : c;
+    }
+
+    public String stringValue(int index) {
+        return names.name(literals[index - first]);
+    }
+
+    /**
+     * Materializes the token at the given index.
+     */
+    public Token get(int index) {
+        TokenType type = type(index);
+        String lexeme = lexeme(index);
+        int pos = pos(index);
+        int symbol = symbol(index);
+        return switch (type) {
+            case LT_INT    -> new TokenLiteral(type, lexeme, intValue(index), pos);
+            case LT_FLOAT  -> new TokenLiteral(type, lexeme, floatValue(index), pos);
+            case LT_STRING -> new TokenLiteral(type, lexeme, stringValue(index), pos, symbol);
+            case LT_CHAR   -> new TokenLiteral(type, lexeme, charValue(index), pos);
+            case LT_BOOL   -> new TokenLiteral(type, lexeme, boolValue(index), pos);
+            case IDENT     -> new Token(type, lexeme, pos, symbol);
+            default        -> new Token(type, lexeme, pos);
+        };
+    }
+
+    public List<Token> asList() {
+        return new ListView(this);
+    }
+
+    private static final class ListView extends AbstractList<Token> implements RandomAccess {
+        private final TokenStream stream;
+
+        ListView(TokenStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public Token get(int index) {
+            return stream.get(Objects.checkIndex(index, stream.size));
+        }
+
+        @Override
+        public int size() {
+            return stream.size;
+        }
+    }
+
+//// FOOTPRINT /////////////////////////////////////////////////////////////////
+
+    // Object layout sizes on a 64-bit JVM with compressed references
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long arrayBytes(int length, int elementSize) {
+        return align(ARRAY_HEADER + (long) length * elementSize);
+    }
+
+    static long stringBytes(int length) {
+        return align(OBJECT_HEADER + 12) + arrayBytes(length, 1); // Latin-1 String
+    }
+
+    /**
+     * Approximate heap size of this stream and its name table in bytes, not
+     * counting the source text it indexes into.
+     */
+    public long footprintBytes() {
+        long bytes = align(OBJECT_HEADER + 4 * REFERENCE + 8)
+            + arrayBytes(types.length, 1)
+            + arrayBytes(starts.length, 4)
+            + arrayBytes(lengths.length, 4)
+            + arrayBytes(literals.length, 4)
+            + arrayBytes(pool.length, 8)
+            + names.footprintBytes();
+        if (positions != starts) {
+            bytes += arrayBytes(positions.length, 4);
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximate heap size in bytes of the same tokens as an
+     * {@code ArrayList<Token>}, as built by {@link Lexer.Engine#SCANNER}.
+     */
+    public long objectFootprintBytes() {
+        long bytes = align(OBJECT_HEADER + 8) + arrayBytes(size - first, REFERENCE);
+        for (int i = first; i < size; i++) {
+            TokenType type = type(i);
+            boolean literal = type.compareTo(TokenType.LT_INT) >= 0
+                && type.compareTo(TokenType.LT_BOOL) <= 0;
+            bytes += align(OBJECT_HEADER + 2 * REFERENCE + 4 + (literal ? REFERENCE : 0));
+            // Symbol and EOF lexemes are shared constants
+            if (type.compareTo(TokenType.SY_ADD) < 0 || type.compareTo(TokenType.IDENT) >= 0) {
+                if (type != TokenType.EOF) {
+                    bytes += stringBytes(lengths[i - first]);
+                }
+            }
+            bytes += switch (type) {
+                case LT_INT, LT_FLOAT -> align(OBJECT_HEADER + 8);
+                case LT_STRING -> stringBytes(stringValue(i).length());
+                case LT_CHAR -> charValue(i) < 128 ? 0 : align(OBJECT_HEADER + 2);
+                default -> 0;
+            };
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases unused capacity once the stream is complete.
+     */
+    void trimToSize() {
+        boolean aliased = positions == starts;
+        int count = size - first;
+        types = Arrays.copyOf(types, count);
+        starts = Arrays.copyOf(starts, count);
+        lengths = Arrays.copyOf(lengths, count);
+        positions = aliased ? starts : Arrays.copyOf(positions, count);
+        literals = Arrays.copyOf(literals, count);
+        pool = Arrays.copyOf(pool, poolSize);
+    }
+}
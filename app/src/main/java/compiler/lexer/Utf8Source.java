@@ -0,0 +1,237 @@
+package compiler.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import compiler.error.SourceFile;
+
+/**
+ * UTF-8 source text read straight from its bytes, usually a memory-mapped
+ * file, without decoding it into a {@link String} first.
+ *
+ * Offsets are byte offsets. {@link #charAt} returns ASCII bytes as they are
+ * and decodes a multi-byte sequence only when asked for the character at its
+ * first byte; {@link #width} tells how many bytes that character spans. A
+ * supplementary character is seen as its two surrogates, at its first byte
+ * and two bytes further, so the lexer sees exactly the characters it would
+ * in the decoded text. Malformed bytes read as U+FFFD, one byte each.
+ *
+ * {@link #line} and {@link #column} map offsets back to the position a
+ * diagnostic should point at.
+ */
+public final class Utf8Source implements CharSequence {
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private final ByteBuffer bytes;
+    private final int length;
+    private SourceFile lines; // Built on first use
+
+    public Utf8Source(ByteBuffer bytes) {
+        this.bytes = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.length = this.bytes.remaining();
+    }
+
+    public Utf8Source(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Maps the given file read-only. The mapping stays valid after the
+     * channel is closed.
+     */
+    public static Utf8Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large: " + path);
+            }
+            return new Utf8Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * The source bytes, as a read-only view.
+     */
+    public ByteBuffer bytes() {
+        return bytes.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        byte b = bytes.get(index);
+        return b >= 0 ? (char) b : decodeAt(index);
+    }
+
+    /**
+     * Number of bytes the character at the given offset spans.
+     */
+    public int width(int index) {
+        if (bytes.get(index) >= 0) {
+            return 1;
+        }
+        int lead = leadOf(index);
+        int size = sequenceLength(lead);
+        if (size == 0 || codePoint(lead, size) < 0) {
+            return 1;
+        }
+        return size == 4 ? 2 : size;
+    }
+
+    /**
+     * Returns whether [start, end) is pure ASCII, checking eight bytes at a
+     * time.
+     */
+    public boolean isAscii(int start, int end) {
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            if ((bytes.getLong(i) & HIGH_BITS) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes [start, end) into a string.
+     */
+    @Override
+    public String subSequence(int start, int end) {
+        if (isAscii(start, end)) {
+            byte[] ascii = new byte[end - start];
+            bytes.get(start, ascii);
+            return new String(ascii, StandardCharsets.ISO_8859_1);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; ) {
+            char c = charAt(i);
+            sb.append(c);
+            i += c < 128 ? 1 : width(i);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length);
+    }
+
+//// LINE MAPPING //////////////////////////////////////////////////////////////
+
+    /**
+     * Line number of the given offset, starting at 1.
+     */
+    public int line(int offset) {
+        return lines().line(offset);
+    }
+
+    /**
+     * Column of the given offset in characters, starting at 0.
+     */
+    public int column(int offset) {
+        return lines().column(offset);
+    }
+
+    /**
+     * Text of the given line, without its line terminator.
+     */
+    public String lineText(int line) {
+        return lines().lineText(line);
+    }
+
+    /**
+     * Line index of this text, for rendering diagnostics. Built on first use
+     * by scanning the bytes, which is faster than decoding characters.
+     */
+    public SourceFile lines() {
+        if (lines == null) {
+            int[] starts = new int[64];
+            int count = 1;
+            for (int i = 0; i < length; i++) {
+                if (bytes.get(i) == '\n') {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            lines = new SourceFile(this, Arrays.copyOf(starts, count));
+        }
+        return lines;
+    }
+
+//// DECODING //////////////////////////////////////////////////////////////////
+
+    private char decodeAt(int index) {
+        int lead = leadOf(index);
+        int size = sequenceLength(lead);
+        int cp = size == 0 ? -1 : codePoint(lead, size);
+        if (cp < 0) {
+            return '\uFFFD';
+        }
+        if (size < 4) {
+            return (char) cp;
+        }
+        return index == lead ? Character.highSurrogate(cp) : Character.lowSurrogate(cp);
+    }
+
+    // The second surrogate of a 4-byte sequence sits two bytes after the lead
+    private int leadOf(int index) {
+        if (!isContinuation(bytes.get(index)) || index < 2) {
+            return index;
+        }
+        int lead = index - 2;
+        return sequenceLength(lead) == 4 ? lead : index;
+    }
+
+    // Length of the sequence starting at the given offset, 0 if malformed
+    private int sequenceLength(int index) {
+        int b = bytes.get(index) & 0xFF;
+        int size = b >= 0xF0 ? (b < 0xF5 ? 4 : 0)
+            : b >= 0xE0 ? 3
+            : b >= 0xC2 ? 2
+            : 0;
+        if (index + size > length) {
+            return 0;
+        }
+        for (int i = 1; i < size; i++) {
+            if (!isContinuation(bytes.get(index + i))) {
+                return 0;
+            }
+        }
+        return size;
+    }
+
+    // Code point of a well-formed sequence, or -1 for overlong encodings and
+    // encoded surrogates
+    private int codePoint(int index, int size) {
+        int cp = bytes.get(index) & (0x7F >> size);
+        for (int i = 1; i < size; i++) {
+            cp = (cp << 6) | (bytes.get(index + i) & 0x3F);
+        }
+        boolean valid = switch (size) {
+            case 2 -> true;
+            case 3 -> cp >= 0x800 && !Character.isSurrogate((char) cp);
+            default -> cp >= 0x10000 && cp <= Character.MAX_CODE_POINT;
+        };
+        return valid ? cp : -1;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+}
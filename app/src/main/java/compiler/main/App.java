@@ -3,20 +3,62 @@
  */
 package compiler.main;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 
-import com.google.gson.*;
-
+import compiler.bytecode.BytecodeFile;
+import compiler.bytecode.Disassembler;
+import compiler.bytecode.Lowering;
+import compiler.bytecode.CompiledProgram;
+import compiler.cache.ParseCache;
+import compiler.error.DiagnosticWriter;
 import compiler.error.ErrorList;
+import compiler.error.SourceFile;
+import compiler.interp.Interpreter;
+import compiler.interp.Profile;
+import compiler.interp.SpecializingInterpreter;
+import compiler.interp.VirtualMachine;
+import compiler.jvm.JvmBackend;
 import compiler.lexer.Lexer;
+import compiler.lexer.TokenStream;
+import compiler.lexer.Utf8Source;
+import compiler.parser.JsonAstWriter;
 import compiler.parser.Parser;
+import compiler.parser.ProgramNode;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
 
 public class App {
+    private static final Path CODE_PATH = Path.of("src/main/resources/code.macs");
+    private static final String TOOL_NAME = "Compiler";
+    private static final long CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
     public static String readCode() {
         try {
-            return Files.readString(Path.of("src/main/resources/code.macs"));
+            return Files.readString(CODE_PATH);
+        } catch (IOException e) {
+            System.err.printf("Error reading code file: %s\n", e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    // Maps the code file instead of decoding it, token positions are then
+    // byte offsets
+    public static Utf8Source mapCode() {
+        try {
+            return Utf8Source.map(CODE_PATH);
         } catch (IOException e) {
             System.err.printf("Error reading code file: %s\n", e.getMessage());
             System.exit(1);
@@ -25,18 +67,219 @@ public class App {
     }
 
     public static void main(String[] args) {
-        String code = readCode();
+        boolean tokenStats = Arrays.asList(args).contains("--token-stats");
+        boolean stream = Arrays.asList(args).contains("--stream");
+        boolean parallel = Arrays.asList(args).contains("--parallel-lex");
+        boolean parallelParse = Arrays.asList(args).contains("--parallel-parse");
+        boolean parallelCheck = Arrays.asList(args).contains("--parallel-check");
+        boolean disassemble = Arrays.asList(args).contains("--disassemble");
+        boolean profile = Arrays.asList(args).contains("--profile");
+        String engine = Arrays.asList(args).contains("--run") ? "tree" : null;
+        Path bytecode = null;
+        Path executable = null;
+        Path jar = null;
+        // Token stats need the tokens, so they always lex
+        ParseCache cache = null;
+        DiagnosticWriter.Format diagnostics = DiagnosticWriter.Format.TEXT;
+        for (String arg : args) {
+            if (arg.startsWith("--cache=") && !stream && !tokenStats) {
+                cache = openCache(Path.of(arg.substring("--cache=".length())));
+            } else if (arg.startsWith("--run=")) {
+                engine = arg.substring("--run=".length());
+            } else if (arg.startsWith("--compile=")) {
+                bytecode = Path.of(arg.substring("--compile=".length()));
+            } else if (arg.startsWith("--jar=")) {
+                jar = Path.of(arg.substring("--jar=".length()));
+            } else if (arg.startsWith("--exec=")) {
+                executable = Path.of(arg.substring("--exec=".length()));
+            } else if (arg.startsWith("--diagnostics=")) {
+                diagnostics = diagnosticFormat(arg.substring("--diagnostics=".length()));
+            }
+        }
+        if (executable != null) {
+            execute(executable, profile, diagnostics);
+            return;
+        }
+        Utf8Source source = stream ? null : mapCode();
+        boolean running = false;
         try {
-            var tokens = Lexer.tokenize(code);
-            var ast = Parser.parse(tokens);
+            ProgramNode ast = null;
+            String key = null;
+            if (cache != null) {
+                key = cache.key(source.bytes());
+                ast = cache.load(key);
+            }
+            if (stream) {
+                ast = parseStreaming();
+            } else if (ast == null) {
+                var tokens = parallel ? Lexer.tokenizeParallel(source) : Lexer.tokenizeStream(source);
+                if (tokenStats) {
+                    printTokenStats(source, tokens);
+                }
+                ast = parallelParse ? Parser.parseParallel(tokens) : Parser.parse(tokens);
+                if (cache != null) {
+                    storeQuietly(cache, key, ast);
+                }
+            }
+
+            Bindings bindings = parallelCheck ? SemanticAnalyzer.checkParallel(ast) : SemanticAnalyzer.check(ast);
 
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            JsonElement je = JsonParser.parseString(ast.toString());
-            System.out.println(gson.toJson(je));
+            if (jar != null) {
+                writeJar(jar, ast, bindings);
+            } else if (disassemble || bytecode != null) {
+                CompiledProgram program = Lowering.lower(ast, bindings);
+                if (disassemble) {
+                    System.out.print(Disassembler.disassemble(program));
+                }
+                if (bytecode != null) {
+                    writeBytecode(bytecode, program);
+                }
+            } else if (engine != null) {
+                running = true;
+                run(engine, ast, bindings, profile);
+            } else {
+                JsonAstWriter.writeUtf8(ast, System.out, true);
+                System.out.println();
+            }
         } catch (ErrorList errors) {
-            System.err.println("Errors found during parsing:");
-            errors.printWithSource(code);
+            if (diagnostics == DiagnosticWriter.Format.TEXT) {
+                System.err.println(running ? "Error while running the program:" : "Errors found during compilation:");
+            }
+            SourceFile lines = source != null ? source.lines() : new SourceFile(readCode());
+            DiagnosticWriter.write(diagnostics, errors, lines, CODE_PATH.toString(), TOOL_NAME, compilerVersion(), stdout());
+            System.exit(1);
+        }
+    }
+
+    // tree, nodes, vm or jvm
+    private static void run(String engine, ProgramNode ast, Bindings bindings, boolean profile) {
+        Reader in = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        switch (engine) {
+            case "tree" -> Interpreter.run(ast, bindings, in, stdout());
+            case "nodes" -> SpecializingInterpreter.run(ast, bindings, in, stdout());
+            case "vm" -> runBytecode(Lowering.lower(ast, bindings), profile);
+            case "jvm" -> JvmBackend.run(ast, bindings, in, stdout());
+            default -> {
+                System.err.printf("Unknown engine: %s\n", engine);
+                System.exit(1);
+            }
+        }
+    }
+
+    // Profiles go to stderr, after what the program wrote
+    private static void runBytecode(CompiledProgram program, boolean profile) {
+        Reader in = new InputStreamReader(System.in, StandardCharsets.UTF_8);
+        Profile profiler = profile ? new Profile(program) : null;
+        try {
+            VirtualMachine.run(program, in, stdout(), profiler);
+        } finally {
+            if (profiler != null) {
+                System.err.print(profiler.report(program));
+            }
+        }
+    }
+
+    // Runs a .macsc file. Errors are shown in the code file, which should be
+    // what it was compiled from
+    private static void execute(Path path, boolean profile, DiagnosticWriter.Format diagnostics) {
+        CompiledProgram program;
+        try {
+            program = BytecodeFile.read(ByteBuffer.wrap(Files.readAllBytes(path)));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.printf("Error reading bytecode file: %s\n", e.getMessage());
+            System.exit(1);
+            return;
+        }
+        try {
+            runBytecode(program, profile);
+        } catch (ErrorList errors) {
+            if (diagnostics == DiagnosticWriter.Format.TEXT) {
+                System.err.println("Error while running the program:");
+            }
+            SourceFile lines = new SourceFile(readCode());
+            DiagnosticWriter.write(diagnostics, errors, lines, CODE_PATH.toString(), TOOL_NAME, compilerVersion(), stdout());
+            System.exit(1);
+        }
+    }
+
+    private static void writeBytecode(Path path, CompiledProgram program) {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            BytecodeFile.write(program, out);
+        } catch (IOException e) {
+            System.err.printf("Error writing bytecode file: %s\n", e.getMessage());
             System.exit(1);
         }
     }
+
+    private static void writeJar(Path path, ProgramNode ast, Bindings bindings) {
+        try {
+            JvmBackend.writeJar(ast, bindings, path);
+        } catch (IOException e) {
+            System.err.printf("Error writing jar file: %s\n", e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static Writer stdout() {
+        return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    // text, json-lines or sarif
+    private static DiagnosticWriter.Format diagnosticFormat(String name) {
+        try {
+            return DiagnosticWriter.Format.valueOf(name.toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.err.printf("Unknown diagnostics format: %s\n", name);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    // Version diagnostics report. Builds run from class files rather than a
+    // jar have none
+    private static String compilerVersion() {
+        String version = App.class.getPackage().getImplementationVersion();
+        return version != null ? version : "dev";
+    }
+
+    // Keys include a hash of the compiler's own code, so a rebuilt compiler
+    // never reads trees an older one parsed. Without one nothing is cached
+    private static ParseCache openCache(Path dir) {
+        String version = ParseCache.codeVersion(App.class);
+        if (version == null) {
+            System.err.printf("Warning: parse cache disabled, the compiler's code could not be read\n");
+            return null;
+        }
+        return new ParseCache(dir, CACHE_MAX_BYTES, version);
+    }
+
+    // A cache that can't be written only costs the next run a parse
+    private static void storeQuietly(ParseCache cache, String key, ProgramNode ast) {
+        try {
+            cache.store(key, ast);
+        } catch (UncheckedIOException e) {
+            System.err.printf("Warning: could not write parse cache: %s\n", e.getMessage());
+        }
+    }
+
+    // Lexes and parses the file as it's read, only a window of it is in memory
+    private static ProgramNode parseStreaming() {
+        try (Reader reader = Files.newBufferedReader(CODE_PATH)) {
+            return Parser.parse(Lexer.stream(reader));
+        } catch (IOException | UncheckedIOException e) {
+            System.err.printf("Error reading code file: %s\n", e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static void printTokenStats(CharSequence code, TokenStream tokens) {
+        double kb = Math.max(code.length(), 1) / 1024.0;
+        long packed = tokens.footprintBytes();
+        long objects = tokens.objectFootprintBytes();
+        System.err.printf("%d tokens from %d bytes%n", tokens.size(), code.length());
+        System.err.printf("  packed stream: %8d bytes (%.0f B/KB)%n", packed, packed / kb);
+        System.err.printf("  token objects: %8d bytes (%.0f B/KB)%n", objects, objects / kb);
+        System.err.printf("  saved:         %8d bytes (%.0f B/KB)%n", objects - packed, (objects - packed) / kb);
+    }
 }
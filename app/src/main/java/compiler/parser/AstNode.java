@@ -4,5 +4,11 @@ public abstract class AstNode {
     // Base class for all AST nodes
     public abstract <R> R accept(AstVisitor<R> visitor);
     public abstract int getPos(); // { return -1; } // Default implementation, override in concrete nodes
+
+    // Compact JSON of the whole subtree, see JsonAstWriter
+    @Override
+    public String toString() {
+        return JsonAstWriter.toJson(this, false);
+    }
 }
     
\ No newline at end of file
@@ -21,4 +21,5 @@ public interface AstVisitor<R> {
     R visit(BinaryOpNode node);
     R visit(UnaryOpNode node);
     R visit(FnCallNode node);
+    R visit(ErrorNode node);
 }
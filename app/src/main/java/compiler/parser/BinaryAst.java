@@ -0,0 +1,458 @@
+package compiler.parser;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import compiler.lexer.NameTable;
+
+/**
+ * Versioned binary encoding of an AST, for caching and for passing trees
+ * between processes.
+ *
+ * <pre>
+ * file    = "MAST" version:varint strings nodes
+ * strings = count:varint (length:varint utf8-bytes)*
+ * node    = header:varint pos-delta:zigzag payload child-count:varint? child*
+ * </pre>
+ *
+ * A node is written in pre-order, as in {@link FlatAst}. Its header holds
+ * the kind ordinal in the low five bits and the variant (operator or type,
+ * 0 for none) above them. The position is the zigzag-coded difference from
+ * the previous node's position, and NONE placeholders have none. The
+ * payload depends on the kind:
+ * <ul>
+ * <li>a string table index for names, string literals and error messages
+ * <li>a zigzag varint for an int literal, a varint for a char or bool
+ * <li>eight little-endian bytes for the raw bits of a float
+ * </ul>
+ * Only PROGRAM, FUNC_DECL, COMPOUND and FN_CALL write a child count. Every
+ * other kind has a fixed number of children.
+ *
+ * Each distinct name is stored once. Strings are decoded once, straight
+ * from the buffer, when the table is read.
+ *
+ * Decoding checks every kind, variant, index and length against what is
+ * left of the buffer before using it, and every node against the kinds
+ * its parent may have there, with a program at the root. It keeps the
+ * nodes whose children are still to be read on a stack of its own, so
+ * neither a corrupt nor a very deep tree can make it, or building node
+ * objects from what it read, fail other than with an
+ * {@link IllegalArgumentException}.
+ */
+public final class BinaryAst {
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = { 'M', 'A', 'S', 'T' };
+    private static final FlatAst.Kind[] KINDS = FlatAst.Kind.values();
+    private static final int TYPE_COUNT = TypeNode.values().length;
+    private static final int KIND_BITS = 5;
+
+    private BinaryAst() {
+    }
+
+    public static byte[] encode(ProgramNode program) {
+        return encode(FlatAst.of(program));
+    }
+
+    public static byte[] encode(FlatAst ast) {
+        return new Encoder(ast).encode();
+    }
+
+    public static void write(ProgramNode program, OutputStream out) throws IOException {
+        out.write(encode(program));
+    }
+
+    public static ProgramNode decode(ByteBuffer buffer) {
+        return read(buffer).toProgram();
+    }
+
+    /**
+     * Reads a tree from the buffer's position, leaving the position after
+     * it.
+     *
+     * @throws IllegalArgumentException if the buffer doesn't start with an
+     *         encoded AST of this version, or it's corrupt
+     */
+    public static FlatAst read(ByteBuffer buffer) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        FlatAst ast;
+        try {
+            ast = new Decoder(in).decode();
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated encoded AST", e);
+        }
+        buffer.position(in.position());
+        return ast;
+    }
+
+    private static boolean hasName(FlatAst.Kind kind) {
+        return switch (kind) {
+            case VAR_DECL, FUNC_DECL, PARAM, ASSIGNMENT, IDENT, FN_CALL, STRING_LITERAL -> true;
+            default -> false;
+        };
+    }
+
+    // Variants a node of the kind may have, 0 for none, otherwise the
+    // ordinal + 1 of an operator or type
+    private static int variantCount(FlatAst.Kind kind) {
+        return 1 + switch (kind) {
+            case BINARY_OP -> BinaryOpNode.OpType.values().length;
+            case UNARY_OP -> UnaryOpNode.OpType.values().length;
+            case ASSIGNMENT -> AssignmentNode.OpType.values().length;
+            case VAR_DECL, FUNC_DECL, PARAM -> TYPE_COUNT;
+            default -> 0;
+        };
+    }
+
+    // Operators and the types of variables can't be left out, only what a
+    // function returns
+    private static boolean needsVariant(FlatAst.Kind kind) {
+        return variantCount(kind) > 1 && kind != FlatAst.Kind.FUNC_DECL;
+    }
+
+    private static int fixedChildren(FlatAst.Kind kind) {
+        return switch (kind) {
+            case VAR_DECL, ASSIGNMENT, RETURN, UNARY_OP -> 1;
+            case WHILE, BINARY_OP -> 2;
+            case CONDITIONAL -> 3;
+            case FOR -> 4;
+            case PROGRAM, FUNC_DECL, COMPOUND, FN_CALL -> -1; // Counted
+            default -> 0;
+        };
+    }
+
+    // Whether a node may be a child of `parent` with `left` children of it
+    // still to read, this one included. As the node classes' fields allow,
+    // NONE standing for a missing one
+    private static boolean fits(FlatAst.Kind parent, int left, FlatAst.Kind child) {
+        return switch (parent) {
+            case PROGRAM -> child == FlatAst.Kind.VAR_DECL || child == FlatAst.Kind.FUNC_DECL;
+            case FUNC_DECL -> child == (left == 1 ? FlatAst.Kind.COMPOUND : FlatAst.Kind.PARAM);
+            case COMPOUND -> child == FlatAst.Kind.VAR_DECL || isStatement(child);
+            case VAR_DECL -> child == FlatAst.Kind.NONE || isExpression(child);
+            case ASSIGNMENT, RETURN, UNARY_OP, BINARY_OP, FN_CALL -> isExpression(child);
+            case CONDITIONAL -> switch (left) {
+                case 3 -> isExpression(child);
+                case 2 -> isStatement(child);
+                default -> child == FlatAst.Kind.NONE || isStatement(child);
+            };
+            case WHILE -> left == 2 ? isExpression(child) : isStatement(child);
+            case FOR -> switch (left) {
+                case 4 -> child == FlatAst.Kind.NONE || child == FlatAst.Kind.VAR_DECL || isStatement(child);
+                case 3 -> child == FlatAst.Kind.NONE || isExpression(child);
+                case 2 -> child == FlatAst.Kind.NONE || isStatement(child);
+                default -> isStatement(child);
+            };
+            default -> false;
+        };
+    }
+
+    private static boolean isStatement(FlatAst.Kind kind) {
+        return switch (kind) {
+            case ASSIGNMENT, RETURN, CONDITIONAL, WHILE, FOR, COMPOUND -> true;
+            default -> isExpression(kind);
+        };
+    }
+
+    private static boolean isExpression(FlatAst.Kind kind) {
+        return switch (kind) {
+            case IDENT, INT_LITERAL, FLOAT_LITERAL, STRING_LITERAL, CHAR_LITERAL, BOOL_LITERAL,
+                 BINARY_OP, UNARY_OP, FN_CALL, ERROR -> true;
+            default -> false;
+        };
+    }
+
+//// ENCODING //////////////////////////////////////////////////////////////////
+
+    private static final class Encoder {
+        private final FlatAst ast;
+        private final int[] nameIndex; // Name id to string table index, or -1
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> messageIndex = new HashMap<>();
+        private int lastPos;
+
+        Encoder(FlatAst ast) {
+            this.ast = ast;
+            this.nameIndex = new int[ast.names().size()];
+            Arrays.fill(nameIndex, -1);
+        }
+
+        byte[] encode() {
+            // Strings go first, so collect them before writing any node
+            ByteSink nodes = new ByteSink(ast.size() * 3);
+            for (int node = 0; node < ast.size(); node++) {
+                writeNode(nodes, node);
+            }
+            ByteSink out = new ByteSink(nodes.size + 16 * strings.size() + 16);
+            out.write(MAGIC);
+            out.writeVarint(VERSION);
+            out.writeVarint(strings.size());
+            for (String s : strings) {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                out.writeVarint(utf8.length);
+                out.write(utf8);
+            }
+            out.write(nodes.bytes, nodes.size);
+            return Arrays.copyOf(out.bytes, out.size);
+        }
+
+        private void writeNode(ByteSink out, int node) {
+            FlatAst.Kind kind = ast.kind(node);
+            out.writeVarint(ast.variant(node) << KIND_BITS | kind.ordinal());
+            if (kind == FlatAst.Kind.NONE) {
+                return;
+            }
+            out.writeVarint(zigzag(ast.pos(node) - lastPos));
+            lastPos = ast.pos(node);
+            if (hasName(kind)) {
+                out.writeVarint(nameString(ast.symbol(node)));
+            }
+            switch (kind) {
+                case INT_LITERAL -> out.writeVarint(zigzag(ast.literal(node)));
+                case FLOAT_LITERAL -> out.writeLong(ast.literal(node));
+                case CHAR_LITERAL, BOOL_LITERAL -> out.writeVarint(ast.literal(node));
+                case ERROR -> out.writeVarint(messageString(ast.message(node)));
+                default -> { }
+            }
+            if (fixedChildren(kind) < 0) {
+                out.writeVarint(ast.childCount(node));
+            }
+        }
+
+        private int nameString(int symbol) {
+            if (nameIndex[symbol] < 0) {
+                nameIndex[symbol] = strings.size();
+                strings.add(ast.names().name(symbol));
+            }
+            return nameIndex[symbol];
+        }
+
+        private int messageString(String message) {
+            return messageIndex.computeIfAbsent(message, m -> {
+                strings.add(m);
+                return strings.size() - 1;
+            });
+        }
+    }
+
+    private static final class ByteSink {
+        byte[] bytes;
+        int size;
+
+        ByteSink(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                bytes[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void write(byte[] data) {
+            write(data, data.length);
+        }
+
+        void write(byte[] data, int length) {
+            ensure(length);
+            System.arraycopy(data, 0, bytes, size, length);
+            size += length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+//// DECODING //////////////////////////////////////////////////////////////////
+
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private FlatAst ast;
+        private int[] symbols;   // String table index to name id, -1 until used as a name
+        private String[] strings;
+        private int lastPos;
+        private int children; // Of the node last read
+
+        Decoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        FlatAst decode() {
+            for (byte b : MAGIC) {
+                if (!in.hasRemaining() || in.get() != b) {
+                    throw new IllegalArgumentException("Not an encoded AST");
+                }
+            }
+            int version = (int) readVarint();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported AST encoding version " + version);
+            }
+            readStrings();
+            ast = new FlatAst(new NameTable(), in.remaining() / 2);
+            readNodes();
+            ast.trimToSize();
+            return ast;
+        }
+
+        private void readStrings() {
+            int count = count();
+            strings = new String[count];
+            symbols = new int[count];
+            for (int i = 0; i < count; i++) {
+                int length = count();
+                int start = in.position();
+                strings[i] = decodeUtf8(start, length);
+                in.position(start + length);
+                symbols[i] = -1;
+            }
+        }
+
+        private String decodeUtf8(int start, int length) {
+            if (in.hasArray()) {
+                return new String(in.array(), in.arrayOffset() + start, length, StandardCharsets.UTF_8);
+            }
+            byte[] utf8 = new byte[length];
+            in.get(start, utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        // Names are interned the first time a node refers to them, so the
+        // decoded table holds only names, not error messages
+        private int symbol(int index) {
+            if (symbols[index] < 0) {
+                symbols[index] = ast.names().intern(strings[index]);
+            }
+            return symbols[index];
+        }
+
+        // Reads the nodes in pre-order. Each open node takes three slots of
+        // the stack: the node, its children still to read and its last child
+        private void readNodes() {
+            int[] open = new int[3 * 16];
+            int depth = 0;
+            do {
+                int node = readNode();
+                FlatAst.Kind kind = ast.kind(node);
+                if (depth == 0 && kind != FlatAst.Kind.PROGRAM) {
+                    throw new IllegalArgumentException("Encoded AST of a " + kind + ", not a program");
+                }
+                if (depth > 0) {
+                    int top = 3 * (depth - 1);
+                    FlatAst.Kind parent = ast.kind(open[top]);
+                    if (!fits(parent, open[top + 1], kind)) {
+                        throw new IllegalArgumentException(kind + " where a " + parent + " can't have one");
+                    }
+                    ast.link(open[top], open[top + 2], node);
+                    open[top + 1]--;
+                    open[top + 2] = node;
+                }
+                if (children > 0) {
+                    if (3 * depth == open.length) {
+                        open = Arrays.copyOf(open, open.length * 2);
+                    }
+                    open[3 * depth] = node;
+                    open[3 * depth + 1] = children;
+                    open[3 * depth + 2] = FlatAst.NO_NODE;
+                    depth++;
+                }
+                while (depth > 0 && open[3 * (depth - 1) + 1] == 0) {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        private int readNode() {
+            int header = (int) readVarint();
+            int ordinal = header & ((1 << KIND_BITS) - 1);
+            if (ordinal >= KINDS.length) {
+                throw new IllegalArgumentException("Unknown AST node kind " + ordinal);
+            }
+            FlatAst.Kind kind = KINDS[ordinal];
+            int variant = header >>> KIND_BITS;
+            if (variant >= variantCount(kind) || variant == 0 && needsVariant(kind)) {
+                throw new IllegalArgumentException("Unknown variant " + variant + " of " + kind);
+            }
+            children = 0;
+            if (kind == FlatAst.Kind.NONE) {
+                return ast.add(kind, 0, -1, 0);
+            }
+            lastPos += (int) unzigzag(readVarint());
+            int data = 0;
+            if (hasName(kind)) {
+                data = symbol(string());
+            }
+            switch (kind) {
+                case INT_LITERAL -> data = ast.addLiteral(unzigzag(readVarint()));
+                case FLOAT_LITERAL -> data = ast.addLiteral(in.getLong());
+                case CHAR_LITERAL, BOOL_LITERAL -> data = ast.addLiteral(readVarint());
+                case ERROR -> data = ast.addMessage(strings[string()]);
+                default -> { }
+            }
+            int node = ast.add(kind, variant, lastPos, data);
+            children = fixedChildren(kind);
+            if (children < 0) {
+                children = count();
+                if (kind == FlatAst.Kind.FUNC_DECL && children == 0) {
+                    throw new IllegalArgumentException("Function without a body");
+                }
+            }
+            return node;
+        }
+
+        // An index into the string table
+        private int string() {
+            long index = readVarint();
+            if (index < 0 || index >= strings.length) {
+                throw new IllegalArgumentException("String index " + index + " out of range");
+            }
+            return (int) index;
+        }
+
+        // A count or length of things taking at least a byte each, so never
+        // more than the bytes left
+        private int count() {
+            long count = readVarint();
+            if (count < 0 || count > in.remaining()) {
+                throw new IllegalArgumentException("Count " + count + " exceeds the " + in.remaining() + " bytes left");
+            }
+            return (int) count;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint longer than 64 bits");
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -18,15 +18,6 @@ public class BinaryOpNode extends ExprNode {
         this.rhs = rhs;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"BinaryOpNode","op":"%s","lhs":%s,"rhs":%s}""",
-            op.name().toLowerCase(),
-            lhs.toString(),
-            rhs.toString()
-        );
-    }
-    @Override
     public int getPos() {
         return token.getPos();
     }
@@ -10,13 +10,6 @@ public class CharLiteralNode extends ExprNode {
         this.token = token;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"CharLiteralNode","value":"%c"}""",
-            value
-        );
-    }
-    @Override
     public int getPos() {
         return token.getPos();
     }
@@ -13,15 +13,5 @@ public class CompoundStmtNode extends StmtNode {
     }
     public int getPos() { return startToken.getPos(); }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"CompoundStmtNode","statements":[%s]}""",
-            String.join(
-                ",",
-                statements.stream().map(AstNode::toString).toList()
-            )
-        );
-    }
-    @Override
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
 }
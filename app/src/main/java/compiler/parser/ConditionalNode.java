@@ -13,15 +13,6 @@ public class ConditionalNode extends StmtNode {
         this.elseBranch = elseBranch;
         this.token = token;
     }
-    @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"ConditionalNode","condition":%s,"thenBranch":%s,"elseBranch":%s}""",
-            condition,
-            thenBranch,
-            elseBranch != null ? elseBranch.toString() : "null"
-        );
-    }
     
     @Override
     public int getPos() {
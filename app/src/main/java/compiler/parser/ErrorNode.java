@@ -0,0 +1,18 @@
+package compiler.parser;
+
+/**
+ * Placeholder for a statement or expression that failed to parse. The error
+ * itself is reported in the parser's {@link compiler.error.ErrorList}.
+ */
+public class ErrorNode extends ExprNode {
+    public final String message;
+    public final int pos;
+    public ErrorNode(String message, int pos) {
+        this.message = message;
+        this.pos = pos;
+    }
+    @Override
+    public int getPos() { return pos; }
+    @Override
+    public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
+}
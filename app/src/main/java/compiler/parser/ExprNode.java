@@ -1,4 +1,5 @@
 package compiler.parser;
 
 public abstract class ExprNode extends StmtNode {
+    public TypeNode type; // Set by the semantic analyzer, null until then or if the expression has an error
 }
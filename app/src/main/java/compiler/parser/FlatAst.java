@@ -0,0 +1,341 @@
+package compiler.parser;
+
+import java.util.*;
+
+import compiler.lexer.NameTable;
+
+/**
+ * Compact AST of one compilation unit. Nodes are indices into parallel
+ * arrays (kind, variant, first child, next sibling, source position and a
+ * data slot) instead of one object per node, and children form a linked list
+ * through the sibling array instead of an {@code ArrayList}.
+ *
+ * Nodes are allocated in pre-order, so the root is node 0, every subtree is
+ * a contiguous range of indices and a pass that doesn't care about structure
+ * can simply loop over {@code 0 .. size()}.
+ *
+ * The variant is the operator of a {@link Kind#BINARY_OP},
+ * {@link Kind#UNARY_OP} or {@link Kind#ASSIGNMENT}, or the declared type of
+ * a {@link Kind#VAR_DECL}, {@link Kind#PARAM} or {@link Kind#FUNC_DECL}. The
+ * data slot is the name id in {@link #names()} for declarations, calls,
+ * identifiers and string literals, an index into the literal pool for other
+ * literals, and the message index of an {@link Kind#ERROR}.
+ *
+ * Optional children that are missing are {@link Kind#NONE} nodes, so every
+ * kind has its children at fixed positions:
+ * <ul>
+ * <li>VAR_DECL: initializer or NONE
+ * <li>FUNC_DECL: params, then the body
+ * <li>RETURN: value or NONE
+ * <li>CONDITIONAL: condition, then-branch, else-branch or NONE
+ * <li>WHILE: condition, body
+ * <li>FOR: init or NONE, condition or NONE, step or NONE, body
+ * </ul>
+ */
+public final class FlatAst {
+    public enum Kind {
+        PROGRAM, VAR_DECL, FUNC_DECL, PARAM, COMPOUND, ASSIGNMENT, RETURN,
+        CONDITIONAL, WHILE, FOR, IDENT, INT_LITERAL, FLOAT_LITERAL,
+        STRING_LITERAL, CHAR_LITERAL, BOOL_LITERAL, BINARY_OP, UNARY_OP,
+        FN_CALL, ERROR, NONE
+    }
+
+    /**
+     * Counterpart of {@link AstVisitor} over node indices. Children are
+     * visited with {@link FlatAst#accept}.
+     */
+    public interface Visitor<R> {
+        R visitProgram(int node);
+        R visitVarDecl(int node);
+        R visitFuncDecl(int node);
+        R visitParam(int node);
+        R visitCompoundStmt(int node);
+        R visitAssignment(int node);
+        R visitReturn(int node);
+        R visitConditional(int node);
+        R visitWhile(int node);
+        R visitFor(int node);
+        R visitIdentExpr(int node);
+        R visitIntLiteral(int node);
+        R visitFloatLiteral(int node);
+        R visitStringLiteral(int node);
+        R visitCharLiteral(int node);
+        R visitBoolLiteral(int node);
+        R visitBinaryOp(int node);
+        R visitUnaryOp(int node);
+        R visitFnCall(int node);
+        R visitError(int node);
+    }
+
+    public static final int NO_NODE = -1;
+
+    private static final Kind[] KINDS = Kind.values();
+    private static final TypeNode[] TYPES = TypeNode.values();
+    private static final BinaryOpNode.OpType[] BINARY_OPS = BinaryOpNode.OpType.values();
+    private static final UnaryOpNode.OpType[] UNARY_OPS = UnaryOpNode.OpType.values();
+    private static final AssignmentNode.OpType[] ASSIGN_OPS = AssignmentNode.OpType.values();
+    private static final int NO_VARIANT = 0; // Variants are stored as ordinal + 1
+
+    private final NameTable names;
+    private int size;
+    private byte[] kinds;
+    private byte[] variants;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] positions;
+    private int[] data;
+    private long[] literals; // Int values, raw bits of floats, chars and bools as 0/1
+    private int literalCount;
+    private final List<String> messages = new ArrayList<>();
+
+    FlatAst(NameTable names, int capacity) {
+        this.names = names;
+        capacity = Math.max(capacity, 16);
+        kinds = new byte[capacity];
+        variants = new byte[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        positions = new int[capacity];
+        data = new int[capacity];
+        literals = new long[Math.max(capacity / 4, 16)];
+    }
+
+    /**
+     * Converts a tree of node objects.
+     */
+    public static FlatAst of(ProgramNode program) {
+        return FlatAstConverter.flatten(program);
+    }
+
+    /**
+     * Converts back to node objects. Tokens are rebuilt from the stored
+     * positions and names; a literal token's lexeme is the canonical spelling
+     * of its value rather than the source text.
+     */
+    public ProgramNode toProgram() {
+        return FlatAstConverter.expand(this);
+    }
+
+    public <R> R accept(int node, Visitor<R> visitor) {
+        return switch (kind(node)) {
+            case PROGRAM        -> visitor.visitProgram(node);
+            case VAR_DECL       -> visitor.visitVarDecl(node);
+            case FUNC_DECL      -> visitor.visitFuncDecl(node);
+            case PARAM          -> visitor.visitParam(node);
+            case COMPOUND       -> visitor.visitCompoundStmt(node);
+            case ASSIGNMENT     -> visitor.visitAssignment(node);
+            case RETURN         -> visitor.visitReturn(node);
+            case CONDITIONAL    -> visitor.visitConditional(node);
+            case WHILE          -> visitor.visitWhile(node);
+            case FOR            -> visitor.visitFor(node);
+            case IDENT          -> visitor.visitIdentExpr(node);
+            case INT_LITERAL    -> visitor.visitIntLiteral(node);
+            case FLOAT_LITERAL  -> visitor.visitFloatLiteral(node);
+            case STRING_LITERAL -> visitor.visitStringLiteral(node);
+            case CHAR_LITERAL   -> visitor.visitCharLiteral(node);
+            case BOOL_LITERAL   -> visitor.visitBoolLiteral(node);
+            case BINARY_OP      -> visitor.visitBinaryOp(node);
+            case UNARY_OP       -> visitor.visitUnaryOp(node);
+            case FN_CALL        -> visitor.visitFnCall(node);
+            case ERROR          -> visitor.visitError(node);
+            case NONE           -> null; // Like a null child in the node classes
+        };
+    }
+
+//// STRUCTURE /////////////////////////////////////////////////////////////////
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    public NameTable names() {
+        return names;
+    }
+
+    public Kind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public boolean isNone(int node) {
+        return kinds[node] == Kind.NONE.ordinal();
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * The child at the given position, or {@link #NO_NODE}.
+     */
+    public int child(int node, int index) {
+        int child = firstChild[node];
+        for (int i = 0; i < index && child != NO_NODE; i++) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+            count++;
+        }
+        return count;
+    }
+
+//// NODE DATA /////////////////////////////////////////////////////////////////
+
+    public int pos(int node) {
+        return positions[node];
+    }
+
+    /**
+     * Name id of a declaration, parameter, call, identifier or string
+     * literal.
+     */
+    public int symbol(int node) {
+        return data[node];
+    }
+
+    public String name(int node) {
+        return names.name(data[node]);
+    }
+
+    /**
+     * Declared type of a variable or parameter, return type of a function,
+     * or null.
+     */
+    public TypeNode type(int node) {
+        int variant = variants[node];
+        return variant == NO_VARIANT ? null : TYPES[variant - 1];
+    }
+
+    public BinaryOpNode.OpType binaryOp(int node) {
+        return BINARY_OPS[variants[node] - 1];
+    }
+
+    public UnaryOpNode.OpType unaryOp(int node) {
+        return UNARY_OPS[variants[node] - 1];
+    }
+
+    public AssignmentNode.OpType assignOp(int node) {
+        return ASSIGN_OPS[variants[node] - 1];
+    }
+
+    public long intValue(int node) {
+        return literals[data[node]];
+    }
+
+    public double floatValue(int node) {
+        return Double.longBitsToDouble(literals[data[node]]);
+    }
+
+    public char charValue(int node) {
+        return (char) literals[data[node]];
+    }
+
+    public boolean boolValue(int node) {
+        return literals[data[node]] != 0;
+    }
+
+    public String stringValue(int node) {
+        return names.name(data[node]);
+    }
+
+    public String message(int node) {
+        return messages.get(data[node]);
+    }
+
+//// BUILDING //////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds a childless node and returns its index.
+     */
+    int add(Kind kind, Enum<?> variant, int pos, int value) {
+        return add(kind, variant == null ? NO_VARIANT : variant.ordinal() + 1, pos, value);
+    }
+
+    /**
+     * Same, with the variant as stored: 0 for none, otherwise ordinal + 1.
+     */
+    int add(Kind kind, int variant, int pos, int value) {
+        if (size == kinds.length) {
+            grow();
+        }
+        int node = size++;
+        kinds[node] = (byte) kind.ordinal();
+        variants[node] = (byte) variant;
+        firstChild[node] = NO_NODE;
+        nextSibling[node] = NO_NODE;
+        positions[node] = pos;
+        data[node] = value;
+        return node;
+    }
+
+    /**
+     * Links {@code child} after {@code previous}, the last child added to
+     * {@code parent} so far, or as its first child if that's NO_NODE.
+     */
+    void link(int parent, int previous, int child) {
+        if (previous == NO_NODE) {
+            firstChild[parent] = child;
+        } else {
+            nextSibling[previous] = child;
+        }
+    }
+
+    // Raw slots, for serialization
+
+    int variant(int node) {
+        return variants[node];
+    }
+
+    int data(int node) {
+        return data[node];
+    }
+
+    long literal(int node) {
+        return literals[data[node]];
+    }
+
+    int addLiteral(long value) {
+        if (literalCount == literals.length) {
+            literals = Arrays.copyOf(literals, literalCount * 2);
+        }
+        literals[literalCount] = value;
+        return literalCount++;
+    }
+
+    int addMessage(String message) {
+        messages.add(message);
+        return messages.size() - 1;
+    }
+
+    void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        variants = Arrays.copyOf(variants, size);
+        firstChild = Arrays.copyOf(firstChild, size);
+        nextSibling = Arrays.copyOf(nextSibling, size);
+        positions = Arrays.copyOf(positions, size);
+        data = Arrays.copyOf(data, size);
+        literals = Arrays.copyOf(literals, literalCount);
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        variants = Arrays.copyOf(variants, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        data = Arrays.copyOf(data, capacity);
+    }
+}
@@ -0,0 +1,291 @@
+package compiler.parser;
+
+import java.util.*;
+
+import compiler.lexer.*;
+
+/**
+ * Converts between node objects and a {@link FlatAst}.
+ */
+final class FlatAstConverter implements AstVisitor<Integer> {
+    private static final String[] BINARY_LEXEMES = {
+        "+", "-", "*", "/", "&&", "||", "==", "!=", ">", "<", ">=", "<="
+    };
+    private static final TokenType[] BINARY_TOKENS = {
+        TokenType.SY_ADD, TokenType.SY_SUB, TokenType.SY_MUL, TokenType.SY_DIV,
+        TokenType.SY_AND, TokenType.SY_OR, TokenType.SY_EQ, TokenType.SY_NEQ,
+        TokenType.SY_GT, TokenType.SY_LT, TokenType.SY_GTE, TokenType.SY_LTE
+    };
+
+    private final FlatAst ast;
+
+    private FlatAstConverter(FlatAst ast) {
+        this.ast = ast;
+    }
+
+//// FLATTENING ////////////////////////////////////////////////////////////////
+
+    // The flat tree gets a copy of the program's name table, names that
+    // weren't interned yet are added to it, not to the table the tokens share
+    static FlatAst flatten(ProgramNode program) {
+        FlatAst ast = new FlatAst(program.names.copy(), 64);
+        program.accept(new FlatAstConverter(ast));
+        ast.trimToSize();
+        return ast;
+    }
+
+    private int flatten(AstNode node) {
+        return node == null ? ast.add(FlatAst.Kind.NONE, null, -1, 0) : node.accept(this);
+    }
+
+    private void children(int parent, List<? extends AstNode> nodes) {
+        int previous = FlatAst.NO_NODE;
+        for (AstNode node : nodes) {
+            int child = flatten(node);
+            ast.link(parent, previous, child);
+            previous = child;
+        }
+    }
+
+    private void children(int parent, AstNode... nodes) {
+        children(parent, Arrays.asList(nodes));
+    }
+
+    // Name id of an identifier token in the flat tree's name table
+    private int symbol(Token token) {
+        return token.getSymbol() >= 0 ? token.getSymbol() : ast.names().intern(token.getLexeme());
+    }
+
+    @Override
+    public Integer visit(ProgramNode node) {
+        int flat = ast.add(FlatAst.Kind.PROGRAM, null, node.getPos(), 0);
+        children(flat, node.decls);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(VarDeclNode node) {
+        int flat = ast.add(FlatAst.Kind.VAR_DECL, node.type, node.getPos(), symbol(node.name));
+        children(flat, node.expr);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(FuncDeclNode node) {
+        int flat = ast.add(FlatAst.Kind.FUNC_DECL, node.returnType, node.getPos(), symbol(node.name));
+        List<AstNode> children = new ArrayList<>(node.params);
+        children.add(node.body);
+        children(flat, children);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(TypeNode node) {
+        throw new IllegalArgumentException("Types are stored in their declaration's node");
+    }
+
+    @Override
+    public Integer visit(ParamNode node) {
+        return ast.add(FlatAst.Kind.PARAM, node.type, node.getPos(), symbol(node.name));
+    }
+
+    @Override
+    public Integer visit(CompoundStmtNode node) {
+        int flat = ast.add(FlatAst.Kind.COMPOUND, null, node.getPos(), 0);
+        children(flat, node.statements);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(AssignmentNode node) {
+        int flat = ast.add(FlatAst.Kind.ASSIGNMENT, node.op, node.getPos(), symbol(node.name));
+        children(flat, node.expr);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(ReturnNode node) {
+        int flat = ast.add(FlatAst.Kind.RETURN, null, node.getPos(), 0);
+        children(flat, node.expr);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(ConditionalNode node) {
+        int flat = ast.add(FlatAst.Kind.CONDITIONAL, null, node.getPos(), 0);
+        children(flat, node.condition, node.thenBranch, node.elseBranch);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(WhileNode node) {
+        int flat = ast.add(FlatAst.Kind.WHILE, null, node.getPos(), 0);
+        children(flat, node.condition, node.body);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(ForNode node) {
+        int flat = ast.add(FlatAst.Kind.FOR, null, node.getPos(), 0);
+        children(flat, node.init, node.cond, node.step, node.body);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(IdentExprNode node) {
+        return ast.add(FlatAst.Kind.IDENT, null, node.getPos(), symbol(node.name));
+    }
+
+    @Override
+    public Integer visit(IntLiteralNode node) {
+        return ast.add(FlatAst.Kind.INT_LITERAL, null, node.getPos(), ast.addLiteral(node.value));
+    }
+
+    @Override
+    public Integer visit(FloatLiteralNode node) {
+        long bits = Double.doubleToRawLongBits(node.value);
+        return ast.add(FlatAst.Kind.FLOAT_LITERAL, null, node.getPos(), ast.addLiteral(bits));
+    }
+
+    @Override
+    public Integer visit(StringLiteralNode node) {
+        int symbol = node.token.getSymbol() >= 0 ? node.token.getSymbol() : ast.names().intern(node.value);
+        return ast.add(FlatAst.Kind.STRING_LITERAL, null, node.getPos(), symbol);
+    }
+
+    @Override
+    public Integer visit(CharLiteralNode node) {
+        return ast.add(FlatAst.Kind.CHAR_LITERAL, null, node.getPos(), ast.addLiteral(node.value));
+    }
+
+    @Override
+    public Integer visit(BoolLiteralNode node) {
+        return ast.add(FlatAst.Kind.BOOL_LITERAL, null, node.getPos(), ast.addLiteral(node.value ? 1 : 0));
+    }
+
+    @Override
+    public Integer visit(BinaryOpNode node) {
+        int flat = ast.add(FlatAst.Kind.BINARY_OP, node.op, node.getPos(), 0);
+        children(flat, node.lhs, node.rhs);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(UnaryOpNode node) {
+        int flat = ast.add(FlatAst.Kind.UNARY_OP, node.op, node.getPos(), 0);
+        children(flat, node.operand);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(FnCallNode node) {
+        int flat = ast.add(FlatAst.Kind.FN_CALL, null, node.getPos(), symbol(node.name));
+        children(flat, node.args);
+        return flat;
+    }
+
+    @Override
+    public Integer visit(ErrorNode node) {
+        return ast.add(FlatAst.Kind.ERROR, null, node.getPos(), ast.addMessage(node.message));
+    }
+
+//// EXPANDING /////////////////////////////////////////////////////////////////
+
+    static ProgramNode expand(FlatAst ast) {
+        return (ProgramNode) new FlatAstConverter(ast).expand(ast.root());
+    }
+
+    private AstNode expand(int node) {
+        int pos = ast.pos(node);
+        return switch (ast.kind(node)) {
+            case PROGRAM -> {
+                List<DeclNode> decls = new ArrayList<>();
+                for (int c = ast.firstChild(node); c != FlatAst.NO_NODE; c = ast.nextSibling(c)) {
+                    decls.add((DeclNode) expand(c));
+                }
+                yield new ProgramNode(decls, ast.names());
+            }
+            case VAR_DECL -> new VarDeclNode(name(node), ast.type(node), (ExprNode) child(node, 0));
+            case FUNC_DECL -> {
+                List<ParamNode> params = new ArrayList<>();
+                int c = ast.firstChild(node);
+                for (; ast.kind(c) == FlatAst.Kind.PARAM; c = ast.nextSibling(c)) {
+                    params.add((ParamNode) expand(c));
+                }
+                yield new FuncDeclNode(name(node), params, ast.type(node), (CompoundStmtNode) expand(c));
+            }
+            case PARAM -> new ParamNode(name(node), ast.type(node));
+            case COMPOUND -> {
+                List<AstNode> statements = new ArrayList<>();
+                for (int c = ast.firstChild(node); c != FlatAst.NO_NODE; c = ast.nextSibling(c)) {
+                    statements.add(expand(c));
+                }
+                yield new CompoundStmtNode(statements, new Token(TokenType.SY_LBRACE, "{", pos));
+            }
+            case ASSIGNMENT -> new AssignmentNode(name(node), ast.assignOp(node), (ExprNode) child(node, 0));
+            case RETURN -> new ReturnNode((ExprNode) child(node, 0), pos);
+            case CONDITIONAL -> new ConditionalNode(
+                (ExprNode) child(node, 0), (StmtNode) child(node, 1), (StmtNode) child(node, 2),
+                new Token(TokenType.KW_IF, "if", pos));
+            case WHILE -> new WhileNode(
+                (ExprNode) child(node, 0), (StmtNode) child(node, 1),
+                new Token(TokenType.KW_WHILE, "while", pos));
+            case FOR -> new ForNode(
+                child(node, 0), child(node, 1), child(node, 2), (StmtNode) child(node, 3),
+                new Token(TokenType.KW_FOR, "for", pos));
+            case IDENT -> new IdentExprNode(name(node));
+            case INT_LITERAL -> {
+                long value = ast.intValue(node);
+                yield new IntLiteralNode(value, new TokenLiteral(TokenType.LT_INT, Long.toString(value), value, pos));
+            }
+            case FLOAT_LITERAL -> {
+                double value = ast.floatValue(node);
+                yield new FloatLiteralNode(value,
+                    new TokenLiteral(TokenType.LT_FLOAT, Double.toString(value), value, pos));
+            }
+            case STRING_LITERAL -> {
+                String value = ast.stringValue(node);
+                yield new StringLiteralNode(value, new TokenLiteral(
+                    TokenType.LT_STRING, "\"" + value + "\"", value, pos, ast.symbol(node)));
+            }
+            case CHAR_LITERAL -> {
+                char value = ast.charValue(node);
+                yield new CharLiteralNode(value, new TokenLiteral(TokenType.LT_CHAR, "'" + value + "'", value, pos));
+            }
+            case BOOL_LITERAL -> {
+                boolean value = ast.boolValue(node);
+                yield new BoolLiteralNode(value,
+                    new TokenLiteral(TokenType.LT_BOOL, Boolean.toString(value), value, pos));
+            }
+            case BINARY_OP -> {
+                BinaryOpNode.OpType op = ast.binaryOp(node);
+                Token token = new Token(BINARY_TOKENS[op.ordinal()], BINARY_LEXEMES[op.ordinal()], pos);
+                yield new BinaryOpNode(op, token, (ExprNode) child(node, 0), (ExprNode) child(node, 1));
+            }
+            case UNARY_OP -> {
+                UnaryOpNode.OpType op = ast.unaryOp(node);
+                Token token = op == UnaryOpNode.OpType.NOT
+                    ? new Token(TokenType.SY_NOT, "!", pos)
+                    : new Token(TokenType.SY_SUB, "-", pos);
+                yield new UnaryOpNode(op, token, (ExprNode) child(node, 0));
+            }
+            case FN_CALL -> {
+                List<ExprNode> args = new ArrayList<>();
+                for (int c = ast.firstChild(node); c != FlatAst.NO_NODE; c = ast.nextSibling(c)) {
+                    args.add((ExprNode) expand(c));
+                }
+                yield new FnCallNode(name(node), args);
+            }
+            case ERROR -> new ErrorNode(ast.message(node), pos);
+            case NONE -> null;
+        };
+    }
+
+    private AstNode child(int node, int index) {
+        return expand(ast.child(node, index));
+    }
+
+    private Token name(int node) {
+        return new Token(TokenType.IDENT, ast.name(node), ast.pos(node), ast.symbol(node));
+    }
+}
@@ -10,13 +10,6 @@ public class FloatLiteralNode extends ExprNode {
         this.token = token;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"FloatLiteralNode","value":%s}""",
-            value
-        );
-    }
-    @Override
     public int getPos() {
         return token.getPos();
     }
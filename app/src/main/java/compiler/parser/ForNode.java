@@ -15,16 +15,6 @@ public class ForNode extends StmtNode {
         this.body = body;
         this.startToken = startToken;
     }
-    @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"ForNode","init":%s,"cond":%s,"step":%s,"body":%s}""",
-            init,
-            cond != null ? cond.toString() : "null",
-            step != null ? step.toString() : "null",
-            body
-        );
-    }
     
     @Override
     public int getPos() {
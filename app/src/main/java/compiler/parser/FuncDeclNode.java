@@ -9,6 +9,7 @@ public class FuncDeclNode extends DeclNode {
     public final List<ParamNode> params;
     public final TypeNode returnType; // can be null if not specified
     public final CompoundStmtNode body;
+    public int binding = -1; // Id of the function this declares, set by the semantic analyzer
     public FuncDeclNode(Token name, List<ParamNode> params, TypeNode returnType, CompoundStmtNode body) {
         this.name = name;
         this.params = params;
@@ -17,18 +18,5 @@ public class FuncDeclNode extends DeclNode {
     }
     public int getPos() { return name.getPos(); }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"FuncDeclNode","name":"%s","params":[%s],"returnType":%s,"body":%s}""",
-            name.getLexeme(),
-            String.join(
-                ",",
-                params.stream().map(ParamNode::toString).toList()
-            ),
-            returnType != null ? returnType.toString() : "null",
-            body
-        );
-    }
-    @Override
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
 }
@@ -4,17 +4,11 @@ import compiler.lexer.Token;
 
 public class IdentExprNode extends ExprNode {
     public final Token name;
+    public int binding = -1; // Id of the variable named, set by the semantic analyzer; -1 if unresolved
     public IdentExprNode(Token name) {
         this.name = name;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"IdentExprNode","name":"%s"}""",
-            name.getLexeme()
-        );
-    }
-    @Override
     public int getPos() {
         return name.getPos();
     }
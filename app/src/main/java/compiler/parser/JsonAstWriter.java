@@ -0,0 +1,364 @@
+package compiler.parser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Writes an AST as JSON in one pass, straight to an {@link Appendable}.
+ *
+ * The compact form is what the nodes' {@code toString()} returns. The pretty
+ * form has the same members laid out like Gson's pretty printing: one member
+ * or element per line, indented by two spaces, with empty arrays kept on one
+ * line.
+ */
+public final class JsonAstWriter implements AstVisitor<Void> {
+    private final Appendable out;
+    private final boolean pretty;
+    private int depth;
+    private boolean first = true; // Nothing written yet in the current object or array
+
+    private JsonAstWriter(Appendable out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+    }
+
+    public static void write(AstNode node, Appendable out, boolean pretty) {
+        node.accept(new JsonAstWriter(out, pretty));
+    }
+
+    /**
+     * Writes UTF-8 through a buffer, flushing but not closing {@code out}.
+     */
+    public static void writeUtf8(AstNode node, OutputStream out, boolean pretty) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        write(node, writer, pretty);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static String toJson(AstNode node, boolean pretty) {
+        StringBuilder sb = new StringBuilder();
+        write(node, sb, pretty);
+        return sb.toString();
+    }
+
+//// OUTPUT ////////////////////////////////////////////////////////////////////
+
+    private void write(char c) {
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(CharSequence s) {
+        try {
+            out.append(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void newline() {
+        write('\n');
+        for (int i = 0; i < depth; i++) {
+            write("  ");
+        }
+    }
+
+    private void open(char bracket) {
+        write(bracket);
+        depth++;
+        first = true;
+    }
+
+    private void close(char bracket) {
+        depth--;
+        if (pretty && !first) {
+            newline();
+        }
+        write(bracket);
+        first = false;
+    }
+
+    // Starts the next member or element of the current object or array
+    private void separate() {
+        if (!first) {
+            write(',');
+        }
+        if (pretty) {
+            newline();
+        }
+        first = false;
+    }
+
+    private void key(String name) {
+        separate();
+        write('"');
+        write(name);
+        write(pretty ? "\": " : "\":");
+    }
+
+    private void string(String value) {
+        write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> write("\\\\");
+                case '"'  -> write("\\\"");
+                case '\n' -> write("\\n");
+                case '\r' -> write("\\r");
+                case '\t' -> write("\\t");
+                case '\b' -> write("\\b");
+                case '\f' -> write("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        write(String.format("\\u%04x", (int) c));
+                    } else {
+                        write(c);
+                    }
+                }
+            }
+        }
+        write('"');
+    }
+
+    private void beginNode(String type) {
+        open('{');
+        key("node_type");
+        string(type);
+    }
+
+    private void endNode() {
+        close('}');
+    }
+
+    private void member(String name, String value) {
+        key(name);
+        string(value);
+    }
+
+    private void rawMember(String name, String value) {
+        key(name);
+        write(value);
+    }
+
+    private void member(String name, AstNode node) {
+        key(name);
+        if (node == null) {
+            write("null");
+        } else {
+            node.accept(this);
+        }
+    }
+
+    private void member(String name, TypeNode type) {
+        key(name);
+        if (type == null) {
+            write("null");
+        } else {
+            type.accept(this);
+        }
+    }
+
+    private void member(String name, List<? extends AstNode> nodes) {
+        key(name);
+        open('[');
+        for (AstNode node : nodes) {
+            separate();
+            node.accept(this);
+        }
+        close(']');
+    }
+
+//// NODES /////////////////////////////////////////////////////////////////////
+
+    @Override
+    public Void visit(ProgramNode node) {
+        beginNode("ProgramNode");
+        member("decls", node.decls);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(VarDeclNode node) {
+        beginNode("VarDeclNode");
+        member("name", node.name.getLexeme());
+        member("type", node.type);
+        member("expr", node.expr);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(FuncDeclNode node) {
+        beginNode("FuncDeclNode");
+        member("name", node.name.getLexeme());
+        member("params", node.params);
+        member("returnType", node.returnType);
+        member("body", node.body);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(TypeNode node) {
+        string(node.name().toLowerCase());
+        return null;
+    }
+
+    @Override
+    public Void visit(ParamNode node) {
+        beginNode("ParamNode");
+        member("name", node.name.getLexeme());
+        member("type", node.type);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(CompoundStmtNode node) {
+        beginNode("CompoundStmtNode");
+        member("statements", node.statements);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(AssignmentNode node) {
+        beginNode("AssignmentNode");
+        member("name", node.name.getLexeme());
+        member("op", node.op.name().toLowerCase());
+        member("expr", node.expr);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnNode node) {
+        beginNode("ReturnNode");
+        member("expr", node.expr);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalNode node) {
+        beginNode("ConditionalNode");
+        member("condition", node.condition);
+        member("thenBranch", node.thenBranch);
+        member("elseBranch", node.elseBranch);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(WhileNode node) {
+        beginNode("WhileNode");
+        member("condition", node.condition);
+        member("body", node.body);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(ForNode node) {
+        beginNode("ForNode");
+        member("init", node.init);
+        member("cond", node.cond);
+        member("step", node.step);
+        member("body", node.body);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(IdentExprNode node) {
+        beginNode("IdentExprNode");
+        member("name", node.name.getLexeme());
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(IntLiteralNode node) {
+        beginNode("IntLiteralNode");
+        rawMember("value", Long.toString(node.value));
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(FloatLiteralNode node) {
+        beginNode("FloatLiteralNode");
+        rawMember("value", Double.toString(node.value));
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(StringLiteralNode node) {
+        beginNode("StringLiteralNode");
+        member("value", node.value);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(CharLiteralNode node) {
+        beginNode("CharLiteralNode");
+        member("value", String.valueOf(node.value));
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(BoolLiteralNode node) {
+        beginNode("BoolLiteralNode");
+        rawMember("value", Boolean.toString(node.value));
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryOpNode node) {
+        beginNode("BinaryOpNode");
+        member("op", node.op.name().toLowerCase());
+        member("lhs", node.lhs);
+        member("rhs", node.rhs);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryOpNode node) {
+        beginNode("UnaryOpNode");
+        member("op", node.op.name().toLowerCase());
+        member("operand", node.operand);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(FnCallNode node) {
+        beginNode("FnCallNode");
+        member("name", node.name.getLexeme());
+        member("args", node.args);
+        endNode();
+        return null;
+    }
+
+    @Override
+    public Void visit(ErrorNode node) {
+        beginNode("ErrorNode");
+        member("message", node.message);
+        endNode();
+        return null;
+    }
+}
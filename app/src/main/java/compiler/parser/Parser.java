@@ -1,55 +1,349 @@
 package compiler.parser;
 
+import compiler.error.Error;
+import compiler.error.ErrorCode;
 import compiler.error.ErrorList;
 import compiler.lexer.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class Parser {
-    private final List<Token> tokens;
+    private static final int MIN_BATCH_SIZE = 16 * 1024; // Tokens
+
+    // Binary operators by token type ordinal, precedence 0 for other tokens
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+    private static final BinaryOpNode.OpType[] BINARY_OPS = new BinaryOpNode.OpType[TokenType.values().length];
+
+    static {
+        binary(1, TokenType.SY_OR, BinaryOpNode.OpType.OR);
+        binary(2, TokenType.SY_AND, BinaryOpNode.OpType.AND);
+        binary(3, TokenType.SY_EQ, BinaryOpNode.OpType.EQ);
+        binary(3, TokenType.SY_NEQ, BinaryOpNode.OpType.NEQ);
+        binary(3, TokenType.SY_GTE, BinaryOpNode.OpType.GTE);
+        binary(3, TokenType.SY_LTE, BinaryOpNode.OpType.LTE);
+        binary(3, TokenType.SY_GT, BinaryOpNode.OpType.GT);
+        binary(3, TokenType.SY_LT, BinaryOpNode.OpType.LT);
+        binary(4, TokenType.SY_ADD, BinaryOpNode.OpType.ADD);
+        binary(4, TokenType.SY_SUB, BinaryOpNode.OpType.SUB);
+        binary(5, TokenType.SY_MUL, BinaryOpNode.OpType.MUL);
+        binary(5, TokenType.SY_DIV, BinaryOpNode.OpType.DIV);
+    }
+
+    private static void binary(int precedence, TokenType type, BinaryOpNode.OpType op) {
+        PRECEDENCE[type.ordinal()] = precedence;
+        BINARY_OPS[type.ordinal()] = op;
+    }
+
+    private final TokenStream tokens;
+    private final ErrorList errors;
+    private final int limit; // Parsing stops at this token index
     private int pos = 0;
+    private int lastErrorPos = -1;
 
     public static ProgramNode parse(List<Token> tokens) throws ErrorList {
-        Parser parser = new Parser(tokens);
+        return parse(TokenStream.of(tokens));
+    }
+
+    /**
+     * Parses the whole stream, throwing every syntax error found at once.
+     */
+    public static ProgramNode parse(TokenStream tokens) throws ErrorList {
+        ErrorList errors = new ErrorList();
+        ProgramNode program = parse(tokens, errors);
+        if (!errors.isEmpty()) {
+            throw errors;
+        }
+        return program;
+    }
+
+    /**
+     * Parses as much of the stream as possible, adding syntax errors to
+     * {@code errors} instead of stopping at the first one. A statement that
+     * fails to parse is replaced by an {@link ErrorNode} and parsing resumes
+     * after the next `;` or braced block, or at the next `}`, `var` or
+     * `func`. A declaration that fails before its body is skipped up to the
+     * next top-level `var` or `func`.
+     */
+    public static ProgramNode parse(TokenStream tokens, ErrorList errors) {
+        Parser parser = new Parser(tokens, errors);
         return parser.parseRoot();
     }
 
-    private Parser(List<Token> tokens) {
+    private Parser(TokenStream tokens, ErrorList errors) {
+        this(tokens, errors, 0, Integer.MAX_VALUE);
+    }
+
+    private Parser(TokenStream tokens, ErrorList errors, int from, int limit) {
         this.tokens = tokens;
+        this.errors = errors;
+        this.pos = from;
+        this.limit = limit;
+    }
+
+//// PARALLEL PARSING //////////////////////////////////////////////////////////
+
+    /**
+     * Parses on the common {@link ForkJoinPool}, see
+     * {@link #parseParallel(TokenStream, ErrorList, ForkJoinPool)}.
+     */
+    public static ProgramNode parseParallel(TokenStream tokens) throws ErrorList {
+        ErrorList errors = new ErrorList();
+        ProgramNode program = parseParallel(tokens, errors, ForkJoinPool.commonPool());
+        if (!errors.isEmpty()) {
+            throw errors;
+        }
+        return program;
+    }
+
+    /**
+     * Parses batches of top-level declarations in parallel on the given
+     * pool. The tree and the errors, in order, are the ones
+     * {@link #parse(TokenStream, ErrorList)} gives, except that a streamed
+     * source is lexed completely first, so an unrecognized token in it is
+     * reported before any syntax error. Small inputs are parsed sequentially.
+     */
+    public static ProgramNode parseParallel(TokenStream tokens, ErrorList errors, ForkJoinPool pool) {
+        Parser root = new Parser(tokens, errors);
+        root.lexAll();
+        int batchSize = Math.max(MIN_BATCH_SIZE, tokens.size() / (pool.getParallelism() * 4));
+        return root.parseParallel(pool, batchSize);
+    }
+
+    static ProgramNode parseParallel(TokenStream tokens, ErrorList errors, ForkJoinPool pool, int batchSize) {
+        Parser root = new Parser(tokens, errors);
+        root.lexAll();
+        return root.parseParallel(pool, batchSize);
+    }
+
+    // Batches read the stream from several threads, so none of them may lex
+    private void lexAll() {
+        try {
+            tokens.has(Integer.MAX_VALUE);
+        } catch (ErrorList e) {
+            report(e);
+        }
+    }
+
+    private ProgramNode parseParallel(ForkJoinPool pool, int batchSize) {
+        int[] bounds = splitDecls(tokens, batchSize);
+        int batchCount = bounds.length - 1;
+        if (batchCount == 1) {
+            return parseRoot();
+        }
+
+        Parser[] parsers = new Parser[batchCount];
+        List<ForkJoinTask<List<DeclNode>>> tasks = new ArrayList<>(batchCount);
+        for (int k = 0; k < batchCount; k++) {
+            Parser parser = new Parser(tokens, new ErrorList(), bounds[k], bounds[k + 1]);
+            parsers[k] = parser;
+            tasks.add(pool.submit(parser::parseDecls));
+        }
+        List<DeclNode> decls = new ArrayList<>();
+        for (int k = 0; k < batchCount; k++) {
+            decls.addAll(tasks.get(k).join());
+            report(parsers[k].errors);
+        }
+        return new ProgramNode(decls, tokens.names());
+    }
+
+    /**
+     * Returns the token indices where batches of top-level declarations
+     * start, beginning with 0 and ending with the stream size. A batch ends at
+     * the first declaration start at least {@code batchSize} tokens after
+     * its own. A `var` or `func` outside of braces always starts a
+     * declaration in a sequential parse too, since error recovery never skips
+     * past one, so each batch parses the same on its own.
+     */
+    static int[] splitDecls(TokenStream tokens, int batchSize) {
+        int size = tokens.size();
+        int[] bounds = new int[size / batchSize + 2];
+        int count = 1;
+        int next = batchSize;
+        int depth = 0;
+        for (int i = 0; i < size; i++) {
+            TokenType type = tokens.type(i);
+            if (type == TokenType.SY_LBRACE) {
+                depth++;
+            } else if (type == TokenType.SY_RBRACE) {
+                depth = Math.max(depth - 1, 0);
+            } else if (depth == 0 && i >= next && (type == TokenType.KW_VAR || type == TokenType.KW_FUNC)) {
+                bounds[count++] = i;
+                next = i + batchSize;
+            }
+        }
+        bounds[count++] = size;
+        return Arrays.copyOf(bounds, count);
     }
 
 //// HELPER METHODS ////////////////////////////////////////////////////////////
 
+    // Index of the current token, the last one (EOF) once past the end
+    private int current() {
+        return tokens.has(pos) ? pos : tokens.size() - 1;
+    }
+
+    private TokenType peekType() {
+        return tokens.type(current());
+    }
+
+    private TokenType peekType(int offset) {
+        return tokens.has(pos + offset) ? tokens.type(pos + offset) : TokenType.EOF;
+    }
+
     private Token peek() {
-        return pos < tokens.size() ? tokens.get(pos) : tokens.get(tokens.size() - 1);
+        return tokens.get(current());
+    }
+
+    private Token token(int index) {
+        return tokens.get(index);
     }
 
-    private Token advance() {
-        if (pos < tokens.size())
+    // Returns the index of the consumed token, which stays readable until
+    // the next one is consumed
+    private int advance() {
+        if (pos < limit && tokens.has(pos))
             pos++;
-        return tokens.get(pos - 1);
+        tokens.release(pos - 1);
+        return pos - 1;
     }
 
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (peek().getType() == type) {
-                advance();
-                return true;
-            }
+    private boolean match(TokenType type) {
+        if (peekType() == type) {
+            advance();
+            return true;
         }
         return false;
     }
 
     private boolean check(TokenType type) {
-        return peek().getType() == type;
+        return peekType() == type;
     }
 
-    private Token expect(TokenType type) {
+    private int expect(TokenType type) {
         if (check(type))
             return advance();
         Token token = peek();
-        throw new ErrorList(String.format(
-            "Expected %s, got `%s`", type.name().toUpperCase(), token.getLexeme()
-        ), token.getPos());
+        throw new ErrorList(syntaxError(expected(type, token), token));
+    }
+
+    private static String expected(TokenType type, Token token) {
+        return String.format("Expected %s, got `%s`", type.name().toUpperCase(), token.getLexeme());
+    }
+
+    // A `;` that's missing before the start of another statement or
+    // declaration is reported without abandoning the statement
+    private void expectSemicolon() {
+        if (match(TokenType.SY_SEMICOLON))
+            return;
+        if (isStatementStart() || check(TokenType.KW_VAR) || check(TokenType.KW_FUNC)
+                || check(TokenType.SY_RBRACE)) {
+            Token token = peek();
+            report(syntaxError(expected(TokenType.SY_SEMICOLON, token), token));
+            return;
+        }
+        expect(TokenType.SY_SEMICOLON);
+    }
+
+//// ERROR RECOVERY ////////////////////////////////////////////////////////////
+
+    // Whether all tokens were consumed. A streamed source that fails to lex
+    // further ends there too, and so does a batch at its limit
+    private boolean atEnd() {
+        if (pos >= limit)
+            return true;
+        try {
+            return !tokens.has(pos) || tokens.type(pos) == TokenType.EOF;
+        } catch (ErrorList e) {
+            report(e);
+            return !tokens.has(pos);
+        }
+    }
+
+    private static Error syntaxError(String message, Token token) {
+        return new Error(ErrorCode.SYNTAX, message, token.getPos(), token.getLexeme().length());
+    }
+
+    // Errors at the same position as the last one are follow-ups of it
+    private void report(Error error) {
+        if (error.getPosition() != lastErrorPos) {
+            errors.add(error);
+            lastErrorPos = error.getPosition();
+        }
+    }
+
+    private void report(ErrorList e) {
+        for (var error : e.getAll()) {
+            report(error);
+        }
+    }
+
+    private ErrorNode recoverStatement(ErrorList e, int start) {
+        report(e);
+        if (pos == start) {
+            advance();
+        }
+        skipStatement();
+        var error = e.getAll().get(0);
+        return new ErrorNode(error.getMessage(), error.getPosition());
+    }
+
+    private void recoverDecl(ErrorList e, int start) {
+        report(e);
+        if (pos == start) {
+            advance();
+        }
+        skipDecl();
+    }
+
+    // Skips up to and including the next `;` or braced block, or up to a
+    // `}`, `var` or `func` that can't be part of the failed statement
+    private void skipStatement() {
+        int depth = 0;
+        while (!atEnd()) {
+            switch (peekType()) {
+                case TokenType.SY_SEMICOLON -> {
+                    advance();
+                    if (depth == 0)
+                        return;
+                }
+                case TokenType.SY_LBRACE -> {
+                    depth++;
+                    advance();
+                }
+                case TokenType.SY_RBRACE -> {
+                    if (depth == 0)
+                        return;
+                    advance();
+                    if (--depth == 0)
+                        return;
+                }
+                case TokenType.KW_VAR -> {
+                    if (depth == 0)
+                        return;
+                    advance();
+                }
+                case TokenType.KW_FUNC -> {
+                    return;
+                }
+                default -> advance();
+            }
+        }
+    }
+
+    // Skips to the next top-level `var` or `func`, past any braced blocks
+    private void skipDecl() {
+        int depth = 0;
+        while (!atEnd()) {
+            TokenType type = peekType();
+            if (depth == 0 && (type == TokenType.KW_VAR || type == TokenType.KW_FUNC))
+                return;
+            if (type == TokenType.SY_LBRACE) {
+                depth++;
+            } else if (type == TokenType.SY_RBRACE && depth > 0) {
+                depth--;
+            }
+            advance();
+        }
     }
 
 //// MAIN LOGIC ////////////////////////////////////////////////////////////////
@@ -57,15 +351,19 @@ public class Parser {
     // Root = Decls
     private ProgramNode parseRoot() {
         List<DeclNode> decls = parseDecls();
-        expect(TokenType.EOF);
-        return new ProgramNode(decls);
+        return new ProgramNode(decls, tokens.names());
     }
 
     // Decls = Decl Decls | ε
     private List<DeclNode> parseDecls() {
         List<DeclNode> decls = new ArrayList<>();
-        while (check(TokenType.KW_VAR) || check(TokenType.KW_FUNC)) {
-            decls.add(parseDecl());
+        while (!atEnd()) {
+            int start = pos;
+            try {
+                decls.add(parseDecl());
+            } catch (ErrorList e) {
+                recoverDecl(e, start);
+            }
         }
         return decls;
     }
@@ -77,23 +375,23 @@ public class Parser {
         if (check(TokenType.KW_FUNC))
             return parseFuncDecl();
         Token token = peek();
-        throw new ErrorList(String.format(
+        throw new ErrorList(syntaxError(String.format(
             "Expected declaration, got `%s`", token.getLexeme()
-        ), token.getPos());
+        ), token));
     }
 
     // VarDecl = "var" IDENT ":" Type "=" Expr ";"
     //         | "var" IDENT ":" Type ";"
     private VarDeclNode parseVarDecl() {
         expect(TokenType.KW_VAR);
-        Token name = expect(TokenType.IDENT);
+        Token name = token(expect(TokenType.IDENT));
         expect(TokenType.SY_COLON);
         TypeNode type = parseType();
         ExprNode expr = null;
         if (match(TokenType.SY_ASSIGN)) {
             expr = parseExpr();
         }
-        expect(TokenType.SY_SEMICOLON);
+        expectSemicolon();
         return new VarDeclNode(name, type, expr);
     }
 
@@ -101,7 +399,7 @@ public class Parser {
     // "(" Params ")" CompoundStmt
     private FuncDeclNode parseFuncDecl() {
         expect(TokenType.KW_FUNC);
-        Token name = expect(TokenType.IDENT);
+        Token name = token(expect(TokenType.IDENT));
         expect(TokenType.SY_LPAREN);
         List<ParamNode> params = parseParams();
         expect(TokenType.SY_RPAREN);
@@ -115,29 +413,31 @@ public class Parser {
 
     // Type = "int" | "float" | "string" | "char" | "bool"
     private TypeNode parseType() {
-        Token t = advance();
-        return switch (t.getType()) {
+        int t = current();
+        TypeNode type = switch (tokens.type(t)) {
             case TokenType.TY_INT    -> TypeNode.INT;
             case TokenType.TY_FLOAT  -> TypeNode.FLOAT;
             case TokenType.TY_STRING -> TypeNode.STRING;
             case TokenType.TY_CHAR   -> TypeNode.CHAR;
             case TokenType.TY_BOOL   -> TypeNode.BOOL;
-            default -> throw new ErrorList(String.format(
-                "Expected type, got `%s`", t.getLexeme()
-            ), t.getPos());
+            default -> throw new ErrorList(syntaxError(String.format(
+                "Expected type, got `%s`", tokens.lexeme(t)
+            ), token(t)));
         };
+        advance();
+        return type;
     }
 
     // Params = IDENT ":" Type "," Params | IDENT ":" Type | ε
     private List<ParamNode> parseParams() {
         List<ParamNode> params = new ArrayList<>();
         if (check(TokenType.IDENT)) {
-            Token name = expect(TokenType.IDENT);
+            Token name = token(expect(TokenType.IDENT));
             expect(TokenType.SY_COLON);
             TypeNode type = parseType();
             params.add(new ParamNode(name, type));
             while (match(TokenType.SY_COMMA)) {
-                name = expect(TokenType.IDENT);
+                name = token(expect(TokenType.IDENT));
                 expect(TokenType.SY_COLON);
                 type = parseType();
                 params.add(new ParamNode(name, type));
@@ -148,20 +448,29 @@ public class Parser {
 
     // CompoundStmt = "{" Statements "}"
     private CompoundStmtNode parseCompoundStmt() {
-        Token start = expect(TokenType.SY_LBRACE);
+        Token start = token(expect(TokenType.SY_LBRACE));
         List<AstNode> stmts = parseStatements();
-        expect(TokenType.SY_RBRACE);
+        if (!match(TokenType.SY_RBRACE)) {
+            // Only `func` or the end of the input stop the statements early
+            Token token = peek();
+            report(syntaxError(expected(TokenType.SY_RBRACE, token), token));
+        }
         return new CompoundStmtNode(stmts, start);
     }
 
     // Statements = VarDecl Statements | Statement Statements | ε
     private List<AstNode> parseStatements() {
         List<AstNode> stmts = new ArrayList<>();
-        while (check(TokenType.KW_VAR) || isStatementStart()) {
-            if (check(TokenType.KW_VAR)) {
-                stmts.add(parseVarDecl());
-            } else {
-                stmts.add(parseStatement());
+        while (!check(TokenType.SY_RBRACE) && !check(TokenType.KW_FUNC) && !atEnd()) {
+            int start = pos;
+            try {
+                if (check(TokenType.KW_VAR)) {
+                    stmts.add(parseVarDecl());
+                } else {
+                    stmts.add(parseStatement());
+                }
+            } catch (ErrorList e) {
+                stmts.add(recoverStatement(e, start));
             }
         }
         return stmts;
@@ -188,7 +497,7 @@ public class Parser {
             StmtNode stmt = lookaheadAssignOp()
                 ? parseAssignment()
                 : parseExpr();
-            expect(TokenType.SY_SEMICOLON);
+            expectSemicolon();
             return stmt;
         } else if (check(TokenType.KW_IF)) {
             return parseConditional();
@@ -200,47 +509,45 @@ public class Parser {
             return parseCompoundStmt();
         }
         Token token = peek();
-        throw new ErrorList(String.format(
+        throw new ErrorList(syntaxError(String.format(
             "Expected statement, got `%s`", token.getLexeme()
-        ), token.getPos());
+        ), token));
     }
 
     private boolean lookaheadAssignOp() {
         if (check(TokenType.IDENT)) {
-            if (pos + 1 < tokens.size()) {
-                TokenType t = tokens.get(pos + 1).getType();
-                return t == TokenType.SY_ASSIGN
-                    || t == TokenType.SY_ADDASSIGN
-                    || t == TokenType.SY_SUBASSIGN
-                    || t == TokenType.SY_MULASSIGN
-                    || t == TokenType.SY_DIVASSIGN;
-            }
+            TokenType t = peekType(1);
+            return t == TokenType.SY_ASSIGN
+                || t == TokenType.SY_ADDASSIGN
+                || t == TokenType.SY_SUBASSIGN
+                || t == TokenType.SY_MULASSIGN
+                || t == TokenType.SY_DIVASSIGN;
         }
         return false;
     }
 
     // Assignment = IDENT '=' Expr ';' | IDENT '+=' Expr ';' | ...
     private AssignmentNode parseAssignment() {
-        Token name = expect(TokenType.IDENT);
-        Token op = expect(tokens.get(pos).getType());
-        ExprNode expr = parseExpr();
-        AssignmentNode.OpType type = switch (op.getLexeme()) {
-            case "="  -> AssignmentNode.OpType.ASSIGN;
-            case "+=" -> AssignmentNode.OpType.ADD_ASSIGN;
-            case "-=" -> AssignmentNode.OpType.SUB_ASSIGN;
-            case "*=" -> AssignmentNode.OpType.MUL_ASSIGN;
-            case "/=" -> AssignmentNode.OpType.DIV_ASSIGN;
-            default -> throw new ErrorList(String.format(
-                "Expected assignment operator, got `%s`", op.getLexeme()
-            ), op.getPos());
+        Token name = token(expect(TokenType.IDENT));
+        int op = advance();
+        AssignmentNode.OpType type = switch (tokens.type(op)) {
+            case TokenType.SY_ASSIGN    -> AssignmentNode.OpType.ASSIGN;
+            case TokenType.SY_ADDASSIGN -> AssignmentNode.OpType.ADD_ASSIGN;
+            case TokenType.SY_SUBASSIGN -> AssignmentNode.OpType.SUB_ASSIGN;
+            case TokenType.SY_MULASSIGN -> AssignmentNode.OpType.MUL_ASSIGN;
+            case TokenType.SY_DIVASSIGN -> AssignmentNode.OpType.DIV_ASSIGN;
+            default -> throw new ErrorList(syntaxError(String.format(
+                "Expected assignment operator, got `%s`", tokens.lexeme(op)
+            ), token(op)));
         };
+        ExprNode expr = parseExpr();
         return new AssignmentNode(name, type, expr);
     }
 
     // Conditional = 'if' '(' Expr ')' Statement 'else' Statement | 'if' '(' Expr
     // ')' Statement
     private ConditionalNode parseConditional() {
-        Token start = expect(TokenType.KW_IF);
+        Token start = token(expect(TokenType.KW_IF));
         expect(TokenType.SY_LPAREN);
         ExprNode cond = parseExpr();
         expect(TokenType.SY_RPAREN);
@@ -293,163 +600,94 @@ public class Parser {
             return new ForNode(init, cond, step, body, start);
         }
         Token token = peek();
-        throw new ErrorList(String.format(
+        throw new ErrorList(syntaxError(String.format(
             "Expected loop statement, found `%s`", token.getLexeme()
-        ), token.getPos());
+        ), token));
     }
 
     // Return = 'return' Expr ';'
     private ReturnNode parseReturn() {
-        Token ret = expect(TokenType.KW_RETURN);
+        int ret = tokens.pos(expect(TokenType.KW_RETURN));
         ExprNode expr = parseExpr();
-        expect(TokenType.SY_SEMICOLON);
-        return new ReturnNode(expr, ret.getPos());
+        expectSemicolon();
+        return new ReturnNode(expr, ret);
     }
 
     // --- Expression Parsing ---
-    // Expr = Expr '||' Expr2 | Expr2
+    // Expr = Unary (BinOp Unary)*, where BinOp binds by its precedence:
+    // '||' < '&&' < comparisons < '+' '-' < '*' '/', all left-associative
     private ExprNode parseExpr() {
-        ExprNode left = parseExpr2();
-        Token opToken = peek();
-        while (match(TokenType.SY_OR)) {
-            ExprNode right = parseExpr2();
-            left = new BinaryOpNode(BinaryOpNode.OpType.OR, opToken, left, right);
-            opToken = peek();
-        }
-        return left;
-    }
-
-    // Expr2 = Expr2 '&&' Expr3 | Expr3
-    private ExprNode parseExpr2() {
-        ExprNode left = parseExpr3();
-        Token opToken = peek();
-        while (match(TokenType.SY_AND)) {
-            ExprNode right = parseExpr3();
-            left = new BinaryOpNode(BinaryOpNode.OpType.AND, opToken, left, right);
-            opToken = peek();
-        }
-        return left;
-    }
-
-    // Expr3 = Expr4 '==' Expr4 | ...
-    private ExprNode parseExpr3() {
-        ExprNode left = parseExpr4();
-        while (true) {
-            Token opToken = peek();
-            if (match(TokenType.SY_EQ)) {
-                ExprNode right = parseExpr4();
-                left = new BinaryOpNode(BinaryOpNode.OpType.EQ, opToken, left, right);
-            } else if (match(TokenType.SY_NEQ)) {
-                ExprNode right = parseExpr4();
-                left = new BinaryOpNode(BinaryOpNode.OpType.NEQ, opToken, left, right);
-            } else if (match(TokenType.SY_GTE)) {
-                ExprNode right = parseExpr4();
-                left = new BinaryOpNode(BinaryOpNode.OpType.GTE, opToken, left, right);
-            } else if (match(TokenType.SY_LTE)) {
-                ExprNode right = parseExpr4();
-                left = new BinaryOpNode(BinaryOpNode.OpType.LTE, opToken, left, right);
-            } else if (match(TokenType.SY_GT)) {
-                ExprNode right = parseExpr4();
-                left = new BinaryOpNode(BinaryOpNode.OpType.GT, opToken, left, right);
-            } else if (match(TokenType.SY_LT)) {
-                ExprNode right = parseExpr4();
-                left = new BinaryOpNode(BinaryOpNode.OpType.LT, opToken, left, right);
-            } else {
-                break;
-            }
-        }
-        return left;
-    }
-
-    // Expr4 = Expr4 '+' Expr5 | Expr4 '-' Expr5 | Expr5
-    private ExprNode parseExpr4() {
-        ExprNode left = parseExpr5();
-        while (true) {
-            Token opToken = peek();
-            if (match(TokenType.SY_ADD)) {
-                ExprNode right = parseExpr5();
-                left = new BinaryOpNode(BinaryOpNode.OpType.ADD, opToken, left, right);
-            } else if (match(TokenType.SY_SUB)) {
-                ExprNode right = parseExpr5();
-                left = new BinaryOpNode(BinaryOpNode.OpType.SUB, opToken, left, right);
-            } else {
-                break;
-            }
-        }
-        return left;
+        return parseBinary(1);
     }
 
-    // Expr5 = Expr5 '*' Expr6 | Expr5 '/' Expr6 | Expr6
-    private ExprNode parseExpr5() {
-        ExprNode left = parseExpr6();
+    // Parses operands joined by operators of at least the given precedence.
+    // Each operator takes as its right operand everything that binds tighter
+    private ExprNode parseBinary(int minPrecedence) {
+        ExprNode left = parseUnary();
         while (true) {
-            Token opToken = peek();
-            if (match(TokenType.SY_MUL)) {
-                ExprNode right = parseExpr6();
-                left = new BinaryOpNode(BinaryOpNode.OpType.MUL, opToken, left, right);
-            } else if (match(TokenType.SY_DIV)) {
-                ExprNode right = parseExpr6();
-                left = new BinaryOpNode(BinaryOpNode.OpType.DIV, opToken, left, right);
-            } else {
-                break;
+            int opToken = current();
+            TokenType type = peekType();
+            int precedence = PRECEDENCE[type.ordinal()];
+            if (precedence < minPrecedence) {
+                return left;
             }
+            advance();
+            Token op = token(opToken);
+            ExprNode right = parseBinary(precedence + 1);
+            left = new BinaryOpNode(BINARY_OPS[type.ordinal()], op, left, right);
         }
-        return left;
     }
 
-    // Expr6 = '!' Expr7 | '-' Expr7 | Expr7
-    private ExprNode parseExpr6() {
-        Token opToken = peek();
+    // Unary = '!' Primary | '-' Primary | Primary
+    private ExprNode parseUnary() {
+        int opToken = current();
         if (match(TokenType.SY_NOT)) {
-            ExprNode expr = parseExpr7();
-            return new UnaryOpNode(UnaryOpNode.OpType.NOT, opToken, expr);
+            Token op = token(opToken);
+            ExprNode expr = parsePrimary();
+            return new UnaryOpNode(UnaryOpNode.OpType.NOT, op, expr);
         } else if (match(TokenType.SY_SUB)) {
-            ExprNode expr = parseExpr7();
-            return new UnaryOpNode(UnaryOpNode.OpType.NEGATE, opToken, expr);
+            Token op = token(opToken);
+            ExprNode expr = parsePrimary();
+            return new UnaryOpNode(UnaryOpNode.OpType.NEGATE, op, expr);
         } else {
-            return parseExpr7();
+            return parsePrimary();
         }
     }
 
-    // Expr7 = FnCall | '(' Expr ')' | IDENT | LT_INT | LT_FLOAT | LT_STRING |
+    // Primary = FnCall | '(' Expr ')' | IDENT | LT_INT | LT_FLOAT | LT_STRING |
     // LT_CHAR | LT_BOOL
-    private ExprNode parseExpr7() {
-        Token peekedToken = peek();
+    private ExprNode parsePrimary() {
+        int peeked = current();
         if (check(TokenType.IDENT)) {
-            if (pos + 1 < tokens.size() && tokens.get(pos + 1).getType() == TokenType.SY_LPAREN) {
+            if (peekType(1) == TokenType.SY_LPAREN) {
                 return parseFnCall();
             } else {
-                return new IdentExprNode(advance());
+                return new IdentExprNode(token(advance()));
             }
         } else if (match(TokenType.SY_LPAREN)) {
             ExprNode expr = parseExpr();
             expect(TokenType.SY_RPAREN);
             return expr;
         } else if (match(TokenType.LT_INT)) {
-            TokenLiteral token = (TokenLiteral) peekedToken;
-            return new IntLiteralNode((Long) token.getValue(), token);
+            return new IntLiteralNode(tokens.intValue(peeked), token(peeked));
         } else if (match(TokenType.LT_FLOAT)) {
-            TokenLiteral token = (TokenLiteral) peekedToken;
-            return new FloatLiteralNode((Double) token.getValue(), token);
+            return new FloatLiteralNode(tokens.floatValue(peeked), token(peeked));
         } else if (match(TokenType.LT_STRING)) {
-            TokenLiteral token = (TokenLiteral) peekedToken;
-            return new StringLiteralNode((String) token.getValue(), token);
+            return new StringLiteralNode(tokens.stringValue(peeked), token(peeked));
         } else if (match(TokenType.LT_CHAR)) {
-            TokenLiteral token = (TokenLiteral) peekedToken;
-            return new CharLiteralNode((Character) token.getValue(), token);
+            return new CharLiteralNode(tokens.charValue(peeked), token(peeked));
         } else if (match(TokenType.LT_BOOL)) {
-            TokenLiteral token = (TokenLiteral) peekedToken;
-            return new BoolLiteralNode((Boolean) token.getValue(), token);
+            return new BoolLiteralNode(tokens.boolValue(peeked), token(peeked));
         }
         Token token = peek();
-        throw new ErrorList(String.format(
+        throw new ErrorList(syntaxError(String.format(
             "Expected value, got `%s`", token.getLexeme()
-        ), token.getPos());
+        ), token));
     }
 
     // FnCall = IDENT '(' ArgsList ')'
     private FnCallNode parseFnCall() {
-        Token name = expect(TokenType.IDENT);
+        Token name = token(expect(TokenType.IDENT));
         expect(TokenType.SY_LPAREN);
         List<ExprNode> args = parseArgsList();
         expect(TokenType.SY_RPAREN);
@@ -2,22 +2,19 @@ package compiler.parser;
 
 import java.util.*;
 
+import compiler.lexer.NameTable;
+
 public class ProgramNode extends AstNode {
     public final List<DeclNode> decls;
+    public final NameTable names; // Table the name tokens' symbol ids refer to
     public ProgramNode(List<DeclNode> decls) {
+        this(decls, new NameTable());
+    }
+    public ProgramNode(List<DeclNode> decls, NameTable names) {
         this.decls = decls;
+        this.names = names;
     }
     public int getPos() { return 0; }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"ProgramNode","decls":[%s]}""",
-            String.join(
-                ",",
-                decls.stream().map(DeclNode::toString).toList()
-            )
-        );
-    }
-    @Override
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
 }
@@ -10,12 +10,5 @@ public class ReturnNode extends StmtNode {
     @Override
     public int getPos() { return pos; }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"ReturnNode","expr":%s}""",
-            expr != null ? expr.toString() : "null"
-        );
-    }
-    @Override
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
 }
@@ -10,20 +10,6 @@ public class StringLiteralNode extends ExprNode {
         this.token = token;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"StringLiteralNode","value":"%s"}""",
-            value
-            .replace("\\", "\\\\")
-            .replace("\"", "\\\"")
-            .replace("\n", "\\n")
-            .replace("\r", "\\r")
-            .replace("\t", "\\t")
-            .replace("\b", "\\b")
-            .replace("\f", "\\f")
-        );
-    }
-    @Override
     public int getPos() { return token.getPos(); }
     @Override
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
@@ -15,14 +15,6 @@ public class UnaryOpNode extends ExprNode {
         this.operand = operand;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"UnaryOpNode","op":"%s","operand":%s}""",
-            op.name().toLowerCase(),
-            operand.toString()
-        );
-    }
-    @Override
     public int getPos() { return token.getPos(); }
     @Override
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
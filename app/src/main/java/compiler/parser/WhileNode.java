@@ -12,14 +12,6 @@ public class WhileNode extends StmtNode {
         this.token = token;
     }
     @Override
-    public String toString() {
-        return String.format("""
-            {"node_type":"WhileNode","condition":%s,"body":%s}""",
-            condition,
-            body
-        );
-    }
-    @Override
     public int getPos() { return token.getPos(); }
     public <R> R accept(AstVisitor<R> visitor) { return visitor.visit(this); }
 }
@@ -0,0 +1,278 @@
+package compiler.runtime;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * What every way of running a program shares: printing and reading values,
+ * integer division, how deep calls may nest and the thread programs run
+ * on. A program compiled to a class calls it directly, and it's what
+ * starts one.
+ *
+ * It uses nothing but the JDK, so a {@code .jar} of the program needs only
+ * this class besides its own, and depends on none of the engines. It fails
+ * with a {@link Failure} naming the {@link compiler.error.ErrorCode}.
+ */
+public final class MacsRuntime {
+    /**
+     * Calls that may be running at once, main() included. Past that a
+     * program fails with STACK_OVERFLOW in every engine.
+     */
+    public static final int MAX_DEPTH = 1 << 16;
+
+    /**
+     * Static field of a compiled program holding the runtime it calls.
+     */
+    public static final String FIELD = "$runtime";
+
+    /**
+     * Static constant of a compiled program: where its main() is declared,
+     * or 0.
+     */
+    public static final String MAIN_POS = "$mainPos";
+
+    /**
+     * Static method of a compiled program initializing its globals.
+     */
+    public static final String INIT = "$init";
+
+    /**
+     * Stack of the thread programs run on, enough for the calls of the
+     * deepest program that doesn't fail in any of the engines. The memory is
+     * only reserved, pages are committed as the stack reaches them.
+     */
+    public static final long STACK_BYTES = 1L << 30;
+
+    public static final class Failure extends RuntimeException {
+        public final String code; // Name of the ErrorCode
+        public final int pos;
+        public final int length;
+
+        public Failure(String code, String message, int pos, int length) {
+            super(message, null, false, false);
+            this.code = code;
+            this.pos = pos;
+            this.length = length;
+        }
+    }
+
+    private final BufferedReader in;
+    private final Writer out;
+
+    public MacsRuntime(Reader in, Writer out) {
+        this.in = in instanceof BufferedReader reader ? reader : new BufferedReader(in);
+        this.out = out;
+    }
+
+    /**
+     * Runs a compiled program on the standard streams, exiting with status
+     * 1 if it fails. What the main class of a program's {@code .jar} calls.
+     */
+    public static void launch(Class<?> program) {
+        MacsRuntime runtime = new MacsRuntime(new InputStreamReader(System.in, StandardCharsets.UTF_8),
+            new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        try {
+            runtime.run(program);
+        } catch (Failure failure) {
+            System.err.println("Error while running the program:");
+            System.err.printf("Error at position %d: %s\n", failure.pos, failure.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Initializes the program's globals, then calls its main() if it has
+     * one, on a thread with a stack of {@link #STACK_BYTES}. Flushes the
+     * output but doesn't close it.
+     */
+    public void run(Class<?> program) throws Failure {
+        onDeepStack(() -> {
+            try {
+                program.getField(FIELD).set(null, this);
+                program.getMethod(INIT).invoke(null);
+                Method main = mainOf(program);
+                if (main != null) {
+                    main.invoke(null);
+                }
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException exception) {
+                    throw exception;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(cause);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Not a compiled program: " + program.getName(), e);
+            } finally {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Runs the task on a thread of its own with a stack of
+     * {@link #STACK_BYTES}, and waits for it. What it throws is thrown here.
+     */
+    public static void onDeepStack(Runnable task) {
+        Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        }, "macs-program", STACK_BYTES);
+        thread.start();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true; // The program can't be stopped midway, finish waiting
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (thrown[0] instanceof RuntimeException e) {
+            throw e;
+        }
+        if (thrown[0] instanceof Error e) {
+            throw e;
+        }
+    }
+
+    /**
+     * What a compiled program throws when a call would nest deeper than the
+     * interpreters allow, reported at its main().
+     */
+    public static Failure stackOverflow(int mainPos) {
+        return new Failure("STACK_OVERFLOW", "Calls nested too deeply", mainPos, "main".length());
+    }
+
+    private static Method mainOf(Class<?> program) {
+        try {
+            return program.getMethod("main");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+//// OUTPUT ////////////////////////////////////////////////////////////////////
+
+    public void print(String value) {
+        try {
+            out.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void print(char value) {
+        try {
+            out.write(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void print(long value) {
+        print(Long.toString(value));
+    }
+
+    public void print(double value) {
+        print(Double.toString(value));
+    }
+
+    public void print(boolean value) {
+        print(value ? "true" : "false");
+    }
+
+    public void println() {
+        print('\n');
+    }
+
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+//// INPUT /////////////////////////////////////////////////////////////////////
+
+    public long readInt(String variable, int pos) {
+        String text = line(variable, pos).strip();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw invalid(text, variable, "int", pos);
+        }
+    }
+
+    public double readFloat(String variable, int pos) {
+        String text = line(variable, pos).strip();
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw invalid(text, variable, "float", pos);
+        }
+    }
+
+    public char readChar(String variable, int pos) {
+        String text = line(variable, pos).strip();
+        if (text.length() != 1) {
+            throw invalid(text, variable, "char", pos);
+        }
+        return text.charAt(0);
+    }
+
+    public boolean readBool(String variable, int pos) {
+        String text = line(variable, pos).strip();
+        if (!text.equals("true") && !text.equals("false")) {
+            throw invalid(text, variable, "bool", pos);
+        }
+        return text.equals("true");
+    }
+
+    public String readString(String variable, int pos) {
+        return line(variable, pos);
+    }
+
+    private String line(String variable, int pos) {
+        String line;
+        try {
+            flush(); // So a prompt is seen before the program waits
+            line = in.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (line == null) {
+            throw new Failure("INVALID_INPUT",
+                String.format("Input ended before a value for `%s` was read", variable),
+                pos, variable.length());
+        }
+        return line;
+    }
+
+    private static Failure invalid(String text, String variable, String type, int pos) {
+        return new Failure("INVALID_INPUT", String.format("Cannot read `%s` into `%s: %s`", text, variable, type),
+            pos, variable.length());
+    }
+
+//// ARITHMETIC ////////////////////////////////////////////////////////////////
+
+    // Small enough for the JIT to inline where it's called
+    public static long divide(long dividend, long divisor, int pos) {
+        if (divisor == 0) {
+            throw new Failure("DIVISION_BY_ZERO", "Division by zero", pos, 1);
+        }
+        return dividend / divisor;
+    }
+}
@@ -0,0 +1,83 @@
+package compiler.semantic;
+
+import java.util.*;
+
+import compiler.parser.*;
+
+/**
+ * What the names of a checked program resolved to.
+ *
+ * The analyzer sets the {@code binding} field of every declaration, name
+ * use and call to the id of its {@link Symbol}, and the {@code type} field
+ * of every expression. Later passes index this table by those ids instead
+ * of looking names up again, and keep variables in arrays indexed by their
+ * slots.
+ */
+public final class Bindings {
+    private final List<Symbol> symbols;
+    private final List<Symbol> functions;
+    private final int globalCount;
+
+    Bindings(List<Symbol> symbols) {
+        this.symbols = Collections.unmodifiableList(symbols);
+        List<Symbol> functions = new ArrayList<>();
+        int globalCount = 0;
+        for (Symbol symbol : symbols) {
+            if (symbol.kind == Symbol.Kind.FUNCTION) {
+                functions.add(symbol);
+            } else if (symbol.kind == Symbol.Kind.GLOBAL) {
+                globalCount++;
+            }
+        }
+        this.functions = Collections.unmodifiableList(functions);
+        this.globalCount = globalCount;
+    }
+
+    /**
+     * All symbols, in id order.
+     */
+    public List<Symbol> symbols() {
+        return symbols;
+    }
+
+    public Symbol symbol(int id) {
+        return symbols.get(id);
+    }
+
+    /**
+     * Declared functions, in slot order.
+     */
+    public List<Symbol> functions() {
+        return functions;
+    }
+
+    public int globalCount() {
+        return globalCount;
+    }
+
+    // Null where the name didn't resolve
+
+    public Symbol of(IdentExprNode node) {
+        return node.binding < 0 ? null : symbols.get(node.binding);
+    }
+
+    public Symbol of(AssignmentNode node) {
+        return node.binding < 0 ? null : symbols.get(node.binding);
+    }
+
+    public Symbol of(FnCallNode node) {
+        return node.binding < 0 ? null : symbols.get(node.binding);
+    }
+
+    public Symbol of(VarDeclNode node) {
+        return symbols.get(node.binding);
+    }
+
+    public Symbol of(ParamNode node) {
+        return symbols.get(node.binding);
+    }
+
+    public Symbol of(FuncDeclNode node) {
+        return symbols.get(node.binding);
+    }
+}
@@ -0,0 +1,31 @@
+package compiler.semantic;
+
+import java.util.*;
+
+/**
+ * Built-ins, functions and global variables as the first phase of the
+ * analysis leaves them. Nothing changes them afterwards, so function bodies
+ * can be checked against them from several threads at once.
+ */
+final class GlobalScope {
+    final List<Symbol> symbols;              // By id
+    private final Map<String, Symbol> names; // Innermost declaration of each name
+
+    GlobalScope(List<Symbol> symbols, Map<String, Symbol> names) {
+        this.symbols = List.copyOf(symbols);
+        this.names = names;
+    }
+
+    /**
+     * Declaration of the name visible at the given source position, or
+     * null. A global variable is only visible after its declaration, before
+     * that the name refers to whatever the global shadows.
+     */
+    Symbol lookup(String name, int pos) {
+        Symbol symbol = names.get(name);
+        while (symbol != null && symbol.kind == Symbol.Kind.GLOBAL && symbol.pos > pos) {
+            symbol = symbol.shadowed;
+        }
+        return symbol;
+    }
+}
@@ -0,0 +1,642 @@
+package compiler.semantic;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import compiler.error.Error;
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.lexer.Token;
+import compiler.parser.*;
+
+/**
+ * Checks that every name refers to a declaration in scope and that every
+ * expression, assignment, condition and return has a valid type.
+ *
+ * The walk visits each node once and looks names up in a
+ * {@link SymbolTable}, so it takes time linear in the size of the program.
+ * Functions may be called before they're declared, variables may not be
+ * used before. A function's parameters and the outermost block of its body
+ * share a scope; every other block and every {@code for} opens its own.
+ *
+ * The analysis has two phases. The first declares the built-ins and the
+ * functions, then checks the global variables in order, leaving a
+ * {@link GlobalScope} nothing changes afterwards. The second checks each
+ * function body against it on its own, which
+ * {@link #checkParallel(ProgramNode, ErrorList, ForkJoinPool)} does on
+ * several threads.
+ *
+ * Visiting an expression returns its type, or null if it has none because
+ * of an error that was already reported, so one mistake isn't reported
+ * again by every expression around it. The type is also left in the node,
+ * and every name's symbol in its {@code binding}, for the passes after this
+ * one; see {@link Bindings}.
+ */
+public final class SemanticAnalyzer implements AstVisitor<TypeNode> {
+    // print takes any arguments, input the variables to read into
+    public static final List<String> BUILTINS = List.of("print", "input");
+
+    private ErrorList errors; // Null until there's one, most declarations have none
+    private final GlobalScope globals; // Null in phase one, which builds it
+    private final int firstId;         // Of the first symbol declared here, -1 until known
+    private final SymbolTable symbols = new SymbolTable();
+    private final List<Symbol> declared = new ArrayList<>(); // By id, provisional in phase two
+
+    // Nodes bound to provisionally numbered symbols, by type so moving them
+    // to their final ids needs no type tests
+    private final List<ParamNode> params = new ArrayList<>();
+    private final List<VarDeclNode> locals = new ArrayList<>();
+    private final List<IdentExprNode> localReads = new ArrayList<>();
+    private final List<AssignmentNode> localWrites = new ArrayList<>();
+    private ErrorList[] declErrors; // Of each global variable, phase one
+    private int globalSlots;
+    private int functionSlots;
+    private int frameSlots;
+    private FuncDeclNode function; // Being checked, null outside functions
+
+    private SemanticAnalyzer(GlobalScope globals, int firstId) {
+        this.globals = globals;
+        this.firstId = firstId;
+    }
+
+    /**
+     * @throws ErrorList if the program has semantic errors
+     */
+    public static Bindings check(ProgramNode program) throws ErrorList {
+        ErrorList errors = new ErrorList();
+        Bindings bindings = check(program, errors);
+        if (!errors.isEmpty()) {
+            throw errors;
+        }
+        return bindings;
+    }
+
+    /**
+     * Adds the program's semantic errors to {@code errors}. Names that
+     * didn't resolve are left with no binding.
+     */
+    public static Bindings check(ProgramNode program, ErrorList errors) {
+        return check(program, errors, null);
+    }
+
+    /**
+     * Checks on the common {@link ForkJoinPool}, see
+     * {@link #checkParallel(ProgramNode, ErrorList, ForkJoinPool)}.
+     */
+    public static Bindings checkParallel(ProgramNode program) throws ErrorList {
+        ErrorList errors = new ErrorList();
+        Bindings bindings = checkParallel(program, errors, ForkJoinPool.commonPool());
+        if (!errors.isEmpty()) {
+            throw errors;
+        }
+        return bindings;
+    }
+
+    /**
+     * Checks batches of function bodies in parallel on the given pool. The
+     * errors, bindings and symbol ids are the ones
+     * {@link #check(ProgramNode, ErrorList)} gives.
+     */
+    public static Bindings checkParallel(ProgramNode program, ErrorList errors, ForkJoinPool pool) {
+        return check(program, errors, pool);
+    }
+
+    private static Bindings check(ProgramNode program, ErrorList errors, ForkJoinPool pool) {
+        List<DeclNode> decls = program.decls;
+        SemanticAnalyzer root = new SemanticAnalyzer(null, 0);
+        program.accept(root);
+        moveErrors(root.errors, errors); // Duplicate functions, found before anything else
+        GlobalScope globals = new GlobalScope(root.declared, root.symbols.snapshot());
+
+        // Each batch of declarations checks its function bodies in order with
+        // one analyzer, leaving their errors in declErrors next to those of
+        // the globals. Only the first batch knows what ids its locals start
+        // at, the others number theirs provisionally
+        ErrorList[] declErrors = root.declErrors;
+        int batchSize = pool == null ? decls.size() : decls.size() / (pool.getParallelism() * 4);
+        batchSize = Math.max(batchSize, 1);
+        List<SemanticAnalyzer> batches = new ArrayList<>();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int from = 0; from < decls.size(); from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, decls.size());
+            SemanticAnalyzer batch = new SemanticAnalyzer(globals, from == 0 ? globals.symbols.size() : -1);
+            batches.add(batch);
+            if (pool == null) {
+                batch.checkBodies(decls, start, end, declErrors);
+            } else {
+                tasks.add(pool.submit(() -> batch.checkBodies(decls, start, end, declErrors)));
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        for (ErrorList declError : declErrors) {
+            moveErrors(declError, errors);
+        }
+        // Locals are numbered after the globals, batch by batch
+        List<Symbol> symbols = new ArrayList<>(globals.symbols);
+        tasks.clear();
+        for (SemanticAnalyzer batch : batches) {
+            int base = symbols.size();
+            if (pool == null) {
+                batch.renumber(base);
+            } else {
+                tasks.add(pool.submit(() -> batch.renumber(base)));
+            }
+            symbols.addAll(batch.declared);
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return new Bindings(symbols);
+    }
+
+    // Phase two
+    private void checkBodies(List<DeclNode> decls, int from, int to, ErrorList[] declErrors) {
+        for (int i = from; i < to; i++) {
+            if (decls.get(i) instanceof FuncDeclNode func) {
+                errors = null;
+                check(func);
+                declErrors[i] = errors;
+            }
+        }
+    }
+
+    private static void moveErrors(ErrorList from, ErrorList to) {
+        if (from == null) {
+            return;
+        }
+        for (Error error : from.getAll()) {
+            to.add(error);
+        }
+        from.clear();
+    }
+
+    // Moves provisionally numbered locals and their uses to the ids
+    // starting at `base`
+    private void renumber(int base) {
+        if (firstId >= 0) {
+            return;
+        }
+        for (Symbol local : declared) {
+            local.id += base;
+        }
+        for (ParamNode node : params) {
+            node.binding += base;
+        }
+        for (VarDeclNode node : locals) {
+            node.binding += base;
+        }
+        for (IdentExprNode node : localReads) {
+            node.binding += base;
+        }
+        for (AssignmentNode node : localWrites) {
+            node.binding += base;
+        }
+    }
+
+    private Symbol newSymbol(Symbol.Kind kind, String name, TypeNode type, List<TypeNode> paramTypes, int pos) {
+        int slot = switch (kind) {
+            case GLOBAL -> globalSlots++;
+            case LOCAL, PARAMETER -> frameSlots++;
+            case FUNCTION -> functionSlots++;
+            case BUILTIN -> BUILTINS.indexOf(name);
+        };
+        Symbol symbol = new Symbol(kind, name, type, paramTypes, pos, Math.max(firstId, 0) + declared.size(), slot);
+        declared.add(symbol);
+        return symbol;
+    }
+
+    // Whether a symbol is numbered provisionally, then by renumber()
+    private boolean isProvisional(Symbol symbol) {
+        return firstId < 0 && (symbol.kind == Symbol.Kind.LOCAL || symbol.kind == Symbol.Kind.PARAMETER);
+    }
+
+//// ERRORS ////////////////////////////////////////////////////////////////////
+
+    private void report(ErrorCode code, String message, int position, int length) {
+        if (errors == null) {
+            errors = new ErrorList();
+        }
+        errors.add(code, message, position, length);
+    }
+
+    private void report(ErrorCode code, String message, Token token) {
+        report(code, message, token.getPos(), token.getLexeme().length());
+    }
+
+    private void duplicate(Token name, Symbol previous) {
+        Error error = new Error(ErrorCode.DUPLICATE_DECLARATION,
+            String.format("`%s` is already declared in this scope", name.getLexeme()),
+            name.getPos(), name.getLexeme().length());
+        if (previous.pos >= 0) {
+            error.addRelated("Previous declaration is here", previous.pos, previous.name.length());
+        }
+        if (errors == null) {
+            errors = new ErrorList();
+        }
+        errors.add(error);
+    }
+
+    private static String name(TypeNode type) {
+        return type.name().toLowerCase();
+    }
+
+//// TYPES /////////////////////////////////////////////////////////////////////
+
+    private static boolean isNumeric(TypeNode type) {
+        return type == TypeNode.INT || type == TypeNode.FLOAT;
+    }
+
+    // Whether a value of type `from` can be stored where `to` is expected.
+    // Ints widen to floats, nothing else converts
+    private static boolean isAssignable(TypeNode from, TypeNode to) {
+        return from == to || from == TypeNode.INT && to == TypeNode.FLOAT;
+    }
+
+    // Type of a binary operation, or null if it doesn't apply to the operands
+    private static TypeNode resultType(BinaryOpNode.OpType op, TypeNode lhs, TypeNode rhs) {
+        boolean numeric = isNumeric(lhs) && isNumeric(rhs);
+        TypeNode promoted = lhs == TypeNode.FLOAT || rhs == TypeNode.FLOAT ? TypeNode.FLOAT : TypeNode.INT;
+        return switch (op) {
+            case ADD -> numeric ? promoted
+                : lhs == TypeNode.STRING && rhs == TypeNode.STRING ? TypeNode.STRING : null;
+            case SUB, MUL, DIV -> numeric ? promoted : null;
+            case AND, OR -> lhs == TypeNode.BOOL && rhs == TypeNode.BOOL ? TypeNode.BOOL : null;
+            case EQ, NEQ -> numeric || lhs == rhs && lhs != TypeNode.VOID ? TypeNode.BOOL : null;
+            case GT, LT, GTE, LTE -> numeric || lhs == TypeNode.CHAR && rhs == TypeNode.CHAR ? TypeNode.BOOL : null;
+        };
+    }
+
+    private static BinaryOpNode.OpType arithmetic(AssignmentNode.OpType op) {
+        return switch (op) {
+            case ASSIGN -> null;
+            case ADD_ASSIGN -> BinaryOpNode.OpType.ADD;
+            case SUB_ASSIGN -> BinaryOpNode.OpType.SUB;
+            case MUL_ASSIGN -> BinaryOpNode.OpType.MUL;
+            case DIV_ASSIGN -> BinaryOpNode.OpType.DIV;
+        };
+    }
+
+    private TypeNode check(AstNode node) {
+        if (node == null) {
+            return null;
+        }
+        TypeNode type = node.accept(this);
+        if (node instanceof ExprNode expr) {
+            expr.type = type;
+        }
+        return type;
+    }
+
+    private void checkCondition(ExprNode condition, Token token) {
+        TypeNode type = check(condition);
+        if (type != null && type != TypeNode.BOOL) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Condition of `%s` must be bool, got %s", token.getLexeme(), name(type)),
+                condition.getPos(), 1);
+        }
+    }
+
+//// DECLARATIONS //////////////////////////////////////////////////////////////
+
+    // Phase one. Leaves the errors of each global variable in declErrors,
+    // so they can be merged in order with those of the functions
+    @Override
+    public TypeNode visit(ProgramNode node) {
+        symbols.enterScope();
+        for (String builtin : BUILTINS) {
+            symbols.declare(newSymbol(Symbol.Kind.BUILTIN, builtin, TypeNode.VOID, null, -1));
+        }
+        // Globals get a scope of their own, so they may shadow built-ins
+        symbols.enterScope();
+        for (DeclNode decl : node.decls) {
+            if (decl instanceof FuncDeclNode func) {
+                declareFunction(func);
+            }
+        }
+        ErrorList functionErrors = errors;
+        declErrors = new ErrorList[node.decls.size()];
+        for (int i = 0; i < node.decls.size(); i++) {
+            if (node.decls.get(i) instanceof VarDeclNode global) {
+                errors = null;
+                check(global);
+                declErrors[i] = errors;
+            }
+        }
+        errors = functionErrors;
+        // The scopes stay open, the GlobalScope is a snapshot of them
+        return null;
+    }
+
+    private void declareFunction(FuncDeclNode node) {
+        List<TypeNode> paramTypes = new ArrayList<>(node.params.size());
+        for (ParamNode param : node.params) {
+            paramTypes.add(param.type);
+        }
+        TypeNode returnType = node.returnType != null ? node.returnType : TypeNode.VOID;
+        Symbol symbol = newSymbol(Symbol.Kind.FUNCTION, node.name.getLexeme(), returnType,
+            List.copyOf(paramTypes), node.name.getPos());
+        node.binding = symbol.id;
+        Symbol previous = symbols.declare(symbol);
+        if (previous != null) {
+            duplicate(node.name, previous);
+        }
+    }
+
+    @Override
+    public TypeNode visit(VarDeclNode node) {
+        // The initializer is checked first, `var x: int = x;` can't see itself
+        TypeNode type = check(node.expr);
+        if (type != null && !isAssignable(type, node.type)) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Cannot initialize `%s: %s` with %s",
+                    node.name.getLexeme(), name(node.type), name(type)),
+                node.expr.getPos(), 1);
+        }
+        Symbol.Kind kind = function == null ? Symbol.Kind.GLOBAL : Symbol.Kind.LOCAL;
+        Symbol symbol = newSymbol(kind, node.name.getLexeme(), node.type, null, node.name.getPos());
+        node.binding = symbol.id;
+        if (isProvisional(symbol)) {
+            locals.add(node);
+        }
+        Symbol previous = symbols.declare(symbol);
+        if (previous != null) {
+            duplicate(node.name, previous);
+        }
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(FuncDeclNode node) {
+        function = node;
+        frameSlots = 0;
+        symbols.enterScope();
+        for (ParamNode param : node.params) {
+            check(param);
+        }
+        for (AstNode statement : node.body.statements) {
+            check(statement);
+        }
+        symbols.exitScope();
+        globals.symbols.get(node.binding).frameSize = frameSlots;
+        function = null;
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(TypeNode node) {
+        return node;
+    }
+
+    @Override
+    public TypeNode visit(ParamNode node) {
+        Symbol symbol = newSymbol(Symbol.Kind.PARAMETER, node.name.getLexeme(), node.type, null, node.name.getPos());
+        node.binding = symbol.id;
+        if (isProvisional(symbol)) {
+            params.add(node);
+        }
+        Symbol previous = symbols.declare(symbol);
+        if (previous != null) {
+            duplicate(node.name, previous);
+        }
+        return null;
+    }
+
+//// STATEMENTS ////////////////////////////////////////////////////////////////
+
+    @Override
+    public TypeNode visit(CompoundStmtNode node) {
+        symbols.enterScope();
+        for (AstNode statement : node.statements) {
+            check(statement);
+        }
+        symbols.exitScope();
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(AssignmentNode node) {
+        TypeNode value = check(node.expr);
+        Symbol target = resolve(node.name);
+        if (target == null) {
+            return null;
+        }
+        if (target.isFunction()) {
+            report(ErrorCode.WRONG_KIND_OF_NAME,
+                String.format("Cannot assign to function `%s`", target.name), node.name);
+            return null;
+        }
+        node.binding = target.id;
+        if (isProvisional(target)) {
+            localWrites.add(node);
+        }
+        if (value == null) {
+            return null;
+        }
+        BinaryOpNode.OpType op = arithmetic(node.op);
+        TypeNode result = op == null ? value : resultType(op, target.type, value);
+        if (result == null || !isAssignable(result, target.type)) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Cannot assign %s to `%s: %s`", name(value), target.name, name(target.type)),
+                node.name);
+        }
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(ReturnNode node) {
+        TypeNode value = check(node.expr);
+        if (function == null) {
+            report(ErrorCode.TYPE_MISMATCH, "Return outside of a function", node.pos, "return".length());
+        } else if (function.returnType == null) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Function `%s` has no return type but returns a value", function.name.getLexeme()),
+                node.pos, "return".length());
+        } else if (value != null && !isAssignable(value, function.returnType)) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Function `%s` returns %s, got %s",
+                    function.name.getLexeme(), name(function.returnType), name(value)),
+                node.pos, "return".length());
+        }
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(ConditionalNode node) {
+        checkCondition(node.condition, node.token);
+        check(node.thenBranch);
+        check(node.elseBranch);
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(WhileNode node) {
+        checkCondition(node.condition, node.token);
+        check(node.body);
+        return null;
+    }
+
+    @Override
+    public TypeNode visit(ForNode node) {
+        symbols.enterScope();
+        check(node.init);
+        if (node.cond instanceof ExprNode cond) {
+            checkCondition(cond, node.startToken);
+        }
+        check(node.step);
+        check(node.body);
+        symbols.exitScope();
+        return null;
+    }
+
+//// EXPRESSIONS ///////////////////////////////////////////////////////////////
+
+    // Reports an undeclared name and returns null
+    private Symbol resolve(Token name) {
+        Symbol symbol = symbols.lookup(name.getLexeme());
+        if (symbol == null && globals != null) {
+            symbol = globals.lookup(name.getLexeme(), function.getPos());
+        }
+        if (symbol == null) {
+            report(ErrorCode.UNDECLARED_NAME, String.format("`%s` is not declared", name.getLexeme()), name);
+        }
+        return symbol;
+    }
+
+    @Override
+    public TypeNode visit(IdentExprNode node) {
+        Symbol symbol = resolve(node.name);
+        if (symbol == null) {
+            return null;
+        }
+        if (symbol.isFunction()) {
+            report(ErrorCode.WRONG_KIND_OF_NAME,
+                String.format("Function `%s` used as a value", symbol.name), node.name);
+            return null;
+        }
+        node.binding = symbol.id;
+        if (isProvisional(symbol)) {
+            localReads.add(node);
+        }
+        return symbol.type;
+    }
+
+    @Override
+    public TypeNode visit(IntLiteralNode node) {
+        return TypeNode.INT;
+    }
+
+    @Override
+    public TypeNode visit(FloatLiteralNode node) {
+        return TypeNode.FLOAT;
+    }
+
+    @Override
+    public TypeNode visit(StringLiteralNode node) {
+        return TypeNode.STRING;
+    }
+
+    @Override
+    public TypeNode visit(CharLiteralNode node) {
+        return TypeNode.CHAR;
+    }
+
+    @Override
+    public TypeNode visit(BoolLiteralNode node) {
+        return TypeNode.BOOL;
+    }
+
+    @Override
+    public TypeNode visit(BinaryOpNode node) {
+        TypeNode lhs = check(node.lhs);
+        TypeNode rhs = check(node.rhs);
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+        TypeNode result = resultType(node.op, lhs, rhs);
+        if (result == null) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Operator `%s` cannot be applied to %s and %s",
+                    node.token.getLexeme(), name(lhs), name(rhs)),
+                node.token);
+        }
+        return result;
+    }
+
+    @Override
+    public TypeNode visit(UnaryOpNode node) {
+        TypeNode operand = check(node.operand);
+        if (operand == null) {
+            return null;
+        }
+        boolean valid = switch (node.op) {
+            case NOT -> operand == TypeNode.BOOL;
+            case NEGATE -> isNumeric(operand);
+        };
+        if (!valid) {
+            report(ErrorCode.TYPE_MISMATCH,
+                String.format("Operator `%s` cannot be applied to %s", node.token.getLexeme(), name(operand)),
+                node.token);
+            return null;
+        }
+        return operand;
+    }
+
+    @Override
+    public TypeNode visit(FnCallNode node) {
+        Symbol callee = resolve(node.name);
+        if (callee != null && !callee.isFunction()) {
+            report(ErrorCode.WRONG_KIND_OF_NAME,
+                String.format("`%s` is a %s, not a function", callee.name,
+                    callee.kind == Symbol.Kind.PARAMETER ? "parameter" : "variable"),
+                node.name);
+            callee = null;
+        }
+        if (callee != null) {
+            node.binding = callee.id; // Functions are never local
+        }
+        if (callee != null && callee.kind == Symbol.Kind.BUILTIN) {
+            return checkBuiltinCall(callee, node);
+        }
+        List<TypeNode> params = callee != null ? callee.paramTypes : List.of();
+        if (callee != null && node.args.size() != params.size()) {
+            report(ErrorCode.ARGUMENT_COUNT,
+                String.format("`%s` takes %d argument%s, got %d",
+                    callee.name, params.size(), params.size() == 1 ? "" : "s", node.args.size()),
+                node.name);
+        }
+        for (int i = 0; i < node.args.size(); i++) {
+            ExprNode arg = node.args.get(i);
+            TypeNode type = check(arg);
+            if (type != null && i < params.size() && !isAssignable(type, params.get(i))) {
+                report(ErrorCode.TYPE_MISMATCH,
+                    String.format("Argument %d of `%s` must be %s, got %s",
+                        i + 1, callee.name, name(params.get(i)), name(type)),
+                    arg.getPos(), 1);
+            }
+        }
+        return callee != null ? callee.type : null;
+    }
+
+    private TypeNode checkBuiltinCall(Symbol callee, FnCallNode node) {
+        for (ExprNode arg : node.args) {
+            TypeNode type = check(arg);
+            if (type == TypeNode.VOID) {
+                report(ErrorCode.TYPE_MISMATCH, "A function with no return type has no value to pass",
+                    arg.getPos(), 1);
+            } else if (callee.name.equals("input") && type != null && !(arg instanceof IdentExprNode)) {
+                report(ErrorCode.TYPE_MISMATCH, "`input` reads into variables, got an expression",
+                    arg.getPos(), 1);
+            }
+        }
+        return callee.type;
+    }
+
+    @Override
+    public TypeNode visit(ErrorNode node) {
+        return null; // Reported by the parser
+    }
+}
@@ -0,0 +1,70 @@
+package compiler.semantic;
+
+import java.util.List;
+
+import compiler.parser.TypeNode;
+
+/**
+ * Something a name can refer to: a variable, a parameter, a function
+ * declared in the program or one of the built-in functions.
+ *
+ * Symbols of a program are numbered densely by {@link #id()}, which is what
+ * the nodes' {@code binding} fields hold. The {@link #slot} says where the
+ * value lives at run time: a global's index among the globals, a local's or
+ * parameter's index in its function's frame (parameters first), a
+ * function's index among the declared functions, a built-in's among the
+ * built-ins.
+ */
+public final class Symbol {
+    public enum Kind {
+        GLOBAL, LOCAL, PARAMETER, FUNCTION, BUILTIN
+    }
+
+    public final Kind kind;
+    public final String name;
+    public final TypeNode type;             // Of a variable, or what a function returns, VOID if nothing
+    public final List<TypeNode> paramTypes; // Of a declared function, null otherwise
+    public final int pos;                   // Of the declaration, -1 for built-ins
+    public final int slot;
+
+    int id;        // Final once the analysis is done, see SemanticAnalyzer
+    int frameSize; // Of a declared function, once its body is checked
+
+    // Kept by the SymbolTable while the symbol is visible
+    Symbol shadowed;
+    int depth;
+
+    public Symbol(Kind kind, String name, TypeNode type, List<TypeNode> paramTypes, int pos, int id, int slot) {
+        this.kind = kind;
+        this.name = name;
+        this.type = type;
+        this.paramTypes = paramTypes;
+        this.pos = pos;
+        this.id = id;
+        this.slot = slot;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public boolean isFunction() {
+        return kind == Kind.FUNCTION || kind == Kind.BUILTIN;
+    }
+
+    public boolean isVariable() {
+        return kind == Kind.GLOBAL || kind == Kind.LOCAL || kind == Kind.PARAMETER;
+    }
+
+    /**
+     * Slots a call to this function needs for its parameters and locals.
+     */
+    public int frameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %s", kind.name().toLowerCase(), name, type.name().toLowerCase());
+    }
+}
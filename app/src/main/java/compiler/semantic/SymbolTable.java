@@ -0,0 +1,74 @@
+package compiler.semantic;
+
+import java.util.*;
+
+/**
+ * Names visible at the current point of a walk over the program, in nested
+ * scopes.
+ *
+ * Each name maps to its innermost declaration, which links to the one it
+ * shadows. Entering a scope only records how many declarations there are;
+ * leaving it pops the ones made since and puts back what they shadowed. So
+ * a lookup is one hash lookup however deeply scopes nest, and no scope ever
+ * copies a map.
+ */
+final class SymbolTable {
+    private final Map<String, Symbol> visible = new HashMap<>();
+    private final List<Symbol> declared = new ArrayList<>(); // Innermost scope last
+    private int[] scopeStarts = new int[16];
+    private int depth;
+
+    void enterScope() {
+        if (depth == scopeStarts.length) {
+            scopeStarts = Arrays.copyOf(scopeStarts, depth * 2);
+        }
+        scopeStarts[depth++] = declared.size();
+    }
+
+    void exitScope() {
+        int start = scopeStarts[--depth];
+        for (int i = declared.size() - 1; i >= start; i--) {
+            Symbol symbol = declared.remove(i);
+            if (symbol.shadowed == null) {
+                visible.remove(symbol.name);
+            } else {
+                visible.put(symbol.name, symbol.shadowed);
+            }
+            symbol.shadowed = null;
+        }
+    }
+
+    /**
+     * The innermost declaration of the name, or null.
+     */
+    Symbol lookup(String name) {
+        return visible.get(name);
+    }
+
+    /**
+     * The innermost declaration of every visible name. Their
+     * {@code shadowed} links stay valid as long as no scope is left.
+     */
+    Map<String, Symbol> snapshot() {
+        return Map.copyOf(visible);
+    }
+
+    /**
+     * Declares the symbol in the current scope, unless the scope already
+     * declares its name.
+     *
+     * @return the declaration already in the current scope, or null if
+     *         there was none and the symbol was declared
+     */
+    Symbol declare(Symbol symbol) {
+        Symbol previous = visible.get(symbol.name);
+        if (previous != null && previous.depth == depth) {
+            return previous;
+        }
+        symbol.shadowed = previous;
+        symbol.depth = depth;
+        visible.put(symbol.name, symbol);
+        declared.add(symbol);
+        return null;
+    }
+}
@@ -0,0 +1,204 @@
+package compiler.bytecode;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import compiler.interp.VirtualMachine;
+import compiler.lexer.Lexer;
+import compiler.parser.*;
+import compiler.semantic.SemanticAnalyzer;
+
+class BytecodeTest {
+    private static CompiledProgram lower(String code) {
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(code));
+        return Lowering.lower(program, SemanticAnalyzer.check(program));
+    }
+
+    @Test void loopsAreLoweredToRegistersAndBranches() {
+        String code = """
+            var total: int;
+            func count(n: int, step: float): float {
+                var x: float = 0;
+                while (n > 0 || total == 0) {
+                    total += n / 2;
+                    x = x + step;
+                    n -= 1;
+                }
+                return x;
+            }
+            func main() {}
+            """;
+        assertEquals("""
+            globals I1 F0 S0
+            #0    float  0.0
+
+            fn 0 count(i0: int, f0: float) -> float   ; registers i6 f3 s0
+                 0  imm.i      i3, 2
+                 3  imm.i      i4, 1
+                 6  imm.i      i5, 0
+                 9  const.f    f1, #0 0.0
+                12  jmp        @36
+                14  get.gi     i1, I0
+                17  div.i      i2, i0, i3   ; at 134
+                21  add.i      i1, i1, i2
+                25  set.gi     I0, i1
+                28  add.f      f1, f1, f0
+                32  sub.i      i0, i0, i4
+                36  jgt.i      i0, i5, @14
+                40  get.gi     i1, I0
+                43  jeq.i      i1, i5, @14
+                47  ret.f      f1
+                49  const.f    f2, #0 0.0
+                52  ret.f      f2
+
+            fn 1 main()   ; registers i0 f0 s0, main
+                 0  ret
+
+            fn 2 <init>()   ; registers i1 f0 s0, init
+                 0  imm.i      i0, 0
+                 3  set.gi     I0, i0
+                 6  ret
+            """, Disassembler.disassemble(lower(code)));
+    }
+
+    @Test void constantsAreStoredOnce() {
+        CompiledProgram program = lower("""
+            func main() {
+                print("a", 'a', 1.5, 5000000000, 7);
+                print("a", 'a', 1.5, 5000000000, 7);
+            }
+            """);
+        ConstantPool constants = program.constants;
+        assertEquals(4, constants.size());
+        assertEquals("a", constants.stringValue(0));
+        assertEquals(ConstantPool.Kind.CHAR, constants.kind(1));
+        assertEquals(1.5, constants.floatValue(2));
+        assertEquals(5000000000L, constants.intValue(3));
+    }
+
+    @Test void callsPassArgumentsInRegisters() {
+        String listing = Disassembler.disassemble(lower("""
+            func pick(a: string, b: int, c: float): string { return a; }
+            func main() {
+                var s: string = pick("x", 1, 2);
+                input(s);
+            }
+            """));
+        assertTrue(listing.contains("fn 0 pick(s0: string, i0: int, f0: float) -> string"), listing);
+        assertTrue(listing.contains("call       pick -> s0 (s1, i0, f0)"), listing);
+        assertTrue(listing.contains("input.s    s0, #3 \"s\"   ; at 122"), listing);
+        assertTrue(listing.contains("fn 1 main()   ; registers i1 f1 s2, main"), listing);
+    }
+
+    @Test void encodingRoundTrips() {
+        CompiledProgram program = lower("""
+            var g: float = -2.5;
+            var s: string = "tab\\t, quote\\" and ção";
+            func f(n: int): int {
+                if (n == -100000 && !(n > 3)) return n * 70000000000;
+                return f(n - 1);
+            }
+            func main() { print(f(3), g, s, '\\n'); }
+            """);
+        byte[] bytes = BytecodeFile.encode(program);
+        ByteBuffer buffer = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length + 3));
+        CompiledProgram decoded = BytecodeFile.read(buffer);
+        assertEquals(bytes.length, buffer.position());
+        assertEquals(Disassembler.disassemble(program), Disassembler.disassemble(decoded));
+        assertArrayEquals(bytes, BytecodeFile.encode(decoded));
+    }
+
+    @Test void decodingRejectsOtherData() {
+        byte[] bytes = BytecodeFile.encode(lower("func main() { print(1); }"));
+        assertThrows(IllegalArgumentException.class,
+            () -> BytecodeFile.read(ByteBuffer.wrap(new byte[] { 'M', 'A', 'S', 'T', 1 })));
+        assertThrows(IllegalArgumentException.class,
+            () -> BytecodeFile.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 2))));
+    }
+
+    // The program with an int of a function's code replaced
+    private static byte[] corrupt(CompiledProgram program, int function, int at, int value) {
+        List<FunctionCode> functions = new ArrayList<>(program.functions);
+        FunctionCode original = functions.get(function);
+        int[] code = original.code.clone();
+        code[at] = value;
+        int[] faultPcs = new int[original.faultCount()];
+        int[] faultPositions = new int[original.faultCount()];
+        for (int i = 0; i < faultPcs.length; i++) {
+            faultPcs[i] = original.faultPc(i);
+            faultPositions[i] = original.faultPosition(i);
+        }
+        functions.set(function, new FunctionCode(original.name, original.pos, original.paramTypes,
+            original.returnType, original.intRegisters, original.floatRegisters, original.stringRegisters,
+            code, faultPcs, faultPositions));
+        return BytecodeFile.encode(new CompiledProgram(program.constants, functions,
+            program.intGlobals, program.floatGlobals, program.stringGlobals, program.init, program.main));
+    }
+
+    // Rejected when read, not when the machine gets to the instruction
+    @Test void decodingRejectsCorruptCode() {
+        CompiledProgram program = lower("""
+            var s: string = "x";
+            func f(n: int, x: float): int { var i: int = 0; while (i < n) { i += 1; } return i; }
+            func main() { print(f(3, 1.5), s); }
+            """);
+        int f = 0;
+        int main = 1;
+        int init = 2;
+        int[][] corruptions = {
+            { f, 9, 4 },      // add.i i1, i1, i3: no register i4
+            { f, 9, -1 },
+            { f, 15, 9 },     // jlt.i i1, i0, @8: into an instruction
+            { f, 15, 22 },    // past the code
+            { main, 5, 1 },   // const.f f0, #0: a string constant
+            { main, 5, 2 },   // no constant #2
+            { main, 16, 1 },  // get.gs s0, S0: no global S1
+            { main, 7, 3 },   // call f: no function 3
+            { main, 7, 1 },   // main() takes no arguments
+            { main, 8, 2 },   // no register i2 for the result
+            { main, 11, 1 },  // no register f1 for the argument
+            { init, 6, Opcode.PRINT_LN }, // runs past the ret it replaces
+        };
+        for (int[] corruption : corruptions) {
+            byte[] bytes = corrupt(program, corruption[0], corruption[1], corruption[2]);
+            assertThrows(IllegalArgumentException.class, () -> BytecodeFile.read(ByteBuffer.wrap(bytes)),
+                Arrays.toString(corruption));
+        }
+
+        // Whatever byte is changed, reading fails with the format error if
+        // it fails, and allocates no more than the file holds
+        byte[] bytes = BytecodeFile.encode(program);
+        for (int i = 0; i < bytes.length; i++) {
+            for (int value : new int[] { 0x00, 0x05, 0x7F, 0xFF }) {
+                byte[] changed = bytes.clone();
+                changed[i] = (byte) value;
+                try {
+                    BytecodeFile.read(ByteBuffer.wrap(changed));
+                } catch (IllegalArgumentException e) {
+                    // Rejected
+                }
+            }
+        }
+    }
+
+    // Verifying doesn't track which registers are written, so one read
+    // first must not be null
+    @Test void unwrittenStringRegistersAreEmpty() {
+        CompiledProgram program = lower("""
+            func main() { var s: string = "a"; var t: string = s + "b"; print(t, s == t); }
+            """);
+        // const.s s0, #0 at 3 loads into s1 instead, concat and eq.s read s0
+        CompiledProgram corrupt = BytecodeFile.read(ByteBuffer.wrap(corrupt(program, 0, 4, 1)));
+        StringWriter out = new StringWriter();
+        VirtualMachine.run(corrupt, new StringReader(""), out);
+        assertEquals("bfalse\n", out.toString());
+    }
+}
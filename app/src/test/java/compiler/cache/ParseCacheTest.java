@@ -0,0 +1,113 @@
+package compiler.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import compiler.lexer.Lexer;
+import compiler.parser.BinaryAst;
+import compiler.parser.FlatAst;
+import compiler.parser.Parser;
+import compiler.parser.ProgramNode;
+
+class ParseCacheTest {
+    @TempDir Path dir;
+
+    private static ByteBuffer bytes(String source) {
+        return ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ProgramNode parse(String source) {
+        return Parser.parse(Lexer.tokenizeStream(source));
+    }
+
+    @Test void hitsOnlyForTheSameSourceAndVersion() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        ParseCache cache = new ParseCache(dir, 1 << 20, "1.0");
+        String key = cache.key(bytes(code));
+        assertNull(cache.load(key));
+
+        ProgramNode ast = parse(code);
+        cache.store(key, ast);
+        assertEquals(ast.toString(), cache.load(key).toString());
+
+        assertNotEquals(key, cache.key(bytes(code + " ")));
+        assertNotEquals(key, new ParseCache(dir, 1 << 20, "1.1").key(bytes(code)));
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.count()); // No temporary files left behind
+        }
+    }
+
+    // Classes of the JDK have no location to hash
+    @Test void codeVersionHashesWhereTheCompilerWasLoadedFrom() {
+        String version = ParseCache.codeVersion(ParseCache.class);
+        assertEquals(64, version.length());
+        assertEquals(version, ParseCache.codeVersion(Parser.class));
+        assertNull(ParseCache.codeVersion(String.class));
+    }
+
+    @Test void corruptEntryIsAMiss() throws IOException {
+        ParseCache cache = new ParseCache(dir, 1 << 20, "1.0");
+        String key = cache.key(bytes("var x: int;"));
+        cache.store(key, parse("var x: int;"));
+        Path entry = dir.resolve(key + ".ast");
+        Files.write(entry, new byte[] { 'M', 'A', 'S', 'T', 1, 5 });
+        assertNull(cache.load(key));
+        assertFalse(Files.exists(entry));
+    }
+
+    // `var x: int = - - ... - 0;` with the minus `depth` times, encoded by
+    // hand, the parser would overflow first
+    private static byte[] deepTree(int depth) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] { 'M', 'A', 'S', 'T', BinaryAst.VERSION, 1, 1, 'x' });
+        out.writeBytes(new byte[] { (byte) FlatAst.Kind.PROGRAM.ordinal(), 0, 1 });
+        out.writeBytes(new byte[] { (byte) (1 << 5 | FlatAst.Kind.VAR_DECL.ordinal()), 0, 0 });
+        for (int i = 0; i < depth; i++) {
+            out.writeBytes(new byte[] { (byte) (2 << 5 | FlatAst.Kind.UNARY_OP.ordinal()), 0 });
+        }
+        out.writeBytes(new byte[] { (byte) FlatAst.Kind.INT_LITERAL.ordinal(), 0, 0 });
+        return out.toByteArray();
+    }
+
+    @Test void tooDeepEntryIsAMiss() throws IOException {
+        byte[] deep = deepTree(1_000_000);
+        FlatAst flat = BinaryAst.read(ByteBuffer.wrap(deep)); // Reading doesn't recurse
+        assertEquals(1_000_003, flat.size());
+
+        ParseCache cache = new ParseCache(dir, 1 << 30, "1.0");
+        String key = cache.key(bytes("deep"));
+        Path entry = dir.resolve(key + ".ast");
+        Files.write(entry, deep);
+        assertNull(cache.load(key));
+        assertFalse(Files.exists(entry));
+    }
+
+    @Test void evictsLeastRecentlyUsed() throws IOException {
+        String[] sources = { "var a: int;", "var b: int;", "var c: int;", "var d: int;" };
+        ParseCache probe = new ParseCache(dir, Long.MAX_VALUE, "1.0");
+        probe.store(probe.key(bytes(sources[0])), parse(sources[0]));
+        long entrySize = Files.size(dir.resolve(probe.key(bytes(sources[0])) + ".ast"));
+
+        // Room for three entries
+        ParseCache cache = new ParseCache(dir, 3 * entrySize, "1.0");
+        for (int i = 1; i < 3; i++) {
+            cache.store(cache.key(bytes(sources[i])), parse(sources[i]));
+        }
+        assertNotNull(cache.load(cache.key(bytes(sources[0]))));
+        cache.store(cache.key(bytes(sources[3])), parse(sources[3]));
+
+        assertNotNull(cache.load(cache.key(bytes(sources[0]))));
+        assertNull(cache.load(cache.key(bytes(sources[1]))));
+        assertNotNull(cache.load(cache.key(bytes(sources[2]))));
+        assertNotNull(cache.load(cache.key(bytes(sources[3]))));
+    }
+}
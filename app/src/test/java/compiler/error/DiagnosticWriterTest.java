@@ -0,0 +1,53 @@
+package compiler.error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import compiler.lexer.Lexer;
+import compiler.parser.Parser;
+
+class DiagnosticWriterTest {
+    private static final String CODE = "var a: int = 1;\nvar b: int = 2 @;\nvar c int;\n";
+
+    private static ErrorList errors() {
+        try {
+            Parser.parse(Lexer.tokenizeStream(CODE));
+        } catch (ErrorList e) {
+            return e;
+        }
+        throw new AssertionError("Expected errors");
+    }
+
+    private static String write(DiagnosticWriter.Format format, ErrorList errors) {
+        StringWriter out = new StringWriter();
+        DiagnosticWriter.write(format, errors, new SourceFile(CODE), "code.macs", "Compiler", "dev", out);
+        return out.toString();
+    }
+
+    @Test void jsonLinesHasOneRecordPerError() {
+        ErrorList errors = errors();
+        String[] lines = write(DiagnosticWriter.Format.JSON_LINES, errors).split("\n");
+
+        assertEquals(errors.size(), lines.length);
+        assertEquals("{\"severity\":\"error\",\"code\":\"E0001\",\"message\":\"Unrecognized token `@`\","
+                + "\"file\":\"code.macs\",\"line\":2,\"column\":16,\"endLine\":2,\"endColumn\":17,\"related\":[]}",
+                lines[0]);
+    }
+
+    @Test void sarifListsRulesAndRelatedLocations() {
+        ErrorList errors = new ErrorList(ErrorCode.SYNTAX, "Expected `:`, got `int`", CODE.indexOf("int;"), 3);
+        errors.getAll().get(0).addRelated("Declaration starts here", CODE.indexOf("var c"), 3);
+        String sarif = write(DiagnosticWriter.Format.SARIF, errors);
+
+        assertTrue(sarif.startsWith("{\"version\":\"2.1.0\""));
+        assertTrue(sarif.contains("\"rules\":[{\"id\":\"E0002\",\"name\":\"SYNTAX\""));
+        assertTrue(sarif.contains("\"ruleId\":\"E0002\",\"level\":\"error\",\"message\":{\"text\":\"Expected `:`, got `int`\"}"));
+        assertTrue(sarif.contains("\"region\":{\"startLine\":3,\"startColumn\":7,\"endLine\":3,\"endColumn\":10}"));
+        assertTrue(sarif.contains("\"relatedLocations\":[{\"id\":0,"));
+        assertTrue(sarif.contains("\"region\":{\"startLine\":3,\"startColumn\":1,\"endLine\":3,\"endColumn\":4}},"
+                + "\"message\":{\"text\":\"Declaration starts here\"}"));
+    }
+}
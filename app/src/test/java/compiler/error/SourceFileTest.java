@@ -0,0 +1,46 @@
+package compiler.error;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+class SourceFileTest {
+    @Test void mapsOffsetsToLinesAndColumns() {
+        String code = "var a: int;\r\nvar b: int;\n\nfunc f() {}";
+        SourceFile source = new SourceFile(code);
+
+        assertEquals(4, source.lineCount());
+        assertEquals(1, source.line(0));
+        assertEquals(1, source.line(code.indexOf('\n')));
+        assertEquals(2, source.line(code.indexOf("var b")));
+        assertEquals(0, source.column(code.indexOf("var b")));
+        assertEquals(4, source.column(code.indexOf("b:")));
+        assertEquals(3, source.line(code.indexOf("\n\n") + 1));
+        assertEquals(4, source.line(code.length()));
+        assertEquals("var a: int;", source.lineText(1));
+        assertEquals("", source.lineText(3));
+        assertEquals("func f() {}", source.lineText(4));
+    }
+
+    @Test void errorsCarryTheirLocation() {
+        String code = "var a: int;\nvar b: int = @;\n";
+        ErrorList errors = new ErrorList("Unexpected character '@'", code.indexOf('@'));
+        errors.add(new Error("Expected ';'", code.indexOf('@') + 1));
+        errors.locate(new SourceFile(code));
+
+        Error first = errors.getAll().get(0);
+        assertEquals(2, first.getLine());
+        assertEquals(13, first.getColumn());
+        assertEquals(14, errors.getAll().get(1).getColumn());
+
+        StringWriter out = new StringWriter();
+        first.printWithSource(new SourceFile(code), new PrintWriter(out));
+        assertEquals(first + "\n"
+                + "   2 | var b: int = @;\n"
+                + "     |              ^\n",
+                out.toString().replace(System.lineSeparator(), "\n"));
+    }
+}
@@ -0,0 +1,245 @@
+package compiler.interp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import compiler.bytecode.BytecodeFile;
+import compiler.bytecode.CompiledProgram;
+import compiler.bytecode.Lowering;
+import compiler.bytecode.Opcode;
+import compiler.error.Error;
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.jvm.JvmBackend;
+import compiler.lexer.Lexer;
+import compiler.parser.*;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+
+class InterpreterTest {
+    private interface Engine {
+        void run(ProgramNode program, Bindings bindings, Reader in, Writer out);
+    }
+
+    // The other engines are checked against the reference one. The machine
+    // runs programs as lowered, and as read back from their encoding, the
+    // JVM as a hidden class
+    private static final List<Engine> ENGINES = List.of(
+        Interpreter::run,
+        SpecializingInterpreter::run,
+        (program, bindings, in, out) -> VirtualMachine.run(Lowering.lower(program, bindings), in, out),
+        (program, bindings, in, out) -> VirtualMachine.run(
+            BytecodeFile.read(ByteBuffer.wrap(BytecodeFile.encode(Lowering.lower(program, bindings)))), in, out),
+        JvmBackend::run);
+
+    private static String run(Engine engine, String code, String input) {
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(code));
+        Bindings bindings = SemanticAnalyzer.check(program);
+        StringWriter out = new StringWriter();
+        engine.run(program, bindings, new StringReader(input), out);
+        return out.toString();
+    }
+
+    private static String run(String code, String input) {
+        String expected = run(ENGINES.get(0), code, input);
+        for (Engine engine : ENGINES.subList(1, ENGINES.size())) {
+            assertEquals(expected, run(engine, code, input));
+        }
+        return expected;
+    }
+
+    // The error every engine fails with
+    private static Error failure(String code, String input) {
+        Error expected = assertThrows(ErrorList.class, () -> run(ENGINES.get(0), code, input)).getAll().get(0);
+        for (Engine engine : ENGINES.subList(1, ENGINES.size())) {
+            Error error = assertThrows(ErrorList.class, () -> run(engine, code, input)).getAll().get(0);
+            assertEquals(expected.toString(), error.toString());
+            assertEquals(expected.getCode(), error.getCode());
+        }
+        return expected;
+    }
+
+    private static String run(String code) {
+        return run(code, "");
+    }
+
+    @Test void arithmeticFollowsTheTypes() {
+        String code = """
+            func main() {
+                var i: int = 7;
+                var f: float = i / 2;
+                print(i / 2, " ", i * 3 - 1, " ", -i);
+                print(f, " ", i / 2.0, " ", 1.5 + 2);
+                print("ab" + "cd", 'x', true && !false);
+                print(i > 6, 'a' < 'b', 2 == 2.0, "x" != "x");
+                i += 3;
+                f *= 2;
+                print(i, " ", f);
+            }
+            """;
+        assertEquals("""
+            3 20 -7
+            3.0 3.5 3.5
+            abcdxtrue
+            truetruetruefalse
+            10 6.0
+            """, run(code));
+    }
+
+    @Test void constantOperationsKeepTheirMeaning() {
+        String code = """
+            func main() {
+                if (false) print(1 / 0);
+                print(2 * (3 + 4) - -1, " ", 7 / 2 * 2.0, " ", "a" + "b" == "ab", " ", !(1 < 2));
+            }
+            """;
+        assertEquals("15 6.0 true false\n", run(code));
+    }
+
+    @Test void callsRecurseWithTheirOwnFrames() {
+        String code = """
+            var calls: int;
+            func fib(n: int): int {
+                calls += 1;
+                if (n < 2) return n;
+                var a: int = fib(n - 1);
+                return a + fib(n - 2);
+            }
+            func half(x: float): float { return x / 2; }
+            func sum(a: int, b: int, c: int): int { return a + b + c; }
+            func main() {
+                print(fib(15), " ", calls);
+                print(half(3), " ", sum(sum(1, 2, 3), fib(5), sum(4, 5, 6)));
+            }
+            """;
+        assertEquals("610 1973\n1.5 26\n", run(code));
+    }
+
+    // Deeper than the stack of a test thread holds without CallStack
+    @Test void callsNestDeeplyAlikeEverywhere() {
+        String code = """
+            func f(n: int): int { if (n == 0) return 0; return 1 + f(n - 1); }
+            func main() { print(f(10000)); }
+            """;
+        assertEquals("10000\n", run(code));
+
+        // main() and f(65534) down to f(0) are the most calls that fit
+        assertEquals("65534\n", run(code.replace("10000", "65534")));
+        assertEquals(ErrorCode.STACK_OVERFLOW, failure(code.replace("10000", "65535"), "").getCode());
+    }
+
+    @Test void loopsStopOnReturn() {
+        String code = """
+            var total: int = 0;
+            func firstSquareOver(limit: int): int {
+                for (var i: int = 0; i < 100; i += 1) {
+                    if (i * i > limit) return i;
+                }
+                return -1;
+            }
+            func main() {
+                var n: int = 0;
+                while (n < 5) {
+                    var step: int = 2;
+                    n += 1;
+                    total += n * step;
+                }
+                print(total, " ", firstSquareOver(50));
+            }
+            """;
+        assertEquals("30 8\n", run(code));
+    }
+
+    @Test void globalsAreInitializedInOrderAndDefaultToZero() {
+        String code = """
+            var a: int = 4;
+            var b: float = twice(a);
+            var s: string;
+            var c: char;
+            var ok: bool;
+            func twice(x: int): int { return x * 2; }
+            func nothing(): int { }
+            func main() {
+                print(a, " ", b, " [", s, "] ", c < ' ', " ", ok, " ", nothing());
+            }
+            """;
+        assertEquals("4 8.0 [] true false 0\n", run(code));
+    }
+
+    // An initializer may call a function reading a global declared later
+    @Test void stringGlobalsAreEmptyBeforeTheirInitializers() {
+        String code = """
+            var a: string = f();
+            var s: string = "x";
+            func f(): string { print("[", s, "]"); return s + "!"; }
+            func main() { print(a, s); }
+            """;
+        assertEquals("[]\n!x\n", run(code));
+    }
+
+    @Test void inputReadsOneLinePerVariable() {
+        String code = """
+            func main() {
+                var n: int;
+                var x: float;
+                var name: string;
+                var c: char;
+                var b: bool;
+                input(n, x);
+                input(name, c, b);
+                print(name, ": ", n + 1, " ", x * 2, " ", c, " ", !b);
+            }
+            """;
+        assertEquals("two words: 42 5.0 z false\n", run(code, "41\n 2.5 \ntwo words\nz\ntrue\n"));
+    }
+
+    @Test void runtimeErrorsPointAtTheirCause() {
+        String division = """
+            func main() {
+                var zero: int = 0;
+                print("before");
+                print(1 / zero);
+            }
+            """;
+        Error error = failure(division, "");
+        assertEquals(ErrorCode.DIVISION_BY_ZERO, error.getCode());
+        assertEquals(division.indexOf("zero)"), error.getPosition());
+
+        String input = "func main() { var n: int; input(n); }";
+        assertEquals(ErrorCode.INVALID_INPUT, failure(input, "4x\n").getCode());
+        assertEquals(ErrorCode.INVALID_INPUT, failure(input, "").getCode());
+
+        String recursion = "func f(n: int): int { return f(n + 1); } func main() { f(0); }";
+        assertEquals(ErrorCode.STACK_OVERFLOW, failure(recursion, "").getCode());
+    }
+
+    @Test void profilesCountCallsAndInstructions() {
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream("""
+            func fib(n: int): int { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }
+            func main() { print(fib(10)); }
+            """));
+        CompiledProgram compiled = Lowering.lower(program, SemanticAnalyzer.check(program));
+        Profile profile = new Profile(compiled);
+        StringWriter out = new StringWriter();
+        VirtualMachine.run(compiled, new StringReader(""), out, profile);
+        assertEquals("55\n", out.toString());
+        assertEquals(177, profile.calls(0));
+        assertEquals(1, profile.calls(compiled.main));
+        assertEquals(177, profile.opcodeCount(Opcode.CALL));
+        long instructions = 0;
+        for (int opcode = 0; opcode < Opcode.COUNT; opcode++) {
+            instructions += profile.opcodeCount(opcode);
+        }
+        assertEquals(instructions, profile.instructions(0) + profile.instructions(compiled.main)
+            + profile.instructions(compiled.init));
+        assertTrue(profile.report(compiled).startsWith("function"));
+    }
+}
@@ -0,0 +1,139 @@
+package compiler.jvm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.lexer.Lexer;
+import compiler.parser.*;
+import compiler.runtime.MacsRuntime;
+import compiler.semantic.Bindings;
+import compiler.semantic.SemanticAnalyzer;
+
+class JvmBackendTest {
+    @TempDir Path dir;
+
+    private static final String CODE = """
+        var calls: int;
+        func fib(n: int): int {
+            calls += 1;
+            if (n < 2) return n;
+            return fib(n - 1) + fib(n - 2);
+        }
+        func scale(x: float, by: int): float { return x * by; }
+        func next(c: char, b: bool): string { if (b) return "yes"; return "no"; }
+        func main() { print(fib(10), " ", calls); }
+        """;
+
+    private static void writeJar(String code, Path path) throws Exception {
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(code));
+        Bindings bindings = SemanticAnalyzer.check(program);
+        JvmBackend.writeJar(program, bindings, path);
+    }
+
+    @Test void functionsBecomeStaticMethodsOfTheirTypes() throws Exception {
+        Path path = dir.resolve("fib.jar");
+        writeJar(CODE, path);
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { path.toUri().toURL() },
+                JvmBackendTest.class.getClassLoader())) {
+            Class<?> program = loader.loadClass("compiler.jvm.MacsProgram");
+            Method fib = program.getMethod("fib", long.class);
+            assertTrue(Modifier.isStatic(fib.getModifiers()));
+            assertEquals(long.class, fib.getReturnType());
+            assertEquals(double.class, program.getMethod("scale", double.class, long.class).getReturnType());
+            assertEquals(String.class, program.getMethod("next", char.class, boolean.class).getReturnType());
+            assertEquals(long.class, program.getField("calls").getType());
+
+            StringWriter out = new StringWriter();
+            new MacsRuntime(new StringReader(""), out).run(program);
+            assertEquals("55 177\n", out.toString());
+            assertEquals(6.0, program.getMethod("scale", double.class, long.class).invoke(null, 1.5, 4L));
+        }
+    }
+
+    @Test void jarsRunOnTheirOwn() throws Exception {
+        Path path = dir.resolve("fib.jar");
+        writeJar(CODE, path);
+        try (JarFile jar = new JarFile(path.toFile())) {
+            assertEquals("compiler.jvm.MacsProgram",
+                jar.getManifest().getMainAttributes().getValue(Attributes.Name.MAIN_CLASS));
+            assertNotNull(jar.getEntry("compiler/jvm/MacsProgram.class"));
+            assertNotNull(jar.getEntry("compiler/runtime/MacsRuntime.class"));
+            assertNotNull(jar.getEntry("compiler/runtime/MacsRuntime$Failure.class"));
+        }
+        // Nothing but the JDK, the runtime comes from the jar
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { path.toUri().toURL() },
+                ClassLoader.getPlatformClassLoader())) {
+            Class<?> program = loader.loadClass("compiler.jvm.MacsProgram");
+            assertNotSame(MacsRuntime.class, loader.loadClass("compiler.runtime.MacsRuntime"));
+            assertEquals(55L, program.getMethod("fib", long.class).invoke(null, 10L));
+            assertNotNull(program.getMethod("main", String[].class));
+        }
+    }
+
+    // Counted, not left to the stack of the thread running the test
+    @Test void callsNestAsDeepAsInTheMachine() throws Exception {
+        String code = """
+            func f(n: int): int { if (n == 0) return 0; return 1 + f(n - 1); }
+            func main() { print(f(20000)); }
+            """;
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(code));
+        StringWriter out = new StringWriter();
+        JvmBackend.run(program, SemanticAnalyzer.check(program), new StringReader(""), out);
+        assertEquals("20000\n", out.toString());
+
+        String endless = "func f(n: int): int { return f(n + 1); } func main() { f(0); }";
+        ProgramNode failing = Parser.parse(Lexer.tokenizeStream(endless));
+        ErrorList errors = assertThrows(ErrorList.class, () ->
+            JvmBackend.run(failing, SemanticAnalyzer.check(failing), new StringReader(""), new StringWriter()));
+        assertEquals(ErrorCode.STACK_OVERFLOW, errors.getAll().get(0).getCode());
+        assertEquals(endless.indexOf("main"), errors.getAll().get(0).getPosition());
+    }
+
+    private static String run(String code) {
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(code));
+        StringWriter out = new StringWriter();
+        JvmBackend.run(program, SemanticAnalyzer.check(program), new StringReader(""), out);
+        return out.toString();
+    }
+
+    private static String globals(int count) {
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            code.append("var g").append(i).append(": int = ").append(i).append(";\n");
+        }
+        return code.toString();
+    }
+
+    // More than one method could initialize
+    @Test void manyGlobalsAreInitialized() {
+        String code = globals(12_000) + "var s: string = \"x\"; func main() { print(g0, \" \", g11999, s); }";
+        assertEquals("0 11999x\n", run(code));
+    }
+
+    @Test void tooLargeProgramsAreErrors() {
+        StringBuilder body = new StringBuilder("func big() { var x: int = 0;");
+        body.append(" x = x + 100000;".repeat(20_000));
+        String code = body + " }\nfunc main() { big(); }";
+        ErrorList errors = assertThrows(ErrorList.class, () -> run(code));
+        assertEquals(ErrorCode.PROGRAM_TOO_LARGE, errors.getAll().get(0).getCode());
+        assertEquals(code.indexOf("big"), errors.getAll().get(0).getPosition());
+
+        // Every global takes constants of the class
+        ErrorList tooMany = assertThrows(ErrorList.class, () -> run(globals(30_000)));
+        assertEquals(ErrorCode.PROGRAM_TOO_LARGE, tooMany.getAll().get(0).getCode());
+    }
+}
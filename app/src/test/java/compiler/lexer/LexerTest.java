@@ -6,7 +6,17 @@ import compiler.error.ErrorList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
 
 class LexerTest {
     @Test void basicTest1() {
@@ -30,4 +40,273 @@ class LexerTest {
         String input = "var x: int = 42 @;";
         assertThrows(ErrorList.class, () -> Lexer.tokenize(input));
     }
+
+    @Test void numberLiterals() {
+        String input = "42 0x1F 0XfF 0b101 0o17 1_000 007 9223372036854775807 0xFFFFFFFFFFFFFFFF "
+            + "3.14 1e-5 2E+3 100. .5 1_0.2_5 0.1 123456789012345678901234.5";
+        Object[] expected = {
+            42L, 31L, 255L, 5L, 15L, 1000L, 7L, Long.MAX_VALUE, -1L,
+            3.14, 1e-5, 2e3, 100.0, 0.5, 10.25, 0.1, 123456789012345678901234.5,
+        };
+        List<Token> tokens = Lexer.tokenize(input);
+        assertEquals(expected.length + 1, tokens.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], ((TokenLiteral) tokens.get(i)).getValue());
+        }
+    }
+
+    @Test void invalidNumberLiterals() {
+        String[] inputs = {
+            "0x", "0x_1", "1_", "1__", "0b102", "0o8", "1e", "1e+", ".", ".5e3", "12ab",
+            "9223372036854775808", "0x1FFFFFFFFFFFFFFFF", "1_.5", "1._5",
+        };
+        for (String input : inputs) {
+            assertThrows(ErrorList.class, () -> Lexer.tokenize(input), input);
+        }
+    }
+
+    @Test void floatLiteralsAreCorrectlyRounded() {
+        Random random = new Random(7L);
+        for (int i = 0; i < 10000; i++) {
+            String literal = random.nextInt(100000) + "." + random.nextInt(100000)
+                + (random.nextBoolean() ? "e" + (random.nextInt(60) - 30) : "");
+            TokenLiteral token = (TokenLiteral) Lexer.tokenize(literal).get(0);
+            assertEquals(Double.parseDouble(literal), token.getValue(), literal);
+        }
+    }
+
+    @Test void tokenStreamMatchesTokenList() throws IOException {
+        String input = Files.readString(Path.of("src/main/resources/code.macs"));
+        List<Token> expected = Lexer.tokenize(input, Lexer.Engine.SCANNER);
+        TokenStream stream = Lexer.tokenizeStream(input);
+        TokenStream packed = TokenStream.of(expected);
+        assertEquals(expected.size(), stream.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), stream.get(i));
+            assertEquals(expected.get(i), packed.get(i));
+        }
+        assertEquals(expected, stream.asList());
+        assertTrue(stream.footprintBytes() < stream.objectFootprintBytes());
+    }
+
+    @Test void streamedTokensMatchTokenList() throws IOException {
+        String input = Files.readString(Path.of("src/main/resources/code.macs"));
+        List<Token> expected = Lexer.tokenize(input, Lexer.Engine.SCANNER);
+        TokenStream stream = Lexer.stream(new StringReader(input), new NameTable(), 16);
+        int i = 0;
+        for (; stream.has(i); i++) {
+            assertEquals(expected.get(i), stream.get(i));
+            stream.release(i);
+        }
+        assertEquals(expected.size(), i);
+    }
+
+    @Test void streamedErrorIsReportedWhenReached() {
+        TokenStream stream = Lexer.stream(new StringReader("var x: int = 42 @;"));
+        for (int i = 0; i < 6; i++) {
+            assertTrue(stream.has(i));
+        }
+        ErrorList errors = assertThrows(ErrorList.class, () -> stream.has(6));
+        assertEquals(1, errors.size());
+    }
+
+    @Test void namesAreInterned() {
+        String input = "var count: int = count + other; print(\"a\", \"a\", \"\\a\", count);";
+        TokenStream tokens = Lexer.tokenizeStream(input);
+        List<Token> list = tokens.asList();
+        Token first = list.get(1);
+        Token second = list.get(5);
+        Token last = list.get(list.size() - 4);
+        assertEquals("count", first.getLexeme());
+        assertSame(first.getLexeme(), second.getLexeme());
+        assertSame(first.getLexeme(), last.getLexeme());
+        assertEquals(first.getSymbol(), last.getSymbol());
+        assertNotEquals(first.getSymbol(), list.get(7).getSymbol());
+        int a = list.get(11).getSymbol();
+        assertEquals(a, list.get(13).getSymbol());
+        assertEquals(a, list.get(15).getSymbol());
+        assertEquals(a, tokens.names().lookup("a"));
+        assertEquals(-1, tokens.names().lookup("missing"));
+        assertEquals(-1, list.get(0).getSymbol());
+    }
+
+    @Test void tableEngineMatchesScanner() throws IOException {
+        String[] inputs = {
+            "var x: int = 42;",
+            "var x: int = 42 @;",
+            Files.readString(Path.of("src/main/resources/code.macs")),
+        };
+        for (String input : inputs) {
+            assertSameOutcome(input);
+        }
+    }
+
+    @Test void tableEngineMatchesScannerOnFuzzCorpus() {
+        final String[] fragments = {
+            " ", "\n", "\t", "\r", "\0", "x", "_y1", "e", "E", "var", "func", "true",
+            "0", "42", "3.14", ".5", "1e-5", "2E+3", "0b101", "0x1F", "1_000", "12ab",
+            "\"", "\"str\"", "\"\\n\"", "\\", "'", "'a'", "'\\t'", "''", "//", "/*",
+            "*/", "|", "||", "&", "&&", "=", "==", "!", "!=", "<", "<=", ">", ">=", "+",
+            "+=", "-", "-=", "*", "*=", "/", "/=", ":", ";", ",", "(", ")", "{", "}",
+            "@", "#", "é", "ñ1", "٣", "Ⅷ", "\u00a0", "\u3000", "\ud83d\ude00",
+        };
+        Random random = new Random(20240611L);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(12);
+            for (int j = 0; j < count; j++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertSameOutcome(sb.toString());
+        }
+    }
+
+    @Test void utf8SourceMatchesDecodedText() throws IOException {
+        String[] fragments = {
+            " ", "\n", "x", "var", "42", "1.5", "\"str\"", "\"\\n\"", "'a'", "'é'", "//",
+            "/*", "*/", "+", "==", "(", ";", "@", "é", "ñ1", "٣", "Ⅷ", "\u00a0", "\u3000",
+            "\ud83d\ude00", "\"ação\"", "\"\\ç\"", "variável", "日本語",
+        };
+        List<String> inputs = new ArrayList<>();
+        inputs.add(Files.readString(Path.of("src/main/resources/code.macs")));
+        Random random = new Random(20240612L);
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(12);
+            for (int j = 0; j < count; j++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            inputs.add(sb.toString());
+        }
+        for (String input : inputs) {
+            Utf8Source source = new Utf8Source(input.getBytes(StandardCharsets.UTF_8));
+            assertEquals(input, source.toString());
+            assertEquals(
+                streamOutcome(() -> Lexer.tokenizeStream(input), pos -> pos),
+                streamOutcome(() -> Lexer.tokenizeStream(source), pos -> source.subSequence(0, pos).length()),
+                "Decoded and UTF-8 sources disagree on input: " + input
+            );
+        }
+    }
+
+    @Test void utf8SourceMapsOffsetsToLines() {
+        String input = "var a: string = \"ção\";\nvar b: int = 1 @;\n";
+        Utf8Source source = new Utf8Source(input.getBytes(StandardCharsets.UTF_8));
+        ErrorList errors = assertThrows(ErrorList.class, () -> Lexer.tokenizeStream(source));
+        int pos = errors.getAll().get(0).getPosition();
+        assertEquals(input.indexOf('@') + 2, pos);
+        assertEquals(2, source.line(pos));
+        assertEquals(15, source.column(pos));
+        assertEquals("var a: string = \"ção\";", source.lineText(1));
+        assertEquals("var b: int = 1 @;", source.lineText(2));
+        assertEquals(1, source.line(0));
+        assertEquals(3, source.line(source.length()));
+    }
+
+    @Test void parallelLexingMatchesSequential() throws IOException {
+        String[] fragments = {
+            " ", "\n", "\nfunc f() {", "\nvar x: int = 1;", "}", "x", "42", "1.5", "\"a\nb\"",
+            "\"", "'c'", "'", "// line\n", "/* multi\nline */", "/*", "*/", "+", "==", "@",
+            "é", "\ud83d\ude00", "\0",
+        };
+        List<String> inputs = new ArrayList<>();
+        inputs.add(Files.readString(Path.of("src/main/resources/code.macs")).repeat(20));
+        Random random = new Random(20240613L);
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int count = random.nextInt(40);
+            for (int j = 0; j < count; j++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            inputs.add(sb.toString());
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String input : inputs) {
+                String expected = streamOutcome(() -> Lexer.tokenizeStream(input), pos -> pos);
+                for (int chunkSize : new int[] { 4, 16, 64 }) {
+                    assertEquals(
+                        expected,
+                        streamOutcome(() -> Lexer.tokenizeParallel(input, new NameTable(), pool, chunkSize), pos -> pos),
+                        "Parallel lexing with chunks of " + chunkSize + " disagrees on input: " + input
+                    );
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test void relexMatchesFullLex() throws IOException {
+        String[] inserts = {
+            "", " ", "\n", "x", "var", "1", ".5", "e3", "\"", "'", "/*", "*/", "//", "\n/* a */",
+            "\"s t\"", "'c'", "==", "=", "!", "@", "\\", "é", "\0", "func g() { return 1; }",
+        };
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        Random random = new Random(20240614L);
+        for (int run = 0; run < 200; run++) {
+            String text = run % 2 == 0 ? code : "";
+            TokenStream tokens = Lexer.relex(Lexer.tokenizeStream(""), 0, 0, text);
+            for (int edit = 0; edit < 25; edit++) {
+                int offset = random.nextInt(text.length() + 1);
+                int removed = random.nextInt(Math.min(text.length() - offset, 8) + 1);
+                String inserted = inserts[random.nextInt(inserts.length)];
+                String before = text;
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                tokens = Lexer.relex(tokens, offset, removed, inserted);
+                assertEquals(
+                    tokenPositions(TableLexer.run(text, new NameTable())), tokenPositions(tokens),
+                    "Re-lexing disagrees after replacing " + removed + " chars at " + offset
+                        + " with `" + inserted + "` in: " + before
+                );
+            }
+        }
+    }
+
+    private static String tokenPositions(TokenStream tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (Token token : tokens.asList()) {
+            sb.append(token).append('@').append(token.getPos()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    // Tokens with their positions and name ids, or the errors
+    private static String streamOutcome(Supplier<TokenStream> lexer, IntUnaryOperator toCharOffset) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (Token token : lexer.get().asList()) {
+                sb.append(token).append('@').append(toCharOffset.applyAsInt(token.getPos()))
+                    .append('#').append(token.getSymbol()).append(' ');
+            }
+        } catch (ErrorList errors) {
+            for (var error : errors.getAll()) {
+                sb.append(error.getMessage()).append('@')
+                    .append(toCharOffset.applyAsInt(error.getPosition())).append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void assertSameOutcome(String input) {
+        assertEquals(
+            outcome(input, Lexer.Engine.SCANNER),
+            outcome(input, Lexer.Engine.TABLE),
+            "Engines disagree on input: " + input
+        );
+    }
+
+    private static String outcome(String input, Lexer.Engine engine) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (Token token : Lexer.tokenize(input, engine)) {
+                sb.append(token).append('@').append(token.getPos()).append(' ');
+            }
+            return sb.toString();
+        } catch (ErrorList errors) {
+            return errors.toString();
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
 }
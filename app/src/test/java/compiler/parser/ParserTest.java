@@ -1,13 +1,28 @@
 // {"node_type":"ProgramNode","decls":[{"node_type":"VarDeclNode","name":"global","type":"string","expr":{"node_type":"StringLiteralNode","value":"this is a global variable!\n"}},{"node_type":"FuncDeclNode","name":"test","params":[{"node_type":"ParamNode","name":"a","type":"float"},{"node_type":"ParamNode","name":"b","type":"float"}],"returnType":"bool","body":{"node_type":"CompoundStmtNode","statements":[{"node_type":"WhileNode","condition":{"node_type":"BinaryOpNode","op":"lt","lhs":{"node_type":"IdentExprNode","name":"a"},"rhs":{"node_type":"FloatLiteralNode","value":1.0E-5}},"body":{"node_type":"AssignmentNode","name":"a","op":"sub_assign","expr":{"node_type":"IdentExprNode","name":"b"}}},{"node_type":"ForNode","init":{"node_type":"VarDeclNode","name":"i","type":"int","expr":{"node_type":"IntLiteralNode","value":0}},"cond":{"node_type":"BinaryOpNode","op":"lt","lhs":{"node_type":"IdentExprNode","name":"i"},"rhs":{"node_type":"IntLiteralNode","value":10}},"step":{"node_type":"AssignmentNode","name":"i","op":"add_assign","expr":{"node_type":"IntLiteralNode","value":1}},"body":{"node_type":"CompoundStmtNode","statements":[{"node_type":"FnCallNode","name":"print","args":[{"node_type":"StringLiteralNode","value":"iter: "},{"node_type":"IdentExprNode","name":"i"}]}]}},{"node_type":"FnCallNode","name":"input","args":[{"node_type":"IdentExprNode","name":"b"}]},{"node_type":"ConditionalNode","condition":{"node_type":"BinaryOpNode","op":"gt","lhs":{"node_type":"BinaryOpNode","op":"mul","lhs":{"node_type":"IdentExprNode","name":"a"},"rhs":{"node_type":"IdentExprNode","name":"b"}},"rhs":{"node_type":"FloatLiteralNode","value":100.0}},"thenBranch":{"node_type":"CompoundStmtNode","statements":[{"node_type":"AssignmentNode","name":"a","op":"assign","expr":{"node_type":"UnaryOpNode","op":"negate","operand":{"node_type":"IdentExprNode","name":"a"}}}]},"elseBranch":{"node_type":"CompoundStmtNode","statements":[{"node_type":"AssignmentNode","name":"b","op":"mul_assign","expr":{"node_type":"UnaryOpNode","op":"negate","operand":{"node_type":"IntLiteralNode","value":1}}}]}},{"node_type":"ReturnNode","expr":{"node_type":"BinaryOpNode","op":"and","lhs":{"node_type":"BinaryOpNode","op":"gt","lhs":{"node_type":"IdentExprNode","name":"a"},"rhs":{"node_type":"IdentExprNode","name":"b"}},"rhs":{"node_type":"BinaryOpNode","op":"lte","lhs":{"node_type":"IdentExprNode","name":"a"},"rhs":{"node_type":"BinaryOpNode","op":"mul","lhs":{"node_type":"IntLiteralNode","value":2},"rhs":{"node_type":"IdentExprNode","name":"b"}}}}}]}}]}
 package compiler.parser;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.jupiter.api.Test;
 
 import compiler.error.ErrorList;
 import compiler.lexer.Lexer;
+import compiler.lexer.NameTable;
+import compiler.lexer.Token;
+import compiler.lexer.TokenType;
 
 class ParserTest {
     @Test void basicTest1() {
@@ -32,6 +47,34 @@ class ParserTest {
         assertEquals(ast.toString(), expected);
     }
 
+    @Test void prettyJsonKeepsTheSameMembers() {
+        var ast = Parser.parse(Lexer.tokenize("func main() { var x: int; }"));
+        final String expected = """
+            {
+              "node_type": "ProgramNode",
+              "decls": [
+                {
+                  "node_type": "FuncDeclNode",
+                  "name": "main",
+                  "params": [],
+                  "returnType": null,
+                  "body": {
+                    "node_type": "CompoundStmtNode",
+                    "statements": [
+                      {
+                        "node_type": "VarDeclNode",
+                        "name": "x",
+                        "type": "int",
+                        "expr": null
+                      }
+                    ]
+                  }
+                }
+              ]
+            }""";
+        assertEquals(expected, JsonAstWriter.toJson(ast, true));
+    }
+
     @Test void basicTest2() {
         // Test code for the parser with an invalid code example
         final String testCode = """
@@ -44,4 +87,197 @@ class ParserTest {
         var tokens = Lexer.tokenize(testCode);
         assertThrows(ErrorList.class, () -> Parser.parse(tokens));
     }
-}
\ No newline at end of file
+
+    @Test void operatorsBindByPrecedence() {
+        String[][] cases = {
+            { "a - b - c * d / e < f + g == h || i && !j",
+              "((((a - b) - ((c * d) / e)) < (f + g)) == h) || (i && (!j))" },
+            { "-a * b + c / -d >= e != (f || g) && h",
+              "(((((-a) * b) + (c / (-d))) >= e) != (f || g)) && h" },
+        };
+        for (String[] c : cases) {
+            var expr = Parser.parse(Lexer.tokenize("var x: bool = " + c[0] + ";"));
+            var grouped = Parser.parse(Lexer.tokenize("var x: bool = " + c[1] + ";"));
+            assertEquals(grouped.toString(), expr.toString());
+        }
+    }
+
+    @Test void reportsEveryErrorInOnePass() {
+        final String testCode = """
+            var a: int = ;
+            var b: int = 2
+            func f(x: int): bool {
+                var y: int = x +;
+                y = 3 4;
+                if (y > ) { y = 1; }
+                while (y < 10) {
+                    y += 1
+                }
+                return y == 2;
+            }
+            ) garbage
+            func g(: int { return 1; }
+            func h() {
+                print(1);
+            """;
+
+        ErrorList errors = new ErrorList();
+        var ast = Parser.parse(Lexer.tokenizeStream(testCode), errors);
+        List<String> messages = errors.getAll().stream().map(e -> e.getMessage()).toList();
+        assertEquals(List.of(
+            "Expected value, got `;`",
+            "Expected SY_SEMICOLON, got `func`",
+            "Expected value, got `;`",
+            "Expected SY_SEMICOLON, got `4`",
+            "Expected value, got `)`",
+            "Expected SY_SEMICOLON, got `}`",
+            "Expected declaration, got `)`",
+            "Expected SY_RPAREN, got `:`",
+            "Expected SY_RBRACE, got ``"
+        ), messages);
+        assertEquals(testCode.indexOf(" 4;") + 1, errors.getAll().get(3).getPosition());
+
+        // b, f and h survive, with f's broken statements as placeholders
+        assertEquals(3, ast.decls.size());
+        var body = ((FuncDeclNode) ast.decls.get(1)).body.statements;
+        assertEquals(5, body.size());
+        assertInstanceOf(ErrorNode.class, body.get(0));
+        assertInstanceOf(ErrorNode.class, body.get(1));
+        assertInstanceOf(ErrorNode.class, body.get(2));
+        assertInstanceOf(WhileNode.class, body.get(3));
+        assertInstanceOf(ReturnNode.class, body.get(4));
+
+        ErrorList thrown = assertThrows(ErrorList.class, () -> Parser.parse(Lexer.tokenize(testCode)));
+        assertEquals(errors.size(), thrown.size());
+    }
+
+    @Test void flatAstRoundTrips() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        String broken = """
+            func f(x: int): bool {
+                for (; x < 3; ) { x = 3 4; }
+                if (!x) return; else print('a', "b\\n", 2.5, true);
+            }
+            """;
+        for (String source : List.of(code, broken)) {
+            var ast = Parser.parse(Lexer.tokenizeStream(source), new ErrorList());
+            FlatAst flat = FlatAst.of(ast);
+            assertEquals(ast.toString(), flat.toProgram().toString());
+            assertEquals(FlatAst.Kind.PROGRAM, flat.kind(flat.root()));
+            assertEquals(ast.decls.size(), flat.childCount(flat.root()));
+        }
+
+        FlatAst flat = FlatAst.of(Parser.parse(Lexer.tokenize("func g(a: int) { a += -a * 2; }")));
+        int func = flat.firstChild(flat.root());
+        assertEquals("g", flat.name(func));
+        assertEquals(TypeNode.INT, flat.type(flat.firstChild(func)));
+        int assignment = flat.firstChild(flat.child(func, 1));
+        assertEquals(AssignmentNode.OpType.ADD_ASSIGN, flat.assignOp(assignment));
+        int product = flat.firstChild(assignment);
+        assertEquals(BinaryOpNode.OpType.MUL, flat.binaryOp(product));
+        assertEquals(UnaryOpNode.OpType.NEGATE, flat.unaryOp(flat.child(product, 0)));
+        assertEquals(2, flat.intValue(flat.child(product, 1)));
+
+        // Names of tokens that weren't interned go to the flat tree's table,
+        // not to the one the program shares with its tokens
+        NameTable names = new NameTable();
+        names.intern("s");
+        var program = new ProgramNode(List.of(new VarDeclNode(new Token(TokenType.IDENT, "t", 4), TypeNode.STRING,
+            new StringLiteralNode("fresh", new Token(TokenType.LT_STRING, "\"fresh\"", 16)))), names);
+        FlatAst withNames = FlatAst.of(program);
+        assertEquals(1, names.size());
+        assertEquals(3, withNames.names().size());
+        assertEquals(program.toString(), withNames.toProgram().toString());
+    }
+
+    @Test void binaryAstRoundTrips() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        String broken = """
+            func f(x: int): bool {
+                for (; x < 3; ) { x = 3 4; }
+                if (!x) return -1; else print('a', "b\\n", 2.5e-300, true, -9223372036854775807);
+            }
+            """;
+        for (String source : List.of(code, broken)) {
+            var ast = Parser.parse(Lexer.tokenizeStream(source), new ErrorList());
+            byte[] encoded = BinaryAst.encode(ast);
+            assertEquals(ast.toString(), BinaryAst.decode(ByteBuffer.wrap(encoded)).toString());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+            FlatAst decoded = BinaryAst.read(direct);
+            assertEquals(0, direct.remaining());
+            assertArrayEquals(encoded, BinaryAst.encode(decoded));
+        }
+
+        byte[] encoded = BinaryAst.encode(Parser.parse(Lexer.tokenize(code)));
+        encoded[4] = (byte) (BinaryAst.VERSION + 1);
+        assertThrows(IllegalArgumentException.class, () -> BinaryAst.decode(ByteBuffer.wrap(encoded)));
+    }
+
+    @Test void corruptBinaryAstIsRejected() throws IOException {
+        byte[] valid = BinaryAst.encode(Parser.parse(Lexer.tokenizeStream(
+            Files.readString(Path.of("src/main/resources/code.macs")))));
+        // Each byte set to every value, which puts kinds, variants, indices
+        // and counts out of range and nodes where their parents can't have
+        // them. Decoding either gives a program or rejects the bytes
+        for (int at = 0; at < valid.length; at++) {
+            for (int value = 0; value < 256; value++) {
+                byte[] corrupt = valid.clone();
+                corrupt[at] = (byte) value;
+                try {
+                    assertNotNull(BinaryAst.decode(ByteBuffer.wrap(corrupt)));
+                } catch (IllegalArgumentException e) {
+                    // Expected for most
+                }
+            }
+        }
+        for (int length = 0; length < valid.length; length += 7) {
+            byte[] truncated = Arrays.copyOf(valid, length);
+            assertThrows(IllegalArgumentException.class, () -> BinaryAst.read(ByteBuffer.wrap(truncated)));
+        }
+    }
+
+    @Test void tokenStreamAndTokenListParseAlike() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        var fromList = Parser.parse(Lexer.tokenize(code, Lexer.Engine.SCANNER));
+        var fromStream = Parser.parse(Lexer.tokenizeStream(code));
+        assertEquals(fromList.toString(), fromStream.toString());
+    }
+
+    @Test void streamingParseMatchesWholeFileParse() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        var whole = Parser.parse(Lexer.tokenizeStream(code));
+        var streamed = Parser.parse(Lexer.stream(new StringReader(code), new NameTable(), 16));
+        assertEquals(whole.toString(), streamed.toString());
+    }
+
+    @Test void parallelParseMatchesSequential() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        String broken = """
+            var b: int = 2
+            func f(x: int): bool {
+                y = 3 4;
+                if (y > ) { y = 1; }
+            }
+            } ) garbage
+            func g(: int { return 1; }
+            func h() {
+                print(1);
+            """;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String source : List.of(code.repeat(20), code + broken + code, broken + code)) {
+                ErrorList expectedErrors = new ErrorList();
+                var expected = Parser.parse(Lexer.tokenizeStream(source), expectedErrors);
+                for (int batchSize : new int[] { 1, 8, 64 }) {
+                    ErrorList errors = new ErrorList();
+                    var ast = Parser.parseParallel(Lexer.tokenizeStream(source), errors, pool, batchSize);
+                    assertEquals(expected.toString(), ast.toString());
+                    assertEquals(expectedErrors.toString(), errors.toString());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package compiler.semantic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import compiler.error.Error;
+import compiler.error.ErrorCode;
+import compiler.error.ErrorList;
+import compiler.lexer.Lexer;
+import compiler.parser.*;
+
+class SemanticAnalyzerTest {
+    private static List<Error> check(String code) {
+        ErrorList errors = new ErrorList();
+        SemanticAnalyzer.check(Parser.parse(Lexer.tokenizeStream(code)), errors);
+        return errors.getAll();
+    }
+
+    private static List<String> messages(String code) {
+        return check(code).stream().map(Error::getMessage).collect(Collectors.toList());
+    }
+
+    @Test void exampleProgramChecks() throws IOException {
+        String code = Files.readString(Path.of("src/main/resources/code.macs"));
+        assertEquals(List.of(), messages(code));
+    }
+
+    @Test void namesResolveInNestedScopes() {
+        String code = """
+            var x: int = 1;
+            func f(a: int): int {
+                var y: float = x;
+                {
+                    var x: bool = true;
+                    var z: int = 2;
+                    if (x) y = z;
+                }
+                for (var i: int = 0; i < a; i += 1) y += i;
+                return g(z) + i;
+            }
+            func g(n: int): int { return n; }
+            """;
+        List<Error> errors = check(code);
+
+        assertEquals(List.of("`z` is not declared", "`i` is not declared"),
+            errors.stream().map(Error::getMessage).collect(Collectors.toList()));
+        assertEquals(ErrorCode.UNDECLARED_NAME, errors.get(0).getCode());
+        assertEquals(code.indexOf("z) + i"), errors.get(0).getPosition());
+    }
+
+    @Test void duplicatesPointAtThePreviousDeclaration() {
+        String code = """
+            func f(a: int) {
+                var a: int;
+                var b: int;
+                { var b: int; }
+            }
+            """;
+        List<Error> errors = check(code);
+
+        assertEquals(1, errors.size());
+        assertEquals(ErrorCode.DUPLICATE_DECLARATION, errors.get(0).getCode());
+        assertEquals(code.indexOf("a: int;"), errors.get(0).getPosition());
+        assertEquals(code.indexOf("a: int)"), errors.get(0).getRelated().get(0).getPosition());
+    }
+
+    @Test void operatorsAndAssignmentsAreTypeChecked() {
+        assertEquals(List.of(
+                "Operator `+` cannot be applied to int and bool",
+                "Operator `!` cannot be applied to int",
+                "Cannot initialize `c: int` with float",
+                "Cannot assign string to `d: char`",
+                "Condition of `while` must be bool, got int"),
+            messages("""
+                func f() {
+                    var a: int = 1 + true;
+                    var b: bool = !1;
+                    var c: int = 1.5;
+                    var d: char = 'x';
+                    d = "x";
+                    while (1) d = 'y';
+                    var e: float = 1 + 2.5 * 3;
+                    var s: string = "a" + "b";
+                    e -= a;
+                }
+                """));
+    }
+
+    @Test void errorsDontCascade() {
+        assertEquals(List.of("`x` is not declared"), messages("func f() { var a: int = -(x * 2) + 1; }"));
+    }
+
+    @Test void returnsAndCallsMatchTheirFunction() {
+        assertEquals(List.of(
+                "Function `f` returns int, got bool",
+                "Function `g` has no return type but returns a value",
+                "`f` takes 1 argument, got 2",
+                "Argument 1 of `f` must be int, got string",
+                "Function `f` used as a value",
+                "`a` is a variable, not a function"),
+            messages("""
+                func f(n: int): int { return n > 0; }
+                func g() { return 1; }
+                func h() {
+                    var a: int = f(1, 2);
+                    a = f("x");
+                    a = f;
+                    a();
+                    print(a, f(a));
+                }
+                """));
+    }
+
+    @Test void namesAreBoundToSymbolsAndSlots() {
+        String code = """
+            var g: int = 1;
+            func f(a: int, b: float): float {
+                var x: int = a + g;
+                { var x: float = b; x = x * 2; }
+                return f(x, b);
+            }
+            """;
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(code));
+        Bindings bindings = SemanticAnalyzer.check(program);
+
+        FuncDeclNode f = (FuncDeclNode) program.decls.get(1);
+        Symbol function = bindings.of(f);
+        assertEquals(Symbol.Kind.FUNCTION, function.kind);
+        assertEquals(0, function.slot);
+        assertEquals(4, function.frameSize());
+        assertEquals(List.of(function), bindings.functions());
+        assertEquals(1, bindings.globalCount());
+
+        var outerX = (VarDeclNode) f.body.statements.get(0);
+        var sum = (BinaryOpNode) outerX.expr;
+        assertEquals(Symbol.Kind.PARAMETER, bindings.of((IdentExprNode) sum.lhs).kind);
+        assertEquals(0, bindings.of((IdentExprNode) sum.lhs).slot);
+        assertEquals(Symbol.Kind.GLOBAL, bindings.of((IdentExprNode) sum.rhs).kind);
+        assertEquals(TypeNode.INT, sum.type);
+        assertEquals(2, bindings.of(outerX).slot);
+
+        var block = (CompoundStmtNode) f.body.statements.get(1);
+        var innerX = (VarDeclNode) block.statements.get(0);
+        var assignment = (AssignmentNode) block.statements.get(1);
+        assertEquals(3, bindings.of(innerX).slot);
+        assertSame(bindings.of(innerX), bindings.of(assignment));
+        assertEquals(TypeNode.FLOAT, assignment.expr.type);
+
+        var call = (FnCallNode) ((ReturnNode) f.body.statements.get(2)).expr;
+        assertSame(function, bindings.of(call));
+        assertSame(bindings.of(outerX), bindings.of((IdentExprNode) call.args.get(0)));
+        for (int id = 0; id < bindings.symbols().size(); id++) {
+            assertEquals(id, bindings.symbol(id).id());
+        }
+    }
+
+    @Test void parallelCheckMatchesSequential() {
+        StringBuilder code = new StringBuilder("var g: int = 1;\n");
+        for (int i = 0; i < 200; i++) {
+            code.append("func f").append(i).append("(a: int): int {\n")
+                .append("    var x: float = a * g;\n")
+                .append("    { var y: int = x; }\n")
+                .append("    return f").append((i + 1) % 200).append("(a) + h").append(i % 7).append(";\n")
+                .append("}\n");
+            if (i % 50 == 0) {
+                code.append("var h").append(i / 50).append(": int = f0(g);\n");
+            }
+        }
+        code.append("var g: bool = f3(true);\n");
+        String source = code.toString();
+
+        ErrorList sequentialErrors = new ErrorList();
+        Bindings sequential = SemanticAnalyzer.check(Parser.parse(Lexer.tokenizeStream(source)), sequentialErrors);
+        ErrorList parallelErrors = new ErrorList();
+        ProgramNode program = Parser.parse(Lexer.tokenizeStream(source));
+        Bindings parallel = SemanticAnalyzer.checkParallel(program, parallelErrors, new ForkJoinPool(4));
+
+        assertEquals(sequentialErrors.toString(), parallelErrors.toString());
+        assertTrue(sequentialErrors.size() > 200);
+        assertEquals(sequential.symbols().size(), parallel.symbols().size());
+        for (int id = 0; id < parallel.symbols().size(); id++) {
+            Symbol expected = sequential.symbol(id);
+            Symbol actual = parallel.symbol(id);
+            assertEquals(id, actual.id());
+            assertEquals(expected + "@" + expected.pos + "#" + expected.slot, actual + "@" + actual.pos + "#" + actual.slot);
+        }
+        FuncDeclNode last = (FuncDeclNode) program.decls.get(program.decls.size() - 2);
+        var x = (VarDeclNode) last.body.statements.get(0);
+        assertSame(parallel.of(last.params.get(0)), parallel.of((IdentExprNode) ((BinaryOpNode) x.expr).lhs));
+    }
+}